@@ -0,0 +1,92 @@
+#!/usr/bin/env bash
+# Startup time and first-request latency of the plain jar, the fast-start build (AOT + AppCDS) and the native image.
+#
+# Usage: scripts/startup-benchmark.sh [runs] [modes...]     modes: jar fast-start native (default: the ones that are built)
+#   Build first: mvn -DskipTests package; mvn -Pfast-start -DskipTests package; mvn -Pnative -DskipTests native:compile
+#   The usual MYSQL_* variables must point at a running database (docker compose up -d mysql).
+#   With API_KEY set, a first authenticated request (JPA + database) is timed as well.
+#
+# Per run: startup_ms = launch until the "Started" log line, first_ms / second_ms = first and second GET /api/v1/health,
+# db_ms = first GET of a session page, rss_mb = resident memory once started. Medians are printed per mode.
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+RUNS=${1:-5}
+shift || true
+PORT=${SERVER_PORT:-8080}
+BASE="http://localhost:${PORT}"
+JAR=target/rag-chat-service-0.0.1-SNAPSHOT.jar
+FAST_DIR=target/fast-start
+NATIVE=target/rag-chat-service
+LOG=$(mktemp)
+
+modes=("$@")
+if [ ${#modes[@]} -eq 0 ]; then
+  [ -f "$JAR" ] && modes+=(jar)
+  [ -f "$FAST_DIR/application.jsa" ] && modes+=(fast-start)
+  [ -x "$NATIVE" ] && modes+=(native)
+fi
+if [ ${#modes[@]} -eq 0 ]; then
+  echo "Nothing built, see the usage notes at the top of $0" >&2
+  exit 1
+fi
+
+now_ms() { date +%s%3N; }
+
+request_ms() {
+  curl -s -o /dev/null -w '%{time_total}' "$@" | awk '{ printf "%.1f", $1 * 1000 }'
+}
+
+median() {
+  sort -n | awk '{ v[NR] = $1 } END { if (NR == 0) print "-"; else if (NR % 2) print v[(NR + 1) / 2]; else printf "%.1f\n", (v[NR / 2] + v[NR / 2 + 1]) / 2 }'
+}
+
+launch() {
+  case "$1" in
+    jar)        java -jar "$JAR" > "$LOG" 2>&1 & ;;
+    fast-start) (cd "$FAST_DIR" && exec java -XX:SharedArchiveFile=application.jsa -Dspring.aot.enabled=true \
+                  -jar rag-chat-service-0.0.1-SNAPSHOT.jar) > "$LOG" 2>&1 & ;;
+    native)     "$NATIVE" > "$LOG" 2>&1 & ;;
+    *)          echo "Unknown mode $1" >&2; exit 1 ;;
+  esac
+  PID=$!
+}
+
+results=$(mktemp)
+trap 'rm -f "$LOG" "$results"' EXIT
+printf '%-11s %4s %11s %9s %10s %8s %7s\n' mode run startup_ms first_ms second_ms db_ms rss_mb
+
+for mode in "${modes[@]}"; do
+  for run in $(seq 1 "$RUNS"); do
+    start=$(now_ms)
+    launch "$mode"
+    until grep -q "Started RagChatServiceApplication" "$LOG"; do
+      if ! kill -0 "$PID" 2>/dev/null; then
+        echo "$mode exited during startup:" >&2
+        tail -n 30 "$LOG" >&2
+        exit 1
+      fi
+      sleep 0.01
+    done
+    startup=$(( $(now_ms) - start ))
+    first=$(request_ms "$BASE/api/v1/health")
+    second=$(request_ms "$BASE/api/v1/health")
+    db="-"
+    if [ -n "${API_KEY:-}" ]; then
+      db=$(request_ms -H "X-API-KEY: $API_KEY" "$BASE/api/v1/sessions/user/startup-benchmark/page")
+    fi
+    rss=$(awk '/VmRSS/ { printf "%.0f", $2 / 1024 }' "/proc/$PID/status" 2>/dev/null || echo "-")
+    kill "$PID"
+    wait "$PID" 2>/dev/null || true
+
+    printf '%-11s %4s %11s %9s %10s %8s %7s\n' "$mode" "$run" "$startup" "$first" "$second" "$db" "$rss"
+    echo "$mode $startup $first $second $db $rss" >> "$results"
+  done
+done
+
+echo
+printf '%-11s %11s %9s %10s %8s %7s   (medians)\n' mode startup_ms first_ms second_ms db_ms rss_mb
+for mode in "${modes[@]}"; do
+  col() { awk -v m="$mode" -v c="$1" '$1 == m && $c != "-" { print $c }' "$results" | median; }
+  printf '%-11s %11s %9s %10s %8s %7s\n' "$mode" "$(col 2)" "$(col 3)" "$(col 4)" "$(col 5)" "$(col 6)"
+done
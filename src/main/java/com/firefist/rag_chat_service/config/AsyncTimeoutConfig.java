@@ -0,0 +1,34 @@
+package com.firefist.rag_chat_service.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Per-request async timeout for handlers returning a Callable or StreamingResponseBody.
+ * A handler sets TIMEOUT_ATTRIBUTE (milliseconds) on its request; every other async request keeps the
+ * container default.
+ */
+@Configuration
+public class AsyncTimeoutConfig implements WebMvcConfigurer {
+
+    public static final String TIMEOUT_ATTRIBUTE = AsyncTimeoutConfig.class.getName() + ".TIMEOUT";
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(new CallableProcessingInterceptor() {
+            // runs after the handler returned and before async processing starts, the timeout can still change
+            @Override
+            public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+                Object timeout = request.getAttribute(TIMEOUT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+                if (timeout instanceof Long ms && request instanceof AsyncWebRequest async) async.setTimeout(ms);
+            }
+        });
+    }
+}
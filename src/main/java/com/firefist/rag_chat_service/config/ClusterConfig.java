@@ -0,0 +1,67 @@
+package com.firefist.rag_chat_service.config;
+
+import com.firefist.rag_chat_service.service.cluster.ClusterMembership;
+import com.firefist.rag_chat_service.service.cluster.ClusterNode;
+import com.firefist.rag_chat_service.service.cluster.JdbcClusterMembership;
+import com.firefist.rag_chat_service.service.cluster.StaticClusterMembership;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+/**
+ * Session affinity across replicas (chat.cluster.enabled=true): each session has an owner node on a
+ * consistent-hash ring and its requests are served there (see SessionAffinityFilter).
+ *
+ * Members are either listed in chat.cluster.nodes on every replica (membership=static) or found through
+ * heartbeats in the cluster_node table (membership=jdbc), which follows scale-out and scale-in on its own.
+ */
+@Configuration
+@ConditionalOnProperty(name = "chat.cluster.enabled", havingValue = "true")
+public class ClusterConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "chat.cluster.membership", havingValue = "static", matchIfMissing = true)
+    public ClusterMembership staticClusterMembership(@Value("${chat.cluster.node-id}") String nodeId,
+                                                     @Value("${chat.cluster.nodes}") List<String> nodes,
+                                                     @Value("${chat.cluster.virtual-nodes:128}") int virtualNodes) {
+        return new StaticClusterMembership(nodeId, nodes, virtualNodes);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "chat.cluster.membership", havingValue = "jdbc")
+    public ClusterMembership jdbcClusterMembership(JdbcTemplate jdbcTemplate,
+                                                   @Value("${chat.cluster.node-id}") String nodeId,
+                                                   @Value("${chat.cluster.advertise-url}") String advertiseUrl,
+                                                   @Value("${chat.cluster.virtual-nodes:128}") int virtualNodes,
+                                                   @Value("${chat.cluster.expiry-ms:15000}") long expiryMs) {
+        if (nodeId.isBlank() || advertiseUrl.isBlank()) {
+            throw new IllegalStateException("chat.cluster.node-id and chat.cluster.advertise-url are required");
+        }
+        return new JdbcClusterMembership(jdbcTemplate, new ClusterNode(nodeId, advertiseUrl), virtualNodes, expiryMs);
+    }
+
+    @Bean
+    public FilterRegistrationBean<SessionAffinityFilter> sessionAffinityFilter(
+            ClusterMembership membership,
+            MeterRegistry registry,
+            @Value("${chat.cluster.affinity:forward}") String mode,
+            @Value("${chat.cluster.connect-timeout-ms:1000}") long connectTimeoutMs,
+            @Value("${chat.cluster.forward-timeout-ms:130000}") long forwardTimeoutMs) {
+        Gauge.builder("chat.cluster.members", membership, m -> m.ring().nodes().size())
+                .description("Replicas on the session ring, as this node sees them")
+                .register(registry);
+        FilterRegistrationBean<SessionAffinityFilter> registration = new FilterRegistrationBean<>(
+                new SessionAffinityFilter(membership, mode, connectTimeoutMs, forwardTimeoutMs, registry));
+        registration.addUrlPatterns("/api/v1/sessions/*");
+        // after the API key check, before read-your-writes (which only matters where the request is served)
+        registration.setOrder(15);
+        return registration;
+    }
+}
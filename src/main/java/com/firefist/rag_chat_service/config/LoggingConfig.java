@@ -0,0 +1,62 @@
+package com.firefist.rag_chat_service.config;
+
+import io.micrometer.context.ContextRegistry;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.MDC;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request correlation and logging metrics; the appenders and sampling rules are in logback-spring.xml.
+ *
+ * - chat.logging.dropped{reason=sampled|rate_limited|discarded|queue_full}: events not written.
+ * - chat.logging.queue.depth: events waiting in the async appender's queue.
+ */
+@Configuration
+public class LoggingConfig {
+
+    static {
+        // ContextPropagatingTaskDecorator (message turns) carries these MDC keys to the worker thread
+        for (String key : new String[]{RequestCorrelationFilter.REQUEST_ID, RequestCorrelationFilter.SESSION_ID}) {
+            ContextRegistry.getInstance().registerThreadLocalAccessor(key,
+                    () -> MDC.get(key), value -> MDC.put(key, value), () -> MDC.remove(key));
+        }
+    }
+
+    @Bean
+    public FilterRegistrationBean<RequestCorrelationFilter> requestCorrelationFilter() {
+        FilterRegistrationBean<RequestCorrelationFilter> registration =
+                new FilterRegistrationBean<>(new RequestCorrelationFilter());
+        registration.addUrlPatterns("/*");
+        // ahead of the API key check, so rejected requests are correlated too
+        registration.setOrder(5);
+        return registration;
+    }
+
+    @Bean
+    public MeterBinder loggingMetrics() {
+        return registry -> {
+            dropped(registry, "sampled", SamplingTurboFilter.SAMPLED);
+            dropped(registry, "rate_limited", SamplingTurboFilter.RATE_LIMITED);
+            dropped(registry, "discarded", MeteredAsyncAppender.DISCARDED);
+            dropped(registry, "queue_full", MeteredAsyncAppender.QUEUE_FULL);
+            Gauge.builder("chat.logging.queue.depth", () -> MeteredAsyncAppender.STARTED.stream()
+                            .mapToInt(MeteredAsyncAppender::getNumberOfElementsInQueue).sum())
+                    .description("Log events waiting for the async appender")
+                    .register(registry);
+        };
+    }
+
+    private static void dropped(MeterRegistry registry, String reason, LongAdder count) {
+        FunctionCounter.builder("chat.logging.dropped", count, LongAdder::sum)
+                .description("Log events not written")
+                .tag("reason", reason)
+                .register(registry);
+    }
+}
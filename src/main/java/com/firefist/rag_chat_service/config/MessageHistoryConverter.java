@@ -0,0 +1,128 @@
+package com.firefist.rag_chat_service.config;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.firefist.rag_chat_service.dto.MessageHistory;
+import com.firefist.rag_chat_service.dto.MessageView;
+import com.firefist.rag_chat_service.model.ContextRef;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Writes message histories field by field, straight into the response stream.
+ *
+ * - Same JSON as MessageResponse through the ObjectMapper (field order, ISO timestamps, nulls written,
+ *   null ContextRef fields left out), without the per-call serializer lookup and bean introspection.
+ * - Field names are pre-encoded once; the generator comes from the application ObjectMapper's factory,
+ *   so its recycled buffers are shared with the rest of the app.
+ * - Only writes, and only {@link MessageHistory}; everything else keeps the default converters.
+ */
+@Component
+public class MessageHistoryConverter extends AbstractHttpMessageConverter<MessageHistory> {
+
+    private static final SerializedString ID = new SerializedString("id");
+    private static final SerializedString SESSION_ID = new SerializedString("sessionId");
+    private static final SerializedString SENDER = new SerializedString("sender");
+    private static final SerializedString CONTENT = new SerializedString("content");
+    private static final SerializedString RETRIEVED_CONTEXT = new SerializedString("retrievedContext");
+    private static final SerializedString CONTEXT_REFS = new SerializedString("contextRefs");
+    private static final SerializedString CREATED_AT = new SerializedString("createdAt");
+    private static final SerializedString SEQUENCE_NUMBER = new SerializedString("sequenceNumber");
+    private static final SerializedString SOURCE = new SerializedString("source");
+    private static final SerializedString SCORE = new SerializedString("score");
+    private static final SerializedString EXCERPT = new SerializedString("excerpt");
+
+    private final JsonFactory json;
+
+    public MessageHistoryConverter(ObjectMapper objectMapper) {
+        super(MediaType.APPLICATION_JSON);
+        this.json = objectMapper.getFactory();
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return MessageHistory.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected MessageHistory readInternal(Class<? extends MessageHistory> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Message histories are not read", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(MessageHistory history, HttpOutputMessage outputMessage) throws IOException {
+        // the servlet container owns the response stream
+        try (JsonGenerator gen = json.createGenerator(StreamUtils.nonClosing(outputMessage.getBody()))) {
+            gen.writeStartArray();
+            for (MessageView m : history.messages()) {
+                write(m, gen);
+            }
+            gen.writeEndArray();
+        }
+    }
+
+    private static void write(MessageView m, JsonGenerator gen) throws IOException {
+        gen.writeStartObject();
+        gen.writeFieldName(ID);
+        uuid(m.id(), gen);
+        gen.writeFieldName(SESSION_ID);
+        uuid(m.sessionId(), gen);
+        gen.writeFieldName(SENDER);
+        gen.writeString(m.sender());
+        gen.writeFieldName(CONTENT);
+        gen.writeString(m.content());
+        gen.writeFieldName(RETRIEVED_CONTEXT);
+        gen.writeString(m.retrievedContext());
+        gen.writeFieldName(CONTEXT_REFS);
+        if (m.contextRefs() == null) {
+            gen.writeNull();
+        } else {
+            gen.writeStartArray();
+            for (ContextRef ref : m.contextRefs()) {
+                gen.writeStartObject();
+                if (ref.getId() != null) {
+                    gen.writeFieldName(ID);
+                    gen.writeString(ref.getId());
+                }
+                if (ref.getSource() != null) {
+                    gen.writeFieldName(SOURCE);
+                    gen.writeString(ref.getSource());
+                }
+                gen.writeFieldName(SCORE);
+                gen.writeNumber(ref.getScore());
+                if (ref.getExcerpt() != null) {
+                    gen.writeFieldName(EXCERPT);
+                    gen.writeString(ref.getExcerpt());
+                }
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+        }
+        gen.writeFieldName(CREATED_AT);
+        // what JavaTimeModule writes with WRITE_DATES_AS_TIMESTAMPS off (Spring Boot's default)
+        gen.writeString(m.createdAt() == null ? null : m.createdAt().toString());
+        gen.writeFieldName(SEQUENCE_NUMBER);
+        if (m.sequenceNumber() == null) gen.writeNull();
+        else gen.writeNumber(m.sequenceNumber());
+        gen.writeEndObject();
+    }
+
+    private static void uuid(UUID id, JsonGenerator gen) throws IOException {
+        gen.writeString(id == null ? null : id.toString());
+    }
+}
@@ -0,0 +1,50 @@
+package com.firefist.rag_chat_service.config;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Logback's AsyncAppender, counting what it drops (chat.logging.dropped, reason=discarded|queue_full).
+ *
+ * - Request threads only enqueue; formatting and console I/O happen on the appender's worker.
+ * - With neverBlock a full queue drops the event instead of stalling the caller; past the discarding
+ *   threshold TRACE/DEBUG/INFO events are dropped first so WARN and ERROR keep their room.
+ * - Counts are approximate under contention: the queue can fill between the check and the enqueue.
+ */
+public class MeteredAsyncAppender extends AsyncAppender {
+
+    static final LongAdder DISCARDED = new LongAdder();
+    static final LongAdder QUEUE_FULL = new LongAdder();
+    // for the queue depth gauge
+    static final Set<MeteredAsyncAppender> STARTED = new CopyOnWriteArraySet<>();
+
+    @Override
+    public void start() {
+        super.start();
+        if (isStarted()) STARTED.add(this);
+    }
+
+    @Override
+    public void stop() {
+        STARTED.remove(this);
+        super.stop();
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        int remaining = getRemainingCapacity();
+        if (remaining < getDiscardingThreshold() && isDiscardable(event)) {
+            DISCARDED.increment();
+            return;
+        }
+        if (remaining == 0 && isNeverBlock()) {
+            QUEUE_FULL.increment();
+            return;
+        }
+        super.append(event);
+    }
+}
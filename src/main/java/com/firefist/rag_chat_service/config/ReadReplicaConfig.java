@@ -0,0 +1,85 @@
+package com.firefist.rag_chat_service.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends @Transactional(readOnly = true) work to read replicas (chat.read-replicas.enabled=true).
+ *
+ * The application DataSource becomes a LazyConnectionDataSourceProxy over the primary pool with a
+ * {@link ReadReplicaDataSource} as its read-only target: the physical connection is only fetched at the
+ * first statement, after the transaction manager has flagged it read-only, so the choice follows the
+ * transaction's readOnly attribute. Writes and non-transactional work stay on the primary.
+ * Replica pools use spring.datasource.hikari.* settings and the primary's credentials unless overridden.
+ */
+@Configuration
+@ConditionalOnProperty(name = "chat.read-replicas.enabled", havingValue = "true")
+public class ReadReplicaConfig {
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+
+    @Bean
+    public DataSource dataSource(DataSourceProperties properties,
+                                 Environment environment,
+                                 @Value("${chat.read-replicas.urls}") List<String> urls,
+                                 @Value("${chat.read-replicas.username:}") String username,
+                                 @Value("${chat.read-replicas.password:}") String password,
+                                 @Value("${chat.read-replicas.retry-after-ms:30000}") long retryAfterMs) {
+        HikariDataSource primary = pool(properties, environment, "primary");
+
+        List<DataSource> replicas = new ArrayList<>(urls.size());
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource replica = pool(properties, environment, "replica-" + (i + 1));
+            replica.setJdbcUrl(urls.get(i).trim());
+            if (!username.isBlank()) replica.setUsername(username);
+            if (!password.isBlank()) replica.setPassword(password);
+            replica.setReadOnly(true);
+            replicas.add(replica);
+        }
+
+        LazyConnectionDataSourceProxy routing = new LazyConnectionDataSourceProxy(primary);
+        routing.setReadOnlyDataSource(new ReadReplicaDataSource(primary, replicas, retryAfterMs));
+        return routing;
+    }
+
+    @Bean
+    public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(
+            @Value("${chat.read-replicas.sticky-header:X-API-KEY}") String header,
+            @Value("${chat.read-replicas.sticky-window-ms:5000}") long windowMs,
+            @Value("${chat.read-replicas.sticky-max-clients:100000}") long maxClients) {
+        FilterRegistrationBean<ReadYourWritesFilter> registration =
+                new FilterRegistrationBean<>(new ReadYourWritesFilter(header, windowMs, maxClients));
+        registration.addUrlPatterns("/*");
+        // after the API key check
+        registration.setOrder(20);
+        return registration;
+    }
+
+    private HikariDataSource pool(DataSourceProperties properties, Environment environment, String name) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        pool.setPoolName(name);
+        pools.add(pool);
+        return pool;
+    }
+
+    // the pools aren't beans of their own, close them with the context
+    @PreDestroy
+    public void close() {
+        pools.forEach(HikariDataSource::close);
+    }
+}
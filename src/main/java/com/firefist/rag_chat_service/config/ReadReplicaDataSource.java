@@ -0,0 +1,78 @@
+package com.firefist.rag_chat_service.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Connections for read-only transactions: round-robin over the replicas, falling back to the primary.
+ *
+ * - A replica that fails to hand out a connection is skipped for retry-after-ms; when none is usable the
+ *   primary serves the read. Errors after a connection was obtained are not retried elsewhere.
+ * - {@link ReadRouting#primaryRequired()} (read-your-writes window, cache loads) sends the read to the primary,
+ *   and so does a connection asked for with explicit credentials.
+ *
+ * Used as the read-only target of a LazyConnectionDataSourceProxy, which picks it when the transaction
+ * manager marks the connection read-only before the first statement.
+ */
+@Slf4j
+public class ReadReplicaDataSource extends AbstractDataSource {
+
+    private static final class Replica {
+        final String name;
+        final DataSource dataSource;
+        volatile long downUntil;
+
+        Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final long retryAfterMs;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReadReplicaDataSource(DataSource primary, List<DataSource> replicas, long retryAfterMs) {
+        this.primary = primary;
+        this.replicas = new ArrayList<>(replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            this.replicas.add(new Replica("replica-" + (i + 1), replicas.get(i)));
+        }
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!ReadRouting.primaryRequired()) {
+            int start = Math.floorMod(next.getAndIncrement(), Math.max(1, replicas.size()));
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < replicas.size(); i++) {
+                Replica r = replicas.get((start + i) % replicas.size());
+                if (r.downUntil > now) continue;
+                try {
+                    return r.dataSource.getConnection();
+                } catch (SQLException ex) {
+                    r.downUntil = now + retryAfterMs;
+                    log.warn("Read replica {} unavailable, skipping it for {} ms: {}", r.name, retryAfterMs, ex.getMessage());
+                }
+            }
+        }
+        return primary.getConnection();
+    }
+
+    /**
+     * Explicit credentials are the primary's: the replicas only know their own configured ones.
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+}
@@ -0,0 +1,42 @@
+package com.firefist.rag_chat_service.config;
+
+import java.util.function.Supplier;
+
+/**
+ * Per-thread override of read-replica routing: inside a {@link #primary()} scope, read-only transactions
+ * that haven't touched the database yet go to the primary. A no-op when replicas are not configured.
+ */
+public final class ReadRouting {
+
+    private static final ThreadLocal<Integer> PRIMARY_DEPTH = ThreadLocal.withInitial(() -> 0);
+
+    /**
+     * Ends the scope opened by {@link #primary()}; scopes nest.
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private ReadRouting() {
+    }
+
+    public static boolean primaryRequired() {
+        return PRIMARY_DEPTH.get() > 0;
+    }
+
+    public static Scope primary() {
+        PRIMARY_DEPTH.set(PRIMARY_DEPTH.get() + 1);
+        return () -> {
+            int depth = PRIMARY_DEPTH.get() - 1;
+            if (depth == 0) PRIMARY_DEPTH.remove();
+            else PRIMARY_DEPTH.set(depth);
+        };
+    }
+
+    public static <T> T onPrimary(Supplier<T> body) {
+        try (Scope ignored = primary()) {
+            return body.get();
+        }
+    }
+}
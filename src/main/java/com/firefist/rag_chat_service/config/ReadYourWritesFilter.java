@@ -0,0 +1,63 @@
+package com.firefist.rag_chat_service.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Read-your-writes with read replicas: after a client writes (any non-GET/HEAD/OPTIONS request),
+ * its reads go to the primary for window-ms so replication lag can't hide what it just wrote.
+ *
+ * Clients are told apart by a header, X-API-KEY by default. A backend serving many end users through
+ * one API key can send a per-user header instead (chat.read-replicas.sticky-header), so one user's
+ * write doesn't pin every user's reads. The window is kept per node.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    private final String header;
+    private final Cache<String, Boolean> recentWriters;
+
+    public ReadYourWritesFilter(String header, long windowMs, long maxClients) {
+        this.header = header;
+        this.recentWriters = Caffeine.newBuilder()
+                .maximumSize(maxClients)
+                .expireAfterWrite(Duration.ofMillis(windowMs))
+                .build();
+    }
+
+    // async requests (message turns) pass again when their result is dispatched, which is when the write ends
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String client = request.getHeader(header);
+        if (client == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        boolean write = !("GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod())
+                || "OPTIONS".equals(request.getMethod()));
+        if (write) recentWriters.put(client, Boolean.TRUE);
+        if (!write && recentWriters.getIfPresent(client) == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        try (ReadRouting.Scope ignored = ReadRouting.primary()) {
+            chain.doFilter(request, response);
+        } finally {
+            // the window counts from the end of the write (a user turn can take seconds)
+            if (write) recentWriters.put(client, Boolean.TRUE);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.firefist.rag_chat_service.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.MDC;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Puts the request id and, on /api/v1/sessions/{id}/..., the session id into the MDC, so every log
+ * event of the request carries them (as fields of the JSON events, see logback-spring.xml).
+ *
+ * - The request id is the client's X-Request-Id when it sends a usable one, a random one otherwise,
+ *   and is echoed back. Forwarded requests keep it (SessionAffinityFilter passes the header on).
+ * - Message turns run on other threads; LoggingConfig makes the keys travel with the request context.
+ */
+public class RequestCorrelationFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "X-Request-Id";
+    public static final String REQUEST_ID = "requestId";
+    public static final String SESSION_ID = "sessionId";
+
+    private static final String SESSIONS_PATH = "/api/v1/sessions/";
+    private static final int UUID_LENGTH = 36;
+    private static final int MAX_ID_LENGTH = 64;
+    private static final String ATTRIBUTE = RequestCorrelationFilter.class.getName() + ".requestId";
+
+    // async requests (message turns) pass again when their result is dispatched
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String requestId = (String) request.getAttribute(ATTRIBUTE);
+        if (requestId == null) {
+            requestId = usable(request.getHeader(HEADER)) ? request.getHeader(HEADER) : newId();
+            request.setAttribute(ATTRIBUTE, requestId);
+            response.setHeader(HEADER, requestId);
+        }
+        MDC.put(REQUEST_ID, requestId);
+        String sessionId = sessionId(request.getRequestURI());
+        if (sessionId != null) MDC.put(SESSION_ID, sessionId);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            MDC.remove(REQUEST_ID);
+            MDC.remove(SESSION_ID);
+        }
+    }
+
+    // ids end up in every log line, so only short plain tokens are taken from clients
+    private static boolean usable(String id) {
+        if (id == null || id.isEmpty() || id.length() > MAX_ID_LENGTH) return false;
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (!(Character.isLetterOrDigit(c) && c < 128) && c != '-' && c != '_' && c != '.') return false;
+        }
+        return true;
+    }
+
+    // no SecureRandom on the request path, the id only has to be unique enough to grep for
+    private static String newId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return Long.toHexString(random.nextLong() | Long.MIN_VALUE) + Long.toHexString(random.nextLong() | Long.MIN_VALUE);
+    }
+
+    private static String sessionId(String uri) {
+        if (uri == null || !uri.startsWith(SESSIONS_PATH)) return null;
+        int start = SESSIONS_PATH.length();
+        int end = start + UUID_LENGTH;
+        if (uri.length() < end || (uri.length() > end && uri.charAt(end) != '/')) return null;
+        // /api/v1/sessions/user/{userId} and the like
+        if (uri.charAt(start + 8) != '-' || uri.charAt(start + 13) != '-') return null;
+        return uri.substring(start, end);
+    }
+}
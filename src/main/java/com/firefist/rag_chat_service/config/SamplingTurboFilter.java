@@ -0,0 +1,106 @@
+package com.firefist.rag_chat_service.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sampling and rate caps per logger category, for high-frequency events, applied before an event is created.
+ *
+ * - Rules are "category:sample-rate:max-per-second" separated by commas (chat.logging.sampling), e.g.
+ *   com.firefist.rag_chat_service.security:0.1:20 keeps one in ten events of that package and at most 20 a second.
+ *   A max of 0 means no cap. The longest matching category wins.
+ * - WARN and ERROR always pass, as do loggers no rule matches.
+ * - Dropped events are counted (chat.logging.dropped, reason=sampled|rate_limited).
+ */
+public class SamplingTurboFilter extends TurboFilter {
+
+    static final LongAdder SAMPLED = new LongAdder();
+    static final LongAdder RATE_LIMITED = new LongAdder();
+
+    private static final Rule NONE = new Rule("", 1, 0);
+
+    private final List<Rule> rules = new ArrayList<>();
+    // rule per logger name, resolved once
+    private final ConcurrentHashMap<String, Rule> byLogger = new ConcurrentHashMap<>();
+
+    public void setRules(String spec) {
+        rules.clear();
+        byLogger.clear();
+        if (spec == null) return;
+        for (String entry : spec.split(",")) {
+            if (entry.isBlank()) continue;
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 3) {
+                addError("Sampling rule '" + entry.trim() + "' is not category:sample-rate:max-per-second");
+                continue;
+            }
+            rules.add(new Rule(parts[0].trim(), Double.parseDouble(parts[1].trim()), Integer.parseInt(parts[2].trim())));
+        }
+        rules.sort(Comparator.comparingInt((Rule r) -> r.category.length()).reversed());
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        // isXxxEnabled() checks come without a format; sample the event itself, not the check
+        if (!isStarted() || level == null || format == null || level.levelInt >= Level.WARN_INT
+                || !level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+            return FilterReply.NEUTRAL;
+        }
+        Rule rule = byLogger.computeIfAbsent(logger.getName(), this::match);
+        if (rule == NONE) return FilterReply.NEUTRAL;
+        if (rule.sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= rule.sampleRate) {
+            SAMPLED.increment();
+            return FilterReply.DENY;
+        }
+        if (!rule.admit()) {
+            RATE_LIMITED.increment();
+            return FilterReply.DENY;
+        }
+        return FilterReply.NEUTRAL;
+    }
+
+    private Rule match(String loggerName) {
+        for (Rule rule : rules) {
+            if (loggerName.equals(rule.category)
+                    || (loggerName.startsWith(rule.category) && loggerName.charAt(rule.category.length()) == '.')) {
+                return rule;
+            }
+        }
+        return NONE;
+    }
+
+    private static final class Rule {
+        final String category;
+        final double sampleRate;
+        final int maxPerSecond;
+        final AtomicLong second = new AtomicLong();
+        final AtomicInteger count = new AtomicInteger();
+
+        Rule(String category, double sampleRate, int maxPerSecond) {
+            this.category = category;
+            this.sampleRate = sampleRate;
+            this.maxPerSecond = maxPerSecond;
+        }
+
+        // fixed one-second windows; a few events over the cap at a window change are fine
+        boolean admit() {
+            if (maxPerSecond <= 0) return true;
+            long now = System.nanoTime() / 1_000_000_000L;
+            long current = second.get();
+            if (current != now && second.compareAndSet(current, now)) count.set(0);
+            return count.incrementAndGet() <= maxPerSecond;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.firefist.rag_chat_service.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables @Scheduled background jobs (journal flushing, fsync batching, ...).
+ * Pool size is set with spring.task.scheduling.pool.size.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig { }
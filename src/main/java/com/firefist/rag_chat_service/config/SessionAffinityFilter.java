@@ -0,0 +1,376 @@
+package com.firefist.rag_chat_service.config;
+
+import com.firefist.rag_chat_service.service.cluster.ClusterMembership;
+import com.firefist.rag_chat_service.service.cluster.ClusterNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Sends requests for a session to the replica owning it (see ClusterMembership), so the session's caches
+ * and in-memory state stay hot on one node instead of going cold on all of them.
+ *
+ * - Only paths under /api/v1/sessions/{sessionId} are routed; everything else is served where it lands.
+ * - forward: the request is proxied to the owner and its response streamed back; the client sees nothing.
+ *   redirect: the client gets a 307 to the owner's URL and repeats the request there (method and body kept).
+ * - A forwarded request carries FORWARDED_HEADER and is always served by the node it reaches, so replicas
+ *   that briefly disagree on membership cost one extra hop, never a loop.
+ * - An owner that refuses the connection (stopped, not up yet) didn't see the request, so it is served
+ *   locally; other forwarding failures answer 502, and no answer within forward-timeout-ms answers 504.
+ * - Forwarding is asynchronous: the container thread is released while the owner works on the turn and the
+ *   answer is relayed from a relay thread. A client that disconnects in the meantime cancels the upstream
+ *   exchange, which closes the connection to the owner so it can cancel the turn as well.
+ */
+@Slf4j
+public class SessionAffinityFilter extends OncePerRequestFilter {
+
+    public static final String FORWARDED_HEADER = "X-Chat-Forwarded-By";
+    // set on a request whose owner was unreachable; the async dispatch then serves it here with this body
+    private static final String FALLBACK_BODY = SessionAffinityFilter.class.getName() + ".fallbackBody";
+
+    private static final Pattern SESSION_PATH = Pattern.compile("^/api/v1/sessions/([0-9a-fA-F-]{36})(/.*)?$");
+    // hop-by-hop headers plus the ones HttpClient sets itself and refuses to take
+    private static final Set<String> SKIPPED_HEADERS = Set.of("connection", "content-length", "expect", "host",
+            "keep-alive", "proxy-authenticate", "proxy-authorization", "te", "trailer", "transfer-encoding", "upgrade");
+
+    private final ClusterMembership membership;
+    private final boolean redirect;
+    private final HttpClient client;
+    private final Duration forwardTimeout;
+    private final ExecutorService relay;
+    private final Map<String, Counter> outcomes;
+
+    public SessionAffinityFilter(ClusterMembership membership, String mode, long connectTimeoutMs,
+                                 long forwardTimeoutMs, MeterRegistry registry) {
+        this.membership = membership;
+        this.redirect = "redirect".equalsIgnoreCase(mode);
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+        this.forwardTimeout = Duration.ofMillis(forwardTimeoutMs);
+        AtomicInteger threads = new AtomicInteger();
+        this.relay = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "chat-affinity-relay-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.outcomes = Map.of(
+                "local", counter(registry, "local"),
+                "forwarded", counter(registry, "forwarded"),
+                "redirected", counter(registry, "redirected"),
+                "fallback", counter(registry, "fallback"),
+                "failed", counter(registry, "failed"),
+                "cancelled", counter(registry, "cancelled"));
+    }
+
+    // a fallback is served on the async dispatch; message turns pass again when their result is dispatched
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (isAsyncDispatch(request)) {
+            byte[] body = (byte[]) request.getAttribute(FALLBACK_BODY);
+            if (body == null) {
+                chain.doFilter(request, response);
+            } else {
+                request.removeAttribute(FALLBACK_BODY);
+                chain.doFilter(new BufferedRequest(request, body), response);
+            }
+            return;
+        }
+        ClusterNode owner = owner(request);
+        if (owner == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        if (redirect) {
+            outcomes.get("redirected").increment();
+            response.setStatus(HttpServletResponse.SC_TEMPORARY_REDIRECT);
+            response.setHeader("Location", target(owner, request).toString());
+            return;
+        }
+        // session requests are small (a message, a rename), so the body is read here; the wait for the owner isn't
+        byte[] body = request.getInputStream().readAllBytes();
+        forward(owner, request, body, response);
+    }
+
+    @Override
+    public void destroy() {
+        relay.shutdownNow();
+    }
+
+    /** The other node that should serve this request, null when it is served here. */
+    private ClusterNode owner(HttpServletRequest request) {
+        Matcher m = SESSION_PATH.matcher(request.getRequestURI());
+        if (!m.matches()) return null;
+        ClusterNode owner;
+        try {
+            owner = membership.ownerOf(UUID.fromString(m.group(1)));
+        } catch (IllegalArgumentException ex) {
+            // not a session id after all; the controller answers it
+            return null;
+        }
+        if (owner.equals(membership.self()) || request.getHeader(FORWARDED_HEADER) != null) {
+            outcomes.get("local").increment();
+            return null;
+        }
+        return owner;
+    }
+
+    /**
+     * Proxies the request from an async context. forward-timeout-ms bounds the wait for the owner's response
+     * headers; the body is then relayed for as long as the owner streams it, so the container timeout is off.
+     */
+    private void forward(ClusterNode owner, HttpServletRequest request, byte[] body, HttpServletResponse response) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(target(owner, request))
+                .timeout(forwardTimeout)
+                .method(request.getMethod(), body.length == 0
+                        ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofByteArray(body));
+        for (String name : Collections.list(request.getHeaderNames())) {
+            if (SKIPPED_HEADERS.contains(name.toLowerCase()) || name.equalsIgnoreCase(FORWARDED_HEADER)) continue;
+            for (String value : Collections.list(request.getHeaders(name))) {
+                builder.header(name, value);
+            }
+        }
+        builder.header(FORWARDED_HEADER, membership.self().id());
+        String forwardedFor = request.getHeader("X-Forwarded-For");
+        builder.setHeader("X-Forwarded-For", forwardedFor == null
+                ? request.getRemoteAddr() : forwardedFor + ", " + request.getRemoteAddr());
+
+        AsyncContext async = request.startAsync(request, response);
+        async.setTimeout(0);
+        Exchange exchange = new Exchange(async, owner, request.getRequestURI(), body);
+        async.addListener(exchange);
+        exchange.start(client.sendAsync(builder.build(), HttpResponse.BodyHandlers.ofInputStream()));
+    }
+
+    private static URI target(ClusterNode owner, HttpServletRequest request) {
+        String query = request.getQueryString();
+        String base = owner.baseUrl().endsWith("/")
+                ? owner.baseUrl().substring(0, owner.baseUrl().length() - 1) : owner.baseUrl();
+        return URI.create(base + request.getRequestURI() + (query != null ? "?" + query : ""));
+    }
+
+    private static Counter counter(MeterRegistry registry, String result) {
+        return Counter.builder("chat.cluster.affinity.requests")
+                .description("Session requests by where they were served")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    /**
+     * One forwarded request. Whichever comes first of the owner's answer and the client going away finishes
+     * the async context; the other side is then only cleaned up.
+     */
+    private final class Exchange implements AsyncListener {
+
+        private final AsyncContext async;
+        private final ClusterNode owner;
+        private final String uri;
+        private final byte[] body;
+        private final AtomicBoolean finished = new AtomicBoolean();
+        private volatile CompletableFuture<HttpResponse<InputStream>> upstream;
+        private volatile InputStream upstreamBody;
+
+        Exchange(AsyncContext async, ClusterNode owner, String uri, byte[] body) {
+            this.async = async;
+            this.owner = owner;
+            this.uri = uri;
+            this.body = body;
+        }
+
+        void start(CompletableFuture<HttpResponse<InputStream>> future) {
+            upstream = future;
+            // the client may already be gone
+            if (finished.get()) future.cancel(true);
+            future.whenCompleteAsync(this::relay, relay);
+        }
+
+        private void relay(HttpResponse<InputStream> answer, Throwable failure) {
+            if (failure != null) {
+                failed(failure instanceof CompletionException && failure.getCause() != null
+                        ? failure.getCause() : failure);
+                return;
+            }
+            upstreamBody = answer.body();
+            if (finished.get()) {
+                closeQuietly(upstreamBody);
+                return;
+            }
+            HttpServletResponse response = (HttpServletResponse) async.getResponse();
+            try (InputStream in = upstreamBody) {
+                response.setStatus(answer.statusCode());
+                answer.headers().map().forEach((name, values) -> {
+                    if (SKIPPED_HEADERS.contains(name.toLowerCase()) || name.startsWith(":")) return;
+                    for (String value : values) response.addHeader(name, value);
+                });
+                // streamed, so long exports don't pile up here
+                in.transferTo(response.getOutputStream());
+                outcomes.get("forwarded").increment();
+            } catch (IOException | RuntimeException ex) {
+                // the client went away mid-body (or the owner did); closing the stream drops the upstream connection
+                log.debug("Relaying {} from {} broke off: {}", uri, owner.id(), ex.toString());
+            } finally {
+                complete();
+            }
+        }
+
+        private void failed(Throwable ex) {
+            if (ex instanceof ConnectException || ex instanceof HttpConnectTimeoutException) {
+                if (!finished.compareAndSet(false, true)) return;
+                log.warn("Session owner {} unreachable, serving {} locally", owner.id(), uri);
+                outcomes.get("fallback").increment();
+                async.getRequest().setAttribute(FALLBACK_BODY, body);
+                async.dispatch();
+                return;
+            }
+            if (!finished.compareAndSet(false, true)) return;
+            log.warn("Forwarding {} to {} failed: {}", uri, owner.id(), ex.toString());
+            outcomes.get("failed").increment();
+            try {
+                ((HttpServletResponse) async.getResponse()).sendError(ex instanceof HttpTimeoutException
+                        ? HttpServletResponse.SC_GATEWAY_TIMEOUT : HttpServletResponse.SC_BAD_GATEWAY);
+            } catch (IOException | RuntimeException sendFailed) {
+                log.debug("Could not answer {}: {}", uri, sendFailed.toString());
+            }
+            async.complete();
+        }
+
+        private void complete() {
+            if (finished.compareAndSet(false, true)) async.complete();
+        }
+
+        /** The client disconnected (or the container gave up): stop waiting for the owner. */
+        private void abandon() {
+            if (!finished.compareAndSet(false, true)) return;
+            outcomes.get("cancelled").increment();
+            log.debug("Client of {} went away, cancelling the request to {}", uri, owner.id());
+            CompletableFuture<HttpResponse<InputStream>> future = upstream;
+            if (future != null) future.cancel(true);
+            closeQuietly(upstreamBody);
+            async.complete();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            abandon();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            abandon();
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+
+    private static void closeQuietly(InputStream in) {
+        if (in == null) return;
+        try {
+            in.close();
+        } catch (IOException ignored) {
+            // nothing left to release
+        }
+    }
+
+    /** The request with its body already read, for serving it locally after all. */
+    private static final class BufferedRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        BufferedRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8;
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+    }
+}
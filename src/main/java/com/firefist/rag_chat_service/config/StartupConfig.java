@@ -0,0 +1,55 @@
+package com.firefist.rag_chat_service.config;
+
+import com.firefist.rag_chat_service.dto.ImportRecord;
+import com.firefist.rag_chat_service.model.ContextRef;
+import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * Startup-time settings, used by the fast-start and native builds.
+ *
+ * - Beans whose class (or the configuration class declaring them) is in one of chat.startup.lazy-packages
+ *   are created on first use instead of at boot, e.g. springdoc: Swagger is built on the first /v3/api-docs call.
+ *   spring.main.lazy-initialization=true makes every bean lazy instead.
+ * - Types Jackson reads by class outside of controller signatures need reflection hints in a native image.
+ */
+@Configuration
+@RegisterReflectionForBinding({ImportRecord.class, ContextRef.class})
+public class StartupConfig {
+
+    // static: post-processors are created before the configuration class itself
+    @Bean
+    static BeanFactoryPostProcessor lazyPackages(Environment environment) {
+        String[] packages = environment.getProperty("chat.startup.lazy-packages", String[].class, new String[0]);
+        return beanFactory -> {
+            if (packages.length == 0) return;
+            for (String name : beanFactory.getBeanDefinitionNames()) {
+                BeanDefinition definition = beanFactory.getBeanDefinition(name);
+                if (definition.getRole() == BeanDefinition.ROLE_INFRASTRUCTURE) continue;
+                String type = declaringType(definition);
+                if (type != null && inPackages(type, packages)) definition.setLazyInit(true);
+            }
+        };
+    }
+
+    // @Bean methods have no bean class name before instantiation, their configuration class decides
+    private static String declaringType(BeanDefinition definition) {
+        if (definition instanceof AnnotatedBeanDefinition annotated && annotated.getFactoryMethodMetadata() != null) {
+            return annotated.getFactoryMethodMetadata().getDeclaringClassName();
+        }
+        return definition.getBeanClassName();
+    }
+
+    private static boolean inPackages(String type, String[] packages) {
+        for (String p : packages) {
+            String prefix = p.trim();
+            if (!prefix.isEmpty() && type.startsWith(prefix + ".")) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,34 @@
+package com.firefist.rag_chat_service.config;
+
+import com.firefist.rag_chat_service.controller.ChatWebSocketHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+/**
+ * Registers the WebSocket chat channel.
+ * - Same-origin only unless chat.ws.allowed-origins lists the browser origins that may connect.
+ */
+@Configuration
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    private final ChatWebSocketHandler handler;
+    private final String path;
+    private final String[] allowedOrigins;
+
+    public WebSocketConfig(ChatWebSocketHandler handler,
+                           @Value("${chat.ws.path:/api/v1/ws/chat}") String path,
+                           @Value("${chat.ws.allowed-origins:}") String[] allowedOrigins) {
+        this.handler = handler;
+        this.path = path;
+        this.allowedOrigins = allowedOrigins;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(handler, path).setAllowedOriginPatterns(allowedOrigins);
+    }
+}
@@ -0,0 +1,32 @@
+package com.firefist.rag_chat_service.controller;
+
+import com.firefist.rag_chat_service.dto.ImportResult;
+import com.firefist.rag_chat_service.service.ingest.BulkImportService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@RestController
+@RequestMapping("/api/v1/import")
+public class BulkImportController {
+
+    private final BulkImportService importService;
+
+    public BulkImportController(BulkImportService importService) {
+        this.importService = importService;
+    }
+
+    /**
+     * Body is a JSON array or NDJSON of session/message records, read as a stream.
+     * 200 with per-row errors when the input was read to the end, 400 if it stopped being valid JSON.
+     */
+    @PostMapping(consumes = {"application/x-ndjson", "application/json"})
+    public ResponseEntity<ImportResult> importRecords(InputStream body) throws IOException {
+        ImportResult result = importService.importRecords(body);
+        return ResponseEntity.status(result.isCompleted() ? 200 : 400).body(result);
+    }
+}
@@ -1,71 +1,220 @@
 package com.firefist.rag_chat_service.controller;
 
+import com.firefist.rag_chat_service.config.ReadRouting;
 import com.firefist.rag_chat_service.dto.CreateMessageRequest;
+import com.firefist.rag_chat_service.dto.MessageHistory;
 import com.firefist.rag_chat_service.dto.MessageResponse;
+import com.firefist.rag_chat_service.dto.MessageView;
+import com.firefist.rag_chat_service.exception.LlmOverloadedException;
+import com.firefist.rag_chat_service.exception.RequestCancelledException;
 import com.firefist.rag_chat_service.model.ChatMessage;
 import com.firefist.rag_chat_service.service.ChatMessageService;
+import com.firefist.rag_chat_service.service.cache.HistoryVersions;
+import com.firefist.rag_chat_service.service.deadline.RequestDeadline;
+import com.firefist.rag_chat_service.service.deadline.RequestDeadlines;
+import com.firefist.rag_chat_service.service.idempotency.IdempotencyService;
 import io.github.resilience4j.ratelimiter.RequestNotPermitted;
 import io.github.resilience4j.ratelimiter.annotation.RateLimiter;
+import jakarta.annotation.PreDestroy;
 import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.support.ContextPropagatingTaskDecorator;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/v1/sessions/{sessionId}/messages")
 public class ChatMessageController {
 
+    // the container's async timeout is only a backstop, the deadline's own timer normally ends the turn first
+    private static final long ASYNC_TIMEOUT_GRACE_MS = 2000;
+
     private final ChatMessageService messageService;
+    private final IdempotencyService idempotencyService;
+    private final RequestDeadlines deadlines;
+    private final HistoryVersions historyVersions;
+    private final ThreadPoolExecutor turnExecutor;
+    private final ContextPropagatingTaskDecorator contextPropagation = new ContextPropagatingTaskDecorator();
 
-    public ChatMessageController(ChatMessageService messageService) {
+    public ChatMessageController(ChatMessageService messageService, IdempotencyService idempotencyService,
+                                 RequestDeadlines deadlines, HistoryVersions historyVersions,
+                                 @Value("${chat.turn.threads:64}") int threads,
+                                 @Value("${chat.turn.queue-size:256}") int queueSize) {
         this.messageService = messageService;
+        this.idempotencyService = idempotencyService;
+        this.deadlines = deadlines;
+        this.historyVersions = historyVersions;
+        this.turnExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), r -> {
+                    Thread t = new Thread(r, "chat-turn");
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.turnExecutor.allowCoreThreadTimeOut(true);
     }
 
+    /**
+     * History reads carry a weak ETag: a repeated read with If-None-Match is answered 304 from the cached
+     * history version (HistoryVersions), without touching the database.
+     */
     @GetMapping
     public ResponseEntity<?> getMessages(
             @PathVariable("sessionId") String sessionId,
             @RequestParam(name = "page", defaultValue = "0") int page,
             @RequestParam(name = "size", defaultValue = "50") int size,
-            @RequestParam(name = "sort", defaultValue = "asc") String sort
+            @RequestParam(name = "sort", defaultValue = "asc") String sort,
+            @RequestParam(name = "include", required = false) String include,
+            @RequestParam(name = "afterSeq", required = false) Long afterSeq,
+            @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
     ) {
             UUID sid = UUID.fromString(sessionId);
-            Sort.Direction dir = "desc".equalsIgnoreCase(sort) ? Sort.Direction.DESC : Sort.Direction.ASC;
-            Pageable pageable = PageRequest.of(page, size, Sort.by(dir, "createdAt"));
-            Page<ChatMessage> p = messageService.getMessages(sid, pageable);
-            if (p.isEmpty()) return ResponseEntity.noContent().build();
-            var body = p.stream().map(m -> new MessageResponse(
-                    m.getId(),
-                    m.getSession().getId(),
-                    m.getSender(),
-                    m.getContent(),
-                    m.getRetrievedContext(),
-                    m.getCreatedAt(),
-                    m.getSequenceNumber()
-            )).collect(Collectors.toList());
-            return ResponseEntity.ok().body(body);
+            HistoryVersions.Version version = historyVersions.current(sid);
+            String etag = version == null ? null
+                    : version.etag(page, size, sort.toLowerCase(), includesContext(include), afterSeq);
+            if (etag != null && matches(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+
+            List<MessageView> views;
+            boolean complete;
+            if (afterSeq != null) {
+                // keyset paging by sequence number: pass the last sequenceNumber seen, size is the limit
+                int limit = Math.max(1, Math.min(size, 500));
+                if (includesContext(include)) {
+                    List<ChatMessage> messages = messageService.getMessagesAfter(sid, afterSeq, limit);
+                    Map<String, String> context = messageService.loadContextTexts(messages);
+                    views = messages.stream().map(m -> MessageView.of(m, context)).toList();
+                } else {
+                    views = messageService.getMessageViewsAfter(sid, afterSeq, limit);
+                }
+                complete = views.size() == limit || maxSequence(views, afterSeq) >= lastSequence(version);
+            } else {
+                Sort.Direction dir = "desc".equalsIgnoreCase(sort) ? Sort.Direction.DESC : Sort.Direction.ASC;
+                Pageable pageable = PageRequest.of(page, size, Sort.by(dir, "createdAt"));
+                Page<MessageView> p;
+                if (includesContext(include)) {
+                    Page<ChatMessage> messages = messageService.getMessages(sid, pageable);
+                    Map<String, String> context = messageService.loadContextTexts(messages.getContent());
+                    p = messages.map(m -> MessageView.of(m, context));
+                } else {
+                    p = messageService.getMessageViews(sid, pageable);
+                }
+                views = p.getContent();
+                complete = (dir == Sort.Direction.ASC && p.hasNext())
+                        || maxSequence(views, 0) >= lastSequence(version);
+            }
+
+            // a page read from a lagging replica may miss the newest messages, it mustn't get the version's tag
+            ResponseEntity.BodyBuilder response = ResponseEntity.status(views.isEmpty() ? HttpStatus.NO_CONTENT : HttpStatus.OK);
+            if (etag != null && complete) response.eTag(etag);
+            return views.isEmpty() ? response.build() : response.body(new MessageHistory(views));
     }
 
+    /**
+     * Runs the turn off the container thread, so a client that disconnects is noticed (Tomcat reports it as an
+     * async error) and the turn cancelled, as it is when X-Request-Timeout-Ms (or chat.deadline.default-ms) passes.
+     */
     @PostMapping
-    public ResponseEntity<?> addMessage(@PathVariable("sessionId") String sessionId,
+    public DeferredResult<ResponseEntity<?>> addMessage(@PathVariable("sessionId") String sessionId,
+                                        @RequestParam(name = "include", required = false) String include,
+                                        @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey,
+                                        @RequestHeader(name = "X-API-KEY", required = false) String apiKey,
+                                        @RequestHeader(name = RequestDeadlines.TIMEOUT_HEADER, required = false) Long timeoutMs,
                                         @Valid @RequestBody CreateMessageRequest req) {
             UUID sid = UUID.fromString(sessionId);
+            // retries with the same key get the first response instead of a second LLM call and second rows
+            String key = idempotencyKey == null ? null : idempotencyService.scopedKey(apiKey, sessionId, idempotencyKey);
+            RequestDeadline deadline = deadlines.start(timeoutMs);
+            DeferredResult<ResponseEntity<?>> result =
+                    new DeferredResult<>(deadline.remaining().toMillis() + ASYNC_TIMEOUT_GRACE_MS);
+            result.onTimeout(() -> {
+                deadline.cancel(RequestDeadline.Reason.DEADLINE);
+                result.setErrorResult(new RequestCancelledException(RequestDeadline.Reason.DEADLINE));
+            });
+            result.onError(ex -> deadline.cancel(RequestDeadline.Reason.DISCONNECT));
+
+            Runnable turn = () -> {
+                // a write, so it reads from the primary like the request thread would (ReadYourWritesFilter)
+                try (RequestDeadline.Scope ignored = deadline.bind(); ReadRouting.Scope primary = ReadRouting.primary()) {
+                    if (key == null) {
+                        result.setResult(createMessage(sid, include, req));
+                        return;
+                    }
+                    String fingerprint = idempotencyService.fingerprint(req.getSender(), req.getContent(),
+                            req.getRetrievedContext(), include);
+                    result.setResult(idempotencyService.execute(key, fingerprint, () -> createMessage(sid, include, req)));
+                } catch (RuntimeException ex) {
+                    result.setErrorResult(ex);
+                } finally {
+                    deadline.close();
+                }
+            };
+            try {
+                // trace context and MDC of the request carry over to the turn
+                turnExecutor.execute(contextPropagation.decorate(turn));
+            } catch (RejectedExecutionException ex) {
+                deadline.close();
+                result.setErrorResult(new LlmOverloadedException("Server busy, retry later"));
+            }
+            return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        turnExecutor.shutdown();
+    }
+
+    private ResponseEntity<?> createMessage(UUID sid, String include, CreateMessageRequest req) {
             ChatMessage saved = messageService.addMessage(sid, req);
             if (saved == null) return ResponseEntity.notFound().build();
-            MessageResponse resp = new MessageResponse(
-                    saved.getId(),
-                    saved.getSession().getId(),
-                    saved.getSender(),
-                    saved.getContent(),
-                    saved.getRetrievedContext(),
-                    saved.getCreatedAt(),
-                    saved.getSequenceNumber()
-            );
-            return ResponseEntity.status(201).body(resp);
+            Map<String, String> context = includesContext(include)
+                    ? messageService.loadContextTexts(List.of(saved)) : null;
+            return ResponseEntity.status(201).body(MessageResponse.of(saved, context));
+    }
+
+    private static long maxSequence(List<MessageView> views, long floor) {
+        long max = floor;
+        for (MessageView m : views) {
+            if (m.sequenceNumber() != null) max = Math.max(max, m.sequenceNumber());
+        }
+        return max;
+    }
+
+    private static long lastSequence(HistoryVersions.Version version) {
+        return version == null ? 0 : version.lastSequenceNumber();
+    }
+
+    // weak comparison (RFC 9110 13.1.2), against "*" or a list of tags
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        String opaque = etag.substring(2);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) return true;
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.equals(opaque)) return true;
+        }
+        return false;
+    }
+
+    // include=context expands the stored chunk references into the full retrievedContext text
+    private static boolean includesContext(String include) {
+        return include != null && Arrays.asList(include.split(",")).contains("context");
     }
 }
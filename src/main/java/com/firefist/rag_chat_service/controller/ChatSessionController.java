@@ -2,6 +2,7 @@ package com.firefist.rag_chat_service.controller;
 
 import com.firefist.rag_chat_service.dto.CreateSessionRequest;
 import com.firefist.rag_chat_service.dto.RenameSessionRequest;
+import com.firefist.rag_chat_service.dto.SessionPageResponse;
 import com.firefist.rag_chat_service.dto.SessionResponse;
 import com.firefist.rag_chat_service.model.ChatSession;
 import com.firefist.rag_chat_service.service.ChatSessionService;
@@ -52,10 +53,27 @@ public class ChatSessionController {
             return ResponseEntity.noContent().build();
     }
 
+    /**
+     * Keyset-paginated listing of a user's live sessions.
+     * sort=updatedAt (default) or sort=favorites for favorites first; pass nextCursor back as cursor.
+     */
+    @GetMapping("/user/{userId}/page")
+    public ResponseEntity<SessionPageResponse> listSessions(
+            @PathVariable String userId,
+            @RequestParam(name = "sort", defaultValue = "updatedAt") String sort,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "limit", defaultValue = "20") int limit) {
+        int pageSize = Math.max(1, Math.min(limit, 100));
+        boolean favoritesFirst = "favorites".equalsIgnoreCase(sort);
+        SessionPageResponse page = service.listSessions(userId, favoritesFirst, cursor, pageSize);
+        if (page.getItems().isEmpty()) return ResponseEntity.noContent().build();
+        return ResponseEntity.ok(page);
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<SessionResponse> getSession(@PathVariable("id") String id) {
         UUID uuid = UUID.fromString(id);
-        log.info("Retrieving session by uid - {}", uuid.toString());
+        log.debug("Retrieving session by uid - {}", uuid);
         ChatSession s = service.getById(uuid);
         if (s == null) return ResponseEntity.notFound().build();
         SessionResponse resp = new SessionResponse(
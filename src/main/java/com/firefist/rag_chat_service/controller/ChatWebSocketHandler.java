@@ -0,0 +1,299 @@
+package com.firefist.rag_chat_service.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.firefist.rag_chat_service.dto.ChatSocketFrame;
+import com.firefist.rag_chat_service.dto.CreateMessageRequest;
+import com.firefist.rag_chat_service.dto.MessageResponse;
+import com.firefist.rag_chat_service.exception.LlmOverloadedException;
+import com.firefist.rag_chat_service.exception.RequestCancelledException;
+import com.firefist.rag_chat_service.model.ChatMessage;
+import com.firefist.rag_chat_service.service.ChatMessageService;
+import com.firefist.rag_chat_service.service.deadline.RequestDeadline;
+import com.firefist.rag_chat_service.service.deadline.RequestDeadlines;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.PongMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * WebSocket chat channel (/api/v1/ws/chat): one authenticated connection carries turns for any number
+ * of sessions, frames are {@link ChatSocketFrame}s.
+ *
+ * - The API key is checked once, on the upgrade request (ApiKeyAuthFilter).
+ * - Turns run on a bounded pool (the LLM call blocks); a connection may have max-in-flight turns
+ *   running, more are refused with a 429 error frame, a full pool answers 503.
+ * - Replies are streamed as delta frames, coalesced to at most one frame per delta-flush-ms unless
+ *   delta-max-chars pile up, then a done frame carries the saved message.
+ * - Outbound frames go through a bounded buffer per connection: a client that doesn't read for
+ *   send-time-limit-ms or lets buffer-size-limit bytes pile up is disconnected instead of holding memory.
+ * - Inbound frames are limited to max-frame-bytes.
+ * - Pings go out every heartbeat-ms; a connection silent for idle-timeout-ms (no frame, no pong) is closed.
+ * - Each turn runs under a deadline (chat.deadline.default-ms, or timeoutMs in the frame); a turn past it
+ *   gets a 504 error frame. Closing the connection cancels its turns: the LLM call is aborted and
+ *   chat.deadline.abandoned decides what is saved.
+ */
+@Slf4j
+@Component
+public class ChatWebSocketHandler extends TextWebSocketHandler {
+
+    private final ChatMessageService messageService;
+    private final RequestDeadlines deadlines;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final ThreadPoolExecutor turnExecutor;
+    private final Map<String, Connection> connections = new ConcurrentHashMap<>();
+    private final int maxInFlight;
+    private final int sendTimeLimitMs;
+    private final int bufferSizeLimit;
+    private final int maxFrameBytes;
+    private final long idleTimeoutNanos;
+    private final long deltaFlushNanos;
+    private final int deltaMaxChars;
+
+    public ChatWebSocketHandler(ChatMessageService messageService,
+                                RequestDeadlines deadlines,
+                                ObjectMapper objectMapper,
+                                Validator validator,
+                                MeterRegistry meterRegistry,
+                                @Value("${chat.ws.threads:64}") int threads,
+                                @Value("${chat.ws.queue-size:256}") int queueSize,
+                                @Value("${chat.ws.max-in-flight:4}") int maxInFlight,
+                                @Value("${chat.ws.send-time-limit-ms:10000}") int sendTimeLimitMs,
+                                @Value("${chat.ws.buffer-size-limit:524288}") int bufferSizeLimit,
+                                @Value("${chat.ws.max-frame-bytes:65536}") int maxFrameBytes,
+                                @Value("${chat.ws.idle-timeout-ms:60000}") long idleTimeoutMs,
+                                @Value("${chat.ws.delta-flush-ms:50}") long deltaFlushMs,
+                                @Value("${chat.ws.delta-max-chars:256}") int deltaMaxChars) {
+        this.messageService = messageService;
+        this.deadlines = deadlines;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.turnExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), r -> {
+                    Thread t = new Thread(r, "ws-turn");
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.turnExecutor.allowCoreThreadTimeOut(true);
+        this.maxInFlight = maxInFlight;
+        this.sendTimeLimitMs = sendTimeLimitMs;
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.maxFrameBytes = maxFrameBytes;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs);
+        this.deltaFlushNanos = TimeUnit.MILLISECONDS.toNanos(deltaFlushMs);
+        this.deltaMaxChars = deltaMaxChars;
+        Gauge.builder("chat.ws.connections", connections, Map::size)
+                .description("Open WebSocket chat connections")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        // a larger inbound frame closes the connection
+        session.setTextMessageSizeLimit(maxFrameBytes);
+        connections.put(session.getId(), new Connection(new ConcurrentWebSocketSessionDecorator(
+                session, sendTimeLimitMs, bufferSizeLimit, ConcurrentWebSocketSessionDecorator.OverflowStrategy.TERMINATE)));
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        Connection c = connections.remove(session.getId());
+        // nobody is left to read the replies, give the LLM capacity back
+        if (c != null) c.turns.forEach(d -> d.cancel(RequestDeadline.Reason.DISCONNECT));
+    }
+
+    @Override
+    protected void handlePongMessage(WebSocketSession session, PongMessage message) {
+        Connection c = connections.get(session.getId());
+        if (c != null) c.touch();
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+        Connection c = connections.get(session.getId());
+        if (c == null) return;
+        c.touch();
+        ChatSocketFrame frame;
+        try {
+            frame = objectMapper.readValue(message.getPayload(), ChatSocketFrame.class);
+        } catch (JsonProcessingException ex) {
+            c.send(ChatSocketFrame.error(null, null, 400, "Malformed frame: " + ex.getOriginalMessage()));
+            return;
+        }
+        if ("ping".equals(frame.getType())) {
+            c.send(ChatSocketFrame.pong());
+        } else if ("message".equals(frame.getType())) {
+            submitTurn(c, frame);
+        } else {
+            c.send(ChatSocketFrame.error(frame.getId(), frame.getSessionId(), 400, "type must be message or ping"));
+        }
+    }
+
+    private void submitTurn(Connection c, ChatSocketFrame frame) {
+        CreateMessageRequest req = new CreateMessageRequest(
+                frame.getSender() != null ? frame.getSender() : "USER", frame.getContent(), null, null);
+        if (frame.getSessionId() == null || !validator.validate(req).isEmpty()) {
+            c.send(ChatSocketFrame.error(frame.getId(), frame.getSessionId(), 400, "sessionId and content are required"));
+            return;
+        }
+        if (c.inFlight.incrementAndGet() > maxInFlight) {
+            c.inFlight.decrementAndGet();
+            c.send(ChatSocketFrame.error(frame.getId(), frame.getSessionId(), 429,
+                    "At most " + maxInFlight + " turns in flight per connection"));
+            return;
+        }
+        RequestDeadline deadline = deadlines.start(frame.getTimeoutMs());
+        c.turns.add(deadline);
+        try {
+            turnExecutor.execute(() -> {
+                try (RequestDeadline.Scope ignored = deadline.bind()) {
+                    runTurn(c, frame.getId(), frame.getSessionId(), req);
+                } finally {
+                    deadline.close();
+                    c.turns.remove(deadline);
+                    c.inFlight.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            deadline.close();
+            c.turns.remove(deadline);
+            c.inFlight.decrementAndGet();
+            c.send(ChatSocketFrame.error(frame.getId(), frame.getSessionId(), 503, "Server busy, retry later"));
+        }
+    }
+
+    private void runTurn(Connection c, String id, UUID sessionId, CreateMessageRequest req) {
+        DeltaBuffer deltas = new DeltaBuffer(c, id, sessionId);
+        try {
+            ChatMessage saved = messageService.addMessage(sessionId, req, deltas::add);
+            if (saved == null) {
+                c.send(ChatSocketFrame.error(id, sessionId, 404, "Session not found"));
+                return;
+            }
+            deltas.flush();
+            c.send(ChatSocketFrame.done(id, sessionId, MessageResponse.of(saved, null)));
+        } catch (LlmOverloadedException ex) {
+            c.send(ChatSocketFrame.error(id, sessionId, 503, ex.getMessage()));
+        } catch (RequestCancelledException ex) {
+            // after a disconnect this frame is dropped like any other
+            c.send(ChatSocketFrame.error(id, sessionId, 504, ex.getMessage()));
+        } catch (IllegalArgumentException ex) {
+            c.send(ChatSocketFrame.error(id, sessionId, 400, ex.getMessage()));
+        } catch (RuntimeException ex) {
+            log.error("WebSocket turn failed for session {}", sessionId, ex);
+            c.send(ChatSocketFrame.error(id, sessionId, 500, "Internal error"));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${chat.ws.heartbeat-ms:25000}")
+    void heartbeat() {
+        long now = System.nanoTime();
+        for (Connection c : List.copyOf(connections.values())) {
+            if (now - c.lastSeen > idleTimeoutNanos) {
+                c.close(CloseStatus.SESSION_NOT_RELIABLE);
+            } else {
+                c.sendRaw(new PingMessage(ByteBuffer.allocate(0)));
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Connection c : List.copyOf(connections.values())) c.close(CloseStatus.SERVICE_RESTARTED);
+        turnExecutor.shutdown();
+    }
+
+    private final class Connection {
+        final ConcurrentWebSocketSessionDecorator session;
+        final AtomicInteger inFlight = new AtomicInteger();
+        final Set<RequestDeadline> turns = ConcurrentHashMap.newKeySet();
+        volatile long lastSeen = System.nanoTime();
+
+        Connection(ConcurrentWebSocketSessionDecorator session) {
+            this.session = session;
+        }
+
+        void touch() {
+            lastSeen = System.nanoTime();
+        }
+
+        void send(ChatSocketFrame frame) {
+            try {
+                sendRaw(new TextMessage(objectMapper.writeValueAsString(frame)));
+            } catch (JsonProcessingException ex) {
+                log.error("Could not serialize WebSocket frame", ex);
+            }
+        }
+
+        // the decorator serializes concurrent senders and closes the session if the client falls too far behind
+        void sendRaw(WebSocketMessage<?> message) {
+            if (!session.isOpen()) return;
+            try {
+                session.sendMessage(message);
+            } catch (IOException | RuntimeException ex) {
+                log.debug("Dropping WebSocket frame for {}: {}", session.getId(), ex.getMessage());
+            }
+        }
+
+        void close(CloseStatus status) {
+            try {
+                session.close(status);
+            } catch (IOException ex) {
+                log.debug("Closing WebSocket {} failed: {}", session.getId(), ex.getMessage());
+            }
+        }
+    }
+
+    // collects reply pieces into fewer, larger frames; only touched by the turn's own thread
+    private final class DeltaBuffer {
+        final Connection c;
+        final String id;
+        final UUID sessionId;
+        final StringBuilder pending = new StringBuilder();
+        long lastFlush = System.nanoTime();
+
+        DeltaBuffer(Connection c, String id, UUID sessionId) {
+            this.c = c;
+            this.id = id;
+            this.sessionId = sessionId;
+        }
+
+        void add(String text) {
+            pending.append(text);
+            if (pending.length() >= deltaMaxChars || System.nanoTime() - lastFlush >= deltaFlushNanos) flush();
+        }
+
+        void flush() {
+            if (pending.length() == 0) return;
+            c.send(ChatSocketFrame.delta(id, sessionId, pending.toString()));
+            pending.setLength(0);
+            lastFlush = System.nanoTime();
+        }
+    }
+}
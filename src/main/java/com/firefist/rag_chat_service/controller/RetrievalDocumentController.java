@@ -0,0 +1,59 @@
+package com.firefist.rag_chat_service.controller;
+
+import com.firefist.rag_chat_service.dto.IndexDocumentRequest;
+import com.firefist.rag_chat_service.service.retrieval.IndexRetrievalService;
+import com.firefist.rag_chat_service.service.retrieval.index.IndexDocument;
+import com.firefist.rag_chat_service.service.retrieval.index.LiveIndex;
+import jakarta.validation.Valid;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Feeds the in-memory retrieval index (chat.retrieval.backend=index). Changes are visible to the next query.
+ * Documents in a batch are validated through method validation (@Validated), a bad one rejects the batch with 400.
+ */
+@Validated
+@RestController
+@RequestMapping("/api/v1/retrieval/documents")
+@ConditionalOnProperty(name = "chat.retrieval.backend", havingValue = "index")
+public class RetrievalDocumentController {
+
+    private final IndexRetrievalService indexService;
+
+    public RetrievalDocumentController(IndexRetrievalService indexService) {
+        this.indexService = indexService;
+    }
+
+    /** Adds documents, replacing those with the same id; the whole batch becomes visible at once. */
+    @PostMapping
+    public ResponseEntity<LiveIndex.Stats> add(@RequestBody List<@Valid IndexDocumentRequest> docs) {
+        indexService.add(toDocuments(docs));
+        return ResponseEntity.ok(indexService.stats());
+    }
+
+    /** Replaces all documents; queries are answered from the old set until the new one is complete. */
+    @PutMapping
+    public ResponseEntity<LiveIndex.Stats> reindex(@RequestBody List<@Valid IndexDocumentRequest> docs) {
+        if (!indexService.reindex(toDocuments(docs))) return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        return ResponseEntity.ok(indexService.stats());
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> delete(@PathVariable String id) {
+        return indexService.delete(List.of(id)) > 0 ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<LiveIndex.Stats> stats() {
+        return ResponseEntity.ok(indexService.stats());
+    }
+
+    private static List<IndexDocument> toDocuments(List<IndexDocumentRequest> docs) {
+        return docs.stream().map(d -> new IndexDocument(d.getId(), d.getText(), d.getSource())).toList();
+    }
+}
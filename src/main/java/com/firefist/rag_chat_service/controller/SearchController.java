@@ -0,0 +1,30 @@
+package com.firefist.rag_chat_service.controller;
+
+import com.firefist.rag_chat_service.dto.SearchResponse;
+import com.firefist.rag_chat_service.service.search.MessageSearchService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/v1/sessions")
+public class SearchController {
+
+    private final MessageSearchService searchService;
+
+    public SearchController(MessageSearchService searchService) {
+        this.searchService = searchService;
+    }
+
+    /**
+     * Full-text search over all of a user's live sessions.
+     * Words match whole terms, "quoted words" match a phrase, word* matches a prefix; all clauses must match.
+     */
+    @GetMapping("/user/{userId}/search")
+    public ResponseEntity<SearchResponse> search(
+            @PathVariable String userId,
+            @RequestParam("q") String q,
+            @RequestParam(name = "limit", defaultValue = "20") int limit) {
+        int size = Math.max(1, Math.min(limit, 100));
+        return ResponseEntity.ok(searchService.search(userId, q, size));
+    }
+}
@@ -0,0 +1,95 @@
+package com.firefist.rag_chat_service.controller;
+
+import com.firefist.rag_chat_service.config.AsyncTimeoutConfig;
+import com.firefist.rag_chat_service.service.export.TranscriptExporter;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Full transcript export as NDJSON (one message per line), optionally gzip-compressed.
+ * The body is written on the MVC async executor while rows are read, nothing is buffered per transcript.
+ * - Exports get their own async timeout (chat.export.timeout-ms), long transcripts take longer than any other
+ *   request; the container default still applies everywhere else.
+ */
+@RestController
+@RequestMapping("/api/v1/sessions")
+public class TranscriptExportController {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final MediaType GZIP = MediaType.parseMediaType("application/gzip");
+
+    private final TranscriptExporter exporter;
+    private final long timeoutMs;
+
+    public TranscriptExportController(TranscriptExporter exporter,
+                                      @Value("${chat.export.timeout-ms:1800000}") long timeoutMs) {
+        this.exporter = exporter;
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * format=ndjson (default) or ndjson.gz; include=context adds the full retrievedContext text.
+     */
+    @GetMapping("/{sessionId}/messages/export")
+    public ResponseEntity<StreamingResponseBody> exportSession(
+            @PathVariable("sessionId") String sessionId,
+            @RequestParam(name = "format", defaultValue = "ndjson") String format,
+            @RequestParam(name = "include", required = false) String include,
+            HttpServletRequest request) {
+        UUID sid = UUID.fromString(sessionId);
+        boolean gzip = isGzip(format);
+        if (!exporter.sessionExists(sid)) return ResponseEntity.notFound().build();
+        boolean context = includesContext(include);
+        request.setAttribute(AsyncTimeoutConfig.TIMEOUT_ATTRIBUTE, timeoutMs);
+        return stream("session-" + sid, gzip, out -> exporter.exportSession(sid, context, out));
+    }
+
+    /**
+     * Every live session of the user, oldest first, in one stream.
+     */
+    @GetMapping("/user/{userId}/export")
+    public ResponseEntity<StreamingResponseBody> exportUser(
+            @PathVariable String userId,
+            @RequestParam(name = "format", defaultValue = "ndjson") String format,
+            @RequestParam(name = "include", required = false) String include,
+            HttpServletRequest request) {
+        boolean gzip = isGzip(format);
+        boolean context = includesContext(include);
+        request.setAttribute(AsyncTimeoutConfig.TIMEOUT_ATTRIBUTE, timeoutMs);
+        return stream("user-" + userId, gzip, out -> exporter.exportUser(userId, context, out));
+    }
+
+    private static ResponseEntity<StreamingResponseBody> stream(String name, boolean gzip, StreamingResponseBody body) {
+        StreamingResponseBody streamed = !gzip ? body : out -> {
+            GZIPOutputStream gz = new GZIPOutputStream(out, 8192);
+            body.writeTo(gz);
+            // finish, not close: the container closes the response stream itself
+            gz.finish();
+        };
+        String filename = name + (gzip ? ".ndjson.gz" : ".ndjson");
+        return ResponseEntity.ok()
+                .contentType(gzip ? GZIP : NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString())
+                .body(streamed);
+    }
+
+    private static boolean isGzip(String format) {
+        if ("ndjson".equalsIgnoreCase(format)) return false;
+        if ("ndjson.gz".equalsIgnoreCase(format) || "gzip".equalsIgnoreCase(format)) return true;
+        throw new IllegalArgumentException("Unsupported export format: " + format + " (use ndjson or ndjson.gz)");
+    }
+
+    private static boolean includesContext(String include) {
+        return include != null && Arrays.asList(include.split(",")).contains("context");
+    }
+}
@@ -0,0 +1,67 @@
+package com.firefist.rag_chat_service.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * One JSON text frame of the WebSocket chat channel, in either direction.
+ *
+ * Client to server:
+ * - message: {type, id, sessionId, sender (default USER), content, timeoutMs (optional)}; id is the client's
+ *   correlation id
+ * - ping: answered with pong
+ * Server to client (id echoes the message it belongs to):
+ * - delta: {id, sessionId, text}, the next piece of the assistant reply
+ * - done: {id, sessionId, message}, the saved reply (or the saved message for non-USER senders)
+ * - error: {id, status, error}, with HTTP-like status codes
+ * - pong
+ */
+@Data
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ChatSocketFrame {
+    private String type;
+    private String id;
+    private UUID sessionId;
+    private String sender;
+    private String content;
+    private Long timeoutMs;
+    private String text;
+    private MessageResponse message;
+    private Integer status;
+    private String error;
+
+    public static ChatSocketFrame delta(String id, UUID sessionId, String text) {
+        ChatSocketFrame f = of("delta", id, sessionId);
+        f.setText(text);
+        return f;
+    }
+
+    public static ChatSocketFrame done(String id, UUID sessionId, MessageResponse message) {
+        ChatSocketFrame f = of("done", id, sessionId);
+        f.setMessage(message);
+        return f;
+    }
+
+    public static ChatSocketFrame error(String id, UUID sessionId, int status, String error) {
+        ChatSocketFrame f = of("error", id, sessionId);
+        f.setStatus(status);
+        f.setError(error);
+        return f;
+    }
+
+    public static ChatSocketFrame pong() {
+        return of("pong", null, null);
+    }
+
+    private static ChatSocketFrame of(String type, String id, UUID sessionId) {
+        ChatSocketFrame f = new ChatSocketFrame();
+        f.setType(type);
+        f.setId(id);
+        f.setSessionId(sessionId);
+        return f;
+    }
+}
@@ -20,7 +20,7 @@ public class CreateMessageRequest {
     // optional
     private String retrievedContext;
 
-    // optional sequence number, used if client tracks ordering
+    // ignored: sequence numbers are assigned by the server, see ChatMessageService.addMessage
     private Long sequenceNumber;
 }
 
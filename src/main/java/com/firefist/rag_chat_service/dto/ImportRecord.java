@@ -0,0 +1,37 @@
+package com.firefist.rag_chat_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * One line (NDJSON) or array element of a bulk import.
+ *
+ * type=session: id, userId, title, favorite, createdAt, updatedAt.
+ * type=message: id (optional), sessionId, sender, content, retrievedContext, createdAt, sequenceNumber.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class ImportRecord {
+    private String type;
+    private UUID id;
+
+    // session fields
+    private String userId;
+    private String title;
+    private boolean favorite;
+    private Instant updatedAt;
+
+    // message fields
+    private UUID sessionId;
+    private String sender;
+    private String content;
+    private String retrievedContext;
+    private Long sequenceNumber;
+
+    private Instant createdAt;
+}
@@ -0,0 +1,31 @@
+package com.firefist.rag_chat_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class ImportResult {
+    private long sessions;
+    private long messages;
+    private long rejected;
+    // false when the input stopped being valid JSON; rows before that point were still imported
+    private boolean completed;
+    // capped at chat.import.max-errors, rejected has the full count
+    private List<RowError> errors;
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Data
+    public static class RowError {
+        // position of the record in the input, starting at 0
+        private long index;
+        private UUID id;
+        private String error;
+    }
+}
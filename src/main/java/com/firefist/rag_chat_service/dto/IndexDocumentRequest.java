@@ -0,0 +1,18 @@
+package com.firefist.rag_chat_service.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class IndexDocumentRequest {
+
+    @NotBlank(message = "id is required")
+    private String id;
+    @NotBlank(message = "text is required")
+    private String text;
+    private String source;
+}
@@ -0,0 +1,9 @@
+package com.firefist.rag_chat_service.dto;
+
+import java.util.List;
+
+/**
+ * Body of GET .../messages, written as a bare JSON array of messages by MessageHistoryConverter.
+ */
+public record MessageHistory(List<MessageView> messages) {
+}
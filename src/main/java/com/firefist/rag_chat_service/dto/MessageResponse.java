@@ -1,10 +1,15 @@
 package com.firefist.rag_chat_service.dto;
 
+import com.firefist.rag_chat_service.model.ChatMessage;
+import com.firefist.rag_chat_service.model.ContextRef;
+import com.firefist.rag_chat_service.service.context.RetrievedContextStore;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.Instant;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @AllArgsConstructor
@@ -15,7 +20,25 @@ public class MessageResponse {
     private UUID sessionId;
     private String sender;
     private String content;
+    // full joined text, only filled when the client asks for include=context
     private String retrievedContext;
+    private List<ContextRef> contextRefs;
     private Instant createdAt;
     private Long sequenceNumber;
+
+    /**
+     * context holds chunk texts by hash (include=context); null leaves retrievedContext empty.
+     */
+    public static MessageResponse of(ChatMessage m, Map<String, String> context) {
+        return new MessageResponse(
+                m.getId(),
+                m.getSession().getId(),
+                m.getSender(),
+                m.getContent(),
+                context == null ? null : RetrievedContextStore.expand(m, context),
+                m.getContextRefs(),
+                m.getCreatedAt(),
+                m.getSequenceNumber()
+        );
+    }
 }
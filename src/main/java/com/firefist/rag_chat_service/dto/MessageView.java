@@ -0,0 +1,34 @@
+package com.firefist.rag_chat_service.dto;
+
+import com.firefist.rag_chat_service.model.ChatMessage;
+import com.firefist.rag_chat_service.model.ContextRef;
+import com.firefist.rag_chat_service.service.context.RetrievedContextStore;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * One message of a history page, same fields as {@link MessageResponse}. Read straight from a JPQL
+ * constructor projection (ChatMessageRepository.findViews*): no entity, no session proxy, and the
+ * retrieved_context LOB isn't fetched unless include=context asks for it.
+ */
+public record MessageView(UUID id, UUID sessionId, String sender, String content, String retrievedContext,
+                          List<ContextRef> contextRefs, Instant createdAt, Long sequenceNumber) {
+
+    // the projection's constructor
+    public MessageView(UUID id, UUID sessionId, String sender, String content,
+                       List<ContextRef> contextRefs, Instant createdAt, Long sequenceNumber) {
+        this(id, sessionId, sender, content, null, contextRefs, createdAt, sequenceNumber);
+    }
+
+    /**
+     * context holds chunk texts by hash (include=context); null leaves retrievedContext empty.
+     */
+    public static MessageView of(ChatMessage m, Map<String, String> context) {
+        return new MessageView(m.getId(), m.getSession().getId(), m.getSender(), m.getContent(),
+                context == null ? null : RetrievedContextStore.expand(m, context),
+                m.getContextRefs(), m.getCreatedAt(), m.getSequenceNumber());
+    }
+}
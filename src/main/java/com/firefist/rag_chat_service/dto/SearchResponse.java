@@ -0,0 +1,45 @@
+package com.firefist.rag_chat_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class SearchResponse {
+    private String query;
+    // matching messages over all of the user's live sessions; messages holds the best of them
+    private long totalHits;
+    private List<MessageHit> messages;
+    // sessions with matches, best match first
+    private List<SessionHit> sessions;
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Data
+    public static class MessageHit {
+        private UUID messageId;
+        private UUID sessionId;
+        private String sender;
+        private Long sequenceNumber;
+        private Instant createdAt;
+        private float score;
+        // HTML-escaped excerpt with matches wrapped in <em>...</em>
+        private String highlight;
+    }
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Data
+    public static class SessionHit {
+        private UUID sessionId;
+        private String title;
+        private int hits;
+        private float bestScore;
+    }
+}
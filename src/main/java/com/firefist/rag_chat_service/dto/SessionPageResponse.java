@@ -0,0 +1,16 @@
+package com.firefist.rag_chat_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class SessionPageResponse {
+    private List<SessionSummary> items;
+    // opaque keyset cursor for the next page, null on the last page
+    private String nextCursor;
+}
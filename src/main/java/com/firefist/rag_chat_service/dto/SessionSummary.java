@@ -0,0 +1,21 @@
+package com.firefist.rag_chat_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Lightweight listing row, selected straight from chat_session by a JPQL constructor expression.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class SessionSummary {
+    private UUID id;
+    private String title;
+    private boolean favorite;
+    private Instant updatedAt;
+}
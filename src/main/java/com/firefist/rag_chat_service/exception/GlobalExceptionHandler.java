@@ -1,6 +1,9 @@
 package com.firefist.rag_chat_service.exception;
 
+import com.firefist.rag_chat_service.service.deadline.RequestDeadline;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.ConstraintViolationException;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
@@ -80,6 +83,21 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
         return new ResponseEntity<>(body, HttpStatus.BAD_REQUEST);
     }
 
+    // method validation (@Validated controllers), e.g. one invalid element of a request body list
+    @ExceptionHandler(ConstraintViolationException.class)
+    protected ResponseEntity<ErrorResponse> handleConstraintViolation(ConstraintViolationException ex, WebRequest request) {
+        ErrorResponse body = new ErrorResponse();
+        body.setStatus(HttpStatus.BAD_REQUEST.value());
+        body.setError(HttpStatus.BAD_REQUEST.getReasonPhrase());
+        body.setMessage("Validation failed for one or more fields");
+
+        Map<String, String> fieldErrors = new HashMap<>();
+        for (ConstraintViolation<?> cv : ex.getConstraintViolations()) {
+            fieldErrors.put(cv.getPropertyPath().toString(), cv.getMessage());
+        }
+        body.setValidationErrors(fieldErrors);
+        return new ResponseEntity<>(body, HttpStatus.BAD_REQUEST);
+    }
 
     // JPA: entity not found
     @ExceptionHandler(EntityNotFoundException.class)
@@ -101,6 +119,62 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
         return new ResponseEntity<>(body, HttpStatus.CONFLICT);
     }
 
+    // Idempotency-Key malformed or missing its API key: a client error, not logged
+    @ExceptionHandler(InvalidIdempotencyKeyException.class)
+    protected ResponseEntity<ErrorResponse> handleInvalidIdempotencyKey(InvalidIdempotencyKeyException ex, WebRequest request) {
+        ErrorResponse body = new ErrorResponse();
+        body.setStatus(HttpStatus.BAD_REQUEST.value());
+        body.setError(HttpStatus.BAD_REQUEST.getReasonPhrase());
+        body.setMessage(ex.getMessage());
+        return new ResponseEntity<>(body, HttpStatus.BAD_REQUEST);
+    }
+
+    // Idempotency-Key sent again with a different body
+    @ExceptionHandler(IdempotencyKeyReusedException.class)
+    protected ResponseEntity<ErrorResponse> handleIdempotencyKeyReused(IdempotencyKeyReusedException ex, WebRequest request) {
+        ErrorResponse body = new ErrorResponse();
+        body.setStatus(HttpStatus.UNPROCESSABLE_ENTITY.value());
+        body.setError(HttpStatus.UNPROCESSABLE_ENTITY.getReasonPhrase());
+        body.setMessage(ex.getMessage());
+        return new ResponseEntity<>(body, HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
+    // original request for the Idempotency-Key still running
+    @ExceptionHandler(IdempotencyInProgressException.class)
+    protected ResponseEntity<ErrorResponse> handleIdempotencyInProgress(IdempotencyInProgressException ex, WebRequest request) {
+        ErrorResponse body = new ErrorResponse();
+        body.setStatus(HttpStatus.CONFLICT.value());
+        body.setError(HttpStatus.CONFLICT.getReasonPhrase());
+        body.setMessage(ex.getMessage());
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, "1");
+        return new ResponseEntity<>(body, headers, HttpStatus.CONFLICT);
+    }
+
+    // LLM call shed by the concurrency limiter
+    @ExceptionHandler(LlmOverloadedException.class)
+    protected ResponseEntity<ErrorResponse> handleLlmOverloaded(LlmOverloadedException ex, WebRequest request) {
+        ErrorResponse body = new ErrorResponse();
+        body.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        body.setError(HttpStatus.SERVICE_UNAVAILABLE.getReasonPhrase());
+        body.setMessage(ex.getMessage());
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, "2");
+        return new ResponseEntity<>(body, headers, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    // turn given up: past its deadline, or the client is gone and only the access log will see this
+    @ExceptionHandler(RequestCancelledException.class)
+    protected ResponseEntity<ErrorResponse> handleRequestCancelled(RequestCancelledException ex, WebRequest request) {
+        HttpStatusCode status = ex.getReason() == RequestDeadline.Reason.DEADLINE
+                ? HttpStatus.GATEWAY_TIMEOUT : HttpStatusCode.valueOf(499);
+        ErrorResponse body = new ErrorResponse();
+        body.setStatus(status.value());
+        body.setError(status == HttpStatus.GATEWAY_TIMEOUT ? HttpStatus.GATEWAY_TIMEOUT.getReasonPhrase() : "Client Closed Request");
+        body.setMessage(ex.getMessage());
+        return new ResponseEntity<>(body, status);
+    }
+
     // Generic fallback
     @ExceptionHandler(Exception.class)
     protected ResponseEntity<ErrorResponse> handleAll(Exception ex, WebRequest request) {
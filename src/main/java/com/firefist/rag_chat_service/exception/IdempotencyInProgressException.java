@@ -0,0 +1,10 @@
+package com.firefist.rag_chat_service.exception;
+
+/**
+ * The original request for an Idempotency-Key is still running after the retry gave up waiting; mapped to 409.
+ */
+public class IdempotencyInProgressException extends RuntimeException {
+    public IdempotencyInProgressException() {
+        super("A request with this Idempotency-Key is still in progress, retry later");
+    }
+}
@@ -0,0 +1,10 @@
+package com.firefist.rag_chat_service.exception;
+
+/**
+ * An Idempotency-Key was sent again with a different request body; mapped to 422.
+ */
+public class IdempotencyKeyReusedException extends RuntimeException {
+    public IdempotencyKeyReusedException() {
+        super("Idempotency-Key was already used for a different request");
+    }
+}
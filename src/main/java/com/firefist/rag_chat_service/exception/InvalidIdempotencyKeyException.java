@@ -0,0 +1,10 @@
+package com.firefist.rag_chat_service.exception;
+
+/**
+ * An Idempotency-Key header that can't be used: malformed, or sent without the API key it is scoped to; mapped to 400.
+ */
+public class InvalidIdempotencyKeyException extends RuntimeException {
+    public InvalidIdempotencyKeyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,10 @@
+package com.firefist.rag_chat_service.exception;
+
+/**
+ * An LLM call was shed: the queue was full or the call could not start in time for its deadline; mapped to 503.
+ */
+public class LlmOverloadedException extends RuntimeException {
+    public LlmOverloadedException(String message) {
+        super(message);
+    }
+}
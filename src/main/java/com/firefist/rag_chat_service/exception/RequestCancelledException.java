@@ -0,0 +1,24 @@
+package com.firefist.rag_chat_service.exception;
+
+import com.firefist.rag_chat_service.service.deadline.RequestDeadline;
+
+/**
+ * A chat turn was given up: its deadline passed (mapped to 504) or its client went away (499, nobody reads it).
+ */
+public class RequestCancelledException extends RuntimeException {
+
+    private final RequestDeadline.Reason reason;
+
+    public RequestCancelledException(RequestDeadline.Reason reason) {
+        this(reason, null);
+    }
+
+    public RequestCancelledException(RequestDeadline.Reason reason, Throwable cause) {
+        super(reason == RequestDeadline.Reason.DEADLINE ? "Request deadline exceeded" : "Client disconnected", cause);
+        this.reason = reason;
+    }
+
+    public RequestDeadline.Reason getReason() {
+        return reason;
+    }
+}
@@ -0,0 +1,52 @@
+package com.firefist.rag_chat_service.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Cold copy of a chat_message row moved out of the hot table by the archiver.
+ * Content, retrieved context and context references are stored together as one deflate-compressed payload
+ * behind a format version byte (see MessageArchive).
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "chat_message_archive",
+        indexes = {@Index(columnList = "session_id, created_at"),
+                @Index(name = "idx_chat_message_archive_session_seq", columnList = "session_id, sequence_number")})
+public class ArchivedChatMessage {
+
+    // same id the message had in chat_message
+    @Id
+    @JdbcTypeCode(SqlTypes.VARCHAR)
+    @Column(length = 36)
+    private UUID id;
+
+    @JdbcTypeCode(SqlTypes.VARCHAR)
+    @Column(name = "session_id", nullable = false, length = 36)
+    private UUID sessionId;
+
+    @Column(name = "sender", nullable = false, length = 32)
+    private String sender;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "sequence_number")
+    private Long sequenceNumber;
+
+    @Column(name = "archived_at", nullable = false)
+    private Instant archivedAt;
+
+    @Lob
+    @Column(name = "payload", nullable = false, columnDefinition = "LONGBLOB")
+    private byte[] payload;
+}
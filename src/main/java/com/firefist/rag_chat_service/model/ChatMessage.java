@@ -8,13 +8,17 @@ import org.hibernate.annotations.UuidGenerator;
 import org.hibernate.type.SqlTypes;
 
 import java.time.Instant;
+import java.util.List;
 import java.util.UUID;
 
 @Data
 @NoArgsConstructor
 @Entity
 @Table(name = "chat_message",
-        indexes = {@Index(columnList = "session_id, created_at")})
+        indexes = {@Index(columnList = "session_id, created_at")},
+        // one number per message within a session; also serves afterSeq keyset paging
+        uniqueConstraints = {@UniqueConstraint(name = "uk_chat_message_session_seq",
+                columnNames = {"session_id", "sequence_number"})})
 public class ChatMessage {
 
     @Id
@@ -34,10 +38,16 @@ public class ChatMessage {
     @Column(name = "content", nullable = false, columnDefinition = "TEXT")
     private String content;
 
+    // free text supplied by clients; assistant replies use contextRefs instead
     @Lob
     @Column(name = "retrieved_context")
     private String retrievedContext;
 
+    // references into retrieved_chunk, see RetrievedContextStore
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "context_refs")
+    private List<ContextRef> contextRefs;
+
     @Column(name = "created_at", nullable = false)
     private Instant createdAt;
 
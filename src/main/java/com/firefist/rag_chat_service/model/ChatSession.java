@@ -17,7 +17,10 @@ import java.util.UUID;
 @Entity
 @Table(name = "chat_session", indexes = {
         @Index(columnList = "user_id"),
-        @Index(columnList = "is_favorite")
+        @Index(columnList = "is_favorite"),
+        // keyset listing: favorites-first, and most recently updated first
+        @Index(name = "idx_chat_session_user_favorite_updated", columnList = "user_id, deleted_at, is_favorite, updated_at"),
+        @Index(name = "idx_chat_session_user_updated", columnList = "user_id, deleted_at, updated_at")
 })
 public class ChatSession {
 
@@ -45,6 +48,18 @@ public class ChatSession {
     @Column(name = "deleted_at")
     private Instant deletedAt;
 
+    // messages of this session moved to chat_message_archive; they precede every hot message.
+    // Only changed by SQL increments (see ChatSessionRepository.addArchivedMessages), never by saving the entity,
+    // so a rename can't write back a stale value.
+    @Column(name = "archived_message_count", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "bigint not null default 0")
+    private long archivedMessageCount;
+
+    // highest sequence number handed out for this session, see ChatSessionJdbcRepository.allocateSequenceNumbers
+    @Column(name = "last_sequence_number", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "bigint not null default 0")
+    private long lastSequenceNumber;
+
     @PrePersist
     protected void onCreate() {
         Instant now = Instant.now();
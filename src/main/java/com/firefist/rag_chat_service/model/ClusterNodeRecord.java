@@ -0,0 +1,28 @@
+package com.firefist.rag_chat_service.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Row of the JDBC cluster membership (see JdbcClusterMembership); mapped so the schema is managed with the rest.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "cluster_node", indexes = {@Index(columnList = "heartbeat_at")})
+public class ClusterNodeRecord {
+
+    @Id
+    @Column(name = "node_id", length = 128)
+    private String nodeId;
+
+    @Column(name = "base_url", nullable = false, length = 512)
+    private String baseUrl;
+
+    // written with the database clock, so replicas with skewed clocks still agree on who is alive
+    @Column(name = "heartbeat_at", nullable = false)
+    private Instant heartbeatAt;
+}
@@ -0,0 +1,22 @@
+package com.firefist.rag_chat_service.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Reference from a message to one retrieved chunk. The chunk text itself lives once in
+ * retrieved_chunk, keyed by {@link #id} (content hash).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ContextRef {
+    private String id;
+    private String source;
+    private double score;
+    // optional first characters of the chunk, enough for a UI to show without expanding
+    private String excerpt;
+}
@@ -0,0 +1,44 @@
+package com.firefist.rag_chat_service.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Rolling summary of a session's older turns, maintained by ConversationSummaryService.
+ * Everything up to summarizedThroughSeq is folded into summary; later messages are sent to the LLM as they are.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "conversation_summary")
+public class ConversationSummary {
+
+    @Id
+    @JdbcTypeCode(SqlTypes.VARCHAR)
+    @Column(name = "session_id", length = 36)
+    private UUID sessionId;
+
+    @Lob
+    @Column(name = "summary", nullable = false, columnDefinition = "TEXT")
+    private String summary;
+
+    // checkpoint: highest sequence number covered by the summary
+    @Column(name = "summarized_through_seq", nullable = false)
+    private long summarizedThroughSeq;
+
+    @Column(name = "summarized_messages", nullable = false)
+    private long summarizedMessages;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    // two nodes summarizing the same session: the second save fails instead of overwriting
+    @Version
+    private Long version;
+}
@@ -0,0 +1,47 @@
+package com.firefist.rag_chat_service.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Row of the JDBC idempotency store (see JdbcIdempotencyStore); mapped so the schema is managed with the rest.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "idempotency_key", indexes = {@Index(columnList = "expires_at")})
+public class IdempotencyRecord {
+
+    // SHA-256 of API key, session and Idempotency-Key header
+    @Id
+    @Column(name = "id_key", length = 64)
+    private String key;
+
+    @Column(name = "fingerprint", nullable = false, length = 64)
+    private String fingerprint;
+
+    // IN_FLIGHT or DONE
+    @Column(name = "state", nullable = false, length = 16)
+    private String state;
+
+    @Column(name = "response_status")
+    private Integer responseStatus;
+
+    @Lob
+    @Column(name = "response_body", columnDefinition = "LONGTEXT")
+    private String responseBody;
+
+    // token of the claim running the request; complete, release and take-over match on it
+    @Column(name = "owner_token", length = 36)
+    private String ownerToken;
+
+    // an IN_FLIGHT row past this point belongs to a node that died and can be taken over
+    @Column(name = "locked_until", nullable = false)
+    private Instant lockedUntil;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+}
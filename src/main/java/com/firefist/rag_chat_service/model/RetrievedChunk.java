@@ -0,0 +1,31 @@
+package com.firefist.rag_chat_service.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Deduplicated text of a retrieved snippet, stored once however many messages reference it.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "retrieved_chunk")
+public class RetrievedChunk {
+
+    // truncated SHA-256 of the content, see RetrievedContextStore
+    @Id
+    @Column(name = "content_hash", length = 32)
+    private String contentHash;
+
+    @Lob
+    @Column(name = "content", nullable = false, columnDefinition = "TEXT")
+    private String content;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
@@ -0,0 +1,37 @@
+package com.firefist.rag_chat_service.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Row of the JDBC invalidation bus (see JdbcSessionInvalidationBus); mapped so the schema is managed with the rest.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "session_invalidation", indexes = {@Index(columnList = "created_at")})
+public class SessionInvalidationRecord {
+
+    // replicas read past the highest id they have seen
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "session_id", nullable = false, length = 36)
+    private String sessionId;
+
+    // SESSION (row changed) or HISTORY (messages added)
+    @Column(name = "kind", nullable = false, length = 16)
+    private String kind;
+
+    // the publishing replica, which has delivered the event to its own listeners already
+    @Column(name = "origin", nullable = false, length = 36)
+    private String origin;
+
+    // written with the database clock, old rows are purged by it
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
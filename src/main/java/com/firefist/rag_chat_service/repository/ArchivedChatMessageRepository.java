@@ -0,0 +1,13 @@
+package com.firefist.rag_chat_service.repository;
+
+import com.firefist.rag_chat_service.model.ArchivedChatMessage;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface ArchivedChatMessageRepository extends JpaRepository<ArchivedChatMessage, UUID>, ArchivedChatMessageRepositoryCustom {
+
+    List<ArchivedChatMessage> findBySessionIdAndSequenceNumberGreaterThanOrderBySequenceNumberAsc(UUID sessionId, long afterSeq, Pageable limit);
+}
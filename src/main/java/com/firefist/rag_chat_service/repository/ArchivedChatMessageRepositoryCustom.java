@@ -0,0 +1,13 @@
+package com.firefist.rag_chat_service.repository;
+
+import com.firefist.rag_chat_service.model.ArchivedChatMessage;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface ArchivedChatMessageRepositoryCustom {
+    /**
+     * Archived messages of the session in createdAt order starting at an arbitrary offset.
+     */
+    List<ArchivedChatMessage> findSlice(UUID sessionId, long offset, int limit);
+}
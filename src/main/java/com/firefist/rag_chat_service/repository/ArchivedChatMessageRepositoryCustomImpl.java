@@ -0,0 +1,25 @@
+package com.firefist.rag_chat_service.repository;
+
+import com.firefist.rag_chat_service.model.ArchivedChatMessage;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import java.util.List;
+import java.util.UUID;
+
+public class ArchivedChatMessageRepositoryCustomImpl implements ArchivedChatMessageRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<ArchivedChatMessage> findSlice(UUID sessionId, long offset, int limit) {
+        return entityManager.createQuery(
+                        "select a from ArchivedChatMessage a where a.sessionId = :sessionId order by a.createdAt asc",
+                        ArchivedChatMessage.class)
+                .setParameter("sessionId", sessionId)
+                .setFirstResult(Math.toIntExact(offset))
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
@@ -0,0 +1,251 @@
+package com.firefist.rag_chat_service.repository;
+
+import com.firefist.rag_chat_service.model.ArchivedChatMessage;
+import com.firefist.rag_chat_service.model.ChatMessage;
+import com.firefist.rag_chat_service.model.ChatSession;
+import com.firefist.rag_chat_service.model.ContextRef;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Plain JDBC access to chat_message (and its archive) for bulk work that would be too slow through JPA
+ * (one INSERT per entity, select-before-insert for assigned ids).
+ */
+@Repository
+public class ChatMessageJdbcRepository {
+
+    // ids already stored are skipped so a batch can be replayed safely after a partial failure; unlike
+    // ON DUPLICATE KEY this leaves other unique keys (session_id, sequence_number) to fail loudly
+    private static final String INSERT_IGNORE_DUPLICATES_SQL =
+            "INSERT INTO chat_message (id, session_id, sender, content, retrieved_context, context_refs, created_at, sequence_number) " +
+            "SELECT ?, ?, ?, ?, ?, ?, ?, ? FROM DUAL WHERE NOT EXISTS (SELECT 1 FROM chat_message WHERE id = ?)";
+
+    private static final String SELECT_OLDEST_SQL =
+            "SELECT id, session_id, sender, content, retrieved_context, context_refs, created_at, sequence_number " +
+            "FROM chat_message WHERE session_id = ? ORDER BY created_at ASC LIMIT ?";
+
+    private static final String SELECT_BY_SESSION_SQL =
+            "SELECT id, session_id, sender, content, retrieved_context, context_refs, created_at, sequence_number " +
+            "FROM chat_message WHERE session_id = ? ORDER BY created_at ASC";
+
+    private static final String SELECT_RANGE_SQL =
+            "SELECT id, session_id, sender, content, retrieved_context, context_refs, created_at, sequence_number " +
+            "FROM chat_message WHERE session_id = ? AND sequence_number > ? AND sequence_number <= ? ORDER BY sequence_number ASC LIMIT ?";
+
+    private static final String SELECT_NEWEST_AFTER_SQL =
+            "SELECT id, session_id, sender, content, retrieved_context, context_refs, created_at, sequence_number " +
+            "FROM chat_message WHERE session_id = ? AND sequence_number > ? ORDER BY sequence_number DESC LIMIT ?";
+
+    private static final String TAIL_STATS_SQL =
+            "SELECT COUNT(*), COALESCE(SUM(CHAR_LENGTH(content)), 0) FROM chat_message WHERE session_id = ? AND sequence_number > ?";
+
+    private static final String NTH_NEWEST_SEQ_SQL =
+            "SELECT sequence_number FROM chat_message WHERE session_id = ? AND sequence_number > ? " +
+            "ORDER BY sequence_number DESC LIMIT 1 OFFSET ?";
+
+    private static final String DELETE_BY_ID_SQL = "DELETE FROM chat_message WHERE id = ?";
+
+    private static final String INSERT_ARCHIVED_SQL =
+            "INSERT INTO chat_message_archive (id, session_id, sender, created_at, sequence_number, archived_at, payload) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE id = id";
+
+    private static final TypeReference<List<ContextRef>> CONTEXT_REFS_TYPE = new TypeReference<>() { };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public ChatMessageJdbcRepository(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Inserts all messages in one JDBC batch. Messages must already carry id, session and createdAt.
+     * Messages whose id is already stored are skipped; a sequence number already used in the session
+     * fails the batch with DuplicateKeyException (see {@link #insertEachIgnoringDuplicates}).
+     */
+    public int[] insertIgnoringDuplicates(List<ChatMessage> messages) {
+        // Instants are stored as UTC, same as Hibernate does for the entity mapping
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        return jdbcTemplate.batchUpdate(INSERT_IGNORE_DUPLICATES_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                bindInsert(ps, messages.get(i), utc);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return messages.size();
+            }
+        });
+    }
+
+    /**
+     * Row by row, for a batch {@link #insertIgnoringDuplicates} rejected: stores what can be stored and
+     * returns the messages whose sequence number is already used in their session. Run it in a transaction
+     * of its own; on MySQL a failed statement doesn't undo the rest of the transaction.
+     */
+    public List<ChatMessage> insertEachIgnoringDuplicates(List<ChatMessage> messages) {
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        List<ChatMessage> conflicts = new ArrayList<>();
+        for (ChatMessage m : messages) {
+            try {
+                jdbcTemplate.update(INSERT_IGNORE_DUPLICATES_SQL, ps -> bindInsert(ps, m, utc));
+            } catch (DuplicateKeyException ex) {
+                // the same id inserted concurrently is skipped on a second try, a taken number fails again
+                try {
+                    jdbcTemplate.update(INSERT_IGNORE_DUPLICATES_SQL, ps -> bindInsert(ps, m, utc));
+                } catch (DuplicateKeyException again) {
+                    conflicts.add(m);
+                }
+            }
+        }
+        return conflicts;
+    }
+
+    private void bindInsert(PreparedStatement ps, ChatMessage m, Calendar utc) throws SQLException {
+        ps.setString(1, m.getId().toString());
+        ps.setString(2, m.getSession().getId().toString());
+        ps.setString(3, m.getSender());
+        ps.setString(4, m.getContent());
+        ps.setString(5, m.getRetrievedContext());
+        ps.setString(6, writeRefs(m.getContextRefs()));
+        ps.setTimestamp(7, Timestamp.from(m.getCreatedAt()), utc);
+        if (m.getSequenceNumber() != null) ps.setLong(8, m.getSequenceNumber());
+        else ps.setNull(8, Types.BIGINT);
+        ps.setString(9, m.getId().toString());
+    }
+
+    /**
+     * Oldest hot messages of a session. The returned messages carry a session stub holding only the id.
+     */
+    public List<ChatMessage> findOldestBySession(UUID sessionId, int limit) {
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        return jdbcTemplate.query(SELECT_OLDEST_SQL, (rs, rowNum) -> mapMessage(rs, utc), sessionId.toString(), limit);
+    }
+
+    /**
+     * Every hot message of a session, oldest first, read through a forward-only cursor fetchSize rows at a time.
+     * The stream holds the connection open and must be closed; the returned messages carry a session stub.
+     */
+    public Stream<ChatMessage> streamBySession(UUID sessionId, int fetchSize) {
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        return jdbcTemplate.queryForStream(con -> {
+            PreparedStatement ps = con.prepareStatement(SELECT_BY_SESSION_SQL,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            // with useCursorFetch=true Connector/J fetches this many rows per round trip instead of the whole result
+            ps.setFetchSize(fetchSize);
+            ps.setString(1, sessionId.toString());
+            return ps;
+        }, (rs, rowNum) -> mapMessage(rs, utc));
+    }
+
+    /**
+     * Messages with afterSeq < sequenceNumber <= throughSeq, in sequence order, at most limit of them.
+     */
+    public List<ChatMessage> findBySequenceRange(UUID sessionId, long afterSeq, long throughSeq, int limit) {
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        return jdbcTemplate.query(SELECT_RANGE_SQL, (rs, rowNum) -> mapMessage(rs, utc),
+                sessionId.toString(), afterSeq, throughSeq, limit);
+    }
+
+    /**
+     * The newest limit messages with sequenceNumber > afterSeq, returned oldest first.
+     */
+    public List<ChatMessage> findNewestAfter(UUID sessionId, long afterSeq, int limit) {
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        List<ChatMessage> newest = new ArrayList<>(jdbcTemplate.query(SELECT_NEWEST_AFTER_SQL,
+                (rs, rowNum) -> mapMessage(rs, utc), sessionId.toString(), afterSeq, limit));
+        Collections.reverse(newest);
+        return newest;
+    }
+
+    /**
+     * Number of messages and their total content length after afterSeq: {count, chars}.
+     */
+    public long[] tailStats(UUID sessionId, long afterSeq) {
+        return jdbcTemplate.queryForObject(TAIL_STATS_SQL,
+                (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)}, sessionId.toString(), afterSeq);
+    }
+
+    /**
+     * Sequence number of the message with offset newer ones after it (offset 0 is the newest),
+     * among those after afterSeq; null if there are not that many.
+     */
+    public Long nthNewestSequence(UUID sessionId, long afterSeq, int offset) {
+        List<Long> seq = jdbcTemplate.queryForList(NTH_NEWEST_SEQ_SQL, Long.class, sessionId.toString(), afterSeq, offset);
+        return seq.isEmpty() ? null : seq.get(0);
+    }
+
+    public void deleteByIds(List<UUID> ids) {
+        jdbcTemplate.batchUpdate(DELETE_BY_ID_SQL, ids, ids.size(),
+                (ps, id) -> ps.setString(1, id.toString()));
+    }
+
+    public void insertArchived(List<ArchivedChatMessage> rows) {
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        jdbcTemplate.batchUpdate(INSERT_ARCHIVED_SQL, rows, rows.size(), (ps, a) -> {
+            ps.setString(1, a.getId().toString());
+            ps.setString(2, a.getSessionId().toString());
+            ps.setString(3, a.getSender());
+            ps.setTimestamp(4, Timestamp.from(a.getCreatedAt()), utc);
+            if (a.getSequenceNumber() != null) ps.setLong(5, a.getSequenceNumber());
+            else ps.setNull(5, Types.BIGINT);
+            ps.setTimestamp(6, Timestamp.from(a.getArchivedAt()), utc);
+            ps.setBytes(7, a.getPayload());
+        });
+    }
+
+    private ChatMessage mapMessage(ResultSet rs, Calendar utc) throws SQLException {
+        ChatMessage m = new ChatMessage();
+        m.setId(UUID.fromString(rs.getString("id")));
+        ChatSession session = new ChatSession();
+        session.setId(UUID.fromString(rs.getString("session_id")));
+        m.setSession(session);
+        m.setSender(rs.getString("sender"));
+        m.setContent(rs.getString("content"));
+        m.setRetrievedContext(rs.getString("retrieved_context"));
+        m.setContextRefs(readRefs(rs.getString("context_refs")));
+        m.setCreatedAt(rs.getTimestamp("created_at", utc).toInstant());
+        long seq = rs.getLong("sequence_number");
+        m.setSequenceNumber(rs.wasNull() ? null : seq);
+        return m;
+    }
+
+    // context_refs is a JSON column, same shape Hibernate writes for ChatMessage.contextRefs
+    private String writeRefs(List<ContextRef> refs) {
+        if (refs == null) return null;
+        try {
+            return objectMapper.writeValueAsString(refs);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Could not serialize context refs", ex);
+        }
+    }
+
+    private List<ContextRef> readRefs(String json) {
+        if (json == null) return null;
+        try {
+            return objectMapper.readValue(json, CONTEXT_REFS_TYPE);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Could not parse context refs", ex);
+        }
+    }
+}
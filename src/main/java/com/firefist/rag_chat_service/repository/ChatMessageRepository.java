@@ -1,15 +1,44 @@
 package com.firefist.rag_chat_service.repository;
 
+import com.firefist.rag_chat_service.dto.MessageView;
 import com.firefist.rag_chat_service.model.ChatMessage;
 import com.firefist.rag_chat_service.model.ChatSession;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.UUID;
 
-public interface ChatMessageRepository extends JpaRepository<ChatMessage, UUID> {
+public interface ChatMessageRepository extends JpaRepository<ChatMessage, UUID>, ChatMessageRepositoryCustom {
     Page<ChatMessage> findBySessionAndSessionDeletedAtIsNullOrderByCreatedAtAsc(ChatSession session, Pageable pageable);
     // fallback simpler:
     Page<ChatMessage> findBySessionOrderByCreatedAtAsc(ChatSession session, Pageable pageable);
-}
\ No newline at end of file
+
+    long countBySession(ChatSession session);
+
+    // keyset paging by sequence number, served by uk_chat_message_session_seq
+    List<ChatMessage> findBySessionAndSequenceNumberGreaterThanOrderBySequenceNumberAsc(ChatSession session, long afterSeq, Pageable limit);
+
+    // history pages without entities (see MessageView); a Pageable sort is appended like for the derived query above
+    @Query(value = "select new com.firefist.rag_chat_service.dto.MessageView(m.id, m.session.id, m.sender, m.content, "
+            + "m.contextRefs, m.createdAt, m.sequenceNumber) from ChatMessage m where m.session.id = :sessionId "
+            + "order by m.createdAt asc",
+            countQuery = "select count(m) from ChatMessage m where m.session.id = :sessionId")
+    Page<MessageView> findViewsBySessionId(@Param("sessionId") UUID sessionId, Pageable pageable);
+
+    @Query("select new com.firefist.rag_chat_service.dto.MessageView(m.id, m.session.id, m.sender, m.content, "
+            + "m.contextRefs, m.createdAt, m.sequenceNumber) from ChatMessage m where m.session.id = :sessionId "
+            + "and m.sequenceNumber > :afterSeq order by m.sequenceNumber asc")
+    List<MessageView> findViewsAfter(@Param("sessionId") UUID sessionId, @Param("afterSeq") long afterSeq, Pageable limit);
+
+    // archival candidates (see MessageArchiver)
+    @Query("select m.session.id from ChatMessage m group by m.session.id having max(m.createdAt) < :cutoff")
+    List<UUID> findIdleSessionIds(@Param("cutoff") Instant cutoff, Pageable limit);
+
+    @Query("select distinct m.session.id from ChatMessage m where m.session.deletedAt is not null")
+    List<UUID> findDeletedSessionIdsWithMessages(Pageable limit);
+}
@@ -0,0 +1,14 @@
+package com.firefist.rag_chat_service.repository;
+
+import com.firefist.rag_chat_service.model.ChatMessage;
+import com.firefist.rag_chat_service.model.ChatSession;
+
+import java.util.List;
+
+public interface ChatMessageRepositoryCustom {
+    /**
+     * Messages of the session in createdAt order starting at an arbitrary offset
+     * (Pageable offsets are always a multiple of the page size).
+     */
+    List<ChatMessage> findSlice(ChatSession session, long offset, int limit);
+}
@@ -0,0 +1,25 @@
+package com.firefist.rag_chat_service.repository;
+
+import com.firefist.rag_chat_service.model.ChatMessage;
+import com.firefist.rag_chat_service.model.ChatSession;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import java.util.List;
+
+public class ChatMessageRepositoryCustomImpl implements ChatMessageRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<ChatMessage> findSlice(ChatSession session, long offset, int limit) {
+        return entityManager.createQuery(
+                        "select m from ChatMessage m where m.session = :session order by m.createdAt asc",
+                        ChatMessage.class)
+                .setParameter("session", session)
+                .setFirstResult(Math.toIntExact(offset))
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
@@ -0,0 +1,120 @@
+package com.firefist.rag_chat_service.repository;
+
+import com.firefist.rag_chat_service.model.ChatSession;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.UUID;
+
+/**
+ * Plain JDBC access to chat_session for bulk import and sequence allocation.
+ */
+@Repository
+public class ChatSessionJdbcRepository {
+
+    // an existing id is left untouched, so re-running an import is harmless
+    private static final String INSERT_IGNORE_DUPLICATES_SQL =
+            "INSERT INTO chat_session (id, user_id, title, is_favorite, created_at, updated_at, archived_message_count) " +
+            "VALUES (?, ?, ?, ?, ?, ?, 0) ON DUPLICATE KEY UPDATE id = id";
+
+    private static final String SELECT_ACTIVE_OWNERS_SQL =
+            "SELECT id, user_id FROM chat_session WHERE id IN (:ids) AND deleted_at IS NULL";
+
+    private static final String LOCK_ARCHIVED_COUNTS_SQL =
+            "SELECT id, archived_message_count FROM chat_session WHERE id IN (:ids) FOR UPDATE";
+
+    // LAST_INSERT_ID(expr) hands the new value back to this connection, so increment and read are one
+    // row-locked statement. GREATEST with the stored maxima reconciles numbers written without the
+    // counter (bulk import, rows from before it existed); both are single index dives.
+    private static final String ALLOCATE_SEQUENCE_SQL =
+            "UPDATE chat_session SET last_sequence_number = LAST_INSERT_ID(GREATEST(last_sequence_number, " +
+            "COALESCE((SELECT MAX(m.sequence_number) FROM chat_message m WHERE m.session_id = ?), 0), " +
+            "COALESCE((SELECT MAX(a.sequence_number) FROM chat_message_archive a WHERE a.session_id = ?), 0)) + ?) " +
+            "WHERE id = ? AND deleted_at IS NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    public ChatSessionJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    }
+
+    /**
+     * Reserves count consecutive sequence numbers for the session and returns the first one,
+     * or null if the session doesn't exist or is deleted.
+     * The session row stays locked until the surrounding transaction ends, so call it right before the writes.
+     */
+    public Long allocateSequenceNumbers(UUID sessionId, int count) {
+        String id = sessionId.toString();
+        return jdbcTemplate.execute((ConnectionCallback<Long>) con -> {
+            try (PreparedStatement ps = con.prepareStatement(ALLOCATE_SEQUENCE_SQL)) {
+                ps.setString(1, id);
+                ps.setString(2, id);
+                ps.setInt(3, count);
+                ps.setString(4, id);
+                if (ps.executeUpdate() == 0) return null;
+            }
+            try (Statement st = con.createStatement(); ResultSet rs = st.executeQuery("SELECT LAST_INSERT_ID()")) {
+                rs.next();
+                return rs.getLong(1) - count + 1;
+            }
+        });
+    }
+
+    /**
+     * Sessions must carry id, userId, createdAt and updatedAt.
+     */
+    public void insertIgnoringDuplicates(List<ChatSession> sessions) {
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        jdbcTemplate.batchUpdate(INSERT_IGNORE_DUPLICATES_SQL, sessions, sessions.size(), (ps, s) -> {
+            ps.setString(1, s.getId().toString());
+            ps.setString(2, s.getUserId());
+            ps.setString(3, s.getTitle());
+            ps.setBoolean(4, s.isFavorite());
+            ps.setTimestamp(5, Timestamp.from(s.getCreatedAt()), utc);
+            ps.setTimestamp(6, Timestamp.from(s.getUpdatedAt()), utc);
+        });
+    }
+
+    /**
+     * userId by session id, for the given ids that belong to existing, not soft-deleted sessions.
+     */
+    public Map<UUID, String> findActiveOwners(Collection<UUID> ids) {
+        Map<UUID, String> owners = new HashMap<>();
+        if (ids.isEmpty()) return owners;
+        List<String> params = ids.stream().map(UUID::toString).toList();
+        namedJdbcTemplate.query(SELECT_ACTIVE_OWNERS_SQL, Map.of("ids", params),
+                (RowCallbackHandler) rs -> owners.put(UUID.fromString(rs.getString(1)), rs.getString(2)));
+        return owners;
+    }
+
+    /**
+     * The given sessions that have messages in the archive already. Their rows stay locked until the
+     * surrounding transaction ends, which keeps bulk imports and the archiver's move batches apart.
+     */
+    public Set<UUID> lockArchived(Collection<UUID> ids) {
+        Set<UUID> archived = new HashSet<>();
+        if (ids.isEmpty()) return archived;
+        List<String> params = ids.stream().map(UUID::toString).toList();
+        namedJdbcTemplate.query(LOCK_ARCHIVED_COUNTS_SQL, Map.of("ids", params), (RowCallbackHandler) rs -> {
+            if (rs.getLong(2) > 0) archived.add(UUID.fromString(rs.getString(1)));
+        });
+        return archived;
+    }
+}
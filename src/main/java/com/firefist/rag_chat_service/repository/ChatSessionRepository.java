@@ -1,12 +1,71 @@
 package com.firefist.rag_chat_service.repository;
 
+import com.firefist.rag_chat_service.dto.SessionSummary;
 import com.firefist.rag_chat_service.model.ChatSession;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
 
 public interface ChatSessionRepository extends JpaRepository<ChatSession, UUID> {
     // extra query methods will go here (findByUserId, findByFavorite, etc.)
     List<ChatSession> findByUserId(String userId);
-}
\ No newline at end of file
+
+    // transcript export walks a user's live sessions oldest first
+    @Query("select s.id from ChatSession s where s.userId = :userId and s.deletedAt is null order by s.createdAt asc, s.id asc")
+    List<UUID> findActiveIdsByUserId(@Param("userId") String userId);
+
+    // Keyset listing of live sessions. Pageable only carries the limit, ordering is fixed by the query
+    // and the (updatedAt, id) pair of the last row seen is the cursor.
+
+    @Query("select new com.firefist.rag_chat_service.dto.SessionSummary(s.id, s.title, s.favorite, s.updatedAt) " +
+            "from ChatSession s where s.userId = :userId and s.deletedAt is null " +
+            "order by s.updatedAt desc, s.id desc")
+    List<SessionSummary> findRecentSummaries(@Param("userId") String userId, Pageable limit);
+
+    @Query("select new com.firefist.rag_chat_service.dto.SessionSummary(s.id, s.title, s.favorite, s.updatedAt) " +
+            "from ChatSession s where s.userId = :userId and s.deletedAt is null " +
+            "and (s.updatedAt < :updatedAt or (s.updatedAt = :updatedAt and s.id < :id)) " +
+            "order by s.updatedAt desc, s.id desc")
+    List<SessionSummary> findRecentSummariesAfter(@Param("userId") String userId,
+                                                  @Param("updatedAt") Instant updatedAt,
+                                                  @Param("id") UUID id,
+                                                  Pageable limit);
+
+    @Query("select new com.firefist.rag_chat_service.dto.SessionSummary(s.id, s.title, s.favorite, s.updatedAt) " +
+            "from ChatSession s where s.userId = :userId and s.deletedAt is null " +
+            "order by s.favorite desc, s.updatedAt desc, s.id desc")
+    List<SessionSummary> findFavoritesFirstSummaries(@Param("userId") String userId, Pageable limit);
+
+    // cursor inside the favorites: rest of the favorites, then every non-favorite
+    @Query("select new com.firefist.rag_chat_service.dto.SessionSummary(s.id, s.title, s.favorite, s.updatedAt) " +
+            "from ChatSession s where s.userId = :userId and s.deletedAt is null " +
+            "and (s.favorite = false or (s.updatedAt < :updatedAt or (s.updatedAt = :updatedAt and s.id < :id))) " +
+            "order by s.favorite desc, s.updatedAt desc, s.id desc")
+    List<SessionSummary> findFavoritesFirstSummariesAfterFavorite(@Param("userId") String userId,
+                                                                  @Param("updatedAt") Instant updatedAt,
+                                                                  @Param("id") UUID id,
+                                                                  Pageable limit);
+
+    // cursor past the favorites: only non-favorites remain
+    @Query("select new com.firefist.rag_chat_service.dto.SessionSummary(s.id, s.title, s.favorite, s.updatedAt) " +
+            "from ChatSession s where s.userId = :userId and s.deletedAt is null and s.favorite = false " +
+            "and (s.updatedAt < :updatedAt or (s.updatedAt = :updatedAt and s.id < :id)) " +
+            "order by s.updatedAt desc, s.id desc")
+    List<SessionSummary> findFavoritesFirstSummariesAfterNonFavorite(@Param("userId") String userId,
+                                                                     @Param("updatedAt") Instant updatedAt,
+                                                                     @Param("id") UUID id,
+                                                                     Pageable limit);
+
+    // bulk update: does not touch updatedAt, archiving is not a user-visible change.
+    // Native because the column is read-only in the entity mapping; id is the varchar(36) form.
+    @Modifying
+    @Query(value = "update chat_session set archived_message_count = archived_message_count + :count where id = :id",
+            nativeQuery = true)
+    int addArchivedMessages(@Param("id") String id, @Param("count") long count);
+}
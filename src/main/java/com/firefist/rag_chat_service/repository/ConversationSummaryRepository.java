@@ -0,0 +1,17 @@
+package com.firefist.rag_chat_service.repository;
+
+import com.firefist.rag_chat_service.model.ConversationSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.UUID;
+
+public interface ConversationSummaryRepository extends JpaRepository<ConversationSummary, UUID> {
+
+    // bulk delete: no load, and no version check against a summary job saving at the same time
+    @Modifying
+    @Query("delete from ConversationSummary s where s.sessionId = :sessionId")
+    int deleteBySessionId(@Param("sessionId") UUID sessionId);
+}
@@ -0,0 +1,7 @@
+package com.firefist.rag_chat_service.repository;
+
+import com.firefist.rag_chat_service.model.RetrievedChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface RetrievedChunkRepository extends JpaRepository<RetrievedChunk, String> {
+}
@@ -14,11 +14,14 @@ import java.util.Objects;
 
 /**
  * Filter that requires a valid API key in the X-API-KEY header for non-whitelisted endpoints.
+ * Browser WebSocket upgrades may pass it as the apiKey query parameter instead, browsers can't set headers there.
+ * - Only upgrades with an Origin header qualify; the allowed origins are checked by the WebSocket handshake.
  */
 @Slf4j
 public class ApiKeyAuthFilter extends OncePerRequestFilter {
 
     private static final String HEADER_NAME = "X-API-KEY";
+    private static final String WEBSOCKET_PARAM = "apiKey";
 
     private final List<String> validApiKeys;
     private final List<String> whitelist;
@@ -35,7 +38,7 @@ public class ApiKeyAuthFilter extends OncePerRequestFilter {
         if (whitelist != null) {
             for (String pattern : whitelist) {
                 if (pathMatcher.match(pattern, path)) {
-                    log.info("Do not filter whiteList paths");
+                    log.trace("Do not filter whiteList path {}", path);
                     return true;
                 }
             }
@@ -49,6 +52,10 @@ public class ApiKeyAuthFilter extends OncePerRequestFilter {
                                     FilterChain filterChain) throws ServletException, IOException {
 
         String key = request.getHeader(HEADER_NAME);
+        if (key == null && "websocket".equalsIgnoreCase(request.getHeader("Upgrade"))
+                && request.getHeader("Origin") != null) {
+            key = request.getParameter(WEBSOCKET_PARAM);
+        }
 
         if (!isValidKey(key)) {
             // Unauthorized
@@ -59,7 +66,7 @@ public class ApiKeyAuthFilter extends OncePerRequestFilter {
             log.info("Api Key is invalid. User is unauthorized with key - {}", key);
             return;
         }
-        log.info("Api Key is valid. Processing further..");
+        log.trace("Api Key is valid. Processing further..");
         filterChain.doFilter(request, response);
     }
 
@@ -1,49 +1,227 @@
 package com.firefist.rag_chat_service.service;
 
 import com.firefist.rag_chat_service.dto.CreateMessageRequest;
+import com.firefist.rag_chat_service.dto.MessageView;
+import com.firefist.rag_chat_service.exception.RequestCancelledException;
 import com.firefist.rag_chat_service.model.ChatMessage;
 import com.firefist.rag_chat_service.model.ChatSession;
 import com.firefist.rag_chat_service.repository.ChatMessageRepository;
-import com.firefist.rag_chat_service.repository.ChatSessionRepository;
+import com.firefist.rag_chat_service.repository.ChatSessionJdbcRepository;
+import com.firefist.rag_chat_service.service.archive.MessageArchive;
+import com.firefist.rag_chat_service.service.cache.HistoryVersions;
+import com.firefist.rag_chat_service.service.cache.SessionCache;
+import com.firefist.rag_chat_service.service.context.RetrievedContextStore;
+import com.firefist.rag_chat_service.service.deadline.RequestDeadline;
+import com.firefist.rag_chat_service.service.deadline.RequestDeadlines;
+import com.firefist.rag_chat_service.service.llm.ConversationHistory;
+import com.firefist.rag_chat_service.service.llm.LlmCallScheduler;
 import com.firefist.rag_chat_service.service.llm.LlmClient;
+import com.firefist.rag_chat_service.service.llm.LlmPriority;
 import com.firefist.rag_chat_service.service.llm.LlmResponse;
+import com.firefist.rag_chat_service.service.metrics.ChatPipelineObservations;
 import com.firefist.rag_chat_service.service.retrieval.RetrievalResult;
 import com.firefist.rag_chat_service.service.retrieval.RetrievalService;
+import com.firefist.rag_chat_service.service.search.MessageSearchService;
+import com.firefist.rag_chat_service.service.store.MessageWriter;
+import com.firefist.rag_chat_service.service.summary.ConversationSummaryService;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 public class ChatMessageService {
 
     private final ChatMessageRepository messageRepository;
-    private final ChatSessionRepository sessionRepository;
+    private final SessionCache sessionCache;
     private final RetrievalService retrievalService;
     private final LlmClient llmClient;
+    private final LlmCallScheduler llmScheduler;
+    private final MessageWriter messageWriter;
+    private final MessageArchive messageArchive;
+    private final RetrievedContextStore contextStore;
+    private final ChatPipelineObservations observations;
+    private final ChatSessionJdbcRepository sessionJdbcRepository;
+    private final ConversationSummaryService summaryService;
+    private final MessageSearchService searchService;
+    private final RequestDeadlines deadlines;
+    private final HistoryVersions historyVersions;
 
     // how many snippets to fetch for now
     private static final int DEFAULT_TOP_K = 3;
 
-    public ChatMessageService(ChatMessageRepository messageRepository, ChatSessionRepository sessionRepository,
+    public ChatMessageService(ChatMessageRepository messageRepository, SessionCache sessionCache,
                               RetrievalService retrievalService,
-                              LlmClient llmClient) {
+                              LlmClient llmClient,
+                              LlmCallScheduler llmScheduler,
+                              MessageWriter messageWriter,
+                              MessageArchive messageArchive,
+                              RetrievedContextStore contextStore,
+                              ChatPipelineObservations observations,
+                              ChatSessionJdbcRepository sessionJdbcRepository,
+                              ConversationSummaryService summaryService,
+                              MessageSearchService searchService,
+                              RequestDeadlines deadlines,
+                              HistoryVersions historyVersions) {
         this.messageRepository = messageRepository;
-        this.sessionRepository = sessionRepository;
+        this.sessionCache = sessionCache;
         this.retrievalService = retrievalService;
         this.llmClient = llmClient;
+        this.llmScheduler = llmScheduler;
+        this.messageWriter = messageWriter;
+        this.messageArchive = messageArchive;
+        this.contextStore = contextStore;
+        this.observations = observations;
+        this.sessionJdbcRepository = sessionJdbcRepository;
+        this.summaryService = summaryService;
+        this.searchService = searchService;
+        this.deadlines = deadlines;
+        this.historyVersions = historyVersions;
     }
 
     @Transactional(readOnly = true)
     public Page<ChatMessage> getMessages(UUID sessionId, Pageable pageable) {
-        ChatSession session = sessionRepository.findById(sessionId).orElse(null);
-        if (session == null || session.getDeletedAt() != null) return Page.empty(pageable);
-        // use repository method
-        return messageRepository.findBySessionOrderByCreatedAtAsc(session, pageable);
+        ChatSession session = sessionCache.findActive(sessionId).orElse(null);
+        if (session == null) return Page.empty(pageable);
+        Page<ChatMessage> page = session.getArchivedMessageCount() == 0
+                // use repository method
+                ? messageRepository.findBySessionOrderByCreatedAtAsc(session, pageable)
+                : readArchivedAndHot(session, pageable);
+        List<ChatMessage> pending = messageWriter.pending(sessionId);
+        if (pending.isEmpty()) return page;
+        return appendPending(page, pending, pageable, ChatMessage::getId);
+    }
+
+    /**
+     * Same page as {@link #getMessages}, read through the MessageView projection: no entities, no
+     * persistence context to flush, no retrieved_context column. Sessions with archived messages go
+     * through the entity path, the archive yields entities anyway.
+     */
+    @Transactional(readOnly = true)
+    public Page<MessageView> getMessageViews(UUID sessionId, Pageable pageable) {
+        ChatSession session = sessionCache.findActive(sessionId).orElse(null);
+        if (session == null) return Page.empty(pageable);
+        Page<MessageView> page = session.getArchivedMessageCount() == 0
+                ? messageRepository.findViewsBySessionId(sessionId, pageable)
+                : readArchivedAndHot(session, pageable).map(m -> MessageView.of(m, null));
+        List<ChatMessage> pending = messageWriter.pending(sessionId);
+        if (pending.isEmpty()) return page;
+        return appendPending(page, pending.stream().map(m -> MessageView.of(m, null)).toList(),
+                pageable, MessageView::id);
+    }
+
+    /**
+     * Archived messages are the oldest prefix of the history, hot rows follow them.
+     */
+    private Page<ChatMessage> readArchivedAndHot(ChatSession session, Pageable pageable) {
+        long archived = session.getArchivedMessageCount();
+        long offset = pageable.getOffset();
+        int size = pageable.getPageSize();
+
+        List<ChatMessage> content = new ArrayList<>(size);
+        if (offset < archived) {
+            content.addAll(messageArchive.read(session, offset, (int) Math.min(size, archived - offset)));
+        }
+        long hotTotal = messageRepository.countBySession(session);
+        long hotOffset = Math.max(0, offset - archived);
+        if (content.size() < size && hotOffset < hotTotal) {
+            content.addAll(messageRepository.findSlice(session, hotOffset, size - content.size()));
+        }
+        return new PageImpl<>(content, pageable, archived + hotTotal);
+    }
+
+    /**
+     * Messages not flushed yet (write-behind mode) are newer than every stored row,
+     * so they continue the createdAt-ascending history after the last stored page.
+     */
+    private <T> Page<T> appendPending(Page<T> page, List<T> pending, Pageable pageable, Function<T, UUID> id) {
+        List<T> content = new ArrayList<>(page.getContent());
+        // a batch may be committed but not yet removed from pending, don't show it twice
+        Set<UUID> stored = new HashSet<>();
+        content.forEach(m -> stored.add(id.apply(m)));
+
+        long storedTotal = page.getTotalElements();
+        int room = pageable.getPageSize() - content.size();
+        int from = (int) Math.max(0, pageable.getOffset() - storedTotal);
+        for (int i = from; i < pending.size() && room > 0; i++) {
+            T m = pending.get(i);
+            if (stored.contains(id.apply(m))) continue;
+            content.add(m);
+            room--;
+        }
+        return new PageImpl<>(content, pageable, storedTotal + pending.size());
+    }
+
+    /**
+     * Up to limit messages with sequenceNumber > afterSeq, in sequence order (keyset paging on the
+     * (session_id, sequence_number) unique index). Messages without a sequence number are not included.
+     */
+    @Transactional(readOnly = true)
+    public List<ChatMessage> getMessagesAfter(UUID sessionId, long afterSeq, int limit) {
+        ChatSession session = sessionCache.findActive(sessionId).orElse(null);
+        if (session == null) return List.of();
+        // createdAt (what archival goes by) and sequence order can differ slightly, so both tiers are
+        // read from the same key and merged instead of assuming the archive is a strict prefix
+        List<ChatMessage> content = new ArrayList<>(limit * 2);
+        if (session.getArchivedMessageCount() > 0) {
+            content.addAll(messageArchive.readAfter(session, afterSeq, limit));
+        }
+        content.addAll(messageRepository.findBySessionAndSequenceNumberGreaterThanOrderBySequenceNumberAsc(
+                session, afterSeq, PageRequest.ofSize(limit)));
+
+        // unflushed messages (write-behind) are merged by number as well
+        Set<UUID> seen = new HashSet<>();
+        content.forEach(m -> seen.add(m.getId()));
+        for (ChatMessage m : messageWriter.pending(sessionId)) {
+            if (m.getSequenceNumber() != null && m.getSequenceNumber() > afterSeq && seen.add(m.getId())) content.add(m);
+        }
+        content.sort(Comparator.comparing(ChatMessage::getSequenceNumber));
+        return content.size() <= limit ? content : new ArrayList<>(content.subList(0, limit));
+    }
+
+    /**
+     * {@link #getMessagesAfter} through the MessageView projection, for sessions without archived messages.
+     */
+    @Transactional(readOnly = true)
+    public List<MessageView> getMessageViewsAfter(UUID sessionId, long afterSeq, int limit) {
+        ChatSession session = sessionCache.findActive(sessionId).orElse(null);
+        if (session == null) return List.of();
+        if (session.getArchivedMessageCount() > 0) {
+            return getMessagesAfter(sessionId, afterSeq, limit).stream().map(m -> MessageView.of(m, null)).toList();
+        }
+        List<MessageView> content = new ArrayList<>(messageRepository.findViewsAfter(sessionId, afterSeq,
+                PageRequest.ofSize(limit)));
+        Set<UUID> seen = new HashSet<>();
+        content.forEach(m -> seen.add(m.id()));
+        for (ChatMessage m : messageWriter.pending(sessionId)) {
+            if (m.getSequenceNumber() != null && m.getSequenceNumber() > afterSeq && seen.add(m.getId())) {
+                content.add(MessageView.of(m, null));
+            }
+        }
+        content.sort(Comparator.comparing(MessageView::sequenceNumber));
+        return content.size() <= limit ? content : new ArrayList<>(content.subList(0, limit));
+    }
+
+    /**
+     * Chunk texts referenced by the given messages, for include=context expansion.
+     */
+    @Transactional(readOnly = true)
+    public Map<String, String> loadContextTexts(List<ChatMessage> messages) {
+        return contextStore.loadTexts(messages);
     }
 
     /**
@@ -52,52 +230,120 @@ public class ChatMessageService {
      *
      * If sender is other than USER, simply saves the message and returns the saved message.
      *
+     * Sequence numbers are assigned here, per session: a user turn gets n and its reply n + 1.
+     * They are reserved right before the writes (after the LLM call), so the session's counter row
+     * is only locked for the short end of the transaction and concurrent turns don't wait on each other's LLM calls.
+     *
      * Returns:
      * - for USER: the assistant ChatMessage entity that was generated and saved.
      * - for non-USER: the saved ChatMessage (echo).
+     * - null if the session doesn't exist or was deleted meanwhile.
+     *
+     * Inside a {@link RequestDeadline} (see RequestDeadlines) retrieval and the LLM call are abandoned as soon as
+     * the turn is cancelled, with {@link RequestCancelledException}; what is kept of it depends on chat.deadline.abandoned.
      */
-    @Transactional
+    @Transactional(noRollbackFor = RequestCancelledException.class)
     public ChatMessage addMessage(UUID sessionId, CreateMessageRequest req) {
-        ChatSession session = sessionRepository.findById(sessionId).orElse(null);
-        if (session == null || session.getDeletedAt() != null) return null;
+        return addMessage(sessionId, req, null);
+    }
+
+    /**
+     * Same, streaming the assistant reply: onDelta gets the pieces of text as the LLM produces them
+     * (on the calling thread, before anything is saved). Null means no streaming.
+     */
+    @Transactional(noRollbackFor = RequestCancelledException.class)
+    public ChatMessage addMessage(UUID sessionId, CreateMessageRequest req, Consumer<String> onDelta) {
+        ChatSession session = observations.stage(ChatPipelineObservations.SESSION_LOOKUP,
+                () -> sessionCache.findActive(sessionId).orElse(null));
+        if (session == null) return null;
 
-        // 1) Save incoming message (user or otherwise)
+        // 1) Incoming message (user or otherwise), timestamped on arrival
         ChatMessage incoming = new ChatMessage();
         incoming.setSession(session);
         incoming.setSender(req.getSender());
         incoming.setContent(req.getContent());
         incoming.setRetrievedContext(req.getRetrievedContext());
-        incoming.setSequenceNumber(req.getSequenceNumber());
-        messageRepository.save(incoming);
+        incoming.setCreatedAt(Instant.now());
+
+        // non-user messages: save and return the incoming message
+        if (!"USER".equalsIgnoreCase(req.getSender())) {
+            Long seq = allocateSequence(sessionId, 1);
+            if (seq == null) return null;
+            incoming.setSequenceNumber(seq);
+            observations.stage(ChatPipelineObservations.SAVE_USER, () -> messageWriter.write(incoming));
+            searchService.indexAfterCommit(session.getUserId(), List.of(incoming));
+            return incoming;
+        }
 
-        // If message is from USER, run pipeline and return assistant reply
-        if ("USER".equalsIgnoreCase(req.getSender())) {
+        LlmResponse llmResp = null;
+        List<RetrievalResult> results = List.of();
+        try {
             // 2) Retrieval
-            List<RetrievalResult> results = retrievalService.retrieve(req.getContent(), DEFAULT_TOP_K);
+            results = observations.stage(ChatPipelineObservations.RETRIEVAL,
+                    () -> RequestDeadline.interruptible(() -> retrievalService.retrieve(req.getContent(), DEFAULT_TOP_K)));
+            observations.recordSnippets(results.size());
             List<String> snippets = results.stream()
                     .map(RetrievalResult::getSnippet)
                     .collect(Collectors.toList());
 
-            // 3) Call LLM to generate assistant reply
-            LlmResponse llmResp = llmClient.generate(req.getContent(), snippets);
+            // 3) Earlier turns: rolling summary plus the most recent turns, bounded whatever the session length
+            ConversationHistory history = observations.stage(ChatPipelineObservations.HISTORY,
+                    () -> summaryService.historyFor(sessionId));
 
-            // 4) Persist assistant message with retrieved context stored (JSON/text)
-            ChatMessage assistant = new ChatMessage();
-            assistant.setSession(session);
-            assistant.setSender("ASSISTANT");
-            assistant.setContent(llmResp.getGeneratedText());
+            // 4) Call LLM to generate assistant reply
+            int promptSize = req.getContent().length() + snippets.stream().mapToInt(String::length).sum() + history.size();
+            // interactive class: served before background calls, shed with 503 when it can't start in time;
+            // a cancelled turn interrupts the slot wait or the provider call and gives its slot back
+            llmResp = RequestDeadline.interruptible(() -> llmScheduler.call(LlmPriority.INTERACTIVE,
+                    () -> observations.llm(promptSize, () -> onDelta == null
+                            ? llmClient.generate(req.getContent(), snippets, history)
+                            : llmClient.generate(req.getContent(), snippets, history, onDelta))));
+            // the client may have gone while the reply was generated
+            RequestDeadline.checkCurrent();
+        } catch (RequestCancelledException ex) {
+            deadlines.abandoned(ex.getReason());
+            if (!deadlines.recordAbandoned()) throw ex;
+            if (llmResp == null) {
+                // no reply to keep, the question stays in the history
+                Long seq = allocateSequence(sessionId, 1);
+                if (seq != null) {
+                    incoming.setSequenceNumber(seq);
+                    messageWriter.write(incoming);
+                    searchService.indexAfterCommit(session.getUserId(), List.of(incoming));
+                }
+                throw ex;
+            }
+            // the reply is complete: saved below like any other, for the client to find in the history
+        }
 
-            // Save retrieved snippets concatenated (simple approach)
-            String joinedContext = snippets.stream().collect(Collectors.joining("\n\n---\n\n"));
-            assistant.setRetrievedContext(joinedContext);
+        // 5) Reserve numbers for the turn and its reply, then save both in the same transaction
+        Long seq = allocateSequence(sessionId, 2);
+        if (seq == null) return null;
+        incoming.setSequenceNumber(seq);
+        observations.stage(ChatPipelineObservations.SAVE_USER, () -> messageWriter.write(incoming));
 
-            assistant.setSequenceNumber(incoming.getSequenceNumber() == null ? null : incoming.getSequenceNumber() + 1);
+        // 6) Persist assistant message with references to the retrieved chunks (text stored once per chunk)
+        ChatMessage assistant = new ChatMessage();
+        assistant.setSession(session);
+        assistant.setSender("ASSISTANT");
+        assistant.setContent(llmResp.getGeneratedText());
+        assistant.setSequenceNumber(seq + 1);
 
-            // 5) Return assistant message so controller can return it to client
-            return messageRepository.save(assistant);
-        }
+        // 7) Return assistant message so controller can return it to client
+        List<RetrievalResult> used = results;
+        ChatMessage saved = observations.stage(ChatPipelineObservations.SAVE_ASSISTANT, () -> {
+            assistant.setContextRefs(contextStore.store(used));
+            return messageWriter.write(assistant);
+        });
+        summaryService.onTurn(sessionId);
+        searchService.indexAfterCommit(session.getUserId(), List.of(incoming, saved));
+        return saved;
+    }
 
-        // non-user messages: return the saved incoming message
-        return incoming;
+    private Long allocateSequence(UUID sessionId, int count) {
+        // the numbers are taken whether or not the messages make it, either way the history's ETags change
+        historyVersions.invalidate(sessionId);
+        return observations.stage(ChatPipelineObservations.ALLOCATE_SEQUENCE,
+                () -> sessionJdbcRepository.allocateSequenceNumbers(sessionId, count));
     }
-}
\ No newline at end of file
+}
@@ -1,15 +1,23 @@
 package com.firefist.rag_chat_service.service;
 
 import com.firefist.rag_chat_service.dto.CreateSessionRequest;
+import com.firefist.rag_chat_service.dto.SessionPageResponse;
+import com.firefist.rag_chat_service.dto.SessionSummary;
 import com.firefist.rag_chat_service.model.ChatSession;
 import com.firefist.rag_chat_service.repository.ChatSessionRepository;
+import com.firefist.rag_chat_service.service.cache.SessionCache;
+import com.firefist.rag_chat_service.service.search.MessageSearchService;
+import com.firefist.rag_chat_service.service.summary.ConversationSummaryService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.Base64;
 import java.util.List;
-import java.util.Optional;
 import java.util.UUID;
 
 @Service
@@ -17,9 +25,16 @@ import java.util.UUID;
 public class ChatSessionService {
 
     private final ChatSessionRepository repository;
+    private final SessionCache sessionCache;
+    private final MessageSearchService searchService;
+    private final ConversationSummaryService summaryService;
 
-    public ChatSessionService(ChatSessionRepository repository) {
+    public ChatSessionService(ChatSessionRepository repository, SessionCache sessionCache,
+                              MessageSearchService searchService, ConversationSummaryService summaryService) {
         this.repository = repository;
+        this.sessionCache = sessionCache;
+        this.searchService = searchService;
+        this.summaryService = summaryService;
     }
 
     @Transactional
@@ -37,13 +52,57 @@ public class ChatSessionService {
         return repository.findByUserId(userId);
     }
 
+    /**
+     * One page of a user's live sessions, newest first (optionally favorites first), using keyset paging.
+     * Pass the nextCursor of the previous page to continue; an unknown or tampered cursor is rejected
+     * with IllegalArgumentException.
+     */
+    @Transactional(readOnly = true)
+    public SessionPageResponse listSessions(String userId, boolean favoritesFirst, String cursor, int limit) {
+        // one extra row tells whether another page exists
+        Pageable fetch = PageRequest.ofSize(limit + 1);
+        List<SessionSummary> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = favoritesFirst
+                    ? repository.findFavoritesFirstSummaries(userId, fetch)
+                    : repository.findRecentSummaries(userId, fetch);
+        } else {
+            SessionSummary last = decodeCursor(cursor);
+            if (!favoritesFirst) {
+                rows = repository.findRecentSummariesAfter(userId, last.getUpdatedAt(), last.getId(), fetch);
+            } else if (last.isFavorite()) {
+                rows = repository.findFavoritesFirstSummariesAfterFavorite(userId, last.getUpdatedAt(), last.getId(), fetch);
+            } else {
+                rows = repository.findFavoritesFirstSummariesAfterNonFavorite(userId, last.getUpdatedAt(), last.getId(), fetch);
+            }
+        }
+
+        if (rows.size() <= limit) return new SessionPageResponse(rows, null);
+        List<SessionSummary> page = rows.subList(0, limit);
+        return new SessionPageResponse(page, encodeCursor(page.get(limit - 1)));
+    }
+
+    private static String encodeCursor(SessionSummary last) {
+        String raw = (last.isFavorite() ? "1" : "0") + "|" + last.getUpdatedAt() + "|" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static SessionSummary decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|");
+            if (parts.length != 3) throw new IllegalArgumentException("Malformed cursor");
+            return new SessionSummary(UUID.fromString(parts[2]), null, "1".equals(parts[0]), Instant.parse(parts[1]));
+        } catch (RuntimeException ex) {
+            throw new IllegalArgumentException("Malformed cursor", ex);
+        }
+    }
+
     @Transactional(readOnly = true)
     public ChatSession getById(UUID id) {
-        Optional<ChatSession> opt = repository.findById(id);
-        if (opt.isEmpty()) return null;
-        ChatSession s = opt.get();
-        log.info("Session retrieved - {}, ", s);
-        if (s.getDeletedAt() != null) return null;
+        ChatSession s = sessionCache.findActive(id).orElse(null);
+        if (s == null) return null;
+        log.debug("Session retrieved - {}", id);
         return s;
     }
 
@@ -53,6 +112,7 @@ public class ChatSessionService {
         if (s == null || s.getDeletedAt() != null) return null;
         s.setTitle(newTitle);
         log.info("Renamed session to {}", newTitle);
+        sessionCache.invalidate(id);
         // updatedAt managed by @PreUpdate
         return repository.save(s);
     }
@@ -63,6 +123,7 @@ public class ChatSessionService {
         if (s == null || s.getDeletedAt() != null) return null;
         log.info("Favourite Session set to id - {}", s.getId());
         s.setFavorite(!s.isFavorite());
+        sessionCache.invalidate(id);
         return repository.save(s);
     }
 
@@ -72,6 +133,9 @@ public class ChatSessionService {
         if (s == null || s.getDeletedAt() != null) return false;
         s.setDeletedAt(Instant.now());
         repository.save(s);
+        sessionCache.invalidate(id);
+        summaryService.forget(id);
+        searchService.sessionDeleted(s.getUserId(), id);
         log.info("Soft Deleted session: id - {}", s.getId());
         return true;
     }
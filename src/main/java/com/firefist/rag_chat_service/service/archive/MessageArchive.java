@@ -0,0 +1,119 @@
+package com.firefist.rag_chat_service.service.archive;
+
+import com.firefist.rag_chat_service.model.ArchivedChatMessage;
+import com.firefist.rag_chat_service.model.ChatMessage;
+import com.firefist.rag_chat_service.model.ChatSession;
+import com.firefist.rag_chat_service.repository.ArchivedChatMessageRepository;
+import com.firefist.rag_chat_service.service.store.BinaryFields;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Cold tier of the message history (chat_message_archive).
+ *
+ * Content, retrieved context and context references of an archived message are stored as a single
+ * deflate-compressed payload; chat text typically shrinks 3-5x. Reads decompress back into plain (non-managed)
+ * ChatMessage objects so callers can't tell which tier a message came from.
+ *
+ * - The payload starts with an uncompressed format version byte; a version this code doesn't know is an error,
+ *   never a guess. Payloads written before the version byte start with the zlib header and hold the version 1 fields.
+ */
+@Service
+public class MessageArchive {
+
+    private static final byte FORMAT_VERSION = 1;
+    // first byte of a zlib stream (deflate, 32K window): what unversioned payloads begin with
+    private static final byte UNVERSIONED = 0x78;
+
+    private final ArchivedChatMessageRepository archiveRepository;
+
+    public MessageArchive(ArchivedChatMessageRepository archiveRepository) {
+        this.archiveRepository = archiveRepository;
+    }
+
+    /**
+     * Archived messages of the session, oldest first, starting at offset.
+     */
+    public List<ChatMessage> read(ChatSession session, long offset, int limit) {
+        return archiveRepository.findSlice(session.getId(), offset, limit).stream()
+                .map(a -> toMessage(a, session))
+                .toList();
+    }
+
+    /**
+     * Archived messages of the session with sequenceNumber > afterSeq, in sequence order.
+     */
+    public List<ChatMessage> readAfter(ChatSession session, long afterSeq, int limit) {
+        return archiveRepository.findBySessionIdAndSequenceNumberGreaterThanOrderBySequenceNumberAsc(
+                        session.getId(), afterSeq, PageRequest.ofSize(limit)).stream()
+                .map(a -> toMessage(a, session))
+                .toList();
+    }
+
+    /**
+     * Archived messages by id, in no particular order. The messages carry a session stub holding only the id.
+     */
+    public List<ChatMessage> findByIds(Collection<UUID> ids) {
+        return archiveRepository.findAllById(ids).stream()
+                .map(a -> {
+                    ChatSession session = new ChatSession();
+                    session.setId(a.getSessionId());
+                    return toMessage(a, session);
+                })
+                .toList();
+    }
+
+    static ArchivedChatMessage toArchived(ChatMessage m, UUID sessionId, Instant archivedAt) {
+        return new ArchivedChatMessage(m.getId(), sessionId, m.getSender(), m.getCreatedAt(),
+                m.getSequenceNumber(), archivedAt, compress(m));
+    }
+
+    private static ChatMessage toMessage(ArchivedChatMessage a, ChatSession session) {
+        ChatMessage m = new ChatMessage();
+        m.setId(a.getId());
+        m.setSession(session);
+        m.setSender(a.getSender());
+        m.setCreatedAt(a.getCreatedAt());
+        m.setSequenceNumber(a.getSequenceNumber());
+        byte[] payload = a.getPayload();
+        byte version = payload.length == 0 ? 0 : payload[0];
+        int offset = version == UNVERSIONED ? 0 : 1;
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(
+                new ByteArrayInputStream(payload, offset, payload.length - offset)))) {
+            if (version != FORMAT_VERSION && version != UNVERSIONED) {
+                throw new IOException("Unknown archive payload format version " + version);
+            }
+            m.setContent(BinaryFields.readString(in));
+            m.setRetrievedContext(BinaryFields.readString(in));
+            m.setContextRefs(BinaryFields.readRefs(in));
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Corrupt archived message " + a.getId(), ex);
+        }
+        return m;
+    }
+
+    private static byte[] compress(ChatMessage m) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(FORMAT_VERSION);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes, deflater))) {
+            BinaryFields.writeString(out, m.getContent());
+            BinaryFields.writeString(out, m.getRetrievedContext());
+            BinaryFields.writeRefs(out, m.getContextRefs());
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+}
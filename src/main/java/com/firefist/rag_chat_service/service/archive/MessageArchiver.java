@@ -0,0 +1,162 @@
+package com.firefist.rag_chat_service.service.archive;
+
+import com.firefist.rag_chat_service.model.ArchivedChatMessage;
+import com.firefist.rag_chat_service.model.ChatMessage;
+import com.firefist.rag_chat_service.repository.ChatMessageJdbcRepository;
+import com.firefist.rag_chat_service.repository.ChatMessageRepository;
+import com.firefist.rag_chat_service.repository.ChatSessionJdbcRepository;
+import com.firefist.rag_chat_service.repository.ChatSessionRepository;
+import com.firefist.rag_chat_service.service.cache.SessionCache;
+import com.firefist.rag_chat_service.service.summary.ConversationSummaryService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background mover from chat_message to chat_message_archive.
+ *
+ * Candidates are sessions whose newest message is older than idle-days, and soft-deleted sessions.
+ * Each session is moved oldest-first in batches; every batch is one transaction (insert archive rows,
+ * delete hot rows, bump chat_session.archived_message_count) followed by a pause, so the mover never
+ * holds long locks or saturates the database. Archive inserts ignore duplicate ids, so a batch
+ * interrupted half-way is simply redone on the next run. An archived session's conversation summary is dropped.
+ * Runs on its own thread: a run sleeps between batches for minutes and would otherwise hold a thread of the
+ * shared scheduling pool that journal flushes and heartbeats depend on.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "chat.archive.enabled", havingValue = "true")
+public class MessageArchiver {
+
+    private final ChatMessageRepository messageRepository;
+    private final ChatSessionRepository sessionRepository;
+    private final ChatMessageJdbcRepository jdbcRepository;
+    private final ChatSessionJdbcRepository sessionJdbcRepository;
+    private final SessionCache sessionCache;
+    private final ConversationSummaryService summaryService;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration idleAfter;
+    private final int batchSize;
+    private final long batchPauseMs;
+    private final int sessionsPerRun;
+    private final long intervalMs;
+    private final long initialDelayMs;
+    private final ScheduledExecutorService runner;
+
+    public MessageArchiver(ChatMessageRepository messageRepository,
+                           ChatSessionRepository sessionRepository,
+                           ChatMessageJdbcRepository jdbcRepository,
+                           ChatSessionJdbcRepository sessionJdbcRepository,
+                           SessionCache sessionCache,
+                           ConversationSummaryService summaryService,
+                           TransactionTemplate transactionTemplate,
+                           @Value("${chat.archive.idle-days:30}") long idleDays,
+                           @Value("${chat.archive.batch-size:500}") int batchSize,
+                           @Value("${chat.archive.batch-pause-ms:200}") long batchPauseMs,
+                           @Value("${chat.archive.sessions-per-run:100}") int sessionsPerRun,
+                           @Value("${chat.archive.interval-ms:600000}") long intervalMs,
+                           @Value("${chat.archive.initial-delay-ms:60000}") long initialDelayMs) {
+        this.messageRepository = messageRepository;
+        this.sessionRepository = sessionRepository;
+        this.jdbcRepository = jdbcRepository;
+        this.sessionJdbcRepository = sessionJdbcRepository;
+        this.sessionCache = sessionCache;
+        this.summaryService = summaryService;
+        this.transactionTemplate = transactionTemplate;
+        this.idleAfter = Duration.ofDays(idleDays);
+        this.batchSize = batchSize;
+        this.batchPauseMs = batchPauseMs;
+        this.sessionsPerRun = sessionsPerRun;
+        this.intervalMs = intervalMs;
+        this.initialDelayMs = initialDelayMs;
+        this.runner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "message-archiver");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PostConstruct
+    void start() {
+        runner.scheduleWithFixedDelay(() -> {
+            try {
+                run();
+            } catch (RuntimeException ex) {
+                // an exception would cancel every later run
+                log.warn("Archival run failed", ex);
+            }
+        }, initialDelayMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // interrupts the pause between batches; the current batch's transaction has committed or is redone
+        runner.shutdownNow();
+    }
+
+    public void run() {
+        Set<UUID> candidates = new LinkedHashSet<>(
+                messageRepository.findDeletedSessionIdsWithMessages(PageRequest.ofSize(sessionsPerRun)));
+        if (candidates.size() < sessionsPerRun) {
+            Instant cutoff = Instant.now().minus(idleAfter);
+            candidates.addAll(messageRepository.findIdleSessionIds(cutoff,
+                    PageRequest.ofSize(sessionsPerRun - candidates.size())));
+        }
+        if (candidates.isEmpty()) return;
+
+        long moved = 0;
+        try {
+            for (UUID sessionId : candidates) {
+                moved += archiveSession(sessionId);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("Archived {} messages from {} sessions", moved, candidates.size());
+    }
+
+    private long archiveSession(UUID sessionId) throws InterruptedException {
+        long moved = 0;
+        while (true) {
+            Integer n = transactionTemplate.execute(status -> moveBatch(sessionId));
+            if (n == null || n == 0) break;
+            moved += n;
+            sessionCache.invalidate(sessionId);
+            if (n < batchSize) break;
+            Thread.sleep(batchPauseMs);
+        }
+        // the summary was built from the rows that just moved out
+        if (moved > 0) summaryService.forget(sessionId);
+        return moved;
+    }
+
+    private int moveBatch(UUID sessionId) {
+        // a bulk import into the session holds this lock while it checks the session has nothing archived
+        sessionJdbcRepository.lockArchived(List.of(sessionId));
+        List<ChatMessage> batch = jdbcRepository.findOldestBySession(sessionId, batchSize);
+        if (batch.isEmpty()) return 0;
+        Instant now = Instant.now();
+        List<ArchivedChatMessage> archived = batch.stream()
+                .map(m -> MessageArchive.toArchived(m, sessionId, now))
+                .toList();
+        jdbcRepository.insertArchived(archived);
+        jdbcRepository.deleteByIds(batch.stream().map(ChatMessage::getId).toList());
+        sessionRepository.addArchivedMessages(sessionId.toString(), batch.size());
+        return batch.size();
+    }
+}
@@ -0,0 +1,95 @@
+package com.firefist.rag_chat_service.service.cache;
+
+import com.firefist.rag_chat_service.config.ReadRouting;
+import com.firefist.rag_chat_service.service.tx.TransactionHooks;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Version of each session's message history, the basis of the ETags on GET .../messages: a client
+ * repeating a read with If-None-Match gets its 304 from memory, without a session lookup or a message query.
+ *
+ * - A version is read from the primary (last sequence number, archived and hot message counts) and cached.
+ * - Anything that changes a history calls {@link #invalidate} (new messages, imports) or
+ *   SessionCache.invalidate (archival, deletion); both evict after commit on every node through the
+ *   {@link SessionInvalidationBus}, and an eviction racing a load removes what the load put back.
+ * - Exported as cache.* meters with cache=chat.history.version.
+ */
+@Component
+public class HistoryVersions {
+
+    private static final String CACHE_NAME = "chat.history.version";
+    private static final String SELECT_VERSION_SQL =
+            "SELECT s.last_sequence_number, s.archived_message_count, " +
+            "(SELECT COUNT(*) FROM chat_message m WHERE m.session_id = s.id) " +
+            "FROM chat_session s WHERE s.id = ? AND s.deleted_at IS NULL";
+
+    /**
+     * The history as of one point; hot counts rows, so imported messages (which don't move the sequence
+     * counter) change it too.
+     */
+    public record Version(long lastSequenceNumber, long archived, long hot) {
+
+        /** Weak validator for one view of the history (page, size, filters...); parts may be null. */
+        public String etag(Object... view) {
+            return "W/\"" + Long.toHexString(lastSequenceNumber) + "-" + Long.toHexString(archived) + "-"
+                    + Long.toHexString(hot) + "-" + Integer.toHexString(Arrays.hashCode(view)) + "\"";
+        }
+    }
+
+    private final LoadingCache<UUID, Version> cache;
+    private final SessionInvalidationBus invalidationBus;
+
+    public HistoryVersions(JdbcTemplate jdbcTemplate,
+                           SessionInvalidationBus invalidationBus,
+                           MeterRegistry meterRegistry,
+                           @Value("${chat.session-cache.max-size:100000}") long maxSize,
+                           @Value("${chat.session-cache.ttl-ms:300000}") long ttlMs) {
+        this.invalidationBus = invalidationBus;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .recordStats()
+                // a lagging replica would hand out a version older than what was already served
+                .build(id -> ReadRouting.onPrimary(() -> jdbcTemplate.query(SELECT_VERSION_SQL,
+                        rs -> rs.next() ? new Version(rs.getLong(1), rs.getLong(2), rs.getLong(3)) : null,
+                        id.toString())));
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        invalidationBus.subscribe(cache::invalidate);
+        invalidationBus.subscribeHistory(cache::invalidate);
+    }
+
+    /** Null if the session doesn't exist or is deleted. */
+    public Version current(UUID sessionId) {
+        return cache.get(sessionId);
+    }
+
+    /**
+     * The session's messages changed. Inside a transaction the eviction waits for the commit, so a
+     * concurrent reader can't cache the old version afterwards.
+     */
+    public void invalidate(UUID sessionId) {
+        invalidate(List.of(sessionId));
+    }
+
+    public void invalidate(Collection<UUID> sessionIds) {
+        List<UUID> ids = List.copyOf(sessionIds);
+        TransactionHooks.afterCommit(() -> ids.forEach(this::evict));
+    }
+
+    private void evict(UUID id) {
+        cache.invalidate(id);
+        invalidationBus.publishHistory(id);
+    }
+}
@@ -0,0 +1,142 @@
+package com.firefist.rag_chat_service.service.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Cross-node invalidations through the session_invalidation table, used whenever replicas run side by side
+ * (chat.cluster.enabled=true, or chat.session-cache.invalidation=jdbc).
+ *
+ * - publish delivers to this node's listeners at once and appends a row; every node polls for rows past the
+ *   highest id it has seen every poll-ms and delivers those of other nodes. A rename or delete on the owner
+ *   thus reaches a WebSocket turn for the session on any other replica within poll-ms, not after the cache TTL.
+ * - Ids are assigned on insert but may commit out of order, so each poll re-reads a window of recent ids and
+ *   skips the ones it delivered. Delivering twice is harmless, an eviction is idempotent.
+ * - If the database can't be reached, publishing still evicts locally and other nodes fall back to the TTL.
+ * - Rows older than retention-ms are purged in the background.
+ */
+@Slf4j
+@Component
+@ConditionalOnExpression("'${chat.session-cache.invalidation:local}' == 'jdbc' or '${chat.cluster.enabled:false}' == 'true'")
+public class JdbcSessionInvalidationBus implements SessionInvalidationBus {
+
+    static final String SESSION = "SESSION";
+    static final String HISTORY = "HISTORY";
+    // ids allocated before the newest one seen whose insert may not have committed yet
+    private static final int REORDER_WINDOW = 256;
+
+    private static final String INSERT_SQL =
+            "INSERT INTO session_invalidation (session_id, kind, origin, created_at) VALUES (?, ?, ?, CURRENT_TIMESTAMP(6))";
+    private static final String MAX_ID_SQL = "SELECT COALESCE(MAX(id), 0) FROM session_invalidation";
+    private static final String SELECT_AFTER_SQL =
+            "SELECT id, session_id, kind, origin FROM session_invalidation WHERE id > ? ORDER BY id LIMIT ?";
+    private static final String PURGE_SQL =
+            "DELETE FROM session_invalidation WHERE created_at < CURRENT_TIMESTAMP(6) - INTERVAL ? MICROSECOND LIMIT 1000";
+
+    private record Event(long id, UUID sessionId, String kind, String origin) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate requiresNew;
+    private final long retentionMs;
+    private final int batchSize;
+    private final String self = UUID.randomUUID().toString();
+    private final List<Consumer<UUID>> listeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<UUID>> historyListeners = new CopyOnWriteArrayList<>();
+    // ids delivered within the reorder window, only touched by the polling thread
+    private final NavigableSet<Long> delivered = new TreeSet<>();
+    private long lastSeen;
+
+    public JdbcSessionInvalidationBus(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                      @Value("${chat.session-cache.invalidation-retention-ms:3600000}") long retentionMs,
+                                      @Value("${chat.session-cache.invalidation-batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.retentionMs = retentionMs;
+        this.batchSize = batchSize;
+        // the caches start empty, nothing published before this node came up concerns them
+        this.lastSeen = jdbcTemplate.queryForObject(MAX_ID_SQL, Long.class);
+    }
+
+    @Override
+    public void publish(UUID sessionId) {
+        listeners.forEach(l -> l.accept(sessionId));
+        append(sessionId, SESSION);
+    }
+
+    @Override
+    public void subscribe(Consumer<UUID> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void publishHistory(UUID sessionId) {
+        historyListeners.forEach(l -> l.accept(sessionId));
+        append(sessionId, HISTORY);
+    }
+
+    @Override
+    public void subscribeHistory(Consumer<UUID> listener) {
+        historyListeners.add(listener);
+    }
+
+    @Scheduled(fixedDelayString = "${chat.session-cache.invalidation-poll-ms:1000}")
+    public void poll() {
+        try {
+            List<Event> events;
+            long before;
+            do {
+                before = lastSeen;
+                events = jdbcTemplate.query(SELECT_AFTER_SQL, (rs, n) -> new Event(rs.getLong("id"),
+                        UUID.fromString(rs.getString("session_id")), rs.getString("kind"), rs.getString("origin")),
+                        Math.max(0, lastSeen - REORDER_WINDOW), batchSize);
+                for (Event e : events) {
+                    if (!delivered.add(e.id())) continue;
+                    lastSeen = Math.max(lastSeen, e.id());
+                    if (self.equals(e.origin())) continue;
+                    (HISTORY.equals(e.kind()) ? historyListeners : listeners).forEach(l -> l.accept(e.sessionId()));
+                }
+                delivered.headSet(lastSeen - REORDER_WINDOW, true).clear();
+                // a full batch that moved forward may have more behind it
+            } while (events.size() == batchSize && lastSeen > before);
+        } catch (RuntimeException ex) {
+            log.warn("Session invalidation poll failed, retrying: {}", ex.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${chat.session-cache.invalidation-purge-interval-ms:600000}")
+    public void purge() {
+        try {
+            int deleted;
+            do {
+                deleted = jdbcTemplate.update(PURGE_SQL, retentionMs * 1000);
+            } while (deleted == 1000);
+        } catch (RuntimeException ex) {
+            log.debug("Session invalidation purge failed: {}", ex.getMessage());
+        }
+    }
+
+    private void append(UUID sessionId, String kind) {
+        try {
+            // publishers run in afterCommit, where a plain update would join the finished transaction and never commit
+            requiresNew.executeWithoutResult(status -> jdbcTemplate.update(INSERT_SQL, sessionId.toString(), kind, self));
+        } catch (RuntimeException ex) {
+            log.warn("Could not publish {} invalidation of {} to other nodes: {}", kind, sessionId, ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.firefist.rag_chat_service.service.cache;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Delivers invalidations synchronously to listeners in this JVM only. Fine for a single replica;
+ * clustered deployments get JdbcSessionInvalidationBus instead.
+ */
+@Component
+@ConditionalOnExpression("'${chat.session-cache.invalidation:local}' != 'jdbc' and '${chat.cluster.enabled:false}' != 'true'")
+public class LocalSessionInvalidationBus implements SessionInvalidationBus {
+
+    private final List<Consumer<UUID>> listeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<UUID>> historyListeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(UUID sessionId) {
+        listeners.forEach(l -> l.accept(sessionId));
+    }
+
+    @Override
+    public void subscribe(Consumer<UUID> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void publishHistory(UUID sessionId) {
+        historyListeners.forEach(l -> l.accept(sessionId));
+    }
+
+    @Override
+    public void subscribeHistory(Consumer<UUID> listener) {
+        historyListeners.add(listener);
+    }
+}
@@ -0,0 +1,78 @@
+package com.firefist.rag_chat_service.service.cache;
+
+import com.firefist.rag_chat_service.config.ReadRouting;
+import com.firefist.rag_chat_service.model.ChatSession;
+import com.firefist.rag_chat_service.repository.ChatSessionRepository;
+import com.firefist.rag_chat_service.service.tx.TransactionHooks;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Bounded read-through cache of ChatSession rows keyed by id.
+ *
+ * - Soft-deleted sessions are cached too (deletion is final), so lookups of deleted sessions don't hit the DB either.
+ * - Mutations call {@link #invalidate} which evicts after the transaction commits and tells other
+ *   nodes through the {@link SessionInvalidationBus}.
+ * - Exported as cache.* meters with cache=chat.session (hits/misses, load duration, evictions)
+ *   plus chat.session.cache.hit.ratio.
+ */
+@Component
+public class SessionCache {
+
+    private static final String CACHE_NAME = "chat.session";
+
+    private final LoadingCache<UUID, SessionSnapshot> cache;
+    private final SessionInvalidationBus invalidationBus;
+
+    public SessionCache(ChatSessionRepository repository,
+                        SessionInvalidationBus invalidationBus,
+                        MeterRegistry meterRegistry,
+                        @Value("${chat.session-cache.max-size:100000}") long maxSize,
+                        @Value("${chat.session-cache.ttl-ms:300000}") long ttlMs) {
+        this.invalidationBus = invalidationBus;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .recordStats()
+                // shared by every client: load from the primary, a lagging replica would cache a stale row
+                .build(id -> ReadRouting.onPrimary(() -> repository.findById(id).map(SessionSnapshot::of).orElse(null)));
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        Gauge.builder("chat.session.cache.hit.ratio", cache, c -> c.stats().hitRate())
+                .description("Session cache hit ratio since startup")
+                .register(meterRegistry);
+        invalidationBus.subscribe(cache::invalidate);
+    }
+
+    /**
+     * Session with the given id unless it doesn't exist or is soft-deleted.
+     * The returned entity is detached and not shared with other callers.
+     */
+    public Optional<ChatSession> findActive(UUID id) {
+        SessionSnapshot snapshot = cache.get(id);
+        if (snapshot == null || snapshot.isDeleted()) return Optional.empty();
+        return Optional.of(snapshot.toEntity());
+    }
+
+    /**
+     * Evicts the session on every node. Inside a transaction the eviction waits for the commit,
+     * so a concurrent reader can't put the old row back afterwards.
+     */
+    public void invalidate(UUID id) {
+        TransactionHooks.afterCommit(() -> evict(id));
+    }
+
+    private void evict(UUID id) {
+        cache.invalidate(id);
+        invalidationBus.publish(id);
+    }
+}
@@ -0,0 +1,19 @@
+package com.firefist.rag_chat_service.service.cache;
+
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Fans session invalidations out to every node's {@link SessionCache}, and history changes (new or
+ * imported messages) to every node's {@link HistoryVersions}.
+ */
+public interface SessionInvalidationBus {
+
+    void publish(UUID sessionId);
+
+    void subscribe(Consumer<UUID> listener);
+
+    void publishHistory(UUID sessionId);
+
+    void subscribeHistory(Consumer<UUID> listener);
+}
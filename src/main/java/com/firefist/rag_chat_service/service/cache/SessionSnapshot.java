@@ -0,0 +1,39 @@
+package com.firefist.rag_chat_service.service.cache;
+
+import com.firefist.rag_chat_service.model.ChatSession;
+import lombok.Value;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Immutable copy of a ChatSession row as held by {@link SessionCache}.
+ */
+@Value
+public class SessionSnapshot {
+    UUID id;
+    String userId;
+    String title;
+    boolean favorite;
+    Instant createdAt;
+    Instant updatedAt;
+    Instant deletedAt;
+    long archivedMessageCount;
+
+    public static SessionSnapshot of(ChatSession s) {
+        return new SessionSnapshot(s.getId(), s.getUserId(), s.getTitle(), s.isFavorite(),
+                s.getCreatedAt(), s.getUpdatedAt(), s.getDeletedAt(), s.getArchivedMessageCount());
+    }
+
+    public boolean isDeleted() {
+        return deletedAt != null;
+    }
+
+    /**
+     * Fresh detached entity, safe to hand out and to use as the session of a new ChatMessage.
+     */
+    public ChatSession toEntity() {
+        // the sequence counter changes with every message, it is never read from the cached copy
+        return new ChatSession(id, userId, title, favorite, createdAt, updatedAt, deletedAt, archivedMessageCount, 0);
+    }
+}
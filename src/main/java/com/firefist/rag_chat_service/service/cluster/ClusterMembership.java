@@ -0,0 +1,19 @@
+package com.firefist.rag_chat_service.service.cluster;
+
+import java.util.UUID;
+
+/**
+ * The replicas currently serving, as a {@link HashRing}, and which of them this one is.
+ */
+public interface ClusterMembership {
+
+    ClusterNode self();
+
+    HashRing ring();
+
+    /** The node that should serve the session; this one while the ring doesn't list anybody. */
+    default ClusterNode ownerOf(UUID sessionId) {
+        ClusterNode owner = ring().owner(sessionId.toString());
+        return owner != null ? owner : self();
+    }
+}
@@ -0,0 +1,7 @@
+package com.firefist.rag_chat_service.service.cluster;
+
+/**
+ * A replica: its id (stable across restarts, e.g. the pod name) and the base URL other replicas reach it at.
+ */
+public record ClusterNode(String id, String baseUrl) {
+}
@@ -0,0 +1,73 @@
+package com.firefist.rag_chat_service.service.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Consistent-hash ring mapping keys (session ids) to nodes. Immutable; membership changes build a new one.
+ *
+ * - Every node gets virtualNodes points on the ring, a key belongs to the node of the first point at or after
+ *   its hash. With enough points the shares are even, and adding or removing a node only moves the keys
+ *   that node gains or loses, about 1/N of them.
+ * - The hash is fixed (FNV-1a 64 with a murmur3 finalizer), so all replicas agree on owners given the same members.
+ */
+public final class HashRing {
+
+    private final List<ClusterNode> nodes;
+    private final long[] points;
+    private final ClusterNode[] owners;
+
+    public HashRing(Collection<ClusterNode> members, int virtualNodes) {
+        List<ClusterNode> sorted = new ArrayList<>(members);
+        sorted.sort(Comparator.comparing(ClusterNode::id));
+        this.nodes = List.copyOf(sorted);
+
+        int n = sorted.size() * virtualNodes;
+        long[][] entries = new long[n][];
+        int k = 0;
+        for (int node = 0; node < sorted.size(); node++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                entries[k++] = new long[]{hash(sorted.get(node).id() + "#" + v), node};
+            }
+        }
+        // equal points (practically never) go to the node with the smaller id, on every replica alike
+        Arrays.sort(entries, Comparator.<long[]>comparingLong(e -> e[0]).thenComparingLong(e -> e[1]));
+        this.points = new long[n];
+        this.owners = new ClusterNode[n];
+        for (int i = 0; i < n; i++) {
+            points[i] = entries[i][0];
+            owners[i] = sorted.get((int) entries[i][1]);
+        }
+    }
+
+    public List<ClusterNode> nodes() {
+        return nodes;
+    }
+
+    /** Owner of the key, null for an empty ring. */
+    public ClusterNode owner(String key) {
+        if (points.length == 0) return null;
+        int i = Arrays.binarySearch(points, hash(key));
+        if (i < 0) i = -i - 1;
+        return owners[i == points.length ? 0 : i];
+    }
+
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        // FNV alone clusters similar keys (node-1#0, node-1#1, ...), the finalizer spreads them
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
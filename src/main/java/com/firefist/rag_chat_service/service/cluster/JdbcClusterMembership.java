@@ -0,0 +1,103 @@
+package com.firefist.rag_chat_service.service.cluster;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Members found through heartbeats in the cluster_node table, so replicas can come and go without a config change.
+ *
+ * - Every node upserts its row each heartbeat-ms and reads the rows heard from within expiry-ms; the ring is
+ *   rebuilt when that set changes. Timestamps come from the database clock.
+ * - Scale-out: a new node owns its share once the others have seen its first heartbeat. Scale-in: a node deletes
+ *   its row on shutdown, a crashed one drops out after expiry-ms. Until every replica has caught up they may
+ *   disagree on an owner; SessionAffinityFilter forwards at most once, so that costs a cold cache, not a loop.
+ * - If the database can't be reached the last known ring is kept.
+ */
+@Slf4j
+public class JdbcClusterMembership implements ClusterMembership {
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO cluster_node (node_id, base_url, heartbeat_at) VALUES (?, ?, CURRENT_TIMESTAMP(6)) "
+                    + "ON DUPLICATE KEY UPDATE base_url = VALUES(base_url), heartbeat_at = CURRENT_TIMESTAMP(6)";
+    private static final String SELECT_LIVE_SQL =
+            "SELECT node_id, base_url FROM cluster_node WHERE heartbeat_at > CURRENT_TIMESTAMP(6) - INTERVAL ? MICROSECOND";
+    private static final String DELETE_SQL = "DELETE FROM cluster_node WHERE node_id = ?";
+    // rows of nodes gone for a long time; the node id of a restarted pod usually comes back, others don't
+    private static final String PURGE_SQL =
+            "DELETE FROM cluster_node WHERE heartbeat_at < CURRENT_TIMESTAMP(6) - INTERVAL ? MICROSECOND";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ClusterNode self;
+    private final int virtualNodes;
+    private final long expiryMs;
+    private volatile Set<ClusterNode> members;
+    private volatile HashRing ring;
+
+    public JdbcClusterMembership(JdbcTemplate jdbcTemplate, ClusterNode self, int virtualNodes, long expiryMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.self = self;
+        this.virtualNodes = virtualNodes;
+        this.expiryMs = expiryMs;
+        // alone until the first heartbeat: everything is served locally
+        this.members = Set.of(self);
+        this.ring = new HashRing(members, virtualNodes);
+    }
+
+    @Override
+    public ClusterNode self() {
+        return self;
+    }
+
+    @Override
+    public HashRing ring() {
+        return ring;
+    }
+
+    @Scheduled(fixedDelayString = "${chat.cluster.heartbeat-ms:5000}")
+    public void heartbeat() {
+        try {
+            jdbcTemplate.update(UPSERT_SQL, self.id(), self.baseUrl());
+            List<ClusterNode> live = jdbcTemplate.query(SELECT_LIVE_SQL,
+                    (rs, n) -> new ClusterNode(rs.getString("node_id"), rs.getString("base_url")), expiryMs * 1000);
+            Set<ClusterNode> current = new HashSet<>(live);
+            // our own row may have been written a moment too late for the read on a slow database
+            current.add(self);
+            if (!current.equals(members)) {
+                log.info("Cluster membership changed: {} -> {}", ids(members), ids(current));
+                members = current;
+                ring = new HashRing(current, virtualNodes);
+            }
+        } catch (RuntimeException ex) {
+            log.warn("Cluster heartbeat failed, keeping {} members: {}", members.size(), ex.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${chat.cluster.purge-interval-ms:3600000}")
+    public void purgeDeparted() {
+        try {
+            jdbcTemplate.update(PURGE_SQL, expiryMs * 1000 * 100);
+        } catch (RuntimeException ex) {
+            log.debug("Cluster purge failed: {}", ex.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void leave() {
+        // the others stop routing here after their next heartbeat instead of after expiry-ms
+        try {
+            jdbcTemplate.update(DELETE_SQL, self.id());
+        } catch (RuntimeException ex) {
+            log.warn("Could not remove {} from cluster_node: {}", self.id(), ex.getMessage());
+        }
+    }
+
+    private static List<String> ids(Set<ClusterNode> nodes) {
+        return nodes.stream().map(ClusterNode::id).sorted().toList();
+    }
+}
@@ -0,0 +1,43 @@
+package com.firefist.rag_chat_service.service.cluster;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed members from configuration (chat.cluster.nodes=id=url,...), the same list on every replica.
+ * Nodes aren't health-checked: a request for a node that can't be reached is served locally (SessionAffinityFilter).
+ */
+public class StaticClusterMembership implements ClusterMembership {
+
+    private final ClusterNode self;
+    private final HashRing ring;
+
+    public StaticClusterMembership(String selfId, List<String> nodes, int virtualNodes) {
+        List<ClusterNode> members = new ArrayList<>();
+        ClusterNode found = null;
+        for (String entry : nodes) {
+            String trimmed = entry.trim();
+            if (trimmed.isEmpty()) continue;
+            int eq = trimmed.indexOf('=');
+            if (eq <= 0) throw new IllegalArgumentException("chat.cluster.nodes entries are id=url, got: " + trimmed);
+            ClusterNode node = new ClusterNode(trimmed.substring(0, eq).trim(), trimmed.substring(eq + 1).trim());
+            members.add(node);
+            if (node.id().equals(selfId)) found = node;
+        }
+        if (found == null) {
+            throw new IllegalArgumentException("chat.cluster.node-id '" + selfId + "' is not listed in chat.cluster.nodes");
+        }
+        this.self = found;
+        this.ring = new HashRing(members, virtualNodes);
+    }
+
+    @Override
+    public ClusterNode self() {
+        return self;
+    }
+
+    @Override
+    public HashRing ring() {
+        return ring;
+    }
+}
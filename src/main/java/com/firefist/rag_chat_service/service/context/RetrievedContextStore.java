@@ -0,0 +1,121 @@
+package com.firefist.rag_chat_service.service.context;
+
+import com.firefist.rag_chat_service.model.ChatMessage;
+import com.firefist.rag_chat_service.model.ContextRef;
+import com.firefist.rag_chat_service.model.RetrievedChunk;
+import com.firefist.rag_chat_service.repository.RetrievedChunkRepository;
+import com.firefist.rag_chat_service.service.retrieval.RetrievalResult;
+import com.firefist.rag_chat_service.service.tx.TransactionHooks;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Stores retrieved snippets as references instead of copying their text into every message.
+ *
+ * - Chunk text goes to retrieved_chunk once, keyed by a 128-bit SHA-256 prefix of the text.
+ * - Messages keep only {@link ContextRef}s (hash, source, score, optional excerpt).
+ * - Hashes written recently are remembered, so hot chunks skip the upsert entirely.
+ */
+@Service
+public class RetrievedContextStore {
+
+    // same separator the joined retrievedContext text always used
+    public static final String SNIPPET_SEPARATOR = "\n\n---\n\n";
+
+    private static final String UPSERT_CHUNK_SQL =
+            "INSERT INTO retrieved_chunk (content_hash, content, created_at) VALUES (?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE content_hash = content_hash";
+
+    private final RetrievedChunkRepository chunkRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final int excerptChars;
+    private final Cache<String, Boolean> knownChunks;
+
+    public RetrievedContextStore(RetrievedChunkRepository chunkRepository,
+                                 JdbcTemplate jdbcTemplate,
+                                 @Value("${chat.context.excerpt-chars:80}") int excerptChars,
+                                 @Value("${chat.context.known-chunks:50000}") long knownChunks) {
+        this.chunkRepository = chunkRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.excerptChars = excerptChars;
+        this.knownChunks = Caffeine.newBuilder().maximumSize(knownChunks).build();
+    }
+
+    /**
+     * Persists any chunk text not stored yet and returns the references to keep on the message.
+     */
+    public List<ContextRef> store(List<RetrievalResult> results) {
+        List<ContextRef> refs = new ArrayList<>(results.size());
+        Map<String, String> toWrite = new LinkedHashMap<>();
+        for (RetrievalResult r : results) {
+            String hash = hash(r.getSnippet());
+            refs.add(new ContextRef(hash, r.getSource(), r.getScore(), excerpt(r.getSnippet())));
+            if (knownChunks.getIfPresent(hash) == null) toWrite.put(hash, r.getSnippet());
+        }
+        if (toWrite.isEmpty()) return refs;
+
+        Timestamp now = Timestamp.from(Instant.now());
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        List<Map.Entry<String, String>> rows = new ArrayList<>(toWrite.entrySet());
+        jdbcTemplate.batchUpdate(UPSERT_CHUNK_SQL, rows, rows.size(), (ps, e) -> {
+            ps.setString(1, e.getKey());
+            ps.setString(2, e.getValue());
+            ps.setTimestamp(3, now, utc);
+        });
+        // only remember them once they are really committed
+        TransactionHooks.afterCommit(() -> toWrite.keySet().forEach(h -> knownChunks.put(h, Boolean.TRUE)));
+        return refs;
+    }
+
+    /**
+     * Chunk texts for every reference on the given messages, keyed by hash (one query).
+     */
+    public Map<String, String> loadTexts(Collection<ChatMessage> messages) {
+        Set<String> ids = messages.stream()
+                .map(ChatMessage::getContextRefs)
+                .filter(Objects::nonNull)
+                .flatMap(List::stream)
+                .map(ContextRef::getId)
+                .collect(Collectors.toSet());
+        if (ids.isEmpty()) return Map.of();
+        return chunkRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(RetrievedChunk::getContentHash, RetrievedChunk::getContent));
+    }
+
+    /**
+     * Full retrieved context of a message as joined text: expanded references, or the legacy/free-text column.
+     */
+    public static String expand(ChatMessage m, Map<String, String> texts) {
+        List<ContextRef> refs = m.getContextRefs();
+        if (refs == null || refs.isEmpty()) return m.getRetrievedContext();
+        return refs.stream()
+                .map(ref -> texts.getOrDefault(ref.getId(), ref.getExcerpt()))
+                .filter(Objects::nonNull)
+                .collect(Collectors.joining(SNIPPET_SEPARATOR));
+    }
+
+    private String excerpt(String text) {
+        if (excerptChars <= 0 || text == null) return null;
+        return text.length() <= excerptChars ? text : text.substring(0, excerptChars);
+    }
+
+    static String hash(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
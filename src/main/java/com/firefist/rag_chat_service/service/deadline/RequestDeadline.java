@@ -0,0 +1,129 @@
+package com.firefist.rag_chat_service.service.deadline;
+
+import com.firefist.rag_chat_service.exception.RequestCancelledException;
+
+import java.time.Duration;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Supplier;
+
+/**
+ * Deadline and cancellation of one chat turn, carried on the thread that runs it.
+ *
+ * - Created by {@link RequestDeadlines#start}, which also cancels it when the time is up; the code running
+ *   the turn {@link #bind}s it, code further down finds it through {@link #current()}.
+ * - {@link #cancel} may come from any thread (deadline timer, client gone). Work wrapped in
+ *   {@link #interruptible} is interrupted, so a blocked provider call or slot wait ends right away.
+ *   Elsewhere nothing is interrupted (JDBC doesn't take interrupts well); the turn stops at its next {@link #check}.
+ */
+public final class RequestDeadline {
+
+    public enum Reason {
+        DEADLINE, DISCONNECT;
+
+        public String tag() {
+            return name().toLowerCase();
+        }
+    }
+
+    /**
+     * Ends the binding opened by {@link #bind()}.
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final ThreadLocal<RequestDeadline> CURRENT = new ThreadLocal<>();
+
+    private final long deadlineNanos;
+    private volatile Reason cancelled;
+    // guarded by this
+    private Thread interruptible;
+    private ScheduledFuture<?> timer;
+    private boolean closed;
+
+    RequestDeadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /** The deadline of the turn running on this thread, null outside of one. */
+    public static RequestDeadline current() {
+        return CURRENT.get();
+    }
+
+    /** Throws if the turn running on this thread was cancelled or is past its deadline. */
+    public static void checkCurrent() {
+        RequestDeadline d = CURRENT.get();
+        if (d != null) d.check();
+    }
+
+    /**
+     * Runs work so that cancelling the current turn interrupts it. A failure caused by the cancellation
+     * surfaces as {@link RequestCancelledException}; the interrupt doesn't outlive the call.
+     */
+    public static <T> T interruptible(Supplier<T> work) {
+        RequestDeadline d = CURRENT.get();
+        if (d == null) return work.get();
+        d.check();
+        synchronized (d) {
+            d.interruptible = Thread.currentThread();
+        }
+        try {
+            return work.get();
+        } catch (RequestCancelledException ex) {
+            throw ex;
+        } catch (RuntimeException ex) {
+            if (d.cancelled != null) throw new RequestCancelledException(d.cancelled, ex);
+            throw ex;
+        } finally {
+            synchronized (d) {
+                d.interruptible = null;
+                // cancel() interrupts only under this lock, so no interrupt can arrive after this
+                if (d.cancelled != null) Thread.interrupted();
+            }
+        }
+    }
+
+    public Scope bind() {
+        RequestDeadline previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> {
+            if (previous == null) CURRENT.remove();
+            else CURRENT.set(previous);
+        };
+    }
+
+    public Duration remaining() {
+        return Duration.ofNanos(Math.max(0, deadlineNanos - System.nanoTime()));
+    }
+
+    /** Why the turn was cancelled, null while it may go on. */
+    public Reason cancelled() {
+        return cancelled;
+    }
+
+    public void cancel(Reason reason) {
+        synchronized (this) {
+            if (cancelled != null || closed) return;
+            cancelled = reason;
+            if (interruptible != null) interruptible.interrupt();
+        }
+    }
+
+    public void check() {
+        if (cancelled == null && System.nanoTime() - deadlineNanos >= 0) cancel(Reason.DEADLINE);
+        Reason reason = cancelled;
+        if (reason != null) throw new RequestCancelledException(reason);
+    }
+
+    /** The turn is over: later cancels are no-ops, the deadline timer is dropped. */
+    public synchronized void close() {
+        closed = true;
+        if (timer != null) timer.cancel(false);
+    }
+
+    synchronized void arm(ScheduledFuture<?> timer) {
+        if (closed) timer.cancel(false);
+        else this.timer = timer;
+    }
+}
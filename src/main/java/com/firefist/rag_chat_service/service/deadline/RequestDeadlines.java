@@ -0,0 +1,73 @@
+package com.firefist.rag_chat_service.service.deadline;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands out {@link RequestDeadline}s for chat turns and cancels them when their time is up.
+ *
+ * - Timeout: the client's X-Request-Timeout-Ms if given, else chat.deadline.default-ms; at most chat.deadline.max-ms.
+ * - chat.deadline.abandoned decides what happens to a cancelled turn: discard saves nothing, record keeps
+ *   the user's message, and the reply too if it was complete when the turn was given up.
+ * - chat.turns.abandoned{reason=deadline|disconnect, outcome=discarded|recorded}.
+ */
+@Component
+public class RequestDeadlines {
+
+    public static final String TIMEOUT_HEADER = "X-Request-Timeout-Ms";
+
+    private final ScheduledThreadPoolExecutor timer;
+    private final MeterRegistry meterRegistry;
+    private final long defaultMs;
+    private final long maxMs;
+    private final boolean recordAbandoned;
+
+    public RequestDeadlines(MeterRegistry meterRegistry,
+                            @Value("${chat.deadline.default-ms:30000}") long defaultMs,
+                            @Value("${chat.deadline.max-ms:120000}") long maxMs,
+                            @Value("${chat.deadline.abandoned:discard}") String abandoned) {
+        this.meterRegistry = meterRegistry;
+        this.defaultMs = defaultMs;
+        this.maxMs = maxMs;
+        this.recordAbandoned = "record".equalsIgnoreCase(abandoned);
+        this.timer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "request-deadline");
+            t.setDaemon(true);
+            return t;
+        });
+        // finished turns drop their timer, don't keep them queued until they would have fired
+        this.timer.setRemoveOnCancelPolicy(true);
+    }
+
+    /** Starts the clock for a turn; requestedMs null or not positive means the default. */
+    public RequestDeadline start(Long requestedMs) {
+        long ms = requestedMs == null || requestedMs <= 0 ? defaultMs : Math.min(requestedMs, maxMs);
+        RequestDeadline deadline = new RequestDeadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ms));
+        deadline.arm(timer.schedule(() -> deadline.cancel(RequestDeadline.Reason.DEADLINE), ms, TimeUnit.MILLISECONDS));
+        return deadline;
+    }
+
+    public boolean recordAbandoned() {
+        return recordAbandoned;
+    }
+
+    public void abandoned(RequestDeadline.Reason reason) {
+        Counter.builder("chat.turns.abandoned")
+                .description("Chat turns given up because of their deadline or a disconnected client")
+                .tag("reason", reason.tag())
+                .tag("outcome", recordAbandoned ? "recorded" : "discarded")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+}
@@ -0,0 +1,164 @@
+package com.firefist.rag_chat_service.service.export;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.firefist.rag_chat_service.dto.MessageResponse;
+import com.firefist.rag_chat_service.model.ChatMessage;
+import com.firefist.rag_chat_service.model.ChatSession;
+import com.firefist.rag_chat_service.repository.ChatMessageJdbcRepository;
+import com.firefist.rag_chat_service.repository.ChatSessionRepository;
+import com.firefist.rag_chat_service.service.archive.MessageArchive;
+import com.firefist.rag_chat_service.service.cache.SessionCache;
+import com.firefist.rag_chat_service.service.context.RetrievedContextStore;
+import com.firefist.rag_chat_service.service.store.MessageWriter;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Writes whole transcripts as NDJSON (one MessageResponse per line) with bounded memory.
+ *
+ * - A session is read in keyset chunks of fetch-size messages by sequence number, each in its own short
+ *   read-only transaction: archived rows, hot rows and messages still pending in the write-behind journal
+ *   are merged per chunk. No connection is held while a slow client downloads.
+ * - At most one chunk (and its chunk texts with include=context) is held at a time.
+ */
+@Service
+public class TranscriptExporter {
+
+    private final ChatSessionRepository sessionRepository;
+    private final SessionCache sessionCache;
+    private final ChatMessageJdbcRepository jdbcRepository;
+    private final MessageArchive messageArchive;
+    private final MessageWriter messageWriter;
+    private final RetrievedContextStore contextStore;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter lineWriter;
+    private final TransactionTemplate readOnlyTx;
+    private final int fetchSize;
+
+    public TranscriptExporter(ChatSessionRepository sessionRepository,
+                              SessionCache sessionCache,
+                              ChatMessageJdbcRepository jdbcRepository,
+                              MessageArchive messageArchive,
+                              MessageWriter messageWriter,
+                              RetrievedContextStore contextStore,
+                              EntityManager entityManager,
+                              ObjectMapper objectMapper,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${chat.export.fetch-size:500}") int fetchSize) {
+        this.sessionRepository = sessionRepository;
+        this.sessionCache = sessionCache;
+        this.jdbcRepository = jdbcRepository;
+        this.messageArchive = messageArchive;
+        this.messageWriter = messageWriter;
+        this.contextStore = contextStore;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        // flushed once per batch, not per line
+        this.lineWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Checked before the response is committed, so a missing session can still get a 404.
+     */
+    public boolean sessionExists(UUID sessionId) {
+        return sessionCache.findActive(sessionId).isPresent();
+    }
+
+    public void exportSession(UUID sessionId, boolean includeContext, OutputStream out) throws IOException {
+        try (JsonGenerator gen = generator(out)) {
+            writeSession(sessionId, includeContext, gen);
+        }
+    }
+
+    /**
+     * Every live session of the user, oldest session first.
+     */
+    public void exportUser(String userId, boolean includeContext, OutputStream out) throws IOException {
+        List<UUID> sessionIds = sessionRepository.findActiveIdsByUserId(userId);
+        try (JsonGenerator gen = generator(out)) {
+            for (UUID sessionId : sessionIds) {
+                writeSession(sessionId, includeContext, gen);
+            }
+        }
+    }
+
+    private JsonGenerator generator(OutputStream out) throws IOException {
+        JsonGenerator gen = objectMapper.getFactory().createGenerator(out);
+        // the servlet owns the response stream
+        gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        // lines are terminated explicitly instead of separating root values with a space
+        gen.setRootValueSeparator(null);
+        return gen;
+    }
+
+    private void writeSession(UUID sessionId, boolean includeContext, JsonGenerator gen) throws IOException {
+        // taken before the first chunk: anything flushed after this point is in the rows we read, anything
+        // flushed before it may be in both and is deduplicated below
+        List<ChatMessage> pending = messageWriter.pending(sessionId);
+        long afterSeq = -1;
+        while (true) {
+            long after = afterSeq;
+            // the connection is held only while a chunk is read, never while the client downloads it
+            Chunk chunk = readOnlyTx.execute(status -> readChunk(sessionId, after, pending, includeContext));
+            if (chunk == null || chunk.messages().isEmpty()) break;
+            for (ChatMessage m : chunk.messages()) {
+                lineWriter.writeValue(gen, MessageResponse.of(m, chunk.context()));
+                gen.writeRaw('\n');
+            }
+            gen.flush();
+            afterSeq = chunk.messages().get(chunk.messages().size() - 1).getSequenceNumber();
+        }
+    }
+
+    /**
+     * The next fetch-size messages after afterSeq from both tiers and the journal, in sequence order;
+     * null once the session is gone.
+     */
+    private Chunk readChunk(UUID sessionId, long afterSeq, List<ChatMessage> pending, boolean includeContext) {
+        ChatSession session = sessionRepository.findById(sessionId).orElse(null);
+        if (session == null || session.getDeletedAt() != null) return null;
+
+        // archive and hot rows come from this transaction's snapshot, a message the archiver moves
+        // between two chunks is read from exactly one tier
+        Map<UUID, ChatMessage> merged = new LinkedHashMap<>();
+        if (session.getArchivedMessageCount() > 0) {
+            messageArchive.readAfter(session, afterSeq, fetchSize).forEach(m -> merged.put(m.getId(), m));
+        }
+        jdbcRepository.findBySequenceRange(sessionId, afterSeq, Long.MAX_VALUE, fetchSize)
+                .forEach(m -> merged.put(m.getId(), m));
+        for (ChatMessage m : pending) {
+            // already flushed, the row wins
+            if (m.getSequenceNumber() != null && m.getSequenceNumber() > afterSeq) merged.putIfAbsent(m.getId(), m);
+        }
+        List<ChatMessage> messages = merged.values().stream()
+                .sorted(Comparator.comparing(ChatMessage::getSequenceNumber))
+                .limit(fetchSize)
+                .toList();
+        // one chunk lookup per chunk instead of per message
+        Map<String, String> context = includeContext && !messages.isEmpty() ? contextStore.loadTexts(messages) : null;
+        // archive rows are loaded as entities, don't let them pile up in the persistence context
+        entityManager.clear();
+        return new Chunk(messages, context);
+    }
+
+    private record Chunk(List<ChatMessage> messages, Map<String, String> context) {
+    }
+}
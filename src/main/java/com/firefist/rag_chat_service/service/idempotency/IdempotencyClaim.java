@@ -0,0 +1,47 @@
+package com.firefist.rag_chat_service.service.idempotency;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Result of {@link IdempotencyStore#claim}.
+ */
+@Getter
+@AllArgsConstructor
+public class IdempotencyClaim {
+
+    public enum State {
+        // caller owns the key and must run the request, then complete or release it
+        OWNER,
+        // already done, response holds the stored outcome
+        COMPLETED,
+        // another request with this key is running; completion is set when this node can wait on it directly
+        IN_FLIGHT,
+        // the key was used for a different request
+        MISMATCH
+    }
+
+    private final State state;
+    private final IdempotentResponse response;
+    private final CompletableFuture<IdempotentResponse> completion;
+    // set for OWNER: identifies this claim to complete and release, a stale owner can't touch a taken-over key
+    private final String token;
+
+    static IdempotencyClaim owner(String token) {
+        return new IdempotencyClaim(State.OWNER, null, null, token);
+    }
+
+    static IdempotencyClaim completed(IdempotentResponse response) {
+        return new IdempotencyClaim(State.COMPLETED, response, null, null);
+    }
+
+    static IdempotencyClaim inFlight(CompletableFuture<IdempotentResponse> completion) {
+        return new IdempotencyClaim(State.IN_FLIGHT, null, completion, null);
+    }
+
+    static IdempotencyClaim mismatch() {
+        return new IdempotencyClaim(State.MISMATCH, null, null, null);
+    }
+}
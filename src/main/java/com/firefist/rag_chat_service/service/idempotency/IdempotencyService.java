@@ -0,0 +1,167 @@
+package com.firefist.rag_chat_service.service.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.firefist.rag_chat_service.exception.IdempotencyInProgressException;
+import com.firefist.rag_chat_service.exception.IdempotencyKeyReusedException;
+import com.firefist.rag_chat_service.exception.InvalidIdempotencyKeyException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Runs a request at most once per Idempotency-Key.
+ *
+ * - The first request claims the key and runs; its response is stored unless it was a 5xx or threw,
+ *   in which case the key is released and a retry runs the request again.
+ * - A retry while the first request is still running waits for it (up to wait-ms) and gets the same response,
+ *   so a client retrying a slow LLM turn never triggers a second LLM call or a second pair of rows.
+ * - A retry after completion gets the stored response replayed, marked with Idempotent-Replayed: true.
+ * - Keys are scoped to the API key and session; reusing a key for a different body is rejected.
+ * - With API keys off (security.apikey.enabled=false) keys are scoped to the session only; with them on,
+ *   a key sent without X-API-KEY is rejected.
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyStore store;
+    private final ObjectMapper objectMapper;
+    private final long waitMs;
+    private final long pollMs;
+    private final boolean apiKeysEnabled;
+
+    public IdempotencyService(IdempotencyStore store,
+                              ObjectMapper objectMapper,
+                              @Value("${chat.idempotency.wait-ms:20000}") long waitMs,
+                              @Value("${chat.idempotency.poll-ms:200}") long pollMs,
+                              @Value("${security.apikey.enabled:true}") boolean apiKeysEnabled) {
+        this.store = store;
+        this.objectMapper = objectMapper;
+        this.waitMs = waitMs;
+        this.pollMs = pollMs;
+        this.apiKeysEnabled = apiKeysEnabled;
+    }
+
+    /**
+     * Store key for a client key: the raw header never reaches the store, and equal keys from different
+     * API keys or sessions don't collide.
+     */
+    public String scopedKey(String apiKey, String scope, String idempotencyKey) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new InvalidIdempotencyKeyException("Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        if (!apiKeysEnabled) return sha256("\n" + scope + "\n" + idempotencyKey);
+        if (apiKey == null || apiKey.isBlank()) {
+            throw new InvalidIdempotencyKeyException("Idempotency-Key requires an X-API-KEY to scope it to the caller");
+        }
+        return sha256(apiKey + "\n" + scope + "\n" + idempotencyKey);
+    }
+
+    /**
+     * Hash of everything that determines the response, to tell a retry from a reused key.
+     */
+    public String fingerprint(String... parts) {
+        StringBuilder sb = new StringBuilder();
+        for (String part : parts) {
+            sb.append(part == null ? "" : part).append('\0');
+        }
+        return sha256(sb.toString());
+    }
+
+    public ResponseEntity<?> execute(String key, String fingerprint, Supplier<ResponseEntity<?>> action) {
+        long deadline = System.currentTimeMillis() + waitMs;
+        while (true) {
+            IdempotencyClaim claim = store.claim(key, fingerprint);
+            switch (claim.getState()) {
+                case OWNER:
+                    return runAsOwner(key, claim.getToken(), fingerprint, action);
+                case COMPLETED:
+                    return replay(claim.getResponse());
+                case MISMATCH:
+                    throw new IdempotencyKeyReusedException();
+                case IN_FLIGHT:
+                    IdempotentResponse done = await(claim.getCompletion(), deadline);
+                    if (done != null) return replay(done);
+                    // owner released the key or another node holds it: claim again
+                    break;
+            }
+        }
+    }
+
+    private ResponseEntity<?> runAsOwner(String key, String token, String fingerprint, Supplier<ResponseEntity<?>> action) {
+        ResponseEntity<?> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException | Error ex) {
+            store.release(key, token);
+            throw ex;
+        }
+        if (response.getStatusCode().is5xxServerError()) {
+            store.release(key, token);
+            return response;
+        }
+        try {
+            String body = response.getBody() == null ? null : objectMapper.writeValueAsString(response.getBody());
+            store.complete(key, token, new IdempotentResponse(response.getStatusCode().value(), body, fingerprint));
+        } catch (JsonProcessingException | RuntimeException ex) {
+            // the request itself succeeded; the caller gets its response, a retry may run it again
+            log.warn("Could not store idempotent response", ex);
+            store.release(key, token);
+        }
+        return response;
+    }
+
+    private IdempotentResponse await(CompletableFuture<IdempotentResponse> completion, long deadline) {
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) throw new IdempotencyInProgressException();
+        try {
+            if (completion == null) {
+                // running on another node, nothing local to wait on
+                Thread.sleep(Math.min(pollMs, remaining));
+                return null;
+            }
+            return completion.get(remaining, TimeUnit.MILLISECONDS);
+        } catch (CancellationException ex) {
+            return null;
+        } catch (TimeoutException ex) {
+            throw new IdempotencyInProgressException();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyInProgressException();
+        } catch (ExecutionException ex) {
+            return null;
+        }
+    }
+
+    private static ResponseEntity<?> replay(IdempotentResponse stored) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(stored.getStatus()).header(REPLAYED_HEADER, "true");
+        if (stored.getBody() == null) return builder.build();
+        return builder.contentType(MediaType.APPLICATION_JSON).body(stored.getBody());
+    }
+
+    private static String sha256(String s) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(s.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.firefist.rag_chat_service.service.idempotency;
+
+/**
+ * Bounded store of idempotency keys: which requests are running and what finished ones returned.
+ */
+public interface IdempotencyStore {
+
+    /**
+     * Atomically claims the key for this request, or reports what is already known about it.
+     */
+    IdempotencyClaim claim(String key, String fingerprint);
+
+    /**
+     * Stores the outcome and wakes up requests waiting on the key; ignored if the claim with this token
+     * no longer owns it.
+     */
+    void complete(String key, String token, IdempotentResponse response);
+
+    /**
+     * Gives the key up after a failure so a retry can run the request again; ignored if the claim with this
+     * token no longer owns it.
+     */
+    void release(String key, String token);
+}
@@ -0,0 +1,17 @@
+package com.firefist.rag_chat_service.service.idempotency;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Outcome of a request stored under its idempotency key, replayed verbatim to retries.
+ */
+@Getter
+@AllArgsConstructor
+public class IdempotentResponse {
+    private final int status;
+    // serialized JSON body, null when the response had none
+    private final String body;
+    // hash of the request that produced it, a retry with a different request is rejected
+    private final String fingerprint;
+}
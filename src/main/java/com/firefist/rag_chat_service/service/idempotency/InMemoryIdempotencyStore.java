@@ -0,0 +1,83 @@
+package com.firefist.rag_chat_service.service.idempotency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Single-node store: completed responses in a bounded Caffeine cache, running requests in a map
+ * whose futures waiting retries attach to.
+ */
+@Component
+@ConditionalOnProperty(name = "chat.idempotency.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    private record InFlight(String fingerprint, String token, CompletableFuture<IdempotentResponse> completion) {
+    }
+
+    private final Cache<String, IdempotentResponse> completed;
+    private final ConcurrentMap<String, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    public InMemoryIdempotencyStore(@Value("${chat.idempotency.max-size:100000}") long maxSize,
+                                    @Value("${chat.idempotency.ttl-ms:86400000}") long ttlMs) {
+        this.completed = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .build();
+    }
+
+    @Override
+    public IdempotencyClaim claim(String key, String fingerprint) {
+        IdempotentResponse done = completed.getIfPresent(key);
+        if (done != null) return replay(done, fingerprint);
+
+        InFlight mine = new InFlight(fingerprint, UUID.randomUUID().toString(), new CompletableFuture<>());
+        InFlight running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            return running.fingerprint().equals(fingerprint)
+                    ? IdempotencyClaim.inFlight(running.completion()) : IdempotencyClaim.mismatch();
+        }
+        // the previous owner may have completed between the two lookups
+        done = completed.getIfPresent(key);
+        if (done != null) {
+            inFlight.remove(key, mine);
+            mine.completion().complete(done);
+            return replay(done, fingerprint);
+        }
+        return IdempotencyClaim.owner(mine.token());
+    }
+
+    @Override
+    public void complete(String key, String token, IdempotentResponse response) {
+        InFlight running = inFlight.get(key);
+        if (running == null || !running.token().equals(token)) return;
+        // stored before the in-flight entry goes, so a claim in between never finds neither
+        completed.put(key, response);
+        inFlight.remove(key, running);
+        running.completion().complete(response);
+    }
+
+    @Override
+    public void release(String key, String token) {
+        InFlight running = removeOwned(key, token);
+        // waiters wake up and claim again, one of them becomes the new owner
+        if (running != null) running.completion().cancel(false);
+    }
+
+    private InFlight removeOwned(String key, String token) {
+        InFlight running = inFlight.get(key);
+        return running != null && running.token().equals(token) && inFlight.remove(key, running) ? running : null;
+    }
+
+    private static IdempotencyClaim replay(IdempotentResponse done, String fingerprint) {
+        return done.getFingerprint().equals(fingerprint) ? IdempotencyClaim.completed(done) : IdempotencyClaim.mismatch();
+    }
+}
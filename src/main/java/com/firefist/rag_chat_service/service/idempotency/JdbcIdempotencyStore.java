@@ -0,0 +1,193 @@
+package com.firefist.rag_chat_service.service.idempotency;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Shared store in the idempotency_key table, for more than one replica.
+ *
+ * - The primary key makes claiming atomic across nodes: the INSERT that succeeds owns the key.
+ * - Waiters on the owning node attach to a local future; waiters on other nodes poll (see IdempotencyService).
+ * - An in-flight row carries a lease; if its node dies, a retry after locked-until takes the key over.
+ *   The lease outlasts the longest turn (chat.deadline.max-ms plus a grace period), so a live owner is never
+ *   taken over and a retry never runs a second LLM call.
+ * - The row names its owner by a token; complete, release and take-over only touch the row they still own,
+ *   so an owner that lost the key can't overwrite or delete the row of the one that took it over.
+ * - Finished rows expire after ttl-ms and are purged in the background.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "chat.idempotency.store", havingValue = "jdbc")
+public class JdbcIdempotencyStore implements IdempotencyStore {
+
+    // a turn past its deadline still needs a moment to answer and store its response
+    static final long LEASE_GRACE_MS = 30_000;
+
+    private static final String INSERT_SQL =
+            "INSERT INTO idempotency_key (id_key, fingerprint, state, owner_token, locked_until, expires_at) VALUES (?, ?, 'IN_FLIGHT', ?, ?, ?)";
+    private static final String SELECT_SQL =
+            "SELECT fingerprint, state, owner_token, response_status, response_body, locked_until, expires_at FROM idempotency_key WHERE id_key = ?";
+    private static final String DELETE_EXPIRED_KEY_SQL = "DELETE FROM idempotency_key WHERE id_key = ? AND expires_at < ?";
+    // rows written before owner tokens have none, the lease alone decides for them
+    private static final String TAKE_OVER_SQL =
+            "UPDATE idempotency_key SET owner_token = ?, locked_until = ? WHERE id_key = ? AND state = 'IN_FLIGHT' AND locked_until < ?"
+                    + " AND (owner_token = ? OR owner_token IS NULL)";
+    private static final String COMPLETE_SQL =
+            "UPDATE idempotency_key SET state = 'DONE', response_status = ?, response_body = ?, expires_at = ?"
+                    + " WHERE id_key = ? AND owner_token = ? AND state = 'IN_FLIGHT'";
+    private static final String RELEASE_SQL = "DELETE FROM idempotency_key WHERE id_key = ? AND owner_token = ? AND state = 'IN_FLIGHT'";
+    private static final String PURGE_SQL = "DELETE FROM idempotency_key WHERE expires_at < ? LIMIT 1000";
+
+    private record Row(String fingerprint, String state, String owner, Integer status, String body,
+                       Instant lockedUntil, Instant expiresAt) {
+    }
+
+    // the claim this node holds on a key and the future its local waiters attach to
+    private record Owned(String token, CompletableFuture<IdempotentResponse> completion) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long ttlMs;
+    private final long leaseMs;
+    private final ConcurrentMap<String, Owned> local = new ConcurrentHashMap<>();
+
+    public JdbcIdempotencyStore(JdbcTemplate jdbcTemplate,
+                                @Value("${chat.idempotency.ttl-ms:86400000}") long ttlMs,
+                                @Value("${chat.idempotency.lease-ms:150000}") long leaseMs,
+                                @Value("${chat.deadline.max-ms:120000}") long maxDeadlineMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ttlMs = ttlMs;
+        if (leaseMs < maxDeadlineMs + LEASE_GRACE_MS) {
+            log.warn("chat.idempotency.lease-ms={} is shorter than the longest turn, using {}",
+                    leaseMs, maxDeadlineMs + LEASE_GRACE_MS);
+        }
+        this.leaseMs = Math.max(leaseMs, maxDeadlineMs + LEASE_GRACE_MS);
+    }
+
+    @Override
+    public IdempotencyClaim claim(String key, String fingerprint) {
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        Instant now = Instant.now();
+        String token = UUID.randomUUID().toString();
+        // the row may already be there; an expired one is dropped and the insert tried once more
+        for (int attempt = 0; attempt < 2; attempt++) {
+            try {
+                jdbcTemplate.update(INSERT_SQL, ps -> {
+                    ps.setString(1, key);
+                    ps.setString(2, fingerprint);
+                    ps.setString(3, token);
+                    ps.setTimestamp(4, Timestamp.from(now.plusMillis(leaseMs)), utc);
+                    ps.setTimestamp(5, Timestamp.from(now.plusMillis(ttlMs)), utc);
+                });
+                // a waiter arriving before this finds no future and polls instead
+                local.put(key, new Owned(token, new CompletableFuture<>()));
+                return IdempotencyClaim.owner(token);
+            } catch (DuplicateKeyException ex) {
+                // someone else owns the key, fall through and look at its row
+            }
+
+            Row row = find(key, utc);
+            if (row == null) continue;
+            // an expired key is free again, whatever request it was used for
+            if (row.expiresAt().isBefore(now)) {
+                jdbcTemplate.update(DELETE_EXPIRED_KEY_SQL, ps -> {
+                    ps.setString(1, key);
+                    ps.setTimestamp(2, Timestamp.from(now), utc);
+                });
+                continue;
+            }
+            if (!row.fingerprint().equals(fingerprint)) return IdempotencyClaim.mismatch();
+            if ("DONE".equals(row.state())) {
+                return IdempotencyClaim.completed(new IdempotentResponse(row.status(), row.body(), row.fingerprint()));
+            }
+            if (row.lockedUntil().isBefore(now) && takeOver(key, row.owner(), token, now, utc)) {
+                log.warn("Taking over idempotency key whose owner did not finish in time");
+                return IdempotencyClaim.owner(token);
+            }
+            Owned owner = local.get(key);
+            return IdempotencyClaim.inFlight(owner == null ? null : owner.completion());
+        }
+        return IdempotencyClaim.inFlight(null);
+    }
+
+    @Override
+    public void complete(String key, String token, IdempotentResponse response) {
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        int updated = jdbcTemplate.update(COMPLETE_SQL, ps -> {
+            ps.setInt(1, response.getStatus());
+            ps.setString(2, response.getBody());
+            ps.setTimestamp(3, Timestamp.from(Instant.now().plusMillis(ttlMs)), utc);
+            ps.setString(4, key);
+            ps.setString(5, token);
+        });
+        if (updated == 0) log.warn("Idempotency key was taken over before its request finished, response not stored");
+        // waiters attached to this claim still get its response
+        Owned waiting = removeOwned(key, token);
+        if (waiting != null) waiting.completion().complete(response);
+    }
+
+    @Override
+    public void release(String key, String token) {
+        jdbcTemplate.update(RELEASE_SQL, key, token);
+        Owned waiting = removeOwned(key, token);
+        if (waiting != null) waiting.completion().cancel(false);
+    }
+
+    @Scheduled(fixedDelayString = "${chat.idempotency.purge-interval-ms:60000}")
+    public void purgeExpired() {
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        Timestamp now = Timestamp.from(Instant.now());
+        // small batches, so the purge never holds many row locks
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(PURGE_SQL, ps -> ps.setTimestamp(1, now, utc));
+        } while (deleted == 1000);
+    }
+
+    // only the retry that still sees the expired owner's token wins, a concurrent one finds it changed
+    private boolean takeOver(String key, String expiredOwner, String token, Instant now, Calendar utc) {
+        int updated = jdbcTemplate.update(TAKE_OVER_SQL, ps -> {
+            ps.setString(1, token);
+            ps.setTimestamp(2, Timestamp.from(now.plusMillis(leaseMs)), utc);
+            ps.setString(3, key);
+            ps.setTimestamp(4, Timestamp.from(now), utc);
+            ps.setString(5, expiredOwner);
+        });
+        if (updated != 1) return false;
+        local.put(key, new Owned(token, new CompletableFuture<>()));
+        return true;
+    }
+
+    private Owned removeOwned(String key, String token) {
+        Owned owned = local.get(key);
+        return owned != null && owned.token().equals(token) && local.remove(key, owned) ? owned : null;
+    }
+
+    private Row find(String key, Calendar utc) {
+        List<Row> rows = jdbcTemplate.query(SELECT_SQL, (rs, n) -> {
+            int status = rs.getInt("response_status");
+            Integer responseStatus = rs.wasNull() ? null : status;
+            return new Row(rs.getString("fingerprint"), rs.getString("state"), rs.getString("owner_token"),
+                    responseStatus,
+                    rs.getString("response_body"),
+                    rs.getTimestamp("locked_until", utc).toInstant(),
+                    rs.getTimestamp("expires_at", utc).toInstant());
+        }, key);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+}
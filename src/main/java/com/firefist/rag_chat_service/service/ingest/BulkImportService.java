@@ -0,0 +1,335 @@
+package com.firefist.rag_chat_service.service.ingest;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.firefist.rag_chat_service.dto.ImportRecord;
+import com.firefist.rag_chat_service.dto.ImportResult;
+import com.firefist.rag_chat_service.model.ChatMessage;
+import com.firefist.rag_chat_service.model.ChatSession;
+import com.firefist.rag_chat_service.repository.ChatMessageJdbcRepository;
+import com.firefist.rag_chat_service.repository.ChatSessionJdbcRepository;
+import com.firefist.rag_chat_service.service.cache.HistoryVersions;
+import com.firefist.rag_chat_service.service.search.MessageSearchService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Bulk import of sessions and messages for migrations and replays.
+ *
+ * - Input is a JSON array or NDJSON of {@link ImportRecord}s, parsed one record at a time.
+ * - Valid rows are written batch-size at a time with JDBC batches, one transaction per batch.
+ *   Nothing goes through retrieval or the LLM: imported turns are stored as they are.
+ * - Invalid rows are skipped and reported; rows of a batch the database rejects are reported too.
+ * - Message ids default to a name-based UUID of (sessionId, sequenceNumber) and inserts ignore
+ *   existing ids, so replaying the same import doesn't duplicate anything. A sequence number already
+ *   used in the session by another message is reported for that row.
+ * - A session record whose id is already taken by another user's or a deleted session is rejected,
+ *   and so are the messages of that record.
+ * - Messages for a session that already has archived messages are rejected: the archive must stay the
+ *   oldest part of the history. The check locks the session rows, so the archiver can't move a batch meanwhile.
+ */
+@Slf4j
+@Service
+public class BulkImportService {
+
+    private static final int MAX_SENDER_LENGTH = 32;
+
+    private final ObjectMapper objectMapper;
+    private final ChatSessionJdbcRepository sessionJdbcRepository;
+    private final ChatMessageJdbcRepository messageJdbcRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final MessageSearchService searchService;
+    private final HistoryVersions historyVersions;
+    private final int batchSize;
+    private final int maxErrors;
+
+    public BulkImportService(ObjectMapper objectMapper,
+                             ChatSessionJdbcRepository sessionJdbcRepository,
+                             ChatMessageJdbcRepository messageJdbcRepository,
+                             TransactionTemplate transactionTemplate,
+                             MessageSearchService searchService,
+                             HistoryVersions historyVersions,
+                             @Value("${chat.import.batch-size:1000}") int batchSize,
+                             @Value("${chat.import.max-errors:1000}") int maxErrors) {
+        this.objectMapper = objectMapper;
+        this.sessionJdbcRepository = sessionJdbcRepository;
+        this.messageJdbcRepository = messageJdbcRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.searchService = searchService;
+        this.historyVersions = historyVersions;
+        this.batchSize = batchSize;
+        this.maxErrors = maxErrors;
+    }
+
+    public ImportResult importRecords(InputStream in) throws IOException {
+        ImportRun run = new ImportRun();
+        long index = 0;
+        try (JsonParser p = objectMapper.getFactory().createParser(in)) {
+            JsonToken t = p.nextToken();
+            boolean array = t == JsonToken.START_ARRAY;
+            if (array) t = p.nextToken();
+            // without an array the parser reads the root-level values one after another, which is NDJSON
+            while (t != null && t != JsonToken.END_ARRAY) {
+                JsonNode node = objectMapper.readTree(p);
+                run.add(index++, node);
+                t = p.nextToken();
+            }
+            run.completed = true;
+        } catch (JsonProcessingException ex) {
+            int line = ex.getLocation() == null ? -1 : ex.getLocation().getLineNr();
+            run.reject(index, null, "Malformed JSON at line " + line + ": " + ex.getOriginalMessage());
+        }
+        run.flush();
+        // imported rows bypass the write path, the owners' loaded search indexes are rebuilt on their next query
+        searchService.invalidate(run.importedUsers);
+        log.info("Import finished: {} sessions, {} messages, {} rejected", run.sessions, run.messages, run.rejected);
+        return new ImportResult(run.sessions, run.messages, run.rejected, run.completed, run.errors);
+    }
+
+    private static UUID messageId(UUID sessionId, long sequenceNumber) {
+        return UUID.nameUUIDFromBytes((sessionId + ":" + sequenceNumber).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private class ImportRun {
+        final List<ImportResult.RowError> errors = new ArrayList<>();
+        // sessions known to exist (written by this import or checked in the database), with their user id
+        final Map<UUID, String> knownSessions = new HashMap<>();
+        // session records of this import that clashed with someone else's (or a deleted) session
+        final Set<UUID> refusedSessions = new HashSet<>();
+        final List<ChatSession> sessionBatch = new ArrayList<>();
+        final List<Long> sessionIndexes = new ArrayList<>();
+        final List<ChatMessage> messageBatch = new ArrayList<>();
+        final List<Long> messageIndexes = new ArrayList<>();
+        // users whose messages were stored
+        final Set<String> importedUsers = new HashSet<>();
+        long sessions;
+        long messages;
+        long rejected;
+        boolean completed;
+
+        void add(long index, JsonNode node) {
+            ImportRecord r;
+            try {
+                r = objectMapper.treeToValue(node, ImportRecord.class);
+            } catch (JsonProcessingException ex) {
+                reject(index, null, "Invalid record: " + ex.getOriginalMessage());
+                return;
+            }
+            if ("session".equalsIgnoreCase(r.getType())) {
+                addSession(index, r);
+            } else if ("message".equalsIgnoreCase(r.getType())) {
+                addMessage(index, r);
+            } else {
+                reject(index, r.getId(), "type must be session or message");
+            }
+            if (sessionBatch.size() + messageBatch.size() >= batchSize) flush();
+        }
+
+        void addSession(long index, ImportRecord r) {
+            String error = r.getId() == null ? "id is required"
+                    : isBlank(r.getUserId()) ? "userId is required"
+                    : null;
+            if (error != null) {
+                reject(index, r.getId(), error);
+                return;
+            }
+            Instant createdAt = r.getCreatedAt() != null ? r.getCreatedAt() : Instant.now();
+            Instant updatedAt = r.getUpdatedAt() != null ? r.getUpdatedAt() : createdAt;
+            sessionBatch.add(new ChatSession(r.getId(), r.getUserId(), r.getTitle(), r.isFavorite(),
+                    createdAt, updatedAt, null, 0, 0));
+            sessionIndexes.add(index);
+        }
+
+        void addMessage(long index, ImportRecord r) {
+            String error = r.getSessionId() == null ? "sessionId is required"
+                    : isBlank(r.getSender()) ? "sender is required"
+                    : r.getSender().length() > MAX_SENDER_LENGTH ? "sender is longer than " + MAX_SENDER_LENGTH
+                    : isBlank(r.getContent()) ? "content is required"
+                    : r.getSequenceNumber() == null ? "sequenceNumber is required"
+                    : r.getSequenceNumber() < 0 ? "sequenceNumber must not be negative"
+                    // history is ordered by createdAt, an import-time default would scramble it
+                    : r.getCreatedAt() == null ? "createdAt is required"
+                    : null;
+            if (error != null) {
+                reject(index, r.getId(), error);
+                return;
+            }
+            ChatSession session = new ChatSession();
+            session.setId(r.getSessionId());
+            ChatMessage m = new ChatMessage();
+            m.setId(r.getId() != null ? r.getId() : messageId(r.getSessionId(), r.getSequenceNumber()));
+            m.setSession(session);
+            m.setSender(r.getSender());
+            m.setContent(r.getContent());
+            m.setRetrievedContext(r.getRetrievedContext());
+            m.setCreatedAt(r.getCreatedAt());
+            m.setSequenceNumber(r.getSequenceNumber());
+            messageBatch.add(m);
+            messageIndexes.add(index);
+        }
+
+        void flush() {
+            if (sessionBatch.isEmpty() && messageBatch.isEmpty()) return;
+            try {
+                if (!sessionBatch.isEmpty()) {
+                    Map<UUID, String> owners = transactionTemplate.execute(status -> {
+                        sessionJdbcRepository.insertIgnoringDuplicates(sessionBatch);
+                        return sessionJdbcRepository.findActiveOwners(sessionBatch.stream().map(ChatSession::getId).toList());
+                    });
+                    // an id that was already taken only counts if it is the same user's live session
+                    for (int i = 0; i < sessionBatch.size(); i++) {
+                        ChatSession s = sessionBatch.get(i);
+                        if (s.getUserId().equals(owners.get(s.getId()))) {
+                            knownSessions.put(s.getId(), s.getUserId());
+                            sessions++;
+                        } else {
+                            refusedSessions.add(s.getId());
+                            reject(sessionIndexes.get(i), s.getId(), "session id already exists for another user or was deleted");
+                        }
+                    }
+                }
+            } catch (DataAccessException ex) {
+                log.warn("Import batch of {} sessions failed", sessionBatch.size(), ex);
+                String error = "Session not stored: " + rootMessage(ex);
+                for (int i = 0; i < sessionBatch.size(); i++) {
+                    reject(sessionIndexes.get(i), sessionBatch.get(i).getId(), error);
+                }
+            }
+            sessionBatch.clear();
+            sessionIndexes.clear();
+            if (!messageBatch.isEmpty()) flushMessages();
+        }
+
+        void flushMessages() {
+            Set<UUID> unknown = new HashSet<>();
+            messageBatch.forEach(m -> {
+                UUID id = m.getSession().getId();
+                if (!knownSessions.containsKey(id) && !refusedSessions.contains(id)) unknown.add(id);
+            });
+            if (!unknown.isEmpty()) knownSessions.putAll(sessionJdbcRepository.findActiveOwners(unknown));
+
+            List<ChatMessage> valid = new ArrayList<>(messageBatch.size());
+            List<Long> validIndexes = new ArrayList<>(messageBatch.size());
+            for (int i = 0; i < messageBatch.size(); i++) {
+                ChatMessage m = messageBatch.get(i);
+                if (knownSessions.containsKey(m.getSession().getId())) {
+                    valid.add(m);
+                    validIndexes.add(messageIndexes.get(i));
+                } else if (refusedSessions.contains(m.getSession().getId())) {
+                    reject(messageIndexes.get(i), m.getId(), "session " + m.getSession().getId() + " was not imported");
+                } else reject(messageIndexes.get(i), m.getId(), "session " + m.getSession().getId() + " does not exist");
+            }
+            if (!valid.isEmpty()) {
+                try {
+                    report(valid, validIndexes, insert(valid, false));
+                } catch (DuplicateKeyException ex) {
+                    // some sequence number is already used in its session: store the others, report those
+                    insertEach(valid, validIndexes);
+                } catch (DataAccessException ex) {
+                    rejectBatch(valid, validIndexes, ex);
+                }
+            }
+            messageBatch.clear();
+            messageIndexes.clear();
+        }
+
+        void insertEach(List<ChatMessage> valid, List<Long> validIndexes) {
+            Outcome outcome;
+            try {
+                outcome = insert(valid, true);
+            } catch (DataAccessException ex) {
+                rejectBatch(valid, validIndexes, ex);
+                return;
+            }
+            report(valid, validIndexes, outcome);
+        }
+
+        Outcome insert(List<ChatMessage> valid, boolean each) {
+            return transactionTemplate.execute(status -> {
+                // rows added behind a session's archived messages would break its history order
+                Set<UUID> archived = sessionJdbcRepository.lockArchived(sessionIds(valid));
+                List<ChatMessage> rows = archived.isEmpty() ? valid
+                        : valid.stream().filter(m -> !archived.contains(m.getSession().getId())).toList();
+                List<ChatMessage> conflicts = List.of();
+                if (rows.isEmpty()) return new Outcome(archived, conflicts);
+                if (each) conflicts = messageJdbcRepository.insertEachIgnoringDuplicates(rows);
+                else messageJdbcRepository.insertIgnoringDuplicates(rows);
+                // imported rows don't move last_sequence_number, the row count in the version catches them
+                historyVersions.invalidate(sessionIds(rows));
+                return new Outcome(archived, conflicts);
+            });
+        }
+
+        void report(List<ChatMessage> valid, List<Long> validIndexes, Outcome outcome) {
+            Set<ChatMessage> conflicting = Collections.newSetFromMap(new IdentityHashMap<>());
+            conflicting.addAll(outcome.conflicts());
+            for (int i = 0; i < valid.size(); i++) {
+                ChatMessage m = valid.get(i);
+                UUID sessionId = m.getSession().getId();
+                if (outcome.archived().contains(sessionId)) {
+                    reject(validIndexes.get(i), m.getId(), "session " + sessionId + " has archived messages");
+                } else if (conflicting.contains(m)) {
+                    reject(validIndexes.get(i), m.getId(), "sequenceNumber " + m.getSequenceNumber()
+                            + " is already used in session " + sessionId);
+                } else {
+                    messages++;
+                    stored(m);
+                }
+            }
+        }
+
+        void stored(ChatMessage m) {
+            importedUsers.add(knownSessions.get(m.getSession().getId()));
+        }
+
+        void rejectBatch(List<ChatMessage> valid, List<Long> validIndexes, DataAccessException ex) {
+            log.warn("Import batch of {} messages failed", valid.size(), ex);
+            String error = "Message not stored: " + rootMessage(ex);
+            for (int i = 0; i < valid.size(); i++) {
+                reject(validIndexes.get(i), valid.get(i).getId(), error);
+            }
+        }
+
+        void reject(long index, UUID id, String error) {
+            rejected++;
+            if (errors.size() < maxErrors) errors.add(new ImportResult.RowError(index, id, error));
+        }
+    }
+
+    private record Outcome(Set<UUID> archived, List<ChatMessage> conflicts) {
+    }
+
+    private static List<UUID> sessionIds(List<ChatMessage> messages) {
+        return messages.stream().map(m -> m.getSession().getId()).distinct().toList();
+    }
+
+    private static boolean isBlank(String s) {
+        return s == null || s.isBlank();
+    }
+
+    private static String rootMessage(DataAccessException ex) {
+        Throwable root = ex.getMostSpecificCause();
+        return root.getMessage() != null ? root.getMessage() : root.getClass().getSimpleName();
+    }
+}
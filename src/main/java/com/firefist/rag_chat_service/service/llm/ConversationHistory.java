@@ -0,0 +1,28 @@
+package com.firefist.rag_chat_service.service.llm;
+
+import java.util.List;
+
+/**
+ * What the LLM gets to see of earlier turns: a rolling summary of the old ones plus the most recent turns verbatim.
+ */
+public record ConversationHistory(String summary, List<Turn> turns) {
+
+    public static final ConversationHistory EMPTY = new ConversationHistory(null, List.of());
+
+    // role is "user" or "assistant"
+    public record Turn(String role, String content) {
+    }
+
+    public boolean isEmpty() {
+        return (summary == null || summary.isBlank()) && turns.isEmpty();
+    }
+
+    /**
+     * Characters added to the prompt, for the prompt size metric.
+     */
+    public int size() {
+        int size = summary == null ? 0 : summary.length();
+        for (Turn t : turns) size += t.content().length();
+        return size;
+    }
+}
@@ -0,0 +1,274 @@
+package com.firefist.rag_chat_service.service.llm;
+
+import com.firefist.rag_chat_service.exception.LlmOverloadedException;
+import com.firefist.rag_chat_service.exception.RequestCancelledException;
+import com.firefist.rag_chat_service.service.deadline.RequestDeadline;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Adaptive concurrency limit and priority queue in front of {@link LlmClient#generate}.
+ *
+ * - The limit follows AIMD: +1 per limit's worth of fast successful calls while the limit is actually used,
+ *   times backoff-ratio when a call fails or is slower than latency-threshold-ms (at most once per typical call
+ *   duration and never more often than decrease-cooldown-ms, so one slow or failing burst doesn't collapse it,
+ *   even before a successful call has measured the duration). The provider is kept near the point where more
+ *   concurrency only adds latency.
+ * - Calls over the limit wait in a queue ordered by priority, then deadline. A waiter is dropped as soon
+ *   as it can no longer finish by its deadline (now + average call latency), and when the queue is full a
+ *   more important call evicts the least important waiter. Dropped calls fail with {@link LlmOverloadedException}.
+ * - The call itself runs on the caller's thread; the scheduler only hands out slots.
+ * - Inside a {@link RequestDeadline} the class deadline is cut to the time the turn has left, and a call
+ *   cancelled with {@link RequestCancelledException} frees its slot without counting as a provider failure.
+ */
+@Component
+public class LlmCallScheduler {
+
+    private static final Comparator<Waiter> ORDER = Comparator
+            .comparing((Waiter w) -> w.priority)
+            .thenComparingLong(w -> w.deadlineNanos)
+            .thenComparingLong(w -> w.seq);
+
+    private static final class Waiter {
+        final LlmPriority priority;
+        final long deadlineNanos;
+        final long seq;
+        final Condition signal;
+        boolean granted;
+        String dropped;
+
+        Waiter(LlmPriority priority, long deadlineNanos, long seq, Condition signal) {
+            this.priority = priority;
+            this.deadlineNanos = deadlineNanos;
+            this.seq = seq;
+            this.signal = signal;
+        }
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final TreeSet<Waiter> queue = new TreeSet<>(ORDER);
+    private final MeterRegistry meterRegistry;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+    private final long decreaseCooldownNanos;
+    private final int maxQueue;
+    private final Duration interactiveDeadline;
+    private final Duration batchDeadline;
+
+    // guarded by lock
+    private double limit;
+    private int inFlight;
+    private long seq;
+    private double avgLatencyNanos;
+    private long lastDecreaseNanos;
+
+    public LlmCallScheduler(MeterRegistry meterRegistry,
+                            @Value("${llm.concurrency.initial-limit:8}") int initialLimit,
+                            @Value("${llm.concurrency.min-limit:1}") int minLimit,
+                            @Value("${llm.concurrency.max-limit:64}") int maxLimit,
+                            @Value("${llm.concurrency.latency-threshold-ms:10000}") long latencyThresholdMs,
+                            @Value("${llm.concurrency.backoff-ratio:0.9}") double backoffRatio,
+                            @Value("${llm.concurrency.max-queue:100}") int maxQueue,
+                            @Value("${llm.concurrency.interactive-deadline-ms:20000}") long interactiveDeadlineMs,
+                            @Value("${llm.concurrency.batch-deadline-ms:300000}") long batchDeadlineMs,
+                            @Value("${llm.concurrency.decrease-cooldown-ms:1000}") long decreaseCooldownMs) {
+        this.meterRegistry = meterRegistry;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMs);
+        this.backoffRatio = backoffRatio;
+        this.decreaseCooldownNanos = TimeUnit.MILLISECONDS.toNanos(decreaseCooldownMs);
+        this.maxQueue = maxQueue;
+        this.interactiveDeadline = Duration.ofMillis(interactiveDeadlineMs);
+        this.batchDeadline = Duration.ofMillis(batchDeadlineMs);
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.lastDecreaseNanos = System.nanoTime() - decreaseCooldownNanos - 1;
+
+        Gauge.builder("chat.llm.concurrency.limit", this, s -> s.currentLimit())
+                .description("Adaptive limit of concurrent LLM calls")
+                .register(meterRegistry);
+        Gauge.builder("chat.llm.concurrency.inflight", this, s -> s.locked(() -> s.inFlight))
+                .description("LLM calls running")
+                .register(meterRegistry);
+        Gauge.builder("chat.llm.queue.size", this, s -> s.locked(s.queue::size))
+                .description("LLM calls waiting for a slot")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs the call under the default deadline of its class, or the current turn's if that is sooner.
+     */
+    public LlmResponse call(LlmPriority priority, Supplier<LlmResponse> call) {
+        Duration deadline = priority == LlmPriority.INTERACTIVE ? interactiveDeadline : batchDeadline;
+        RequestDeadline turn = RequestDeadline.current();
+        if (turn != null && turn.remaining().compareTo(deadline) < 0) deadline = turn.remaining();
+        return call(priority, deadline, call);
+    }
+
+    public LlmResponse call(LlmPriority priority, Duration deadline, Supplier<LlmResponse> call) {
+        long queuedAt = System.nanoTime();
+        acquire(priority, queuedAt + deadline.toNanos());
+        long start = System.nanoTime();
+        Timer.builder("chat.llm.queue.wait")
+                .description("Time LLM calls waited for a concurrency slot")
+                .tag("priority", tag(priority))
+                .register(meterRegistry)
+                .record(start - queuedAt, TimeUnit.NANOSECONDS);
+        boolean ok = false;
+        boolean cancelled = false;
+        try {
+            LlmResponse resp = call.get();
+            // clients report provider errors as a response rather than an exception
+            ok = resp != null && !"error".equals(resp.getFinishReason());
+            return resp;
+        } catch (RuntimeException ex) {
+            // whatever the interrupt turned into on its way up
+            RequestDeadline turn = RequestDeadline.current();
+            cancelled = ex instanceof RequestCancelledException || turn != null && turn.cancelled() != null;
+            throw ex;
+        } finally {
+            if (cancelled) releaseCancelled();
+            else release(System.nanoTime() - start, ok);
+        }
+    }
+
+    private void acquire(LlmPriority priority, long deadlineNanos) {
+        lock.lock();
+        try {
+            if (queue.isEmpty() && inFlight < currentLimit()) {
+                inFlight++;
+                return;
+            }
+            Waiter w = new Waiter(priority, deadlineNanos, seq++, lock.newCondition());
+            if (!feasible(w, System.nanoTime())) throw shed(priority, "deadline");
+            if (queue.size() >= maxQueue) {
+                Waiter last = queue.last();
+                if (ORDER.compare(last, w) < 0) throw shed(priority, "queue_full");
+                queue.pollLast();
+                drop(last, "queue_full");
+            }
+            queue.add(w);
+            while (!w.granted) {
+                if (w.dropped != null) throw new LlmOverloadedException("LLM overloaded, call was shed");
+                long wait = w.deadlineNanos - (long) avgLatencyNanos - System.nanoTime();
+                if (wait <= 0) {
+                    queue.remove(w);
+                    throw shed(priority, "deadline");
+                }
+                try {
+                    w.signal.awaitNanos(wait);
+                } catch (InterruptedException ex) {
+                    // a slot handed over meanwhile goes to the next waiter
+                    if (w.granted) releaseSlot();
+                    else queue.remove(w);
+                    Thread.currentThread().interrupt();
+                    throw new LlmOverloadedException("Interrupted while waiting for an LLM slot");
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(long latencyNanos, boolean ok) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            if (ok) avgLatencyNanos = avgLatencyNanos == 0 ? latencyNanos : avgLatencyNanos * 0.9 + latencyNanos * 0.1;
+            if (!ok || latencyNanos > latencyThresholdNanos) {
+                // avgLatencyNanos only learns from successes, it is still 0 if every call so far failed
+                if (now - lastDecreaseNanos > Math.max(avgLatencyNanos, decreaseCooldownNanos)) {
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                    lastDecreaseNanos = now;
+                }
+            } else if (inFlight >= limit / 2) {
+                // grow only while the limit is what holds calls back
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+            releaseSlot();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // the caller gave up, which says nothing about the provider: no latency sample, no limit change
+    private void releaseCancelled() {
+        lock.lock();
+        try {
+            releaseSlot();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // caller holds the lock
+    private void releaseSlot() {
+        inFlight--;
+        long now = System.nanoTime();
+        while (inFlight < currentLimit() && !queue.isEmpty()) {
+            Waiter next = queue.pollFirst();
+            if (!feasible(next, now)) {
+                drop(next, "deadline");
+                continue;
+            }
+            next.granted = true;
+            inFlight++;
+            next.signal.signal();
+        }
+    }
+
+    private boolean feasible(Waiter w, long now) {
+        return now + (long) avgLatencyNanos < w.deadlineNanos;
+    }
+
+    private void drop(Waiter w, String reason) {
+        w.dropped = reason;
+        countShed(w.priority, reason);
+        w.signal.signal();
+    }
+
+    private LlmOverloadedException shed(LlmPriority priority, String reason) {
+        countShed(priority, reason);
+        return new LlmOverloadedException("LLM overloaded, call was shed (" + reason + ")");
+    }
+
+    private void countShed(LlmPriority priority, String reason) {
+        Counter.builder("chat.llm.shed")
+                .description("LLM calls rejected by the concurrency limiter")
+                .tag("priority", tag(priority))
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private int currentLimit() {
+        return (int) limit;
+    }
+
+    private double locked(Supplier<Integer> read) {
+        lock.lock();
+        try {
+            return read.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static String tag(LlmPriority priority) {
+        return priority.name().toLowerCase();
+    }
+}
@@ -1,10 +1,31 @@
 package com.firefist.rag_chat_service.service.llm;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface LlmClient {
     /**
      * Generate assistant response given user message and retrieved context snippets.
      */
     LlmResponse generate(String userMessage, List<String> retrievedSnippets);
+
+    /**
+     * Same, with earlier turns of the conversation (rolling summary plus recent turns).
+     * Clients that can't use history ignore it.
+     */
+    default LlmResponse generate(String userMessage, List<String> retrievedSnippets, ConversationHistory history) {
+        return generate(userMessage, retrievedSnippets);
+    }
+
+    /**
+     * Same, reporting the reply while it is generated: onDelta gets successive pieces of the text on the
+     * calling thread, the returned response still holds all of it. Clients that can't stream hand over
+     * the whole reply as one piece.
+     */
+    default LlmResponse generate(String userMessage, List<String> retrievedSnippets, ConversationHistory history,
+                                 Consumer<String> onDelta) {
+        LlmResponse resp = generate(userMessage, retrievedSnippets, history);
+        if (resp != null && resp.getGeneratedText() != null) onDelta.accept(resp.getGeneratedText());
+        return resp;
+    }
 }
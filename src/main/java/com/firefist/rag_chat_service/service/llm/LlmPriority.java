@@ -0,0 +1,11 @@
+package com.firefist.rag_chat_service.service.llm;
+
+/**
+ * Request classes for {@link LlmCallScheduler}, most important first.
+ */
+public enum LlmPriority {
+    // a user is waiting on the reply
+    INTERACTIVE,
+    // background work (summaries, re-generation), can wait and is shed first
+    BATCH
+}
@@ -8,4 +8,13 @@ import lombok.Getter;
 public class LlmResponse {
     private final String generatedText;
     private final String model;
+    // token usage as reported by the provider, null when it doesn't report any
+    private final Integer promptTokens;
+    private final Integer completionTokens;
+    // why generation stopped (e.g. "stop", "length"), null when unknown
+    private final String finishReason;
+
+    public LlmResponse(String generatedText, String model) {
+        this(generatedText, model, null, null, null);
+    }
 }
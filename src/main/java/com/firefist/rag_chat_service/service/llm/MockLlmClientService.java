@@ -1,12 +1,11 @@
 package com.firefist.rag_chat_service.service.llm;
 
-import io.github.resilience4j.ratelimiter.RequestNotPermitted;
-import io.github.resilience4j.ratelimiter.annotation.RateLimiter;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.StringJoiner;
+import java.util.function.Consumer;
 
 /**
  * Simple LLM stub that composes a reply using retrieved snippets and returns it.
@@ -16,7 +15,6 @@ import java.util.StringJoiner;
 public class MockLlmClientService implements LlmClient {
 
     @Override
-    @RateLimiter(name = "rl", fallbackMethod = "llmRateLimitFallback")
     public LlmResponse generate(String userMessage, List<String> retrievedSnippets) {
         // existing mock logic — compose a reply from retrievedSnippets
         StringJoiner joiner = new StringJoiner("\n\n");
@@ -30,14 +28,19 @@ public class MockLlmClientService implements LlmClient {
         return new LlmResponse(reply, "mock-model-1.0");
     }
 
-    /**
-     * Fallback invoked when rate limiter denies the call (RequestNotPermitted)
-     * Method signature must match original params + a Throwable (or RequestNotPermitted)
-     */
-    public LlmResponse llmRateLimitFallback(String userMessage, List<String> retrievedSnippets, RequestNotPermitted ex) {
-        // return a friendly message. You can also persist a message, or return null depending on your service flow.
-        String msg = "LLM temporarily rate-limited. Please retry after a short while.";
-        return new LlmResponse(msg,"mock-model-1.0");
+    // word by word, so streaming clients can be tried without a provider
+    @Override
+    public LlmResponse generate(String userMessage, List<String> retrievedSnippets, ConversationHistory history,
+                                Consumer<String> onDelta) {
+        LlmResponse resp = generate(userMessage, retrievedSnippets, history);
+        String text = resp.getGeneratedText();
+        int start = 0;
+        for (int i = 1; i <= text.length(); i++) {
+            if (i == text.length() || text.charAt(i) == ' ') {
+                onDelta.accept(text.substring(start, i));
+                start = i;
+            }
+        }
+        return resp;
     }
 }
-
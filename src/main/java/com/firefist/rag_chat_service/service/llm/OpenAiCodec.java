@@ -0,0 +1,290 @@
+package com.firefist.rag_chat_service.service.llm;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadFeature;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Streaming codec for the OpenAI-style chat completions protocol.
+ *
+ * - Requests are written field by field straight into the HTTP body, no intermediate Map or byte[].
+ * - Responses are read token by token; only choices[0] (message.content / text, finish_reason) and
+ *   usage are kept, everything else is skipped without being materialized.
+ * - Streamed responses (server-sent chat.completion.chunk events) are read event by event, handing each
+ *   content delta to a callback as it arrives.
+ * - One JsonFactory is shared, so Jackson's recycled read/write buffers are reused across calls.
+ */
+public final class OpenAiCodec {
+
+    // the HTTP layer owns the streams, the codec must not close them
+    private static final JsonFactory JSON = JsonFactory.builder()
+            .disable(StreamReadFeature.AUTO_CLOSE_SOURCE)
+            .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+            .build();
+
+    private OpenAiCodec() {
+    }
+
+    public record Message(String role, String content) {
+    }
+
+    /**
+     * stream=true asks for server-sent events (read with {@link #readStream}), including a final usage chunk.
+     */
+    public record ChatRequest(String model, List<Message> messages, int maxTokens, double temperature, boolean stream) {
+        public ChatRequest(String model, List<Message> messages, int maxTokens, double temperature) {
+            this(model, messages, maxTokens, temperature, false);
+        }
+    }
+
+    /**
+     * The parts of a completion we use. content is null if the response had none of the known shapes.
+     */
+    public record ChatCompletion(String content, String finishReason, Integer promptTokens, Integer completionTokens) {
+    }
+
+    public static void writeRequest(ChatRequest request, OutputStream out) throws IOException {
+        try (JsonGenerator gen = JSON.createGenerator(out)) {
+            gen.writeStartObject();
+            gen.writeStringField("model", request.model());
+            gen.writeArrayFieldStart("messages");
+            for (Message m : request.messages()) {
+                gen.writeStartObject();
+                gen.writeStringField("role", m.role());
+                gen.writeStringField("content", m.content());
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+            gen.writeNumberField("max_tokens", request.maxTokens());
+            gen.writeNumberField("temperature", request.temperature());
+            if (request.stream()) {
+                gen.writeBooleanField("stream", true);
+                gen.writeObjectFieldStart("stream_options");
+                gen.writeBooleanField("include_usage", true);
+                gen.writeEndObject();
+            }
+            gen.writeEndObject();
+        }
+    }
+
+    /**
+     * Accepts {"choices":[{"message":{"content":...}}]}, {"choices":[{"text":...}]}, {"choices":["..."]}
+     * and, as a last resort, a top-level "text" or "content" field.
+     */
+    public static ChatCompletion readResponse(InputStream in) throws IOException {
+        try (JsonParser p = JSON.createParser(in)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) throw new IOException("Expected a JSON object");
+            String content = null;
+            String fallback = null;
+            String finishReason = null;
+            Integer promptTokens = null;
+            Integer completionTokens = null;
+
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken value = p.nextToken();
+                switch (field) {
+                    case "choices" -> {
+                        if (value != JsonToken.START_ARRAY) {
+                            p.skipChildren();
+                            break;
+                        }
+                        // only the first choice is used, the rest are skipped
+                        boolean first = true;
+                        for (JsonToken t = p.nextToken(); t != JsonToken.END_ARRAY; t = p.nextToken()) {
+                            if (first && t == JsonToken.VALUE_STRING) {
+                                content = p.getText();
+                            } else if (first && t == JsonToken.START_OBJECT) {
+                                Choice choice = readChoice(p);
+                                content = choice.content();
+                                finishReason = choice.finishReason();
+                            } else {
+                                p.skipChildren();
+                            }
+                            first = false;
+                        }
+                    }
+                    case "usage" -> {
+                        Usage usage = readUsage(p, value);
+                        promptTokens = usage.promptTokens();
+                        completionTokens = usage.completionTokens();
+                    }
+                    case "text", "content" -> {
+                        if (value.isScalarValue() && value != JsonToken.VALUE_NULL && fallback == null) {
+                            fallback = p.getText();
+                        } else {
+                            p.skipChildren();
+                        }
+                    }
+                    default -> p.skipChildren();
+                }
+            }
+            return new ChatCompletion(content != null ? content : fallback, finishReason, promptTokens, completionTokens);
+        }
+    }
+
+    /**
+     * Reads a streamed completion: "data:" events up to [DONE] (or the end of the body). Each non-empty
+     * choices[0].delta.content is passed to onDelta on the calling thread; the result carries the
+     * concatenated content, the last finish_reason and the usage chunk if the provider sent one.
+     */
+    public static ChatCompletion readStream(InputStream in, Consumer<String> onDelta) throws IOException {
+        // not closed, the HTTP layer owns the stream
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        StreamState state = new StreamState();
+        StringBuilder data = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                // a blank line ends the event
+                if (data.length() > 0 && !readEvent(data.toString(), state, onDelta)) return state.completion();
+                data.setLength(0);
+            } else if (line.startsWith("data:")) {
+                if (data.length() > 0) data.append('\n');
+                data.append(line, line.startsWith("data: ") ? 6 : 5, line.length());
+            }
+            // comments (":...") and the event/id/retry fields carry nothing we use
+        }
+        if (data.length() > 0) readEvent(data.toString(), state, onDelta);
+        return state.completion();
+    }
+
+    private static final class StreamState {
+        final StringBuilder content = new StringBuilder();
+        boolean any;
+        String finishReason;
+        Integer promptTokens;
+        Integer completionTokens;
+
+        ChatCompletion completion() {
+            return new ChatCompletion(any ? content.toString() : null, finishReason, promptTokens, completionTokens);
+        }
+    }
+
+    // false once the stream says [DONE]
+    private static boolean readEvent(String data, StreamState state, Consumer<String> onDelta) throws IOException {
+        if ("[DONE]".equals(data.trim())) return false;
+        try (JsonParser p = JSON.createParser(data)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) return true;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken value = p.nextToken();
+                if ("choices".equals(field) && value == JsonToken.START_ARRAY) {
+                    boolean first = true;
+                    for (JsonToken t = p.nextToken(); t != JsonToken.END_ARRAY; t = p.nextToken()) {
+                        if (first && t == JsonToken.START_OBJECT) readDeltaChoice(p, state, onDelta);
+                        else p.skipChildren();
+                        first = false;
+                    }
+                } else if ("usage".equals(field)) {
+                    Usage usage = readUsage(p, value);
+                    if (usage.promptTokens() != null) state.promptTokens = usage.promptTokens();
+                    if (usage.completionTokens() != null) state.completionTokens = usage.completionTokens();
+                } else {
+                    p.skipChildren();
+                }
+            }
+        }
+        return true;
+    }
+
+    // parser is on the choice's START_OBJECT: {"delta":{"content":...},"finish_reason":...} (or "text" for legacy completions)
+    private static void readDeltaChoice(JsonParser p, StreamState state, Consumer<String> onDelta) throws IOException {
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken value = p.nextToken();
+            if ("delta".equals(field) && value == JsonToken.START_OBJECT) {
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = p.currentName();
+                    JsonToken t = p.nextToken();
+                    if ("content".equals(name) && t == JsonToken.VALUE_STRING) delta(p.getText(), state, onDelta);
+                    else p.skipChildren();
+                }
+            } else if ("text".equals(field) && value == JsonToken.VALUE_STRING) {
+                delta(p.getText(), state, onDelta);
+            } else if ("finish_reason".equals(field) && value == JsonToken.VALUE_STRING) {
+                state.finishReason = p.getText();
+            } else {
+                p.skipChildren();
+            }
+        }
+    }
+
+    private static void delta(String text, StreamState state, Consumer<String> onDelta) {
+        state.any = true;
+        if (text.isEmpty()) return;
+        state.content.append(text);
+        onDelta.accept(text);
+    }
+
+    private record Usage(Integer promptTokens, Integer completionTokens) {
+    }
+
+    private static final Usage NO_USAGE = new Usage(null, null);
+
+    // parser is on the usage value (an object, or null in the non-final chunks of a stream)
+    private static Usage readUsage(JsonParser p, JsonToken value) throws IOException {
+        if (value != JsonToken.START_OBJECT) {
+            p.skipChildren();
+            return NO_USAGE;
+        }
+        Integer promptTokens = null;
+        Integer completionTokens = null;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String name = p.currentName();
+            JsonToken t = p.nextToken();
+            if (t == JsonToken.VALUE_NUMBER_INT && "prompt_tokens".equals(name)) {
+                promptTokens = p.getIntValue();
+            } else if (t == JsonToken.VALUE_NUMBER_INT && "completion_tokens".equals(name)) {
+                completionTokens = p.getIntValue();
+            } else {
+                p.skipChildren();
+            }
+        }
+        return new Usage(promptTokens, completionTokens);
+    }
+
+    private record Choice(String content, String finishReason) {
+    }
+
+    // parser is on the choice's START_OBJECT
+    private static Choice readChoice(JsonParser p) throws IOException {
+        String messageContent = null;
+        String text = null;
+        String finishReason = null;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken value = p.nextToken();
+            if ("message".equals(field) && value == JsonToken.START_OBJECT) {
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = p.currentName();
+                    JsonToken t = p.nextToken();
+                    if ("content".equals(name) && t.isScalarValue() && t != JsonToken.VALUE_NULL) {
+                        messageContent = p.getText();
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+            } else if ("text".equals(field) && value.isScalarValue() && value != JsonToken.VALUE_NULL) {
+                text = p.getText();
+            } else if ("finish_reason".equals(field) && value == JsonToken.VALUE_STRING) {
+                finishReason = p.getText();
+            } else {
+                p.skipChildren();
+            }
+        }
+        return new Choice(messageContent != null ? messageContent : text, finishReason);
+    }
+}
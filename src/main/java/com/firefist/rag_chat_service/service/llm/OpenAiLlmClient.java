@@ -1,25 +1,38 @@
 package com.firefist.rag_chat_service.service.llm;
 
-import io.github.resilience4j.ratelimiter.annotation.RateLimiter;
+import com.firefist.rag_chat_service.service.deadline.RequestDeadline;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.http.client.ClientHttpRequestFactoryBuilder;
 import org.springframework.boot.web.client.RestTemplateBuilder;
-import org.springframework.http.*;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
 import java.time.Duration;
-import java.util.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
 
 /**
  * Simple RestTemplate-based OpenAI-style LLM client.
  *
  * - Sends a system message, user message and concatenated retrieved snippets.
- * - Expects a JSON response containing a generated text under the path
- *   (this implementation assumes vendor returns a top-level "choices"[0]."message". "content"
- *   or "choices"[0]."text" — the parser attempts both).
+ * - Request and response go through {@link OpenAiCodec}, which streams the JSON and only reads
+ *   choices[0] ("message"."content" or "text"), finish_reason and usage.
+ * - With a delta callback the completion is requested with "stream": true and each server-sent
+ *   delta is handed over as it arrives (a provider answering with plain JSON gets one delta).
  *
  * Configure with properties (see application.properties snippet).
+ *
+ * The RestTemplate comes from Spring Boot's builder, so every call is observed as http.client.requests
+ * and carries the current trace context (traceparent / b3 headers) to the provider.
+ *
+ * It runs on the JDK HttpClient: interrupting the calling thread (a cancelled turn, see {@link RequestDeadline})
+ * aborts the exchange, while waiting for the response or in the middle of a stream, instead of running to
+ * llm.timeout-ms. A call failing because its turn was cancelled throws rather than reporting a provider error.
  */
 @Service
 @org.springframework.boot.autoconfigure.condition.ConditionalOnProperty(name = "llm.enabled", havingValue = "true")
@@ -41,107 +54,97 @@ public class OpenAiLlmClient implements LlmClient {
         this.model = model;
         this.timeoutMs = timeoutMs;
         this.rest = builder
+                .requestFactoryBuilder(ClientHttpRequestFactoryBuilder.jdk())
                 .setConnectTimeout(Duration.ofMillis(timeoutMs))
                 .setReadTimeout(Duration.ofMillis(timeoutMs))
                 .build();
     }
 
+    @Override
+    public LlmResponse generate(String userMessage, List<String> retrievedSnippets) {
+        return generate(userMessage, retrievedSnippets, ConversationHistory.EMPTY);
+    }
+
     /**
      * Primary generate method called by ChatMessageService.
-     * Wrapped by a rate limiter with fallback (see method below).
+     * Concurrency is limited by the caller through LlmCallScheduler.
      */
     @Override
-    @RateLimiter(name = "rl", fallbackMethod = "llmRateLimitFallback")
-    public LlmResponse generate(String userMessage, List<String> retrievedSnippets) {
+    public LlmResponse generate(String userMessage, List<String> retrievedSnippets, ConversationHistory history) {
+        return call(userMessage, retrievedSnippets, history, null);
+    }
+
+    @Override
+    public LlmResponse generate(String userMessage, List<String> retrievedSnippets, ConversationHistory history,
+                                Consumer<String> onDelta) {
+        return call(userMessage, retrievedSnippets, history, Objects.requireNonNull(onDelta, "onDelta required"));
+    }
+
+    // onDelta null: one plain JSON completion
+    private LlmResponse call(String userMessage, List<String> retrievedSnippets, ConversationHistory history,
+                             Consumer<String> onDelta) {
         Objects.requireNonNull(userMessage, "userMessage required");
 
-        // Build messages list: system -> (optional) context -> user
-        List<Map<String, String>> messages = new ArrayList<>();
+        // Build messages list: system -> (optional) context -> (optional) summary -> recent turns -> user
+        List<OpenAiCodec.Message> messages = new ArrayList<>(4 + history.turns().size());
 
         String systemPrompt = "You are an assistant that answers clearly and concisely. " +
                 "Be helpful and reference any provided context when useful.";
-        messages.add(Map.of("role", "system", "content", systemPrompt));
+        messages.add(new OpenAiCodec.Message("system", systemPrompt));
 
         if (retrievedSnippets != null && !retrievedSnippets.isEmpty()) {
             String joined = String.join("\n\n---\n\n", retrievedSnippets);
             // include as a system/context message so it's available as grounding
-            messages.add(Map.of("role", "system", "content", "Retrieved context:\n" + joined));
+            messages.add(new OpenAiCodec.Message("system", "Retrieved context:\n" + joined));
         }
 
-        messages.add(Map.of("role", "user", "content", userMessage));
-
-        Map<String, Object> payload = new HashMap<>();
-        payload.put("model", model);
-        payload.put("messages", messages);
-        // optional: limit tokens, temperature etc.
-        payload.put("max_tokens", 800);
-        payload.put("temperature", 0.2);
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        if (apiKey != null && !apiKey.isBlank()) {
-            headers.setBearerAuth(apiKey);
+        if (history.summary() != null && !history.summary().isBlank()) {
+            messages.add(new OpenAiCodec.Message("system", "Summary of the earlier conversation:\n" + history.summary()));
+        }
+        for (ConversationHistory.Turn turn : history.turns()) {
+            messages.add(new OpenAiCodec.Message(turn.role(), turn.content()));
         }
 
-        HttpEntity<Map<String, Object>> request = new HttpEntity<>(payload, headers);
+        messages.add(new OpenAiCodec.Message("user", userMessage));
+
+        // optional: limit tokens, temperature etc.
+        boolean stream = onDelta != null;
+        OpenAiCodec.ChatRequest payload = new OpenAiCodec.ChatRequest(model, messages, 800, 0.2, stream);
 
         try {
-            ResponseEntity<Map> resp = rest.postForEntity(endpoint, request, Map.class);
-            if (resp.getStatusCode().is2xxSuccessful() && resp.getBody() != null) {
-                String generated = parseGeneratedText(resp.getBody());
-                return new LlmResponse(generated, model);
-            } else {
-                String err = "LLM provider returned non-2xx: " + resp.getStatusCode();
-                return new LlmResponse(err, model);
+            // the codec writes into and reads from the HTTP streams directly, the body is never held as a tree
+            OpenAiCodec.ChatCompletion completion = rest.execute(endpoint, HttpMethod.POST,
+                    request -> {
+                        request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                        request.getHeaders().setAccept(List.of(stream ? MediaType.TEXT_EVENT_STREAM : MediaType.APPLICATION_JSON));
+                        if (apiKey != null && !apiKey.isBlank()) {
+                            request.getHeaders().setBearerAuth(apiKey);
+                        }
+                        OpenAiCodec.writeRequest(payload, request.getBody());
+                    },
+                    response -> {
+                        if (!stream) return OpenAiCodec.readResponse(response.getBody());
+                        MediaType type = response.getHeaders().getContentType();
+                        if (type != null && MediaType.TEXT_EVENT_STREAM.isCompatibleWith(type)) {
+                            return OpenAiCodec.readStream(response.getBody(), onDelta);
+                        }
+                        OpenAiCodec.ChatCompletion whole = OpenAiCodec.readResponse(response.getBody());
+                        if (whole.content() != null) onDelta.accept(whole.content());
+                        return whole;
+                    });
+            if (completion == null) {
+                return new LlmResponse("LLM: could not parse response", model);
             }
+            String generated = completion.content() != null ? completion.content() : "LLM: could not parse response";
+            return new LlmResponse(generated, model, completion.promptTokens(), completion.completionTokens(),
+                    completion.finishReason());
         } catch (RestClientException ex) {
+            // interrupted because the turn was given up: not the provider's fault
+            RequestDeadline.checkCurrent();
+            // non-2xx statuses surface here too (default error handler), as do unparseable bodies
             String err = "LLM request failed: " + ex.getMessage();
-            return new LlmResponse(err, model);
+            // finish reason "error" tells LlmCallScheduler the provider is struggling
+            return new LlmResponse(err, model, null, null, "error");
         }
     }
-
-    /**
-     * Best-effort parser: many vendors return either:
-     * - {"choices":[{"message": {"content": "..."}}], ...}
-     * - {"choices":[{"text":"..."}], ...}
-     */
-    @SuppressWarnings("unchecked")
-    private String parseGeneratedText(Map body) {
-        try {
-            Object choicesObj = body.get("choices");
-            if (choicesObj instanceof List) {
-                List choices = (List) choicesObj;
-                if (!choices.isEmpty()) {
-                    Object first = choices.get(0);
-                    if (first instanceof Map) {
-                        Map firstMap = (Map) first;
-                        Object message = firstMap.get("message");
-                        if (message instanceof Map) {
-                            Object content = ((Map) message).get("content");
-                            if (content != null) return content.toString();
-                        }
-                        Object text = firstMap.get("text");
-                        if (text != null) return text.toString();
-                    } else if (first instanceof String) {
-                        return first.toString();
-                    }
-                }
-            }
-        } catch (Exception ignored) {}
-        // fallback: try top-level "text" or "content"
-        Object text = body.get("text");
-        if (text != null) return text.toString();
-        Object content = body.get("content");
-        if (content != null) return content.toString();
-        return "LLM: could not parse response";
-    }
-
-    /**
-     * Rate limiter fallback — signature matches (params..., Throwable)
-     * Returns a friendly message to be persisted by ChatMessageService.
-     */
-    public LlmResponse llmRateLimitFallback(String userMessage, List<String> retrievedSnippets, Throwable ex) {
-        String msg = "LLM temporarily unavailable (rate limit or error). Please try again later.";
-        return new LlmResponse(msg, model);
-    }
 }
@@ -0,0 +1,107 @@
+package com.firefist.rag_chat_service.service.metrics;
+
+import com.firefist.rag_chat_service.service.llm.LlmResponse;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+/**
+ * Timing and size measurements for the message pipeline (session lookup, saves, retrieval, history, LLM).
+ *
+ * - Every stage is an Observation named chat.pipeline.stage: one Timer tagged stage=... (plus error)
+ *   and, with tracing on, one child span of the HTTP request span. Histogram buckets, percentiles and SLOs
+ *   are set through management.metrics.distribution.*.chat.pipeline.stage properties.
+ * - Token counts, prompt size and snippet counts go to separate summaries; the model is a tag there
+ *   and a span attribute, never a tag on the stage timer, so every chat.pipeline.stage series has the same tag keys.
+ */
+@Component
+public class ChatPipelineObservations {
+
+    public static final String STAGE_OBSERVATION = "chat.pipeline.stage";
+
+    public static final String SESSION_LOOKUP = "session_lookup";
+    public static final String ALLOCATE_SEQUENCE = "allocate_sequence";
+    public static final String SAVE_USER = "save_user";
+    public static final String RETRIEVAL = "retrieval";
+    public static final String HISTORY = "history";
+    public static final String LLM = "llm";
+    public static final String SAVE_ASSISTANT = "save_assistant";
+
+    private final ObservationRegistry observationRegistry;
+    private final MeterRegistry meterRegistry;
+    private final DistributionSummary snippetCount;
+    private final DistributionSummary promptChars;
+
+    public ChatPipelineObservations(ObservationRegistry observationRegistry, MeterRegistry meterRegistry) {
+        this.observationRegistry = observationRegistry;
+        this.meterRegistry = meterRegistry;
+        this.snippetCount = DistributionSummary.builder("chat.retrieval.snippets")
+                .description("Snippets returned by retrieval per user turn")
+                .register(meterRegistry);
+        this.promptChars = DistributionSummary.builder("chat.llm.prompt.size")
+                .description("Characters sent to the LLM per call (user message plus snippets)")
+                .baseUnit("chars")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs one pipeline stage inside its own observation.
+     */
+    public <T> T stage(String stage, Supplier<T> body) {
+        return stageObservation(stage).observe(body);
+    }
+
+    /**
+     * Same as {@link #stage} for the LLM call; also records prompt size, token usage and model.
+     */
+    public LlmResponse llm(int promptSize, Supplier<LlmResponse> call) {
+        Observation observation = stageObservation(LLM)
+                .highCardinalityKeyValue("prompt.chars", Integer.toString(promptSize));
+        promptChars.record(promptSize);
+        return observation.observe(() -> {
+            LlmResponse resp = call.get();
+            if (resp == null) return null;
+            observation.highCardinalityKeyValue("llm.model", String.valueOf(resp.getModel()));
+            if (resp.getFinishReason() != null) observation.highCardinalityKeyValue("llm.finish_reason", resp.getFinishReason());
+            recordTokens(resp, observation);
+            return resp;
+        });
+    }
+
+    public void recordSnippets(int count) {
+        snippetCount.record(count);
+    }
+
+    private Observation stageObservation(String stage) {
+        return Observation.createNotStarted(STAGE_OBSERVATION, observationRegistry)
+                .contextualName("chat " + stage)
+                .lowCardinalityKeyValue("stage", stage);
+    }
+
+    // providers that don't report usage (the mock client) leave the counts null and are skipped
+    private void recordTokens(LlmResponse resp, Observation observation) {
+        String model = resp.getModel() == null ? "unknown" : resp.getModel();
+        if (resp.getPromptTokens() != null) {
+            tokens("prompt", model).record(resp.getPromptTokens());
+            observation.highCardinalityKeyValue("llm.tokens.prompt", resp.getPromptTokens().toString());
+        }
+        if (resp.getCompletionTokens() != null) {
+            tokens("completion", model).record(resp.getCompletionTokens());
+            observation.highCardinalityKeyValue("llm.tokens.completion", resp.getCompletionTokens().toString());
+        }
+    }
+
+    private DistributionSummary tokens(String type, String model) {
+        // registration is idempotent, the registry hands back the existing meter
+        return DistributionSummary.builder("chat.llm.tokens")
+                .description("Tokens reported by the LLM provider per call")
+                .baseUnit("tokens")
+                .tag("type", type)
+                .tag("model", model)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,177 @@
+package com.firefist.rag_chat_service.service.retrieval;
+
+import com.firefist.rag_chat_service.exception.RequestCancelledException;
+import com.firefist.rag_chat_service.service.deadline.RequestDeadline;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Caches top-k retrieval results per normalized query (NFKC, lower case, collapsed whitespace) and k,
+ * in front of the "retrievalBackend" bean.
+ *
+ * - Each entry remembers the {@link RetrievalIndexGeneration} it was computed under; once the index
+ *   changes, the entry is stale and recomputed on its next use, nothing is flushed eagerly.
+ * - Caffeine bounds the size and admits by frequency (TinyLFU): one-off questions don't push popular ones out.
+ * - Concurrent misses for the same key share one backend call, so a burst of the same new question
+ *   costs one scoring pass.
+ * - chat.retrieval.cache.requests{result=hit|miss|stale|shared} plus cache.* meters with cache=chat.retrieval.
+ */
+@Primary
+@Service
+public class CachingRetrievalService implements RetrievalService {
+
+    private static final String CACHE_NAME = "chat.retrieval";
+
+    private record Key(String query, int topK) {
+    }
+
+    private record Entry(long generation, List<RetrievalResult> results) {
+    }
+
+    private final RetrievalService backend;
+    private final RetrievalIndexGeneration generation;
+    private final Cache<Key, Entry> cache;
+    private final ConcurrentHashMap<Key, CompletableFuture<Entry>> inFlight = new ConcurrentHashMap<>();
+    private final boolean enabled;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter stale;
+    private final Counter shared;
+
+    public CachingRetrievalService(@Qualifier("retrievalBackend") RetrievalService backend,
+                                   RetrievalIndexGeneration generation,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${chat.retrieval.cache.enabled:true}") boolean enabled,
+                                   @Value("${chat.retrieval.cache.max-size:10000}") long maxSize,
+                                   @Value("${chat.retrieval.cache.ttl-ms:3600000}") long ttlMs) {
+        this.backend = backend;
+        this.generation = generation;
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                // backstop for sources that change without advancing the generation
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        this.hits = requests(meterRegistry, "hit");
+        this.misses = requests(meterRegistry, "miss");
+        this.stale = requests(meterRegistry, "stale");
+        this.shared = requests(meterRegistry, "shared");
+        // Caffeine's own hit count includes stale entries, this one doesn't
+        Gauge.builder("chat.retrieval.cache.hit.ratio", this, CachingRetrievalService::hitRatio)
+                .description("Share of retrievals answered from the cache with current results")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public List<RetrievalResult> retrieve(String query, int topK) {
+        if (!enabled || query == null) return backend.retrieve(query, topK);
+        Key key = new Key(normalize(query), topK);
+        // read before computing: an index change during the backend call leaves the entry stale, not wrong
+        long current = generation.current();
+
+        Entry cached = cache.getIfPresent(key);
+        if (cached != null && cached.generation() >= current) {
+            hits.increment();
+            return cached.results();
+        }
+
+        CompletableFuture<Entry> mine = new CompletableFuture<>();
+        CompletableFuture<Entry> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            Entry entry = join(running);
+            if (entry.generation() >= current) {
+                shared.increment();
+                return entry.results();
+            }
+            // that call started before the index changed, compute our own
+            return compute(key, query, topK, current, null);
+        }
+        (cached != null ? stale : misses).increment();
+        return compute(key, query, topK, current, mine);
+    }
+
+    private List<RetrievalResult> compute(Key key, String query, int topK, long current, CompletableFuture<Entry> mine) {
+        try {
+            Entry entry = new Entry(current, List.copyOf(backend.retrieve(query, topK)));
+            // never replace results of a newer generation with older ones
+            cache.asMap().merge(key, entry, (old, fresh) -> old.generation() > fresh.generation() ? old : fresh);
+            if (mine != null) mine.complete(entry);
+            return entry.results();
+        } catch (RuntimeException ex) {
+            if (mine != null) mine.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            if (mine != null) inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * Waits for another caller's backend call, but no longer than the current turn may: cancelling the turn
+     * interrupts the wait (the call itself goes on for the others), and its deadline bounds it.
+     */
+    private static Entry join(CompletableFuture<Entry> future) {
+        RequestDeadline turn = RequestDeadline.current();
+        try {
+            return turn == null ? future.get() : future.get(turn.remaining().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            RequestDeadline.Reason reason = turn != null && turn.cancelled() != null
+                    ? turn.cancelled() : RequestDeadline.Reason.DISCONNECT;
+            throw new RequestCancelledException(reason, ex);
+        } catch (TimeoutException ex) {
+            throw new RequestCancelledException(RequestDeadline.Reason.DEADLINE, ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) throw cause;
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    static String normalize(String query) {
+        String s = Normalizer.normalize(query, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        StringBuilder sb = new StringBuilder(s.length());
+        boolean space = false;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = sb.length() > 0;
+            } else {
+                if (space) sb.append(' ');
+                sb.append(c);
+                space = false;
+            }
+        }
+        return sb.toString();
+    }
+
+    private double hitRatio() {
+        double total = hits.count() + misses.count() + stale.count() + shared.count();
+        return total == 0 ? 0 : (hits.count() + shared.count()) / total;
+    }
+
+    private static Counter requests(MeterRegistry registry, String result) {
+        return Counter.builder("chat.retrieval.cache.requests")
+                .description("Retrievals by cache outcome")
+                .tag("result", result)
+                .register(registry);
+    }
+}
@@ -0,0 +1,89 @@
+package com.firefist.rag_chat_service.service.retrieval;
+
+import com.firefist.rag_chat_service.service.retrieval.index.IndexDocument;
+import com.firefist.rag_chat_service.service.retrieval.index.LiveIndex;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Retrieval from an in-memory BM25 index ({@link LiveIndex}), fed through /api/v1/retrieval/documents.
+ * Active with chat.retrieval.backend=index, otherwise the mock answers.
+ *
+ * - Queries never wait for writes: ingest, deletes and full rebuilds are published as snapshot swaps.
+ * - Every published change advances the {@link RetrievalIndexGeneration}, so cached results go stale.
+ * - Documents live in memory only; after a restart they have to be loaded again (PUT replaces everything).
+ */
+@Slf4j
+@Service("retrievalBackend")
+@ConditionalOnProperty(name = "chat.retrieval.backend", havingValue = "index")
+public class IndexRetrievalService implements RetrievalService {
+
+    private final LiveIndex index;
+    private final ExecutorService merger;
+
+    public IndexRetrievalService(RetrievalIndexGeneration generation,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${chat.retrieval.index.max-segments:16}") int maxSegments) {
+        this.merger = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "retrieval-merge");
+            t.setDaemon(true);
+            return t;
+        });
+        this.index = new LiveIndex(maxSegments, merger, generation::advance);
+        Gauge.builder("chat.retrieval.index.documents", index, i -> i.stats().liveDocs())
+                .description("Documents visible to retrieval queries")
+                .register(meterRegistry);
+        Gauge.builder("chat.retrieval.index.segments", index, i -> i.stats().segments())
+                .description("Segments of the current retrieval index snapshot")
+                .register(meterRegistry);
+        Gauge.builder("chat.retrieval.index.segments.alive", index, i -> i.stats().segmentsAlive())
+                .description("Segments still in memory, including ones kept by queries on older snapshots")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public List<RetrievalResult> retrieve(String query, int topK) {
+        List<RetrievalResult> out = new ArrayList<>();
+        for (LiveIndex.Hit hit : index.search(query, topK)) {
+            out.add(new RetrievalResult(hit.text(), hit.source() != null ? hit.source() : hit.id(), hit.score()));
+        }
+        return out;
+    }
+
+    public void add(Collection<IndexDocument> docs) {
+        index.add(docs);
+    }
+
+    public int delete(Collection<String> ids) {
+        return index.delete(ids);
+    }
+
+    /** False when another rebuild is still running. */
+    public boolean reindex(Collection<IndexDocument> docs) {
+        long started = System.nanoTime();
+        if (!index.reindex(docs)) return false;
+        log.info("Retrieval index rebuilt with {} documents in {} ms",
+                docs.size(), (System.nanoTime() - started) / 1_000_000);
+        return true;
+    }
+
+    public LiveIndex.Stats stats() {
+        return index.stats();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        merger.shutdownNow();
+    }
+}
@@ -1,14 +1,16 @@
 package com.firefist.rag_chat_service.service.retrieval;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Simple stub that returns canned snippets. Replace with real retrieval later.
+ * Simple stub that returns canned snippets. chat.retrieval.backend=index switches to IndexRetrievalService.
  */
-@Service
+@Service("retrievalBackend")
+@ConditionalOnProperty(name = "chat.retrieval.backend", havingValue = "mock", matchIfMissing = true)
 public class MockRetrievalService implements RetrievalService {
 
     @Override
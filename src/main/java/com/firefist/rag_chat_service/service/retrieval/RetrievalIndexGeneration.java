@@ -0,0 +1,31 @@
+package com.firefist.rag_chat_service.service.retrieval;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version number of the retrieval index. Whatever changes the index (ingest, delete, rebuild) calls
+ * {@link #advance} once the change is visible to queries; results computed under an older number are stale.
+ */
+@Component
+public class RetrievalIndexGeneration {
+
+    private final AtomicLong generation = new AtomicLong();
+
+    public RetrievalIndexGeneration(MeterRegistry meterRegistry) {
+        Gauge.builder("chat.retrieval.index.generation", generation, AtomicLong::get)
+                .description("Changes applied to the retrieval index since startup")
+                .register(meterRegistry);
+    }
+
+    public long current() {
+        return generation.get();
+    }
+
+    public long advance() {
+        return generation.incrementAndGet();
+    }
+}
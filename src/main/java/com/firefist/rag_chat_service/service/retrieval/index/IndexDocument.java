@@ -0,0 +1,14 @@
+package com.firefist.rag_chat_service.service.retrieval.index;
+
+import java.util.Objects;
+
+/**
+ * One retrievable chunk. The id is the caller's; adding a document with an id that is already indexed replaces it.
+ */
+public record IndexDocument(String id, String text, String source) {
+
+    public IndexDocument {
+        Objects.requireNonNull(id, "id");
+        Objects.requireNonNull(text, "text");
+    }
+}
@@ -0,0 +1,64 @@
+package com.firefist.rag_chat_service.service.retrieval.index;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * What one query sees: a fixed list of segments and, per segment, the ordinals deleted at publish time.
+ * Nothing in it changes after publication (the bitsets are copied on write), so readers need no locks.
+ *
+ * The index holds the first reference while the snapshot is current, each reader one more while it
+ * runs; the last release lets go of the segments.
+ */
+final class IndexSnapshot {
+
+    final long version;
+    final List<Segment> segments;
+    final List<BitSet> deleted;
+    final int totalDocs;
+    final int liveDocs;
+    final long totalLength;
+    private final AtomicInteger refs = new AtomicInteger(1);
+
+    IndexSnapshot(long version, List<Segment> segments, List<BitSet> deleted) {
+        this.version = version;
+        this.segments = List.copyOf(segments);
+        this.deleted = List.copyOf(deleted);
+        int total = 0;
+        int live = 0;
+        long length = 0;
+        for (int i = 0; i < this.segments.size(); i++) {
+            Segment s = this.segments.get(i);
+            s.retain();
+            total += s.size();
+            live += s.size() - this.deleted.get(i).cardinality();
+            length += s.totalLength();
+        }
+        this.totalDocs = total;
+        this.liveDocs = live;
+        this.totalLength = length;
+    }
+
+    /** Pins the snapshot unless it was already released for good. */
+    boolean tryRetain() {
+        for (;;) {
+            int r = refs.get();
+            if (r == 0) return false;
+            if (refs.compareAndSet(r, r + 1)) return true;
+        }
+    }
+
+    void release() {
+        int r = refs.decrementAndGet();
+        if (r < 0) throw new IllegalStateException("Snapshot " + version + " released too often");
+        if (r == 0) segments.forEach(Segment::release);
+    }
+
+    int indexOf(Segment segment) {
+        for (int i = 0; i < segments.size(); i++) {
+            if (segments.get(i) == segment) return i;
+        }
+        return -1;
+    }
+}
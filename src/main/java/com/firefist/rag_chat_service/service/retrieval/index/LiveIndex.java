@@ -0,0 +1,455 @@
+package com.firefist.rag_chat_service.service.retrieval.index;
+
+import com.firefist.rag_chat_service.service.search.SearchTokenizer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory BM25 index that takes inserts, deletes and full rebuilds while queries run.
+ *
+ * - Queries pin the current {@link IndexSnapshot} (one CAS on its reference count) and never lock; what they
+ *   see doesn't change under them, however many writes are published meanwhile.
+ * - Writes build their segment outside any lock, then take the write lock only to mark replaced/deleted
+ *   documents (copy-on-write bitsets) and swap in the next snapshot. A batch becomes visible all at once.
+ * - Small segments are merged on the merge executor, segments that are mostly deleted are compacted;
+ *   the merged segment replaces its inputs atomically, deletes that raced the merge are carried over.
+ * - {@link #reindex} builds a complete new set of segments next to the live one and swaps it in with one
+ *   publish; writes arriving during the build are replayed onto it first, so none are lost.
+ * - Old segments are released when the last snapshot listing them is released, i.e. once the last
+ *   query that could see them has finished.
+ * - onPublish runs after every change visible to queries (not after merges, they don't change results).
+ */
+@Slf4j
+public final class LiveIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    public record Hit(String id, String text, String source, double score) {
+    }
+
+    public record Stats(long version, int segments, int liveDocs, int segmentsAlive) {
+    }
+
+    private record Location(Segment segment, int ord) {
+    }
+
+    // a write that happened while a reindex was building: an added segment or deleted ids
+    private record Op(Segment added, List<String> deleted) {
+    }
+
+    private record Candidate(int segment, int ord, double score) {
+    }
+
+    private final AtomicReference<IndexSnapshot> current =
+            new AtomicReference<>(new IndexSnapshot(0, List.of(), List.of()));
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ReentrantLock reindexLock = new ReentrantLock();
+    private final AtomicBoolean merging = new AtomicBoolean();
+    private final AtomicLong segmentIds = new AtomicLong();
+    private final AtomicInteger segmentsAlive = new AtomicInteger();
+    private final int maxSegments;
+    private final Executor merger;
+    private final Runnable onPublish;
+    // guarded by writeLock: where each live document is in the current snapshot
+    private final Map<String, Location> locations = new HashMap<>();
+    // guarded by writeLock: non-null while a reindex is building
+    private List<Op> reindexLog;
+
+    public LiveIndex(int maxSegments, Executor merger, Runnable onPublish) {
+        this.maxSegments = Math.max(2, maxSegments);
+        this.merger = merger;
+        this.onPublish = onPublish;
+    }
+
+    public List<Hit> search(String query, int topK) {
+        Set<String> unique = new LinkedHashSet<>();
+        SearchTokenizer.tokenize(query, (term, position, start, end) -> unique.add(term));
+        if (unique.isEmpty() || topK <= 0) return List.of();
+        IndexSnapshot snapshot = acquire();
+        try {
+            return score(snapshot, List.copyOf(unique), topK);
+        } finally {
+            snapshot.release();
+        }
+    }
+
+    /** Adds or replaces documents; the batch becomes visible in one step. Within the batch the last one of an id wins. */
+    public void add(Collection<IndexDocument> docs) {
+        List<IndexDocument> batch = lastWins(docs);
+        if (batch.isEmpty()) return;
+        Segment segment = newSegment(batch);
+        writeLock.lock();
+        try {
+            IndexSnapshot old = current.get();
+            Draft draft = new Draft(old);
+            place(draft, locations, segment);
+            if (reindexLog != null) {
+                segment.retain();
+                reindexLog.add(new Op(segment, null));
+            }
+            publish(draft.build(old.version + 1), true);
+        } finally {
+            writeLock.unlock();
+            segment.release();
+        }
+        maybeMerge();
+    }
+
+    /** Removes documents by id, all in one step; returns how many were indexed. */
+    public int delete(Collection<String> ids) {
+        int removed = 0;
+        writeLock.lock();
+        try {
+            if (reindexLog != null) reindexLog.add(new Op(null, List.copyOf(ids)));
+            IndexSnapshot old = current.get();
+            Draft draft = new Draft(old);
+            for (String id : ids) {
+                Location location = locations.remove(id);
+                if (location != null) {
+                    draft.delete(location);
+                    removed++;
+                }
+            }
+            if (removed > 0) publish(draft.build(old.version + 1), true);
+        } finally {
+            writeLock.unlock();
+        }
+        if (removed > 0) maybeMerge();
+        return removed;
+    }
+
+    /**
+     * Replaces the whole content with docs. Queries keep answering from the old content until the new one
+     * is published; adds and deletes made meanwhile are applied on top of the new content.
+     * Returns false without doing anything when another reindex is running.
+     */
+    public boolean reindex(Collection<IndexDocument> docs) {
+        if (!reindexLock.tryLock()) return false;
+        Segment built = null;
+        try {
+            writeLock.lock();
+            try {
+                reindexLog = new ArrayList<>();
+            } finally {
+                writeLock.unlock();
+            }
+            List<IndexDocument> batch = lastWins(docs);
+            built = batch.isEmpty() ? null : newSegment(batch);
+            writeLock.lock();
+            try {
+                IndexSnapshot old = current.get();
+                Draft draft = new Draft(null);
+                Map<String, Location> fresh = new HashMap<>();
+                if (built != null) place(draft, fresh, built);
+                for (Op op : reindexLog) {
+                    if (op.added() != null) {
+                        place(draft, fresh, op.added());
+                    } else {
+                        for (String id : op.deleted()) {
+                            Location location = fresh.remove(id);
+                            if (location != null) draft.delete(location);
+                        }
+                    }
+                }
+                locations.clear();
+                locations.putAll(fresh);
+                publish(draft.build(old.version + 1), true);
+            } finally {
+                writeLock.unlock();
+            }
+        } finally {
+            writeLock.lock();
+            try {
+                if (reindexLog != null) {
+                    for (Op op : reindexLog) {
+                        if (op.added() != null) op.added().release();
+                    }
+                    reindexLog = null;
+                }
+            } finally {
+                writeLock.unlock();
+            }
+            if (built != null) built.release();
+            reindexLock.unlock();
+        }
+        maybeMerge();
+        return true;
+    }
+
+    public Stats stats() {
+        // only final counts of the snapshot are read, no pin needed
+        IndexSnapshot s = current.get();
+        return new Stats(s.version, s.segments.size(), s.liveDocs, segmentsAlive.get());
+    }
+
+    private IndexSnapshot acquire() {
+        for (;;) {
+            IndexSnapshot s = current.get();
+            // fails only if s was already replaced and fully released; the next read sees its successor
+            if (s.tryRetain()) return s;
+        }
+    }
+
+    // caller holds writeLock
+    private void publish(IndexSnapshot next, boolean changed) {
+        IndexSnapshot old = current.getAndSet(next);
+        old.release();
+        if (changed) onPublish.run();
+    }
+
+    private static void place(Draft draft, Map<String, Location> locations, Segment segment) {
+        draft.add(segment, new BitSet());
+        for (int ord = 0; ord < segment.size(); ord++) {
+            Location previous = locations.put(segment.docId(ord), new Location(segment, ord));
+            if (previous != null) draft.delete(previous);
+        }
+    }
+
+    private Segment newSegment(List<IndexDocument> docs) {
+        segmentsAlive.incrementAndGet();
+        return Segment.build(segmentIds.incrementAndGet(), docs, segmentsAlive::decrementAndGet);
+    }
+
+    private static List<IndexDocument> lastWins(Collection<IndexDocument> docs) {
+        Map<String, IndexDocument> byId = new LinkedHashMap<>();
+        for (IndexDocument doc : docs) byId.put(doc.id(), doc);
+        return new ArrayList<>(byId.values());
+    }
+
+    private List<Hit> score(IndexSnapshot snapshot, List<String> terms, int topK) {
+        if (snapshot.liveDocs == 0) return List.of();
+        // collection statistics include deleted documents until their segment is merged, as in Lucene
+        double avgLength = (double) snapshot.totalLength / Math.max(1, snapshot.totalDocs);
+        double[] idf = new double[terms.size()];
+        for (int t = 0; t < terms.size(); t++) {
+            long df = 0;
+            for (Segment s : snapshot.segments) {
+                Segment.Postings p = s.postings(terms.get(t));
+                if (p != null) df += p.docs().length;
+            }
+            idf[t] = df == 0 ? 0 : Math.log(1 + (snapshot.totalDocs - df + 0.5) / (df + 0.5));
+        }
+
+        PriorityQueue<Candidate> top = new PriorityQueue<>(Comparator.comparingDouble(Candidate::score));
+        Segment.Postings[] lists = new Segment.Postings[terms.size()];
+        int[] cursor = new int[terms.size()];
+        for (int si = 0; si < snapshot.segments.size(); si++) {
+            Segment segment = snapshot.segments.get(si);
+            BitSet deleted = snapshot.deleted.get(si);
+            for (int t = 0; t < terms.size(); t++) {
+                lists[t] = idf[t] == 0 ? null : segment.postings(terms.get(t));
+                cursor[t] = 0;
+            }
+            // document at a time over the sorted postings: no per-document allocation
+            for (;;) {
+                int doc = Integer.MAX_VALUE;
+                for (int t = 0; t < lists.length; t++) {
+                    if (lists[t] != null && cursor[t] < lists[t].docs().length) doc = Math.min(doc, lists[t].docs()[cursor[t]]);
+                }
+                if (doc == Integer.MAX_VALUE) break;
+                boolean live = !deleted.get(doc);
+                double norm = live ? K1 * (1 - B + B * segment.length(doc) / avgLength) : 0;
+                double score = 0;
+                for (int t = 0; t < lists.length; t++) {
+                    if (lists[t] == null || cursor[t] >= lists[t].docs().length || lists[t].docs()[cursor[t]] != doc) continue;
+                    if (live) {
+                        int f = lists[t].freqs()[cursor[t]];
+                        score += idf[t] * f * (K1 + 1) / (f + norm);
+                    }
+                    cursor[t]++;
+                }
+                if (live && (top.size() < topK || score > top.peek().score())) {
+                    top.add(new Candidate(si, doc, score));
+                    if (top.size() > topK) top.poll();
+                }
+            }
+        }
+
+        // read the texts while the snapshot is still pinned
+        List<Hit> hits = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            Candidate c = top.poll();
+            IndexDocument doc = snapshot.segments.get(c.segment()).document(c.ord());
+            hits.add(new Hit(doc.id(), doc.text(), doc.source(), c.score()));
+        }
+        Collections.reverse(hits);
+        return hits;
+    }
+
+    private void maybeMerge() {
+        if (plan(current.get()).isEmpty() || !merging.compareAndSet(false, true)) return;
+        try {
+            merger.execute(this::mergeLoop);
+        } catch (RejectedExecutionException ex) {
+            merging.set(false);
+        }
+    }
+
+    private void mergeLoop() {
+        try {
+            while (mergeOnce()) {
+                // keep going while the policy finds work
+            }
+        } catch (RuntimeException ex) {
+            log.warn("Retrieval index merge failed", ex);
+            merging.set(false);
+            return;
+        }
+        merging.set(false);
+        // a write published between the last check and the reset above found merging still set
+        maybeMerge();
+    }
+
+    /**
+     * Too many segments: merge the smallest ones down to half the limit. Otherwise compact the first segment
+     * that is more than half deleted.
+     */
+    private List<Segment> plan(IndexSnapshot s) {
+        int n = s.segments.size();
+        if (n > maxSegments) {
+            List<Integer> order = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) order.add(i);
+            order.sort(Comparator.comparingInt(i -> s.segments.get(i).size() - s.deleted.get(i).cardinality()));
+            List<Segment> inputs = new ArrayList<>();
+            for (int i = 0; i < Math.max(2, n - maxSegments / 2); i++) inputs.add(s.segments.get(order.get(i)));
+            return inputs;
+        }
+        for (int i = 0; i < n; i++) {
+            if (s.deleted.get(i).cardinality() * 2 > s.segments.get(i).size()) return List.of(s.segments.get(i));
+        }
+        return List.of();
+    }
+
+    private boolean mergeOnce() {
+        List<Segment> inputs;
+        List<BitSet> seen = new ArrayList<>();
+        int[][] ordMap;
+        Segment merged;
+        IndexSnapshot base = acquire();
+        try {
+            inputs = plan(base);
+            if (inputs.isEmpty()) return false;
+            List<IndexDocument> docs = new ArrayList<>();
+            ordMap = new int[inputs.size()][];
+            for (int i = 0; i < inputs.size(); i++) {
+                Segment segment = inputs.get(i);
+                BitSet deleted = base.deleted.get(base.indexOf(segment));
+                seen.add(deleted);
+                ordMap[i] = new int[segment.size()];
+                for (int ord = 0; ord < segment.size(); ord++) {
+                    ordMap[i][ord] = deleted.get(ord) ? -1 : docs.size();
+                    if (!deleted.get(ord)) docs.add(segment.document(ord));
+                }
+            }
+            merged = docs.isEmpty() ? null : newSegment(docs);
+        } finally {
+            base.release();
+        }
+
+        writeLock.lock();
+        try {
+            IndexSnapshot now = current.get();
+            for (Segment in : inputs) {
+                // replaced by a reindex meanwhile: drop the work and plan again on the new content
+                if (now.indexOf(in) < 0) return true;
+            }
+            Draft draft = new Draft(now);
+            BitSet mergedDeleted = new BitSet();
+            for (int i = 0; i < inputs.size(); i++) {
+                BitSet since = (BitSet) now.deleted.get(now.indexOf(inputs.get(i))).clone();
+                since.andNot(seen.get(i));
+                for (int ord = since.nextSetBit(0); ord >= 0; ord = since.nextSetBit(ord + 1)) {
+                    mergedDeleted.set(ordMap[i][ord]);
+                }
+                draft.remove(inputs.get(i));
+            }
+            if (merged != null) {
+                draft.add(merged, mergedDeleted);
+                for (int ord = 0; ord < merged.size(); ord++) {
+                    if (!mergedDeleted.get(ord)) locations.put(merged.docId(ord), new Location(merged, ord));
+                }
+            }
+            publish(draft.build(now.version + 1), false);
+            return true;
+        } finally {
+            writeLock.unlock();
+            if (merged != null) merged.release();
+        }
+    }
+
+    // the next snapshot under construction; bitsets of the base are cloned before the first change
+    private static final class Draft {
+        final List<Segment> segments = new ArrayList<>();
+        final List<BitSet> deleted = new ArrayList<>();
+        final Set<Segment> copied = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        Draft(IndexSnapshot base) {
+            if (base != null) {
+                segments.addAll(base.segments);
+                deleted.addAll(base.deleted);
+            }
+        }
+
+        void add(Segment segment, BitSet deletedOrds) {
+            segments.add(segment);
+            deleted.add(deletedOrds);
+            copied.add(segment);
+        }
+
+        void remove(Segment segment) {
+            int i = indexOf(segment);
+            segments.remove(i);
+            deleted.remove(i);
+        }
+
+        void delete(Location location) {
+            int i = indexOf(location.segment());
+            if (i < 0) return;
+            BitSet bits = deleted.get(i);
+            if (copied.add(location.segment())) {
+                bits = (BitSet) bits.clone();
+                deleted.set(i, bits);
+            }
+            bits.set(location.ord());
+        }
+
+        IndexSnapshot build(long version) {
+            // segments with nothing live left go away right here
+            for (int i = segments.size() - 1; i >= 0; i--) {
+                if (copied.contains(segments.get(i)) && deleted.get(i).cardinality() == segments.get(i).size()) {
+                    segments.remove(i);
+                    deleted.remove(i);
+                }
+            }
+            return new IndexSnapshot(version, segments, deleted);
+        }
+
+        private int indexOf(Segment segment) {
+            for (int i = 0; i < segments.size(); i++) {
+                if (segments.get(i) == segment) return i;
+            }
+            return -1;
+        }
+    }
+}
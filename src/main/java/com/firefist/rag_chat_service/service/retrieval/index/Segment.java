@@ -0,0 +1,146 @@
+package com.firefist.rag_chat_service.service.retrieval.index;
+
+import com.firefist.rag_chat_service.service.search.SearchTokenizer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Immutable slice of the index: documents in ordinal order plus an inverted index over their terms.
+ * Deletes never touch a segment, they live in the snapshot's per-segment bitsets.
+ *
+ * Reference counted: whoever built it holds the first reference, every snapshot listing it holds one more.
+ * When the count drops to zero the postings and texts are dropped; readers only reach segments through
+ * a snapshot they pinned, so a reclaimed segment is never read (if it were, it throws instead of answering).
+ */
+final class Segment {
+
+    record Postings(int[] docs, int[] freqs) {
+    }
+
+    final long id;
+    private final int size;
+    private final long totalLength;
+    private final AtomicInteger refs = new AtomicInteger(1);
+    private final Runnable onReclaim;
+    private volatile boolean reclaimed;
+    private String[] ids;
+    private String[] texts;
+    private String[] sources;
+    private int[] lengths;
+    private Map<String, Postings> postings;
+
+    private Segment(long id, List<IndexDocument> docs, Runnable onReclaim) {
+        this.id = id;
+        this.onReclaim = onReclaim;
+        this.size = docs.size();
+        this.ids = new String[size];
+        this.texts = new String[size];
+        this.sources = new String[size];
+        this.lengths = new int[size];
+        Map<String, PostingsBuilder> builders = new HashMap<>();
+        Map<String, int[]> tf = new HashMap<>();
+        long total = 0;
+        for (int ord = 0; ord < size; ord++) {
+            IndexDocument doc = docs.get(ord);
+            ids[ord] = doc.id();
+            texts[ord] = doc.text();
+            sources[ord] = doc.source();
+            tf.clear();
+            int[] length = new int[1];
+            SearchTokenizer.tokenize(doc.text(), (term, position, start, end) -> {
+                tf.computeIfAbsent(term, t -> new int[1])[0]++;
+                length[0]++;
+            });
+            lengths[ord] = length[0];
+            total += length[0];
+            for (Map.Entry<String, int[]> e : tf.entrySet()) {
+                builders.computeIfAbsent(e.getKey(), t -> new PostingsBuilder()).add(ord, e.getValue()[0]);
+            }
+        }
+        this.totalLength = total;
+        this.postings = new HashMap<>(builders.size() * 4 / 3 + 1);
+        builders.forEach((term, b) -> postings.put(term, b.build()));
+    }
+
+    static Segment build(long id, List<IndexDocument> docs, Runnable onReclaim) {
+        return new Segment(id, docs, onReclaim);
+    }
+
+    int size() {
+        return size;
+    }
+
+    long totalLength() {
+        return totalLength;
+    }
+
+    /** Postings of a term, doc ordinals ascending; null when no document of this segment has it. */
+    Postings postings(String term) {
+        checkLive();
+        return postings.get(term);
+    }
+
+    String docId(int ord) {
+        checkLive();
+        return ids[ord];
+    }
+
+    IndexDocument document(int ord) {
+        checkLive();
+        return new IndexDocument(ids[ord], texts[ord], sources[ord]);
+    }
+
+    int length(int ord) {
+        checkLive();
+        return lengths[ord];
+    }
+
+    void retain() {
+        int r;
+        do {
+            r = refs.get();
+            if (r == 0) throw new IllegalStateException("Segment " + id + " retained after release");
+        } while (!refs.compareAndSet(r, r + 1));
+    }
+
+    void release() {
+        int r = refs.decrementAndGet();
+        if (r < 0) throw new IllegalStateException("Segment " + id + " released too often");
+        if (r == 0) {
+            reclaimed = true;
+            ids = null;
+            texts = null;
+            sources = null;
+            lengths = null;
+            postings = null;
+            onReclaim.run();
+        }
+    }
+
+    private void checkLive() {
+        if (reclaimed) throw new IllegalStateException("Segment " + id + " read after release");
+    }
+
+    private static final class PostingsBuilder {
+        int[] docs = new int[4];
+        int[] freqs = new int[4];
+        int n;
+
+        void add(int doc, int freq) {
+            if (n == docs.length) {
+                docs = Arrays.copyOf(docs, n * 2);
+                freqs = Arrays.copyOf(freqs, n * 2);
+            }
+            docs[n] = doc;
+            freqs[n++] = freq;
+        }
+
+        Postings build() {
+            return new Postings(Arrays.copyOf(docs, n), Arrays.copyOf(freqs, n));
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.firefist.rag_chat_service.service.search;
+
+import com.firefist.rag_chat_service.dto.SearchResponse;
+import com.firefist.rag_chat_service.model.ChatMessage;
+import com.firefist.rag_chat_service.model.ChatSession;
+import com.firefist.rag_chat_service.repository.ChatMessageJdbcRepository;
+import com.firefist.rag_chat_service.repository.ChatMessageRepository;
+import com.firefist.rag_chat_service.repository.ChatSessionRepository;
+import com.firefist.rag_chat_service.service.archive.MessageArchive;
+import com.firefist.rag_chat_service.service.cache.SessionCache;
+import com.firefist.rag_chat_service.service.store.MessageWriter;
+import com.firefist.rag_chat_service.service.tx.TransactionHooks;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Full-text search over a user's messages, served from per-user in-memory inverted indexes.
+ *
+ * - A user's index is built on their first search by reading their sessions (archive slices and
+ *   a cursor over the hot rows, by session id, so no table scan), then kept up to date from the write path:
+ *   new messages are indexed on a single background thread after their transaction commits.
+ * - Indexes are held in a cache bounded by total index size and dropped after idle-ms without searches;
+ *   a dropped index is simply rebuilt. If the indexing queue overflows, the affected user's index is
+ *   dropped rather than left incomplete.
+ * - Only the best hits are read back from the database (by primary key) to build highlights.
+ */
+@Slf4j
+@Service
+public class MessageSearchService {
+
+    private final ChatSessionRepository sessionRepository;
+    private final ChatMessageRepository messageRepository;
+    private final ChatMessageJdbcRepository jdbcRepository;
+    private final MessageArchive messageArchive;
+    private final MessageWriter messageWriter;
+    private final SessionCache sessionCache;
+    private final EntityManager entityManager;
+    private final TransactionTemplate readOnlyTx;
+    private final Cache<String, UserSearchIndex> indexes;
+    private final ThreadPoolExecutor indexer;
+    private final int fetchSize;
+    private final int maxExpansions;
+    private final int highlightChars;
+
+    public MessageSearchService(ChatSessionRepository sessionRepository,
+                                ChatMessageRepository messageRepository,
+                                ChatMessageJdbcRepository jdbcRepository,
+                                MessageArchive messageArchive,
+                                MessageWriter messageWriter,
+                                SessionCache sessionCache,
+                                EntityManager entityManager,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${chat.search.max-weight:200000000}") long maxWeight,
+                                @Value("${chat.search.idle-ms:3600000}") long idleMs,
+                                @Value("${chat.search.queue-size:10000}") int queueSize,
+                                @Value("${chat.search.fetch-size:1000}") int fetchSize,
+                                @Value("${chat.search.max-expansions:50}") int maxExpansions,
+                                @Value("${chat.search.highlight-chars:200}") int highlightChars) {
+        this.sessionRepository = sessionRepository;
+        this.messageRepository = messageRepository;
+        this.jdbcRepository = jdbcRepository;
+        this.messageArchive = messageArchive;
+        this.messageWriter = messageWriter;
+        this.sessionCache = sessionCache;
+        this.entityManager = entityManager;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.indexes = Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((String userId, UserSearchIndex index) -> index.weight())
+                .expireAfterAccess(Duration.ofMillis(idleMs))
+                .build();
+        this.indexer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), r -> {
+                    Thread t = new Thread(r, "search-indexer");
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.fetchSize = fetchSize;
+        this.maxExpansions = maxExpansions;
+        this.highlightChars = highlightChars;
+    }
+
+    public SearchResponse search(String userId, String q, int limit) {
+        SearchQuery query = SearchQuery.parse(q);
+        if (query.isEmpty()) throw new IllegalArgumentException("Query has no searchable terms");
+        UserSearchIndex.Result result = readyIndex(userId).search(query, limit, maxExpansions, limit);
+
+        Map<UUID, ChatMessage> messages = loadMessages(result.hits());
+        List<SearchResponse.MessageHit> hits = new ArrayList<>(result.hits().size());
+        for (UserSearchIndex.Hit h : result.hits()) {
+            ChatMessage m = messages.get(h.messageId());
+            hits.add(new SearchResponse.MessageHit(h.messageId(), h.sessionId(),
+                    m == null ? null : m.getSender(),
+                    h.sequenceNumber() < 0 ? null : h.sequenceNumber(),
+                    m == null ? null : m.getCreatedAt(),
+                    h.score(),
+                    m == null ? null : SearchHighlighter.highlight(m.getContent(), query, highlightChars)));
+        }
+        List<SearchResponse.SessionHit> sessions = new ArrayList<>(result.sessions().size());
+        for (UserSearchIndex.SessionHit s : result.sessions()) {
+            String title = sessionCache.findActive(s.sessionId()).map(ChatSession::getTitle).orElse(null);
+            sessions.add(new SearchResponse.SessionHit(s.sessionId(), title, s.hits(), s.bestScore()));
+        }
+        return new SearchResponse(q, result.totalHits(), hits, sessions);
+    }
+
+    /**
+     * Indexes the messages once the current transaction commits (if the user's index is loaded).
+     */
+    public void indexAfterCommit(String userId, List<ChatMessage> messages) {
+        TransactionHooks.afterCommit(() -> submit(userId, () -> {
+            UserSearchIndex index = indexes.getIfPresent(userId);
+            if (index == null) return;
+            for (ChatMessage m : messages) {
+                index.add(m.getId(), m.getSession().getId(),
+                        m.getSequenceNumber() == null ? -1 : m.getSequenceNumber(), m.getContent());
+            }
+            // re-weigh, unless the index was dropped meanwhile
+            indexes.asMap().replace(userId, index, index);
+        }));
+    }
+
+    public void sessionDeleted(String userId, UUID sessionId) {
+        TransactionHooks.afterCommit(() -> {
+            UserSearchIndex index = indexes.getIfPresent(userId);
+            if (index != null) index.deleteSession(sessionId);
+        });
+    }
+
+    /**
+     * Drops these users' indexes, e.g. after a bulk import wrote their messages behind the write path's back.
+     */
+    public void invalidate(Collection<String> userIds) {
+        indexes.invalidateAll(userIds);
+    }
+
+    private UserSearchIndex readyIndex(String userId) {
+        UserSearchIndex index = indexes.get(userId, id -> new UserSearchIndex());
+        if (index.isReady()) return index;
+        synchronized (index.buildLock) {
+            if (!index.isReady()) {
+                long start = System.nanoTime();
+                load(userId, index);
+                index.markReady();
+                indexes.asMap().replace(userId, index, index);
+                log.debug("Built search index for a user in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        }
+        return index;
+    }
+
+    private void load(String userId, UserSearchIndex index) {
+        for (UUID sessionId : sessionRepository.findActiveIdsByUserId(userId)) {
+            readOnlyTx.executeWithoutResult(status -> {
+                ChatSession session = sessionRepository.findById(sessionId).orElse(null);
+                if (session == null || session.getDeletedAt() != null) return;
+                for (long offset = 0; offset < session.getArchivedMessageCount(); offset += fetchSize) {
+                    messageArchive.read(session, offset, fetchSize).forEach(m -> load(index, m));
+                    entityManager.clear();
+                }
+                try (Stream<ChatMessage> hot = jdbcRepository.streamBySession(sessionId, fetchSize)) {
+                    hot.forEach(m -> load(index, m));
+                }
+            });
+            messageWriter.pending(sessionId).forEach(m -> load(index, m));
+        }
+    }
+
+    private static void load(UserSearchIndex index, ChatMessage m) {
+        index.load(m.getId(), m.getSession().getId(),
+                m.getSequenceNumber() == null ? -1 : m.getSequenceNumber(), m.getContent());
+    }
+
+    // hot rows first, then the archive, then unflushed messages for whatever is still missing
+    private Map<UUID, ChatMessage> loadMessages(List<UserSearchIndex.Hit> hits) {
+        Map<UUID, ChatMessage> found = new HashMap<>();
+        if (hits.isEmpty()) return found;
+        Set<UUID> ids = new HashSet<>();
+        hits.forEach(h -> ids.add(h.messageId()));
+        readOnlyTx.executeWithoutResult(status -> {
+            messageRepository.findAllById(ids).forEach(m -> found.put(m.getId(), m));
+            if (found.size() < ids.size()) {
+                Set<UUID> missing = new HashSet<>(ids);
+                missing.removeAll(found.keySet());
+                messageArchive.findByIds(missing).forEach(m -> found.put(m.getId(), m));
+            }
+        });
+        for (UserSearchIndex.Hit h : hits) {
+            if (found.containsKey(h.messageId())) continue;
+            for (ChatMessage m : messageWriter.pending(h.sessionId())) {
+                if (m.getId().equals(h.messageId())) found.put(m.getId(), m);
+            }
+        }
+        return found;
+    }
+
+    private void submit(String userId, Runnable task) {
+        try {
+            indexer.execute(task);
+        } catch (RejectedExecutionException ex) {
+            // missing an update would make the index silently wrong; rebuild it on the next search instead
+            indexes.invalidate(userId);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        indexer.shutdownNow();
+    }
+}
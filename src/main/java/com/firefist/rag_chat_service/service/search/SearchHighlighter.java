@@ -0,0 +1,58 @@
+package com.firefist.rag_chat_service.service.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Excerpt of a message around its first match, HTML-escaped, with matched terms wrapped in &lt;em&gt;.
+ */
+final class SearchHighlighter {
+
+    private SearchHighlighter() {
+    }
+
+    static String highlight(String content, SearchQuery query, int maxChars) {
+        if (content == null) return null;
+        List<int[]> spans = new ArrayList<>();
+        SearchTokenizer.tokenize(content, (term, position, start, end) -> {
+            if (query.highlights(term)) spans.add(new int[]{start, end});
+        });
+
+        int from = 0;
+        if (!spans.isEmpty() && content.length() > maxChars) {
+            // a bit of lead-in before the first match
+            from = Math.max(0, Math.min(spans.get(0)[0] - maxChars / 4, content.length() - maxChars));
+        }
+        int to = Math.min(content.length(), from + maxChars);
+
+        StringBuilder sb = new StringBuilder(to - from + 32);
+        if (from > 0) sb.append('…');
+        int at = from;
+        for (int[] span : spans) {
+            if (span[1] <= from) continue;
+            if (span[0] >= to) break;
+            int start = Math.max(span[0], at);
+            escape(content, at, start, sb);
+            sb.append("<em>");
+            escape(content, start, Math.min(span[1], to), sb);
+            sb.append("</em>");
+            at = Math.min(span[1], to);
+        }
+        escape(content, at, to, sb);
+        if (to < content.length()) sb.append('…');
+        return sb.toString();
+    }
+
+    private static void escape(String s, int from, int to, StringBuilder sb) {
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '<' -> sb.append("&lt;");
+                case '>' -> sb.append("&gt;");
+                case '&' -> sb.append("&amp;");
+                case '"' -> sb.append("&quot;");
+                default -> sb.append(c);
+            }
+        }
+    }
+}
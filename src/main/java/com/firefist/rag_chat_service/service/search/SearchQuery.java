@@ -0,0 +1,82 @@
+package com.firefist.rag_chat_service.service.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parsed query: every clause must match (AND).
+ *
+ * - word       -> term
+ * - wor*       -> any term starting with "wor" (at least MIN_PREFIX characters)
+ * - "a b c"    -> phrase, terms at consecutive positions; a word that tokenizes into several terms (e-mail) is a phrase too
+ */
+record SearchQuery(List<Clause> clauses) {
+
+    static final int MIN_PREFIX = 2;
+
+    sealed interface Clause permits Term, Prefix, Phrase {
+    }
+
+    record Term(String term) implements Clause {
+    }
+
+    record Prefix(String prefix) implements Clause {
+    }
+
+    record Phrase(List<String> terms) implements Clause {
+    }
+
+    static SearchQuery parse(String q) {
+        List<Clause> clauses = new ArrayList<>();
+        int i = 0;
+        while (i < q.length()) {
+            char c = q.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            int end;
+            String raw;
+            boolean quoted = c == '"';
+            if (quoted) {
+                end = q.indexOf('"', i + 1);
+                if (end < 0) end = q.length();
+                raw = q.substring(i + 1, end);
+                end++;
+            } else {
+                end = i;
+                while (end < q.length() && !Character.isWhitespace(q.charAt(end))) end++;
+                raw = q.substring(i, end);
+            }
+            i = end;
+
+            List<String> terms = new ArrayList<>();
+            SearchTokenizer.tokenize(raw, (term, position, start, stop) -> terms.add(term));
+            if (terms.isEmpty()) continue;
+            if (!quoted && raw.endsWith("*") && terms.size() == 1 && terms.get(0).length() >= MIN_PREFIX) {
+                clauses.add(new Prefix(terms.get(0)));
+            } else if (terms.size() == 1) {
+                clauses.add(new Term(terms.get(0)));
+            } else {
+                clauses.add(new Phrase(terms));
+            }
+        }
+        return new SearchQuery(clauses);
+    }
+
+    boolean isEmpty() {
+        return clauses.isEmpty();
+    }
+
+    /**
+     * Whether a token of a stored text is one the query matches, for highlighting.
+     */
+    boolean highlights(String term) {
+        for (Clause c : clauses) {
+            if (c instanceof Term t && t.term().equals(term)) return true;
+            if (c instanceof Prefix p && term.startsWith(p.prefix())) return true;
+            if (c instanceof Phrase ph && ph.terms().contains(term)) return true;
+        }
+        return false;
+    }
+}
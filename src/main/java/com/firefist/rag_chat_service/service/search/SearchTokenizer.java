@@ -0,0 +1,41 @@
+package com.firefist.rag_chat_service.service.search;
+
+import java.util.Locale;
+
+/**
+ * Splits text into lower-cased runs of letters and digits. Used both for indexing and for queries,
+ * so both sides agree on what a term is. The retrieval index uses it too.
+ */
+public final class SearchTokenizer {
+
+    static final int MAX_TERM_LENGTH = 64;
+
+    public interface Sink {
+        void token(String term, int position, int start, int end);
+    }
+
+    private SearchTokenizer() {
+    }
+
+    public static void tokenize(String text, Sink sink) {
+        if (text == null) return;
+        int position = 0;
+        int i = 0;
+        int n = text.length();
+        while (i < n) {
+            int cp = text.codePointAt(i);
+            if (!Character.isLetterOrDigit(cp)) {
+                i += Character.charCount(cp);
+                continue;
+            }
+            int start = i;
+            while (i < n) {
+                cp = text.codePointAt(i);
+                if (!Character.isLetterOrDigit(cp)) break;
+                i += Character.charCount(cp);
+            }
+            String term = text.substring(start, Math.min(i, start + MAX_TERM_LENGTH)).toLowerCase(Locale.ROOT);
+            sink.token(term, position++, start, i);
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package com.firefist.rag_chat_service.service.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index over the messages of one user, append-only.
+ *
+ * - Documents get consecutive ids, so every posting list is sorted by construction and AND is a merge.
+ * - Postings keep term positions for phrase queries; the term dictionary is sorted for prefix expansion.
+ * - Ranking is BM25 over the user's own messages. Messages of deleted sessions are filtered at query time.
+ * - Until the initial load from the database is done, new messages wait in a backlog; loaded and new
+ *   messages are deduplicated by id, so the two may overlap.
+ */
+final class UserSearchIndex {
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    record Hit(UUID messageId, UUID sessionId, long sequenceNumber, float score) {
+    }
+
+    record SessionHit(UUID sessionId, int hits, float bestScore) {
+    }
+
+    record Result(int totalHits, List<Hit> hits, List<SessionHit> sessions) {
+    }
+
+    private record Pending(UUID messageId, UUID sessionId, long sequenceNumber, String content) {
+    }
+
+    /**
+     * Docs containing one term: parallel arrays, positions of docs[i] are positions[posStart[i] .. posStart[i + 1]).
+     */
+    private static final class Postings {
+        int size;
+        int[] docs = new int[2];
+        int[] freqs = new int[2];
+        int[] posStart = new int[3];
+        int[] positions = new int[2];
+
+        void add(int doc, int[] docPositions, int count) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+                posStart = Arrays.copyOf(posStart, size * 2 + 1);
+            }
+            int from = posStart[size];
+            if (from + count > positions.length) {
+                positions = Arrays.copyOf(positions, Math.max(positions.length * 2, from + count));
+            }
+            System.arraycopy(docPositions, 0, positions, from, count);
+            docs[size] = doc;
+            freqs[size] = count;
+            posStart[size + 1] = from + count;
+            size++;
+        }
+
+        boolean hasPosition(int i, int position) {
+            return Arrays.binarySearch(positions, posStart[i], posStart[i + 1], position) >= 0;
+        }
+    }
+
+    /**
+     * Docs matched by one clause with their partial scores, sorted by doc.
+     */
+    private record Matches(int[] docs, float[] scores, int size) {
+        static final Matches NONE = new Matches(new int[0], new float[0], 0);
+    }
+
+    private static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int v) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = v;
+        }
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    final Object buildLock = new Object();
+
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+    private UUID[] messageIds = new UUID[16];
+    private int[] docSession = new int[16];
+    private long[] docSequence = new long[16];
+    private int[] docLength = new int[16];
+    private int docCount;
+    private long totalLength;
+    private long positionCount;
+    private final Map<UUID, Integer> docByMessage = new HashMap<>();
+    private final List<UUID> sessions = new ArrayList<>();
+    private final Map<UUID, Integer> sessionIndex = new HashMap<>();
+    private final BitSet deletedSessions = new BitSet();
+
+    private volatile boolean ready;
+    private final List<Pending> backlog = new ArrayList<>();
+
+    boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * A new message from the write path; held back until the initial load is done.
+     */
+    void add(UUID messageId, UUID sessionId, long sequenceNumber, String content) {
+        lock.writeLock().lock();
+        try {
+            if (ready) index(messageId, sessionId, sequenceNumber, content);
+            else backlog.add(new Pending(messageId, sessionId, sequenceNumber, content));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * A message read by the initial load.
+     */
+    void load(UUID messageId, UUID sessionId, long sequenceNumber, String content) {
+        lock.writeLock().lock();
+        try {
+            index(messageId, sessionId, sequenceNumber, content);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void markReady() {
+        lock.writeLock().lock();
+        try {
+            for (Pending p : backlog) index(p.messageId(), p.sessionId(), p.sequenceNumber(), p.content());
+            backlog.clear();
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void deleteSession(UUID sessionId) {
+        lock.writeLock().lock();
+        try {
+            deletedSessions.set(session(sessionId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Rough size for the cache weigher: positions dominate memory.
+     */
+    int weight() {
+        return (int) Math.min(Integer.MAX_VALUE, positionCount + docCount * 8L);
+    }
+
+    private void index(UUID messageId, UUID sessionId, long sequenceNumber, String content) {
+        if (docByMessage.containsKey(messageId)) return;
+        int doc = docCount;
+        if (doc == messageIds.length) {
+            int capacity = doc * 2;
+            messageIds = Arrays.copyOf(messageIds, capacity);
+            docSession = Arrays.copyOf(docSession, capacity);
+            docSequence = Arrays.copyOf(docSequence, capacity);
+            docLength = Arrays.copyOf(docLength, capacity);
+        }
+        Map<String, IntList> termPositions = new HashMap<>();
+        int[] length = {0};
+        SearchTokenizer.tokenize(content, (term, position, start, end) -> {
+            termPositions.computeIfAbsent(term, t -> new IntList()).add(position);
+            length[0] = position + 1;
+        });
+        for (Map.Entry<String, IntList> e : termPositions.entrySet()) {
+            IntList p = e.getValue();
+            terms.computeIfAbsent(e.getKey(), t -> new Postings()).add(doc, p.values, p.size);
+            positionCount += p.size;
+        }
+        messageIds[doc] = messageId;
+        docSession[doc] = session(sessionId);
+        docSequence[doc] = sequenceNumber;
+        docLength[doc] = length[0];
+        totalLength += length[0];
+        docByMessage.put(messageId, doc);
+        docCount++;
+    }
+
+    private int session(UUID sessionId) {
+        Integer i = sessionIndex.get(sessionId);
+        if (i != null) return i;
+        sessions.add(sessionId);
+        sessionIndex.put(sessionId, sessions.size() - 1);
+        return sessions.size() - 1;
+    }
+
+    Result search(SearchQuery query, int limit, int maxExpansions, int maxSessions) {
+        lock.readLock().lock();
+        try {
+            if (docCount == 0 || query.isEmpty()) return new Result(0, List.of(), List.of());
+            float avgLength = Math.max(1f, (float) totalLength / docCount);
+
+            List<Matches> clauses = new ArrayList<>(query.clauses().size());
+            for (SearchQuery.Clause c : query.clauses()) {
+                Matches m;
+                if (c instanceof SearchQuery.Term t) m = term(t.term(), avgLength);
+                else if (c instanceof SearchQuery.Prefix p) m = prefix(p.prefix(), maxExpansions, avgLength);
+                else m = phrase(((SearchQuery.Phrase) c).terms(), avgLength);
+                if (m.size() == 0) return new Result(0, List.of(), List.of());
+                clauses.add(m);
+            }
+            // smallest first, so every merge is bounded by the rarest clause
+            clauses.sort(Comparator.comparingInt(Matches::size));
+            Matches all = clauses.get(0);
+            for (int i = 1; i < clauses.size() && all.size() > 0; i++) all = intersect(all, clauses.get(i));
+            return collect(all, limit, maxSessions);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Result collect(Matches all, int limit, int maxSessions) {
+        // min-heap of the best limit matches; on equal scores the newer message wins
+        Comparator<Integer> order = Comparator.comparingDouble((Integer i) -> all.scores()[i]).thenComparingInt(i -> all.docs()[i]);
+        PriorityQueue<Integer> top = new PriorityQueue<>(limit + 1, order);
+        int[] sessionHits = new int[sessions.size()];
+        float[] sessionBest = new float[sessions.size()];
+        int total = 0;
+        for (int i = 0; i < all.size(); i++) {
+            int doc = all.docs()[i];
+            int session = docSession[doc];
+            if (deletedSessions.get(session)) continue;
+            total++;
+            float score = all.scores()[i];
+            sessionHits[session]++;
+            if (score > sessionBest[session]) sessionBest[session] = score;
+            if (top.size() < limit) top.add(i);
+            else if (score >= all.scores()[top.peek()] && order.compare(i, top.peek()) > 0) {
+                top.poll();
+                top.add(i);
+            }
+        }
+        List<Hit> hits = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            int i = top.poll();
+            int doc = all.docs()[i];
+            hits.add(new Hit(messageIds[doc], sessions.get(docSession[doc]), docSequence[doc], all.scores()[i]));
+        }
+        Collections.reverse(hits);
+
+        List<SessionHit> bySession = new ArrayList<>();
+        for (int s = 0; s < sessionHits.length; s++) {
+            if (sessionHits[s] > 0) bySession.add(new SessionHit(sessions.get(s), sessionHits[s], sessionBest[s]));
+        }
+        bySession.sort(Comparator.comparingDouble(SessionHit::bestScore).reversed());
+        return new Result(total, hits, bySession.size() > maxSessions ? bySession.subList(0, maxSessions) : bySession);
+    }
+
+    private float idf(int df) {
+        return (float) Math.log(1 + (docCount - df + 0.5) / (df + 0.5));
+    }
+
+    private float tfNorm(int tf, int doc, float avgLength) {
+        return tf * (K1 + 1) / (tf + K1 * (1 - B + B * docLength[doc] / avgLength));
+    }
+
+    private Matches term(String term, float avgLength) {
+        Postings p = terms.get(term);
+        if (p == null) return Matches.NONE;
+        float idf = idf(p.size);
+        float[] scores = new float[p.size];
+        for (int i = 0; i < p.size; i++) scores[i] = idf * tfNorm(p.freqs[i], p.docs[i], avgLength);
+        return new Matches(p.docs, scores, p.size);
+    }
+
+    private Matches prefix(String prefix, int maxExpansions, float avgLength) {
+        NavigableMap<String, Postings> range = terms.subMap(prefix, true, prefix + Character.MAX_VALUE, true);
+        if (range.isEmpty()) return Matches.NONE;
+        List<Postings> expanded = new ArrayList<>(range.values());
+        if (expanded.size() > maxExpansions) {
+            // keep the most frequent expansions, they are what a prefix query is usually after
+            expanded.sort(Comparator.comparingInt((Postings p) -> p.size).reversed());
+            expanded = expanded.subList(0, maxExpansions);
+        }
+        float[] acc = new float[docCount];
+        IntList touched = new IntList();
+        for (Postings p : expanded) {
+            float idf = idf(p.size);
+            for (int i = 0; i < p.size; i++) {
+                int doc = p.docs[i];
+                if (acc[doc] == 0) touched.add(doc);
+                acc[doc] += idf * tfNorm(p.freqs[i], doc, avgLength);
+            }
+        }
+        int[] docs;
+        if (touched.size > docCount / 16) {
+            // dense: a scan is cheaper than sorting
+            docs = new int[touched.size];
+            int n = 0;
+            for (int doc = 0; doc < docCount; doc++) if (acc[doc] != 0) docs[n++] = doc;
+        } else {
+            docs = Arrays.copyOf(touched.values, touched.size);
+            Arrays.sort(docs);
+        }
+        float[] scores = new float[docs.length];
+        for (int i = 0; i < docs.length; i++) scores[i] = acc[docs[i]];
+        return new Matches(docs, scores, docs.length);
+    }
+
+    private Matches phrase(List<String> phrase, float avgLength) {
+        Postings[] lists = new Postings[phrase.size()];
+        float idfSum = 0;
+        for (int t = 0; t < lists.length; t++) {
+            lists[t] = terms.get(phrase.get(t));
+            if (lists[t] == null) return Matches.NONE;
+            idfSum += idf(lists[t].size);
+        }
+        Postings first = lists[0];
+        int[] cursor = new int[lists.length];
+        IntList docs = new IntList();
+        float[] scores = new float[first.size];
+        for (int i = 0; i < first.size; i++) {
+            int doc = first.docs[i];
+            boolean inAll = true;
+            for (int t = 1; t < lists.length && inAll; t++) {
+                Postings p = lists[t];
+                while (cursor[t] < p.size && p.docs[cursor[t]] < doc) cursor[t]++;
+                inAll = cursor[t] < p.size && p.docs[cursor[t]] == doc;
+            }
+            if (!inAll) continue;
+            int freq = 0;
+            for (int k = first.posStart[i]; k < first.posStart[i + 1]; k++) {
+                int start = first.positions[k];
+                boolean consecutive = true;
+                for (int t = 1; t < lists.length && consecutive; t++) {
+                    consecutive = lists[t].hasPosition(cursor[t], start + t);
+                }
+                if (consecutive) freq++;
+            }
+            if (freq == 0) continue;
+            scores[docs.size] = idfSum * tfNorm(freq, doc, avgLength);
+            docs.add(doc);
+        }
+        return new Matches(docs.values, scores, docs.size);
+    }
+
+    private static Matches intersect(Matches a, Matches b) {
+        int n = Math.min(a.size(), b.size());
+        int[] docs = new int[n];
+        float[] scores = new float[n];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.size() && j < b.size()) {
+            int da = a.docs()[i];
+            int db = b.docs()[j];
+            if (da == db) {
+                docs[size] = da;
+                scores[size++] = a.scores()[i++] + b.scores()[j++];
+            } else if (da < db) {
+                i++;
+            } else {
+                // a is the smaller side: skip ahead in b instead of stepping through it
+                j = gallop(b.docs(), j, b.size(), da);
+            }
+        }
+        return new Matches(docs, scores, size);
+    }
+
+    // first index >= from in docs[from, to) whose value is >= target
+    private static int gallop(int[] docs, int from, int to, int target) {
+        int step = 1;
+        int lo = from;
+        int hi = from;
+        while (hi < to && docs[hi] < target) {
+            lo = hi + 1;
+            hi = Math.min(to, hi + step);
+            step <<= 1;
+        }
+        int found = Arrays.binarySearch(docs, lo, Math.min(hi + 1, to), target);
+        return found >= 0 ? found : -found - 1;
+    }
+}
@@ -0,0 +1,62 @@
+package com.firefist.rag_chat_service.service.store;
+
+import com.firefist.rag_chat_service.model.ContextRef;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary encoding helpers shared by the message journal and the archive payload.
+ * Nullable values are written with a -1 length/count.
+ */
+public final class BinaryFields {
+
+    private BinaryFields() { }
+
+    // writeUTF is limited to 64KB, content and context can be longer
+    public static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    public static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        byte[] b = new byte[length];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    public static void writeRefs(DataOutputStream out, List<ContextRef> refs) throws IOException {
+        if (refs == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(refs.size());
+        for (ContextRef ref : refs) {
+            writeString(out, ref.getId());
+            writeString(out, ref.getSource());
+            out.writeDouble(ref.getScore());
+            writeString(out, ref.getExcerpt());
+        }
+    }
+
+    public static List<ContextRef> readRefs(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) return null;
+        List<ContextRef> refs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            refs.add(new ContextRef(readString(in), readString(in), in.readDouble(), readString(in)));
+        }
+        return refs;
+    }
+}
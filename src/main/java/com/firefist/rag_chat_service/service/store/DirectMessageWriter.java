@@ -0,0 +1,33 @@
+package com.firefist.rag_chat_service.service.store;
+
+import com.firefist.rag_chat_service.model.ChatMessage;
+import com.firefist.rag_chat_service.repository.ChatMessageRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Default writer: saves every message synchronously through JPA.
+ */
+@Service
+@ConditionalOnProperty(name = "chat.write-behind.enabled", havingValue = "false", matchIfMissing = true)
+public class DirectMessageWriter implements MessageWriter {
+
+    private final ChatMessageRepository messageRepository;
+
+    public DirectMessageWriter(ChatMessageRepository messageRepository) {
+        this.messageRepository = messageRepository;
+    }
+
+    @Override
+    public ChatMessage write(ChatMessage message) {
+        return messageRepository.save(message);
+    }
+
+    @Override
+    public List<ChatMessage> pending(UUID sessionId) {
+        return List.of();
+    }
+}
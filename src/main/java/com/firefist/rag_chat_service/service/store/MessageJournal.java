@@ -0,0 +1,252 @@
+package com.firefist.rag_chat_service.service.store;
+
+import com.firefist.rag_chat_service.model.ChatMessage;
+import com.firefist.rag_chat_service.model.ChatSession;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, memory-mapped journal of chat messages used by the write-behind mode.
+ *
+ * - The journal is split into fixed-size segment files named journal-NNNN.log.
+ * - A record is [int length][int crc32][payload]; a zero length marks the end of written data,
+ *   a bad checksum marks a torn write and ends replay of that segment.
+ * - append() only copies into the mapped buffer. Durability comes from force(), which the writer
+ *   calls on a short interval so many appends share one fsync.
+ * - A segment file is deleted once it is sealed and every record in it was flushed to the database.
+ */
+@Slf4j
+public class MessageJournal implements Closeable {
+
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".log";
+    private static final int HEADER_BYTES = 8;
+    private static final byte FORMAT_VERSION = 2;
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final ConcurrentMap<Long, Segment> segments = new ConcurrentHashMap<>();
+    private Segment active; // guarded by this
+
+    @Getter
+    @AllArgsConstructor
+    public static class Entry {
+        private final ChatMessage message;
+        private final long segmentId;
+    }
+
+    private static class Segment {
+        final long id;
+        final Path file;
+        final AtomicInteger outstanding = new AtomicInteger();
+        volatile MappedByteBuffer buffer; // null for replayed (read-only) segments
+        volatile boolean sealed;
+        volatile boolean dirty;
+
+        Segment(long id, Path file) {
+            this.id = id;
+            this.file = file;
+        }
+    }
+
+    public MessageJournal(Path dir, int segmentBytes) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(dir);
+    }
+
+    /**
+     * Reads back every intact record left by a previous run and opens a fresh segment for appends.
+     * Must be called once before the first append.
+     */
+    public synchronized List<Entry> replay() throws IOException {
+        List<Path> files;
+        try (Stream<Path> s = Files.list(dir)) {
+            files = s.filter(p -> p.getFileName().toString().startsWith(PREFIX)
+                            && p.getFileName().toString().endsWith(SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+
+        List<Entry> entries = new ArrayList<>();
+        long lastId = 0;
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            long id = Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+            lastId = Math.max(lastId, id);
+
+            Segment segment = new Segment(id, file);
+            segment.sealed = true;
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                while (buf.remaining() >= HEADER_BYTES) {
+                    int length = buf.getInt();
+                    int crc = buf.getInt();
+                    if (length <= 0 || length > buf.remaining()) break;
+                    byte[] payload = new byte[length];
+                    buf.get(payload);
+                    if (checksum(payload) != crc) {
+                        log.warn("Journal segment {} has a torn record, ignoring the rest of it", name);
+                        break;
+                    }
+                    entries.add(new Entry(decode(payload), id));
+                    segment.outstanding.incrementAndGet();
+                }
+            }
+            segments.put(id, segment);
+            if (segment.outstanding.get() == 0) release(segment);
+        }
+
+        active = openSegment(lastId + 1);
+        return entries;
+    }
+
+    /**
+     * Appends the message and returns the id of the segment it landed in (see {@link #markFlushed}).
+     */
+    public synchronized long append(ChatMessage message) throws IOException {
+        byte[] payload = encode(message);
+        int needed = HEADER_BYTES + payload.length;
+        if (needed > segmentBytes) {
+            throw new IllegalArgumentException("Message too large for journal segment: " + payload.length + " bytes");
+        }
+        if (active.buffer.remaining() < needed) roll();
+
+        active.buffer.putInt(payload.length).putInt(checksum(payload)).put(payload);
+        active.outstanding.incrementAndGet();
+        active.dirty = true;
+        return active.id;
+    }
+
+    /**
+     * fsync every segment written since the last call.
+     */
+    public void force() {
+        for (Segment segment : segments.values()) {
+            MappedByteBuffer buf = segment.buffer;
+            if (buf != null && segment.dirty) {
+                segment.dirty = false;
+                buf.force();
+            }
+        }
+    }
+
+    /**
+     * Called once per record after it is committed to the database.
+     */
+    public void markFlushed(long segmentId) {
+        Segment segment = segments.get(segmentId);
+        if (segment == null) return;
+        if (segment.outstanding.decrementAndGet() == 0 && segment.sealed) release(segment);
+    }
+
+    @Override
+    public synchronized void close() {
+        force();
+    }
+
+    private void roll() throws IOException {
+        Segment old = active;
+        old.buffer.force();
+        old.dirty = false;
+        active = openSegment(old.id + 1);
+        old.sealed = true;
+        if (old.outstanding.get() == 0) release(old);
+    }
+
+    private Segment openSegment(long id) throws IOException {
+        Path file = dir.resolve(String.format("%s%016d%s", PREFIX, id, SUFFIX));
+        Segment segment = new Segment(id, file);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // the mapping stays valid after the channel is closed
+            segment.buffer = ch.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private void release(Segment segment) {
+        // markFlushed and roll can race here, only the first caller deletes
+        if (!segments.remove(segment.id, segment)) return;
+        segment.buffer = null;
+        try {
+            Files.deleteIfExists(segment.file);
+        } catch (IOException ex) {
+            log.warn("Could not delete flushed journal segment {}", segment.file, ex);
+        }
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    static byte[] encode(ChatMessage m) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            writeUuid(out, m.getId());
+            writeUuid(out, m.getSession().getId());
+            out.writeLong(m.getCreatedAt().getEpochSecond());
+            out.writeInt(m.getCreatedAt().getNano());
+            out.writeBoolean(m.getSequenceNumber() != null);
+            if (m.getSequenceNumber() != null) out.writeLong(m.getSequenceNumber());
+            BinaryFields.writeString(out, m.getSender());
+            BinaryFields.writeString(out, m.getContent());
+            BinaryFields.writeString(out, m.getRetrievedContext());
+            BinaryFields.writeRefs(out, m.getContextRefs());
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    static ChatMessage decode(byte[] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            byte version = in.readByte();
+            // version 1 records (before context references) end after the retrieved context
+            if (version != 1 && version != FORMAT_VERSION) throw new IOException("Unknown journal record version " + version);
+            ChatMessage m = new ChatMessage();
+            m.setId(readUuid(in));
+            // only the id is needed to write the foreign key; readers attach the loaded session
+            ChatSession session = new ChatSession();
+            session.setId(readUuid(in));
+            m.setSession(session);
+            m.setCreatedAt(Instant.ofEpochSecond(in.readLong(), in.readInt()));
+            if (in.readBoolean()) m.setSequenceNumber(in.readLong());
+            m.setSender(BinaryFields.readString(in));
+            m.setContent(BinaryFields.readString(in));
+            m.setRetrievedContext(BinaryFields.readString(in));
+            if (version >= 2) m.setContextRefs(BinaryFields.readRefs(in));
+            return m;
+        }
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID id) throws IOException {
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+    }
+
+    private static UUID readUuid(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+}
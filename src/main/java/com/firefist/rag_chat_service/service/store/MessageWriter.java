@@ -0,0 +1,19 @@
+package com.firefist.rag_chat_service.service.store;
+
+import com.firefist.rag_chat_service.model.ChatMessage;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface MessageWriter {
+    /**
+     * Persist (or durably accept) a message and return it with id and createdAt assigned.
+     */
+    ChatMessage write(ChatMessage message);
+
+    /**
+     * Messages of the session that were accepted but are not in the database yet, oldest first.
+     * Readers merge these so clients always see their own writes.
+     */
+    List<ChatMessage> pending(UUID sessionId);
+}
@@ -0,0 +1,220 @@
+package com.firefist.rag_chat_service.service.store;
+
+import com.firefist.rag_chat_service.model.ChatMessage;
+import com.firefist.rag_chat_service.repository.ChatMessageJdbcRepository;
+import com.firefist.rag_chat_service.service.tx.TransactionHooks;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Write-behind writer: messages are appended to a local {@link MessageJournal} and acknowledged,
+ * then a background job inserts them into MySQL in large idempotent batches.
+ *
+ * - Appends are deferred to beforeCommit of the caller's transaction, so a failed turn leaves nothing behind.
+ * - Unflushed messages stay in memory per session and are merged into reads (read-your-writes).
+ * - Failed batches are retried with exponential backoff; inserts ignore duplicate ids, so retries
+ *   and journal replay after a crash never create duplicate rows. A message whose sequence number is
+ *   already used in its session can never be stored: it is logged as an error and counted
+ *   (chat.write_behind.rejected), the rest of its batch is stored.
+ * - If the backlog reaches max-pending (e.g. database down for a long time), messages are written
+ *   through synchronously instead of growing the backlog without bound.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "chat.write-behind.enabled", havingValue = "true")
+public class WriteBehindMessageWriter implements MessageWriter {
+
+    private final MessageJournal journal;
+    private final ChatMessageJdbcRepository jdbcRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int maxPending;
+    private final long maxBackoffMs;
+
+    private final BlockingQueue<MessageJournal.Entry> queue = new LinkedBlockingQueue<>();
+    private final ConcurrentMap<UUID, List<ChatMessage>> pendingBySession = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final Counter rejected;
+
+    // only touched by flush(), which is synchronized
+    private final List<MessageJournal.Entry> inFlight = new ArrayList<>();
+    private int consecutiveFailures;
+    private long retryAt;
+
+    public WriteBehindMessageWriter(ChatMessageJdbcRepository jdbcRepository,
+                                    TransactionTemplate transactionTemplate,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${chat.write-behind.dir:data/journal}") String dir,
+                                    @Value("${chat.write-behind.segment-bytes:67108864}") int segmentBytes,
+                                    @Value("${chat.write-behind.batch-size:500}") int batchSize,
+                                    @Value("${chat.write-behind.max-pending:100000}") int maxPending,
+                                    @Value("${chat.write-behind.max-backoff-ms:30000}") long maxBackoffMs) throws IOException {
+        this.journal = new MessageJournal(Path.of(dir), segmentBytes);
+        this.jdbcRepository = jdbcRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.maxPending = maxPending;
+        this.maxBackoffMs = maxBackoffMs;
+        Gauge.builder("chat.write_behind.pending", pendingCount, AtomicInteger::get)
+                .description("Messages accepted into the journal but not yet flushed to the database")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("chat.write_behind.rejected")
+                .description("Journaled messages the database refused for good (sequence number already used)")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void recover() throws IOException {
+        List<MessageJournal.Entry> replayed = journal.replay();
+        replayed.forEach(this::enqueue);
+        if (!replayed.isEmpty()) log.info("Replayed {} unflushed messages from the journal", replayed.size());
+    }
+
+    @Override
+    public ChatMessage write(ChatMessage message) {
+        // normally assigned by @PrePersist, the journal needs them up front
+        if (message.getId() == null) message.setId(UUID.randomUUID());
+        if (message.getCreatedAt() == null) message.setCreatedAt(Instant.now());
+
+        TransactionHooks.beforeCommit(() -> append(message));
+        return message;
+    }
+
+    @Override
+    public List<ChatMessage> pending(UUID sessionId) {
+        List<ChatMessage> copy = new ArrayList<>();
+        pendingBySession.computeIfPresent(sessionId, (id, list) -> {
+            copy.addAll(list);
+            return list;
+        });
+        return copy;
+    }
+
+    /**
+     * Drains the backlog into the database, batchSize rows per statement batch.
+     */
+    @Scheduled(fixedDelayString = "${chat.write-behind.flush-interval-ms:200}")
+    public synchronized void flush() {
+        if (System.currentTimeMillis() < retryAt) return;
+        while (true) {
+            if (inFlight.isEmpty()) queue.drainTo(inFlight, batchSize);
+            if (inFlight.isEmpty()) return;
+
+            List<ChatMessage> batch = inFlight.stream().map(MessageJournal.Entry::getMessage).toList();
+            try {
+                transactionTemplate.executeWithoutResult(status -> jdbcRepository.insertIgnoringDuplicates(batch));
+            } catch (DuplicateKeyException ex) {
+                // a sequence number taken by another message (e.g. an import) would fail every retry;
+                // store the rest of the batch and report the conflicting messages instead of holding up the journal
+                if (!insertEach(batch)) return;
+            } catch (RuntimeException ex) {
+                backOff(batch.size(), ex);
+                return;
+            }
+
+            consecutiveFailures = 0;
+            for (MessageJournal.Entry entry : inFlight) {
+                removePending(entry.getMessage());
+                journal.markFlushed(entry.getSegmentId());
+            }
+            inFlight.clear();
+        }
+    }
+
+    private boolean insertEach(List<ChatMessage> batch) {
+        List<ChatMessage> conflicts;
+        try {
+            conflicts = transactionTemplate.execute(status -> jdbcRepository.insertEachIgnoringDuplicates(batch));
+        } catch (RuntimeException ex) {
+            backOff(batch.size(), ex);
+            return false;
+        }
+        for (ChatMessage m : conflicts) {
+            rejected.increment();
+            log.error("Journaled message {} of session {} not stored: sequence number {} is already used by another message",
+                    m.getId(), m.getSession().getId(), m.getSequenceNumber());
+        }
+        return true;
+    }
+
+    private void backOff(int batchSize, RuntimeException ex) {
+        consecutiveFailures++;
+        long backoff = Math.min(maxBackoffMs, 100L << Math.min(consecutiveFailures, 16));
+        retryAt = System.currentTimeMillis() + backoff;
+        log.warn("Flushing {} journaled messages failed (attempt {}), retrying in {} ms",
+                batchSize, consecutiveFailures, backoff, ex);
+    }
+
+    /**
+     * Group commit: one fsync covers every append since the previous call.
+     */
+    @Scheduled(fixedDelayString = "${chat.write-behind.fsync-interval-ms:50}")
+    public void sync() {
+        journal.force();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        retryAt = 0;
+        flush();
+        journal.close();
+        if (pendingCount.get() > 0) {
+            log.warn("{} messages are still only in the journal, they will be replayed on next start", pendingCount.get());
+        }
+    }
+
+    private void append(ChatMessage message) {
+        if (pendingCount.get() >= maxPending) {
+            jdbcRepository.insertIgnoringDuplicates(List.of(message));
+            return;
+        }
+        try {
+            long segmentId = journal.append(message);
+            enqueue(new MessageJournal.Entry(message, segmentId));
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not append message to the journal", ex);
+        }
+    }
+
+    private void enqueue(MessageJournal.Entry entry) {
+        ChatMessage message = entry.getMessage();
+        pendingBySession.compute(message.getSession().getId(), (id, list) -> {
+            List<ChatMessage> l = list == null ? new ArrayList<>() : list;
+            l.add(message);
+            return l;
+        });
+        pendingCount.incrementAndGet();
+        queue.add(entry);
+    }
+
+    private void removePending(ChatMessage message) {
+        pendingBySession.computeIfPresent(message.getSession().getId(), (id, list) -> {
+            list.removeIf(m -> m == message);
+            return list.isEmpty() ? null : list;
+        });
+        pendingCount.decrementAndGet();
+    }
+}
@@ -0,0 +1,18 @@
+package com.firefist.rag_chat_service.service.summary;
+
+import com.firefist.rag_chat_service.model.ChatMessage;
+
+import java.util.List;
+
+/**
+ * Folds new turns into a rolling conversation summary.
+ */
+public interface ConversationSummarizer {
+
+    /**
+     * @param previousSummary summary of everything before turns, null for the first pass
+     * @param turns           the next messages of the session, in sequence order
+     * @return the updated summary, covering previousSummary and turns
+     */
+    String summarize(String previousSummary, List<ChatMessage> turns);
+}
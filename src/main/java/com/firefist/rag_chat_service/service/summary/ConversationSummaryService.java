@@ -0,0 +1,204 @@
+package com.firefist.rag_chat_service.service.summary;
+
+import com.firefist.rag_chat_service.model.ChatMessage;
+import com.firefist.rag_chat_service.model.ConversationSummary;
+import com.firefist.rag_chat_service.repository.ChatMessageJdbcRepository;
+import com.firefist.rag_chat_service.repository.ConversationSummaryRepository;
+import com.firefist.rag_chat_service.service.llm.ConversationHistory;
+import com.firefist.rag_chat_service.service.store.MessageWriter;
+import com.firefist.rag_chat_service.service.tx.TransactionHooks;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps prompts bounded for long sessions: older turns are folded into a stored rolling summary,
+ * and the LLM gets that summary plus the most recent turns instead of the whole history.
+ *
+ * - After each user turn commits, the session is queued for a check on a small bounded executor, never on the request thread.
+ *   A full queue drops the check; the next turn of the session queues it again.
+ * - A session is summarized once the messages after its checkpoint reach trigger-messages or
+ *   trigger-tokens (estimated as chars / 4). The newest keep-recent messages are left out, and at most
+ *   batch-messages are folded in per pass, so each pass only reads what is new since the last checkpoint.
+ * - The summary row is versioned: if two nodes summarize the same session, one of them wins and the other is dropped.
+ * - Deleting or archiving a session drops its summary ({@link #forget}). A pass already running may still
+ *   save one: a deleted session is never read again, and for an archived one it still describes those turns.
+ */
+@Slf4j
+@Service
+public class ConversationSummaryService {
+
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private final ConversationSummaryRepository summaryRepository;
+    private final ChatMessageJdbcRepository jdbcRepository;
+    private final MessageWriter messageWriter;
+    private final ConversationSummarizer summarizer;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int maxHistory;
+    private final int triggerMessages;
+    private final int triggerTokens;
+    private final int keepRecent;
+    private final int batchMessages;
+    private final ThreadPoolExecutor executor;
+    // sessions queued and not started yet, so a busy session is queued once
+    private final Set<UUID> queued = ConcurrentHashMap.newKeySet();
+
+    public ConversationSummaryService(ConversationSummaryRepository summaryRepository,
+                                      ChatMessageJdbcRepository jdbcRepository,
+                                      MessageWriter messageWriter,
+                                      ConversationSummarizer summarizer,
+                                      TransactionTemplate transactionTemplate,
+                                      @Value("${chat.summary.enabled:true}") boolean enabled,
+                                      @Value("${llm.max-history-msgs:20}") int maxHistory,
+                                      @Value("${chat.summary.trigger-messages:40}") int triggerMessages,
+                                      @Value("${chat.summary.trigger-tokens:4000}") int triggerTokens,
+                                      @Value("${chat.summary.keep-recent:10}") int keepRecent,
+                                      @Value("${chat.summary.batch-messages:100}") int batchMessages,
+                                      @Value("${chat.summary.threads:1}") int threads,
+                                      @Value("${chat.summary.queue-size:1000}") int queueSize) {
+        this.summaryRepository = summaryRepository;
+        this.jdbcRepository = jdbcRepository;
+        this.messageWriter = messageWriter;
+        this.summarizer = summarizer;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.maxHistory = maxHistory;
+        this.triggerMessages = triggerMessages;
+        this.triggerTokens = triggerTokens;
+        this.keepRecent = keepRecent;
+        this.batchMessages = batchMessages;
+        AtomicInteger n = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), r -> {
+                    Thread t = new Thread(r, "conversation-summary-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    /**
+     * Summary plus up to llm.max-history-msgs of the newest user/assistant turns after its checkpoint.
+     */
+    public ConversationHistory historyFor(UUID sessionId) {
+        ConversationSummary summary = summaryRepository.findById(sessionId).orElse(null);
+        long checkpoint = summary == null ? 0 : summary.getSummarizedThroughSeq();
+        List<ChatMessage> recent = maxHistory <= 0 ? new ArrayList<>()
+                : new ArrayList<>(jdbcRepository.findNewestAfter(sessionId, checkpoint, maxHistory));
+
+        // unflushed messages (write-behind) are the newest ones
+        Set<UUID> seen = new HashSet<>();
+        recent.forEach(m -> seen.add(m.getId()));
+        for (ChatMessage m : messageWriter.pending(sessionId)) {
+            if (m.getSequenceNumber() != null && m.getSequenceNumber() > checkpoint && seen.add(m.getId())) recent.add(m);
+        }
+        recent.sort(Comparator.comparing(ChatMessage::getSequenceNumber));
+        if (recent.size() > maxHistory) recent = recent.subList(recent.size() - maxHistory, recent.size());
+
+        List<ConversationHistory.Turn> turns = new ArrayList<>(recent.size());
+        for (ChatMessage m : recent) {
+            if ("USER".equalsIgnoreCase(m.getSender())) turns.add(new ConversationHistory.Turn("user", m.getContent()));
+            else if ("ASSISTANT".equalsIgnoreCase(m.getSender())) turns.add(new ConversationHistory.Turn("assistant", m.getContent()));
+        }
+        return new ConversationHistory(summary == null ? null : summary.getSummary(), turns);
+    }
+
+    /**
+     * Deletes the session's summary, joining the caller's transaction. The session is deleted, or its
+     * messages left chat_message (archived); an archived session that gets new turns starts a new summary.
+     */
+    @Transactional
+    public void forget(UUID sessionId) {
+        summaryRepository.deleteBySessionId(sessionId);
+    }
+
+    /**
+     * Queues a summarization check for the session once the current transaction commits.
+     */
+    public void onTurn(UUID sessionId) {
+        if (!enabled) return;
+        TransactionHooks.afterCommit(() -> submit(sessionId));
+    }
+
+    private void submit(UUID sessionId) {
+        if (!queued.add(sessionId)) return;
+        try {
+            executor.execute(() -> run(sessionId));
+        } catch (RejectedExecutionException ex) {
+            queued.remove(sessionId);
+        }
+    }
+
+    private void run(UUID sessionId) {
+        queued.remove(sessionId);
+        try {
+            if (summarizeNext(sessionId)) submit(sessionId);
+        } catch (OptimisticLockingFailureException | DataIntegrityViolationException ex) {
+            log.debug("Summary of session {} was updated concurrently", sessionId);
+        } catch (RuntimeException ex) {
+            log.warn("Summarizing session {} failed", sessionId, ex);
+        }
+    }
+
+    /**
+     * One incremental pass. Returns true when more turns were waiting than one batch could take.
+     */
+    private boolean summarizeNext(UUID sessionId) {
+        ConversationSummary current = summaryRepository.findById(sessionId).orElse(null);
+        long checkpoint = current == null ? 0 : current.getSummarizedThroughSeq();
+
+        long[] tail = jdbcRepository.tailStats(sessionId, checkpoint);
+        if (tail[0] <= keepRecent) return false;
+        if (tail[0] < triggerMessages && tail[1] / CHARS_PER_TOKEN < triggerTokens) return false;
+
+        // the newest message to fold in: everything after it stays verbatim
+        Long through = jdbcRepository.nthNewestSequence(sessionId, checkpoint, keepRecent);
+        if (through == null) return false;
+        List<ChatMessage> batch = jdbcRepository.findBySequenceRange(sessionId, checkpoint, through, batchMessages);
+        if (batch.isEmpty()) return false;
+
+        // may be an LLM call: done before the transaction so no connection is held meanwhile
+        String text = summarizer.summarize(current == null ? null : current.getSummary(), batch);
+        long newCheckpoint = batch.get(batch.size() - 1).getSequenceNumber();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            ConversationSummary row = current;
+            if (row == null) {
+                row = new ConversationSummary();
+                row.setSessionId(sessionId);
+            }
+            row.setSummary(text);
+            row.setSummarizedThroughSeq(newCheckpoint);
+            row.setSummarizedMessages(row.getSummarizedMessages() + batch.size());
+            row.setUpdatedAt(Instant.now());
+            summaryRepository.save(row);
+        });
+        log.debug("Summarized {} messages of session {} through #{}", batch.size(), sessionId, newCheckpoint);
+        return newCheckpoint < through;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
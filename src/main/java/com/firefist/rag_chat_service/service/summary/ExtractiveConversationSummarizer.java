@@ -0,0 +1,100 @@
+package com.firefist.rag_chat_service.service.summary;
+
+import com.firefist.rag_chat_service.model.ChatMessage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Local summarizer for mock mode: keeps the sentences whose words recur most across the conversation,
+ * in their original order, up to max-chars. Sentences of the previous summary get a bonus so earlier
+ * facts aren't pushed out by every new turn.
+ */
+@Component
+@ConditionalOnProperty(name = "llm.enabled", havingValue = "false", matchIfMissing = true)
+public class ExtractiveConversationSummarizer implements ConversationSummarizer {
+
+    private static final Pattern SENTENCE_END = Pattern.compile("(?<=[.!?])\\s+|\\n+");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int MAX_SENTENCE_CHARS = 300;
+    private static final double PREVIOUS_SUMMARY_BONUS = 1.5;
+
+    private record Sentence(int position, String text, double weight) {
+    }
+
+    private final int maxChars;
+
+    public ExtractiveConversationSummarizer(@Value("${chat.summary.max-chars:2000}") int maxChars) {
+        this.maxChars = maxChars;
+    }
+
+    @Override
+    public String summarize(String previousSummary, List<ChatMessage> turns) {
+        List<Sentence> sentences = new ArrayList<>();
+        if (previousSummary != null) split(previousSummary, "", PREVIOUS_SUMMARY_BONUS, sentences);
+        for (ChatMessage m : turns) split(m.getContent(), label(m.getSender()), 1.0, sentences);
+
+        Map<String, Integer> frequency = new HashMap<>();
+        for (Sentence s : sentences) {
+            for (String w : words(s.text())) frequency.merge(w, 1, Integer::sum);
+        }
+        Map<Sentence, Double> score = new HashMap<>();
+        for (Sentence s : sentences) {
+            List<String> words = words(s.text());
+            double sum = 0;
+            for (String w : words) sum += frequency.get(w);
+            score.put(s, words.isEmpty() ? 0 : s.weight() * sum / Math.sqrt(words.size()));
+        }
+
+        List<Sentence> ranked = new ArrayList<>(sentences);
+        ranked.sort(Comparator.comparingDouble((Sentence s) -> score.get(s)).reversed());
+        List<Sentence> picked = new ArrayList<>();
+        int length = 0;
+        for (Sentence s : ranked) {
+            if (length + s.text().length() + 1 > maxChars) continue;
+            picked.add(s);
+            length += s.text().length() + 1;
+        }
+        picked.sort(Comparator.comparingInt(Sentence::position));
+
+        StringBuilder sb = new StringBuilder(length);
+        for (Sentence s : picked) {
+            if (sb.length() > 0) sb.append('\n');
+            sb.append(s.text());
+        }
+        return sb.toString();
+    }
+
+    private static void split(String text, String label, double weight, List<Sentence> out) {
+        if (text == null) return;
+        for (String part : SENTENCE_END.split(text)) {
+            String sentence = part.strip();
+            if (sentence.isEmpty()) continue;
+            if (sentence.length() > MAX_SENTENCE_CHARS) sentence = sentence.substring(0, MAX_SENTENCE_CHARS);
+            out.add(new Sentence(out.size(), label + sentence, weight));
+        }
+    }
+
+    // short words carry little content, and the speaker labels shouldn't count
+    private static List<String> words(String sentence) {
+        List<String> words = new ArrayList<>();
+        for (String w : NON_WORD.split(sentence.toLowerCase(Locale.ROOT))) {
+            if (w.length() >= 4 && !w.equals("user") && !w.equals("assistant")) words.add(w);
+        }
+        return words;
+    }
+
+    // USER -> "User: ", ASSISTANT -> "Assistant: "
+    private static String label(String sender) {
+        if (sender == null || sender.isEmpty()) return "";
+        return sender.substring(0, 1).toUpperCase(Locale.ROOT) + sender.substring(1).toLowerCase(Locale.ROOT) + ": ";
+    }
+}
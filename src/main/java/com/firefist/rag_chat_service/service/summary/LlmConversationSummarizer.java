@@ -0,0 +1,52 @@
+package com.firefist.rag_chat_service.service.summary;
+
+import com.firefist.rag_chat_service.model.ChatMessage;
+import com.firefist.rag_chat_service.service.llm.LlmCallScheduler;
+import com.firefist.rag_chat_service.service.llm.LlmClient;
+import com.firefist.rag_chat_service.service.llm.LlmPriority;
+import com.firefist.rag_chat_service.service.llm.LlmResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Summarizes with the configured LLM, as a batch-priority call so it yields to users waiting on replies.
+ */
+@Component
+@ConditionalOnProperty(name = "llm.enabled", havingValue = "true")
+public class LlmConversationSummarizer implements ConversationSummarizer {
+
+    private final LlmClient llmClient;
+    private final LlmCallScheduler llmScheduler;
+    private final int maxChars;
+
+    public LlmConversationSummarizer(LlmClient llmClient,
+                                     LlmCallScheduler llmScheduler,
+                                     @Value("${chat.summary.max-chars:2000}") int maxChars) {
+        this.llmClient = llmClient;
+        this.llmScheduler = llmScheduler;
+        this.maxChars = maxChars;
+    }
+
+    @Override
+    public String summarize(String previousSummary, List<ChatMessage> turns) {
+        StringBuilder prompt = new StringBuilder()
+                .append("Update the running summary of this conversation with the new turns below. ")
+                .append("Keep facts, names, numbers, decisions and open questions; drop small talk. ")
+                .append("Answer with the summary only, at most ").append(maxChars).append(" characters.\n\n")
+                .append("Current summary:\n").append(previousSummary == null ? "(none)" : previousSummary)
+                .append("\n\nNew turns:\n");
+        for (ChatMessage m : turns) {
+            prompt.append(m.getSender()).append(": ").append(m.getContent()).append('\n');
+        }
+        LlmResponse resp = llmScheduler.call(LlmPriority.BATCH, () -> llmClient.generate(prompt.toString(), List.of()));
+        if (resp == null || "error".equals(resp.getFinishReason()) || resp.getGeneratedText() == null) {
+            // keep the checkpoint where it is, the turns are picked up again on the next pass
+            throw new IllegalStateException("LLM summarization failed");
+        }
+        String summary = resp.getGeneratedText().strip();
+        return summary.length() <= maxChars ? summary : summary.substring(0, maxChars);
+    }
+}
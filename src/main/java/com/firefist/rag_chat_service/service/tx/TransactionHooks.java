@@ -0,0 +1,46 @@
+package com.firefist.rag_chat_service.service.tx;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Defers work to the edges of the surrounding transaction; without one it runs right away.
+ */
+public final class TransactionHooks {
+
+    private TransactionHooks() {
+    }
+
+    /**
+     * Runs action once the transaction has committed, not at all if it rolls back. For cache evictions
+     * and hand-offs that must not see (or let others re-read) uncommitted state.
+     */
+    public static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Runs action just before the transaction commits; an exception from it rolls the transaction back.
+     */
+    public static void beforeCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
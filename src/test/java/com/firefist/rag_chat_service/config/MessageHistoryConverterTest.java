@@ -0,0 +1,45 @@
+package com.firefist.rag_chat_service.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.firefist.rag_chat_service.dto.MessageHistory;
+import com.firefist.rag_chat_service.dto.MessageResponse;
+import com.firefist.rag_chat_service.dto.MessageView;
+import com.firefist.rag_chat_service.model.ContextRef;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The hand-written output has to stay byte-for-byte what the ObjectMapper makes of MessageResponse.
+ */
+class MessageHistoryConverterTest {
+
+    // configured like Spring Boot's (JavaTimeModule, ISO dates)
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @Test
+    void writesWhatTheObjectMapperWrites() throws Exception {
+        UUID session = UUID.randomUUID();
+        List<MessageView> views = List.of(
+                new MessageView(UUID.randomUUID(), session, "USER", "what is \"RAG\"?\n", null,
+                        null, Instant.parse("2026-01-02T03:04:05.123456Z"), 1L),
+                new MessageView(UUID.randomUUID(), session, "ASSISTANT", "Retrieval-augmented generation ü", "ctx",
+                        List.of(new ContextRef("h1", "doc.md", 0.75, null), new ContextRef(null, null, 1.0, "ex")),
+                        Instant.parse("2026-01-02T03:04:06Z"), null));
+
+        MockHttpOutputMessage out = new MockHttpOutputMessage();
+        new MessageHistoryConverter(objectMapper).write(new MessageHistory(views), MediaType.APPLICATION_JSON, out);
+
+        List<MessageResponse> expected = views.stream().map(v -> new MessageResponse(v.id(), v.sessionId(),
+                v.sender(), v.content(), v.retrievedContext(), v.contextRefs(), v.createdAt(), v.sequenceNumber()))
+                .toList();
+        assertEquals(objectMapper.writeValueAsString(expected), out.getBodyAsString());
+    }
+}
@@ -0,0 +1,125 @@
+package com.firefist.rag_chat_service.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Routing as wired by ReadReplicaConfig, against two in-memory H2 databases standing in for primary and replica.
+ * Each database names itself in a one-row table.
+ */
+class ReadReplicaDataSourceTest {
+
+    private DataSource primary;
+    private DataSource replica;
+
+    @BeforeEach
+    void setUp() {
+        primary = database("primary");
+        replica = database("replica");
+    }
+
+    @Test
+    void readOnlyTransactionsGoToTheReplica() {
+        assertEquals("replica", whoAnswers(routing(List.of(replica)), true));
+    }
+
+    @Test
+    void writeTransactionsGoToThePrimary() {
+        assertEquals("primary", whoAnswers(routing(List.of(replica)), false));
+    }
+
+    @Test
+    void readsInsideAPrimaryScopeGoToThePrimary() {
+        DataSource routing = routing(List.of(replica));
+        try (ReadRouting.Scope ignored = ReadRouting.primary()) {
+            assertEquals("primary", whoAnswers(routing, true));
+        }
+        assertEquals("replica", whoAnswers(routing, true));
+    }
+
+    @Test
+    void failingReplicaFallsBackToThePrimaryAndIsSkippedAfterwards() {
+        AtomicInteger attempts = new AtomicInteger();
+        DataSource down = new AbstractDataSource() {
+            @Override
+            public Connection getConnection() throws SQLException {
+                attempts.incrementAndGet();
+                throw new SQLException("connection refused");
+            }
+
+            @Override
+            public Connection getConnection(String username, String password) throws SQLException {
+                return getConnection();
+            }
+        };
+        DataSource routing = routing(List.of(down));
+        assertEquals("primary", whoAnswers(routing, true));
+        assertEquals("primary", whoAnswers(routing, true));
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void healthyReplicaServesWhileAnotherIsDown() {
+        DataSource down = new AbstractDataSource() {
+            @Override
+            public Connection getConnection() throws SQLException {
+                throw new SQLException("connection refused");
+            }
+
+            @Override
+            public Connection getConnection(String username, String password) throws SQLException {
+                return getConnection();
+            }
+        };
+        DataSource routing = routing(List.of(down, replica));
+        for (int i = 0; i < 4; i++) {
+            assertEquals("replica", whoAnswers(routing, true));
+        }
+    }
+
+    @Test
+    void connectionWithExplicitCredentialsComesFromThePrimary() throws SQLException {
+        DataSource readOnly = new ReadReplicaDataSource(primary, List.of(replica), 60_000);
+        try (Connection con = readOnly.getConnection("sa", "")) {
+            assertEquals("primary", new JdbcTemplate(new SingleConnectionDataSource(con, true))
+                    .queryForObject("SELECT name FROM node", String.class));
+        }
+    }
+
+    private DataSource routing(List<DataSource> replicas) {
+        LazyConnectionDataSourceProxy routing = new LazyConnectionDataSourceProxy(primary);
+        routing.setReadOnlyDataSource(new ReadReplicaDataSource(primary, replicas, 60_000));
+        return routing;
+    }
+
+    private static String whoAnswers(DataSource dataSource, boolean readOnly) {
+        TransactionTemplate tx = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        tx.setReadOnly(readOnly);
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        return tx.execute(status -> jdbc.queryForObject("SELECT name FROM node", String.class));
+    }
+
+    private static DataSource database(String name) {
+        DataSource ds = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbc = new JdbcTemplate(ds);
+        jdbc.execute("CREATE TABLE IF NOT EXISTS node (name VARCHAR(16))");
+        jdbc.update("DELETE FROM node");
+        jdbc.update("INSERT INTO node (name) VALUES (?)", name);
+        return ds;
+    }
+}
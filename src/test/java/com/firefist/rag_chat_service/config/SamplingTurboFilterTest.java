@@ -0,0 +1,51 @@
+package com.firefist.rag_chat_service.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.spi.FilterReply;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SamplingTurboFilterTest {
+
+    private final LoggerContext context = new LoggerContext();
+    private final SamplingTurboFilter filter = new SamplingTurboFilter();
+
+    @BeforeEach
+    void setUp() {
+        filter.setContext(context);
+        filter.setRules("app.web:1:3, app.web.auth:0:0");
+        filter.start();
+    }
+
+    @Test
+    void capsEventsPerSecond() {
+        Logger logger = context.getLogger("app.web.Controller");
+        for (int i = 0; i < 3; i++) assertEquals(FilterReply.NEUTRAL, decide(logger, Level.INFO));
+        assertEquals(FilterReply.DENY, decide(logger, Level.INFO));
+    }
+
+    @Test
+    void longestCategoryWinsAndWarningsAlwaysPass() {
+        Logger logger = context.getLogger("app.web.auth.Filter");
+        assertEquals(FilterReply.DENY, decide(logger, Level.INFO));
+        assertEquals(FilterReply.NEUTRAL, decide(logger, Level.WARN));
+        assertEquals(FilterReply.NEUTRAL, decide(logger, Level.ERROR));
+    }
+
+    @Test
+    void leavesOtherLoggersAndDisabledLevelsAlone() {
+        assertEquals(FilterReply.NEUTRAL, decide(context.getLogger("app.webhooks.Client"), Level.INFO));
+        Logger quiet = context.getLogger("app.web.auth.Quiet");
+        quiet.setLevel(Level.WARN);
+        // below the logger's level, so logback drops it anyway and the drop isn't counted
+        assertEquals(FilterReply.NEUTRAL, decide(quiet, Level.INFO));
+    }
+
+    private FilterReply decide(Logger logger, Level level) {
+        return filter.decide(null, logger, level, "event {}", new Object[]{1}, null);
+    }
+}
@@ -0,0 +1,212 @@
+package com.firefist.rag_chat_service.config;
+
+import com.firefist.rag_chat_service.service.cluster.ClusterMembership;
+import com.firefist.rag_chat_service.service.cluster.StaticClusterMembership;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.DispatcherType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Three local nodes: "a" is the filter under test, "b" and "c" are HTTP servers standing in for the other
+ * replicas. Each answers with its own id and remembers the forwarding header and body it received.
+ * Forwarding finishes on a relay thread, so tests wait for the mock async context to complete or dispatch.
+ */
+class SessionAffinityFilterTest {
+
+    private final Map<String, HttpServer> servers = new ConcurrentHashMap<>();
+    private final Map<String, String> received = new ConcurrentHashMap<>();
+    private ClusterMembership membership;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        for (String id : List.of("b", "c")) {
+            HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/", exchange -> {
+                String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+                received.put(id, exchange.getRequestHeaders().getFirst(SessionAffinityFilter.FORWARDED_HEADER)
+                        + " " + exchange.getRequestMethod() + " " + exchange.getRequestURI() + " " + body);
+                byte[] reply = ("served by " + id).getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("X-Node", id);
+                exchange.sendResponseHeaders(201, reply.length);
+                exchange.getResponseBody().write(reply);
+                exchange.close();
+            });
+            server.start();
+            servers.put(id, server);
+        }
+        membership = new StaticClusterMembership("a", List.of(
+                "a=http://127.0.0.1:1",
+                "b=http://127.0.0.1:" + servers.get("b").getAddress().getPort(),
+                "c=http://127.0.0.1:" + servers.get("c").getAddress().getPort()), 128);
+    }
+
+    @AfterEach
+    void tearDown() {
+        servers.values().forEach(s -> s.stop(0));
+    }
+
+    @Test
+    void ownSessionsAreServedLocally() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter("forward").doFilter(post(sessionOwnedBy("a")), response, chain);
+        assertNotNull(chain.getRequest());
+        assertEquals(0, received.size());
+    }
+
+    @Test
+    void otherSessionsAreForwardedToTheirOwner() throws Exception {
+        UUID session = sessionOwnedBy("b");
+        MockHttpServletRequest request = post(session);
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter("forward").doFilter(request, response, chain);
+        await(() -> !request.isAsyncStarted());
+
+        assertNull(chain.getRequest());
+        assertEquals(201, response.getStatus());
+        assertEquals("b", response.getHeader("X-Node"));
+        assertEquals("served by b", response.getContentAsString());
+        assertEquals("a POST /api/v1/sessions/" + session + "/messages?x=1 {\"content\":\"hi\"}", received.get("b"));
+    }
+
+    @Test
+    void forwardedRequestsAreNotForwardedAgain() throws Exception {
+        MockHttpServletRequest request = post(sessionOwnedBy("c"));
+        request.addHeader(SessionAffinityFilter.FORWARDED_HEADER, "b");
+        MockFilterChain chain = new MockFilterChain();
+        filter("forward").doFilter(request, new MockHttpServletResponse(), chain);
+        assertNotNull(chain.getRequest());
+        assertEquals(0, received.size());
+    }
+
+    @Test
+    void unreachableOwnerFallsBackToLocalWithTheBodyIntact() throws Exception {
+        UUID session = sessionOwnedBy("c");
+        servers.remove("c").stop(0);
+        SessionAffinityFilter filter = filter("forward");
+        MockHttpServletRequest request = post(session);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        MockAsyncContext async = (MockAsyncContext) request.getAsyncContext();
+        await(() -> async.getDispatchedPath() != null);
+
+        // what the container does with the dispatch
+        request.setAsyncStarted(false);
+        request.setDispatcherType(DispatcherType.ASYNC);
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, response, chain);
+        assertNotNull(chain.getRequest());
+        assertEquals("{\"content\":\"hi\"}",
+                new String(chain.getRequest().getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void clientDisconnectClosesTheConnectionToTheOwner() throws Exception {
+        CountDownLatch upstreamClosed = new CountDownLatch(1);
+        try (ServerSocket slowOwner = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            Thread owner = new Thread(() -> {
+                // reads the request and never answers, like an owner busy with a turn
+                try (Socket socket = slowOwner.accept(); InputStream in = socket.getInputStream()) {
+                    while (in.read() != -1) {
+                        // drain until the forwarder hangs up
+                    }
+                } catch (IOException ignored) {
+                    // reset instead of closed, same thing here
+                }
+                upstreamClosed.countDown();
+            });
+            owner.start();
+            membership = new StaticClusterMembership("a", List.of(
+                    "a=http://127.0.0.1:1",
+                    "b=http://127.0.0.1:" + servers.get("b").getAddress().getPort(),
+                    "c=http://127.0.0.1:" + slowOwner.getLocalPort()), 128);
+
+            MockHttpServletRequest request = post(sessionOwnedBy("c"));
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter("forward").doFilter(request, response, new MockFilterChain());
+            MockAsyncContext async = (MockAsyncContext) request.getAsyncContext();
+            assertTrue(request.isAsyncStarted());
+
+            // what the container reports when the client's connection goes away
+            for (AsyncListener listener : async.getListeners()) {
+                listener.onError(new AsyncEvent(async, request, response, new IOException("Broken pipe")));
+            }
+            assertTrue(upstreamClosed.await(5, TimeUnit.SECONDS));
+            assertFalse(request.isAsyncStarted());
+            assertEquals("", response.getContentAsString());
+        }
+    }
+
+    @Test
+    void redirectModeSendsTheClientToTheOwner() throws Exception {
+        UUID session = sessionOwnedBy("b");
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter("redirect").doFilter(post(session), response, chain);
+        assertNull(chain.getRequest());
+        assertEquals(307, response.getStatus());
+        assertEquals("http://127.0.0.1:" + servers.get("b").getAddress().getPort()
+                + "/api/v1/sessions/" + session + "/messages?x=1", response.getHeader("Location"));
+    }
+
+    private SessionAffinityFilter filter(String mode) {
+        return new SessionAffinityFilter(membership, mode, 1000, 5000, new SimpleMeterRegistry());
+    }
+
+    private UUID sessionOwnedBy(String node) {
+        for (long i = 0; ; i++) {
+            UUID id = new UUID(0x5eedL, i);
+            if (membership.ownerOf(id).id().equals(node)) return id;
+        }
+    }
+
+    private static MockHttpServletRequest post(UUID session) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/sessions/" + session + "/messages");
+        request.setQueryString("x=1");
+        request.addHeader("X-API-KEY", "k");
+        request.setContentType("application/json");
+        request.setContent("{\"content\":\"hi\"}".getBytes(StandardCharsets.UTF_8));
+        request.setAsyncSupported(true);
+        return request;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long until = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > until) fail("condition not reached in time");
+            Thread.sleep(5);
+        }
+    }
+}
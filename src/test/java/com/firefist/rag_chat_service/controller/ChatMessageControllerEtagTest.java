@@ -0,0 +1,154 @@
+package com.firefist.rag_chat_service.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.firefist.rag_chat_service.config.MessageHistoryConverter;
+import com.firefist.rag_chat_service.dto.MessageView;
+import com.firefist.rag_chat_service.service.ChatMessageService;
+import com.firefist.rag_chat_service.service.cache.HistoryVersions;
+import com.firefist.rag_chat_service.service.cache.LocalSessionInvalidationBus;
+import com.firefist.rag_chat_service.service.deadline.RequestDeadlines;
+import com.firefist.rag_chat_service.service.idempotency.IdempotencyService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * ETags of GET .../messages: the service is mocked, HistoryVersions is the real cache over a stand-in for
+ * the session row, so a "turn" is a bumped row plus the invalidation the write path does.
+ */
+class ChatMessageControllerEtagTest {
+
+    private final UUID sessionId = UUID.randomUUID();
+    private final List<MessageView> stored = new ArrayList<>();
+    private final AtomicInteger versionReads = new AtomicInteger();
+    private final ChatMessageService messageService = mock(ChatMessageService.class);
+    private HistoryVersions historyVersions;
+    private ChatMessageController controller;
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setUp() {
+        JdbcTemplate sessionRow = new JdbcTemplate() {
+            @Override
+            public <T> T query(String sql, ResultSetExtractor<T> rse, Object... args) {
+                versionReads.incrementAndGet();
+                ResultSet rs = mock(ResultSet.class);
+                try {
+                    when(rs.next()).thenReturn(true);
+                    when(rs.getLong(1)).thenReturn((long) stored.size());
+                    when(rs.getLong(2)).thenReturn(0L);
+                    when(rs.getLong(3)).thenReturn((long) stored.size());
+                    return rse.extractData(rs);
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        historyVersions = new HistoryVersions(sessionRow, new LocalSessionInvalidationBus(),
+                new SimpleMeterRegistry(), 100, 60_000);
+        controller = new ChatMessageController(messageService, mock(IdempotencyService.class),
+                mock(RequestDeadlines.class), historyVersions, 1, 1);
+
+        when(messageService.getMessageViews(eq(sessionId), any(Pageable.class))).thenAnswer(inv -> {
+            Pageable pageable = inv.getArgument(1);
+            int from = (int) Math.min(pageable.getOffset(), stored.size());
+            int to = Math.min(from + pageable.getPageSize(), stored.size());
+            return new PageImpl<>(List.copyOf(stored.subList(from, to)), pageable, stored.size());
+        });
+        when(messageService.getMessageViewsAfter(eq(sessionId), anyLong(), anyInt())).thenAnswer(inv -> {
+            long afterSeq = inv.getArgument(1);
+            int limit = inv.getArgument(2);
+            return stored.stream().filter(m -> m.sequenceNumber() > afterSeq).limit(limit).toList();
+        });
+
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        mvc = MockMvcBuilders.standaloneSetup(controller)
+                .setMessageConverters(new MessageHistoryConverter(objectMapper),
+                        new MappingJackson2HttpMessageConverter(objectMapper))
+                .build();
+        turn();
+    }
+
+    @AfterEach
+    void tearDown() {
+        controller.shutdown();
+    }
+
+    @Test
+    void pagedReadIsRevalidatedUntilTheNextTurn() throws Exception {
+        String url = "/api/v1/sessions/" + sessionId + "/messages";
+        String etag = etagOf(mvc.perform(get(url)).andReturn(), 200);
+
+        MvcResult cached = mvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag)).andReturn();
+        assertEquals(304, cached.getResponse().getStatus());
+        assertEquals(etag, cached.getResponse().getHeader(HttpHeaders.ETAG));
+        verify(messageService, times(1)).getMessageViews(eq(sessionId), any(Pageable.class));
+        assertEquals(1, versionReads.get());
+
+        turn();
+        String next = etagOf(mvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag)).andReturn(), 200);
+        assertNotEquals(etag, next);
+        // another page of the same history is another representation
+        assertNotEquals(next, etagOf(mvc.perform(get(url + "?size=1")).andReturn(), 200));
+    }
+
+    @Test
+    void keysetReadIsRevalidatedUntilTheNextTurn() throws Exception {
+        String url = "/api/v1/sessions/" + sessionId + "/messages?afterSeq=0";
+        String etag = etagOf(mvc.perform(get(url)).andReturn(), 200);
+
+        assertEquals(304, mvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, "\"other\", " + etag))
+                .andReturn().getResponse().getStatus());
+        verify(messageService, times(1)).getMessageViewsAfter(eq(sessionId), anyLong(), anyInt());
+
+        turn();
+        assertNotEquals(etag, etagOf(mvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag)).andReturn(), 200));
+    }
+
+    // one more message, then what ChatMessageService.allocateSequence does after commit
+    private void turn() {
+        long seq = stored.size() + 1;
+        stored.add(new MessageView(UUID.randomUUID(), sessionId, "USER", "message " + seq, null, null,
+                Instant.now(), seq));
+        historyVersions.invalidate(sessionId);
+    }
+
+    private static String etagOf(MvcResult result, int status) {
+        assertEquals(status, result.getResponse().getStatus());
+        String etag = result.getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+        return etag;
+    }
+}
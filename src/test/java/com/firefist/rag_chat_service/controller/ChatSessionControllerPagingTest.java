@@ -0,0 +1,186 @@
+package com.firefist.rag_chat_service.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.firefist.rag_chat_service.dto.SessionPageResponse;
+import com.firefist.rag_chat_service.dto.SessionSummary;
+import com.firefist.rag_chat_service.exception.GlobalExceptionHandler;
+import com.firefist.rag_chat_service.repository.ChatSessionRepository;
+import com.firefist.rag_chat_service.service.ChatSessionService;
+import com.firefist.rag_chat_service.service.cache.SessionCache;
+import com.firefist.rag_chat_service.service.search.MessageSearchService;
+import com.firefist.rag_chat_service.service.summary.ConversationSummaryService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * GET /api/v1/sessions/user/{userId}/page through the real service; the repository's keyset queries are
+ * evaluated over an in-memory list, with ids compared as the strings the column holds.
+ */
+class ChatSessionControllerPagingTest {
+
+    private static final String URL = "/api/v1/sessions/user/u1/page";
+    private static final Instant T0 = Instant.parse("2026-03-01T10:00:00Z");
+
+    private final ChatSessionRepository repository = mock(ChatSessionRepository.class);
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final List<SessionSummary> sessions = new ArrayList<>();
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setUp() {
+        Comparator<SessionSummary> recent = Comparator.comparing(SessionSummary::getUpdatedAt)
+                .thenComparing(s -> s.getId().toString()).reversed();
+        Comparator<SessionSummary> favoritesFirst = Comparator.comparing(SessionSummary::isFavorite).reversed()
+                .thenComparing(recent);
+
+        when(repository.findRecentSummaries(anyString(), any())).thenAnswer(inv ->
+                query(recent, s -> true, inv.getArgument(1)));
+        when(repository.findRecentSummariesAfter(anyString(), any(), any(), any())).thenAnswer(inv ->
+                query(recent, before(inv.getArgument(1), inv.getArgument(2)), inv.getArgument(3)));
+        when(repository.findFavoritesFirstSummaries(anyString(), any())).thenAnswer(inv ->
+                query(favoritesFirst, s -> true, inv.getArgument(1)));
+        when(repository.findFavoritesFirstSummariesAfterFavorite(anyString(), any(), any(), any())).thenAnswer(inv ->
+                query(favoritesFirst, before(inv.getArgument(1), inv.getArgument(2)).or(s -> !s.isFavorite()),
+                        inv.getArgument(3)));
+        when(repository.findFavoritesFirstSummariesAfterNonFavorite(anyString(), any(), any(), any())).thenAnswer(inv ->
+                query(favoritesFirst, before(inv.getArgument(1), inv.getArgument(2)).and(s -> !s.isFavorite()),
+                        inv.getArgument(3)));
+
+        ChatSessionService service = new ChatSessionService(repository, mock(SessionCache.class),
+                mock(MessageSearchService.class), mock(ConversationSummaryService.class));
+        mvc = MockMvcBuilders.standaloneSetup(new ChatSessionController(service))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .setMessageConverters(new MappingJackson2HttpMessageConverter(objectMapper))
+                .build();
+    }
+
+    @Test
+    void pagesWalkEverySessionOnceAcrossTiesOnUpdatedAt() throws Exception {
+        // three sessions updated in the same instant: only the id tells them apart
+        SessionSummary newest = add(T0.plusSeconds(60), false);
+        List<SessionSummary> tied = List.of(add(T0, false), add(T0, false), add(T0, false));
+        SessionSummary oldest = add(T0.minusSeconds(60), false);
+
+        List<SessionSummary> expected = new ArrayList<>(List.of(newest));
+        expected.addAll(tied.stream().sorted(Comparator.comparing((SessionSummary s) -> s.getId().toString()).reversed())
+                .toList());
+        expected.add(oldest);
+
+        assertEquals(ids(expected), ids(walk(null, 2, 3)));
+    }
+
+    @Test
+    void cursorEncodesTheLastRowOfThePage() throws Exception {
+        add(T0, true);
+        SessionSummary second = add(T0.minusSeconds(1), false);
+        add(T0.minusSeconds(2), false);
+
+        SessionPageResponse page = page(get(URL).param("limit", "2"));
+        String raw = new String(Base64.getUrlDecoder().decode(page.getNextCursor()), StandardCharsets.UTF_8);
+        assertEquals("0|" + second.getUpdatedAt() + "|" + second.getId(), raw);
+        // URL-safe and unpadded, it goes into a query string as it is
+        assertEquals(page.getNextCursor(), page.getNextCursor().replaceAll("[^A-Za-z0-9_-]", ""));
+    }
+
+    @Test
+    void favoritesFirstContinuesFromInsideTheFavoritesIntoTheRest() throws Exception {
+        SessionSummary oldFavorite = add(T0.minusSeconds(300), true);
+        SessionSummary newFavorite = add(T0.minusSeconds(200), true);
+        SessionSummary recent = add(T0, false);
+        SessionSummary older = add(T0.minusSeconds(100), false);
+        SessionSummary oldest = add(T0.minusSeconds(400), false);
+
+        // page boundaries: inside the favorites, then past them
+        List<SessionSummary> walked = walk("favorites", 1, 5);
+        assertEquals(ids(List.of(newFavorite, oldFavorite, recent, older, oldest)), ids(walked));
+        assertEquals(ids(List.of(newFavorite, oldFavorite, recent, older, oldest)),
+                ids(walk("favorites", 3, 2)));
+    }
+
+    @Test
+    void exactlyFullLastPageHasNoCursorAndAnEmptyListingIsNoContent() throws Exception {
+        assertEquals(204, mvc.perform(get(URL)).andReturn().getResponse().getStatus());
+
+        add(T0, false);
+        add(T0.minusSeconds(1), false);
+        SessionPageResponse only = page(get(URL).param("limit", "2"));
+        assertEquals(2, only.getItems().size());
+        assertNull(only.getNextCursor());
+    }
+
+    @Test
+    void malformedOrTamperedCursorIsABadRequest() throws Exception {
+        String tampered = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("0|not-an-instant|x".getBytes(StandardCharsets.UTF_8));
+        for (String cursor : List.of("%%%", "bm90IGEgY3Vyc29y", tampered)) {
+            assertEquals(400, mvc.perform(get(URL).param("cursor", cursor)).andReturn().getResponse().getStatus());
+        }
+    }
+
+    // follows nextCursor to the end, checking the number of pages it took
+    private List<SessionSummary> walk(String sort, int limit, int expectedPages) throws Exception {
+        List<SessionSummary> all = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            MockHttpServletRequestBuilder request = get(URL).param("limit", String.valueOf(limit));
+            if (sort != null) request.param("sort", sort);
+            if (cursor != null) request.param("cursor", cursor);
+            SessionPageResponse page = page(request);
+            all.addAll(page.getItems());
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+        assertEquals(expectedPages, pages);
+        return all;
+    }
+
+    private SessionPageResponse page(MockHttpServletRequestBuilder request) throws Exception {
+        MvcResult result = mvc.perform(request).andReturn();
+        assertEquals(200, result.getResponse().getStatus());
+        return objectMapper.readValue(result.getResponse().getContentAsByteArray(), SessionPageResponse.class);
+    }
+
+    private SessionSummary add(Instant updatedAt, boolean favorite) {
+        SessionSummary s = new SessionSummary(UUID.randomUUID(), "t", favorite, updatedAt);
+        sessions.add(s);
+        return s;
+    }
+
+    private List<SessionSummary> query(Comparator<SessionSummary> order, Predicate<SessionSummary> filter, Pageable limit) {
+        return sessions.stream().filter(filter).sorted(order).limit(limit.getPageSize()).toList();
+    }
+
+    private static Predicate<SessionSummary> before(Instant updatedAt, UUID id) {
+        return s -> s.getUpdatedAt().isBefore(updatedAt)
+                || s.getUpdatedAt().equals(updatedAt) && s.getId().toString().compareTo(id.toString()) < 0;
+    }
+
+    private static List<UUID> ids(List<SessionSummary> summaries) {
+        return summaries.stream().map(SessionSummary::getId).toList();
+    }
+}
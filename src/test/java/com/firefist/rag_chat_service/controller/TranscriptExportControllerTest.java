@@ -0,0 +1,66 @@
+package com.firefist.rag_chat_service.controller;
+
+import com.firefist.rag_chat_service.config.AsyncTimeoutConfig;
+import com.firefist.rag_chat_service.service.export.TranscriptExporter;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TranscriptExportControllerTest {
+
+    private static final String NDJSON = "{\"content\":\"one\"}\n{\"content\":\"two\"}\n";
+
+    private final TranscriptExporter exporter = mock(TranscriptExporter.class);
+    private final TranscriptExportController controller = new TranscriptExportController(exporter, 1_800_000);
+    private final UUID sessionId = UUID.randomUUID();
+
+    @Test
+    void gzipExportIsTheCompressedNdjsonWithItsOwnTimeout() throws IOException {
+        when(exporter.sessionExists(sessionId)).thenReturn(true);
+        doAnswer(inv -> {
+            inv.getArgument(2, OutputStream.class).write(NDJSON.getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(exporter).exportSession(eq(sessionId), eq(false), any());
+        MockHttpServletRequest request = new MockHttpServletRequest();
+
+        ResponseEntity<StreamingResponseBody> response =
+                controller.exportSession(sessionId.toString(), "ndjson.gz", null, request);
+        assertEquals("application/gzip", response.getHeaders().getContentType().toString());
+        assertTrue(response.getHeaders().getFirst(HttpHeaders.CONTENT_DISPOSITION).contains("session-" + sessionId + ".ndjson.gz"));
+        assertEquals(1_800_000L, request.getAttribute(AsyncTimeoutConfig.TIMEOUT_ATTRIBUTE));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            assertEquals(NDJSON, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void missingSessionIsNotFoundWithoutStreaming() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        ResponseEntity<StreamingResponseBody> response =
+                controller.exportSession(sessionId.toString(), "ndjson", null, request);
+        assertEquals(404, response.getStatusCode().value());
+        assertNull(request.getAttribute(AsyncTimeoutConfig.TIMEOUT_ATTRIBUTE));
+    }
+}
@@ -0,0 +1,47 @@
+package com.firefist.rag_chat_service.loadtest;
+
+import java.util.SplittableRandom;
+
+/**
+ * Provider latency model of {@link StubLlmServer}, parsed from a short spec:
+ * fixed:MS, uniform:MIN:MAX or lognormal:MEDIAN:P99 (all in milliseconds).
+ */
+interface LatencyDistribution {
+
+    // z-score of the 99th percentile of a standard normal
+    double Z99 = 2.326;
+
+    long sampleMillis(SplittableRandom random);
+
+    static LatencyDistribution parse(String spec) {
+        String[] parts = spec.trim().split(":");
+        try {
+            switch (parts[0]) {
+                case "fixed":
+                    long fixed = Long.parseLong(parts[1]);
+                    return random -> fixed;
+                case "uniform":
+                    long min = Long.parseLong(parts[1]);
+                    long max = Long.parseLong(parts[2]);
+                    return random -> min + random.nextLong(max - min + 1);
+                case "lognormal":
+                    // long right tail like real completions: a few calls take many times the median
+                    double median = Double.parseDouble(parts[1]);
+                    double sigma = Math.log(Double.parseDouble(parts[2]) / median) / Z99;
+                    double mu = Math.log(median);
+                    return random -> Math.round(Math.exp(mu + sigma * gaussian(random)));
+                default:
+                    throw new IllegalArgumentException("Unknown latency distribution: " + spec);
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid latency spec '" + spec + "', expected fixed:MS, uniform:MIN:MAX or lognormal:MEDIAN:P99", ex);
+        }
+    }
+
+    // Box-Muller, SplittableRandom has no nextGaussian on Java 17
+    private static double gaussian(SplittableRandom random) {
+        double u = 1.0 - random.nextDouble();
+        double v = random.nextDouble();
+        return Math.sqrt(-2.0 * Math.log(u)) * Math.cos(2.0 * Math.PI * v);
+    }
+}
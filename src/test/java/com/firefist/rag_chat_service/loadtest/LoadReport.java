@@ -0,0 +1,97 @@
+package com.firefist.rag_chat_service.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency (HdrHistogram, microseconds) and status counts per endpoint, e.g. "POST /sessions/{id}/messages".
+ *
+ * Latencies are measured from the request's intended start, not from when it was actually sent, so a
+ * slow server shows up in the numbers instead of just slowing the load down (coordinated omission).
+ */
+class LoadReport {
+
+    private static final long MAX_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentSkipListMap<>();
+    private volatile long startNanos = System.nanoTime();
+
+    private static final class Endpoint {
+        final Histogram latency = new ConcurrentHistogram(MAX_MICROS, 3);
+        final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * status 0 stands for a request that failed without a response (connect error, timeout).
+     */
+    void record(String endpoint, int status, long intendedStartNanos, long endNanos) {
+        Endpoint e = endpoints.computeIfAbsent(endpoint, k -> new Endpoint());
+        long micros = TimeUnit.NANOSECONDS.toMicros(endNanos - intendedStartNanos);
+        e.latency.recordValue(Math.min(Math.max(micros, 0), MAX_MICROS));
+        e.statuses.computeIfAbsent(status, k -> new LongAdder()).increment();
+    }
+
+    /**
+     * Forgets everything recorded so far (end of the warm-up).
+     */
+    void reset() {
+        endpoints.clear();
+        startNanos = System.nanoTime();
+    }
+
+    void print(PrintStream out) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        out.printf("%-34s %8s %8s %8s %9s %9s %9s %9s %9s%n",
+                "endpoint", "count", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        long total = 0;
+        for (Map.Entry<String, Endpoint> entry : endpoints.entrySet()) {
+            Histogram h = entry.getValue().latency;
+            long errors = errors(entry.getValue());
+            total += h.getTotalCount();
+            out.printf("%-34s %8d %8d %8.1f %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+                    entry.getKey(), h.getTotalCount(), errors, h.getTotalCount() / seconds,
+                    ms(h.getValueAtPercentile(50)), ms(h.getValueAtPercentile(90)), ms(h.getValueAtPercentile(99)),
+                    ms(h.getValueAtPercentile(99.9)), ms(h.getMaxValue()));
+        }
+        out.printf("%d requests in %.1f s (%.1f req/s)%n", total, seconds, total / seconds);
+        for (Map.Entry<String, Endpoint> entry : endpoints.entrySet()) {
+            out.printf("  %-32s statuses %s%n", entry.getKey(), new TreeMap<>(entry.getValue().statuses));
+        }
+    }
+
+    /**
+     * One .hgrm percentile distribution per endpoint (milliseconds), loadable in the HdrHistogram plotter.
+     */
+    void writeHistograms(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        for (Map.Entry<String, Endpoint> entry : endpoints.entrySet()) {
+            String file = entry.getKey().replaceAll("[^A-Za-z0-9]+", "_").replaceAll("^_|_$", "") + ".hgrm";
+            try (PrintStream out = new PrintStream(Files.newOutputStream(dir.resolve(file)))) {
+                entry.getValue().latency.outputPercentileDistribution(out, 1000.0);
+            }
+        }
+    }
+
+    private static long errors(Endpoint e) {
+        long errors = 0;
+        for (Map.Entry<Integer, LongAdder> s : e.statuses.entrySet()) {
+            if (s.getKey() < 200 || s.getKey() >= 400) errors += s.getValue().sum();
+        }
+        return errors;
+    }
+
+    private static double ms(long micros) {
+        return micros / 1000.0;
+    }
+}
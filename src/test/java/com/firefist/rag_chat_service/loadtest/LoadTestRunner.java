@@ -0,0 +1,117 @@
+package com.firefist.rag_chat_service.loadtest;
+
+import com.firefist.rag_chat_service.RagChatServiceApplication;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Load test: stub LLM provider + scripted workload + per-endpoint latency report.
+ *
+ * Not part of the default test run, use: mvn -Ploadtest test [-Dloadtest.users=50 ...]
+ *
+ * - Without loadtest.target the service is started in this JVM against the database of the usual MYSQL_*
+ *   variables (docker compose up -d mysql), with llm.enabled=true pointing at the stub. Other service
+ *   properties can be passed as -D too (e.g. -Dllm.concurrency.max-limit=16).
+ * - With loadtest.target=http://host:port an already running service is driven instead; start it with
+ *   LLM_ENDPOINT pointing at the stub (fixed port with loadtest.stub.port) and the same API key.
+ * - The report goes to stdout and, with one .hgrm file per endpoint, to target/loadtest/run-TIMESTAMP.
+ */
+class LoadTestRunner {
+
+    @Test
+    void run() throws Exception {
+        StubLlmServer.Config stubConfig = new StubLlmServer.Config(
+                LatencyDistribution.parse(prop("loadtest.stub.latency", "lognormal:600:3000")),
+                Long.parseLong(prop("loadtest.stub.token-ms", "15")),
+                Integer.parseInt(prop("loadtest.stub.tokens", "60")),
+                Double.parseDouble(prop("loadtest.stub.error-rate", "0.01")),
+                Double.parseDouble(prop("loadtest.stub.rate-limit-rate", "0.02")),
+                Integer.parseInt(prop("loadtest.stub.retry-after-s", "1")),
+                Long.parseLong(prop("loadtest.seed", "42")));
+        String apiKey = prop("loadtest.api-key", System.getenv("API_KEY") != null ? System.getenv("API_KEY") : "loadtest-key");
+        String target = prop("loadtest.target", "");
+
+        try (StubLlmServer stub = new StubLlmServer(stubConfig, Integer.parseInt(prop("loadtest.stub.port", "0")))) {
+            System.out.println("Stub LLM endpoint: " + stub.endpoint());
+            ConfigurableApplicationContext app = target.isEmpty() ? startService(stub.endpoint(), apiKey) : null;
+            try {
+                String baseUrl = app != null ? "http://localhost:" + app.getEnvironment().getProperty("local.server.port") : target;
+                LoadReport report = new LoadReport();
+
+                int warmupTurns = Integer.parseInt(prop("loadtest.warmup-turns", "2"));
+                if (warmupTurns > 0) {
+                    new LoadWorkload(workload(baseUrl, apiKey, 1, warmupTurns, "warmup"), report).run();
+                    report.reset();
+                }
+                String runId = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+                new LoadWorkload(workload(baseUrl, apiKey,
+                        Integer.parseInt(prop("loadtest.sessions", "2")),
+                        Integer.parseInt(prop("loadtest.turns", "10")), "load-" + runId), report).run();
+
+                ByteArrayOutputStream text = new ByteArrayOutputStream();
+                try (PrintStream out = new PrintStream(text, true, StandardCharsets.UTF_8)) {
+                    report.print(out);
+                    out.println(stub.stats());
+                }
+                System.out.print(text.toString(StandardCharsets.UTF_8));
+
+                Path dir = Path.of(prop("loadtest.out", "target/loadtest"), "run-" + runId);
+                report.writeHistograms(dir);
+                Files.write(dir.resolve("summary.txt"), text.toByteArray());
+                System.out.println("Histograms written to " + dir.toAbsolutePath());
+                assertTrue(text.size() > 0);
+            } finally {
+                if (app != null) app.close();
+            }
+        }
+    }
+
+    private static LoadWorkload.Config workload(String baseUrl, String apiKey, int sessions, int turns, String userPrefix) {
+        return new LoadWorkload.Config(baseUrl, apiKey,
+                Integer.parseInt(prop("loadtest.users", "20")),
+                sessions, turns,
+                Long.parseLong(prop("loadtest.think-ms", "1000")),
+                Integer.parseInt(prop("loadtest.history-every", "5")),
+                Integer.parseInt(prop("loadtest.search-every", "5")),
+                Long.parseLong(prop("loadtest.seed", "42")),
+                userPrefix);
+    }
+
+    private static ConfigurableApplicationContext startService(String llmEndpoint, String apiKey) {
+        if (System.getenv("MYSQL_HOST") == null && System.getProperty("spring.datasource.url") == null) {
+            throw new IllegalStateException("Set the MYSQL_* variables (or -Dspring.datasource.url=...) to a test database, "
+                    + "or -Dloadtest.target=http://host:port to drive a running service");
+        }
+        Map<String, String> props = new LinkedHashMap<>();
+        props.put("server.port", "0");
+        props.put("llm.enabled", "true");
+        props.put("llm.endpoint", llmEndpoint);
+        props.put("llm.api.key", "stub");
+        props.put("security.apikey.keys", apiKey);
+        // as command line arguments they win over application.properties; a -D of the same name wins over them
+        List<String> args = new ArrayList<>();
+        props.forEach((name, value) -> {
+            if (System.getProperty(name) == null) args.add("--" + name + "=" + value);
+        });
+        return new SpringApplicationBuilder(RagChatServiceApplication.class).run(args.toArray(new String[0]));
+    }
+
+    private static String prop(String name, String defaultValue) {
+        return System.getProperty(name, defaultValue);
+    }
+}
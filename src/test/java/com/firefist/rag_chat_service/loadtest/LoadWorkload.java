@@ -0,0 +1,156 @@
+package com.firefist.rag_chat_service.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Scripted multi-session traffic against the REST API.
+ *
+ * Every virtual user runs on its own thread: it opens sessions-per-user sessions and sends turns-per-session
+ * USER messages to each, reading the history every history-every turns and searching every search-every turns,
+ * then lists its sessions. Requests follow a schedule with exponentially distributed think time (mean think-ms);
+ * a late request is sent at once and its latency still counts from its scheduled time.
+ * Message texts and think times come from a generator seeded with (seed, user), so runs are repeatable.
+ */
+class LoadWorkload {
+
+    record Config(String baseUrl, String apiKey, int users, int sessionsPerUser, int turnsPerSession,
+                  long thinkMillis, int historyEvery, int searchEvery, long seed, String userPrefix) {
+    }
+
+    private static final String[] TOPICS = {"refund", "shipping", "warranty", "invoice", "password", "upgrade", "delivery", "account"};
+    private static final String[] QUESTIONS = {
+            "How long does a %s take when the order was placed last week?",
+            "Can you explain the %s policy for customers outside the EU?",
+            "What do I need to provide to start a %s request?",
+            "Is there a fee involved in a %s and who pays it?",
+            "My %s has been pending for days, what should I check first?"};
+
+    private final Config config;
+    private final LoadReport report;
+    private final HttpClient http = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    LoadWorkload(Config config, LoadReport report) {
+        this.config = config;
+        this.report = report;
+    }
+
+    void run() throws InterruptedException {
+        List<Thread> threads = new ArrayList<>(config.users());
+        for (int u = 0; u < config.users(); u++) {
+            int user = u;
+            Thread t = new Thread(() -> new VirtualUser(user).run(), "load-user-" + u);
+            t.setDaemon(true);
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads) t.join();
+    }
+
+    private final class VirtualUser {
+        final SplittableRandom random;
+        final String userId;
+        long next = System.nanoTime();
+
+        VirtualUser(int user) {
+            this.random = new SplittableRandom(config.seed() * 1_000_003L + user);
+            this.userId = config.userPrefix() + "-" + user;
+        }
+
+        void run() {
+            for (int s = 0; s < config.sessionsPerUser(); s++) {
+                String sessionId = createSession(s);
+                if (sessionId == null) continue;
+                for (int turn = 1; turn <= config.turnsPerSession(); turn++) {
+                    String topic = TOPICS[random.nextInt(TOPICS.length)];
+                    String question = String.format(QUESTIONS[random.nextInt(QUESTIONS.length)], topic);
+                    send("POST /sessions/{id}/messages", post("/api/v1/sessions/" + sessionId + "/messages",
+                            "{\"sender\":\"USER\",\"content\":" + quote(question) + "}"));
+                    if (config.historyEvery() > 0 && turn % config.historyEvery() == 0) {
+                        send("GET /sessions/{id}/messages", get("/api/v1/sessions/" + sessionId + "/messages?size=50"));
+                    }
+                    if (config.searchEvery() > 0 && turn % config.searchEvery() == 0) {
+                        send("GET /sessions/user/{userId}/search", get("/api/v1/sessions/user/" + userId
+                                + "/search?q=" + URLEncoder.encode(topic, StandardCharsets.UTF_8)));
+                    }
+                }
+            }
+            send("GET /sessions/user/{userId}/page", get("/api/v1/sessions/user/" + userId + "/page"));
+        }
+
+        String createSession(int s) {
+            HttpResponse<String> resp = send("POST /sessions", post("/api/v1/sessions",
+                    "{\"userId\":" + quote(userId) + ",\"title\":" + quote("load session " + s) + "}"));
+            if (resp == null || resp.statusCode() != 201) return null;
+            try {
+                JsonNode id = mapper.readTree(resp.body()).get("id");
+                return id == null ? null : id.asText();
+            } catch (IOException ex) {
+                return null;
+            }
+        }
+
+        HttpResponse<String> send(String endpoint, HttpRequest request) {
+            next += thinkNanos();
+            long wait = next - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+            HttpResponse<String> resp = null;
+            try {
+                resp = http.send(request, HttpResponse.BodyHandlers.ofString());
+            } catch (IOException ex) {
+                // recorded as status 0 below
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            report.record(endpoint, resp == null ? 0 : resp.statusCode(), next, System.nanoTime());
+            return resp;
+        }
+
+        long thinkNanos() {
+            if (config.thinkMillis() <= 0) return 0;
+            // exponential gaps: arrivals of a Poisson process
+            double gap = -Math.log(1.0 - random.nextDouble()) * config.thinkMillis();
+            return TimeUnit.MICROSECONDS.toNanos(Math.round(gap * 1000));
+        }
+    }
+
+    private HttpRequest post(String path, String json) {
+        return request(path).header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json)).build();
+    }
+
+    private HttpRequest get(String path) {
+        return request(path).GET().build();
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(config.baseUrl() + path))
+                .timeout(Duration.ofSeconds(60))
+                .header("X-API-KEY", config.apiKey());
+    }
+
+    private String quote(String s) {
+        try {
+            return mapper.writeValueAsString(s);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.firefist.rag_chat_service.loadtest;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embedded OpenAI-compatible chat completions endpoint (POST /v1/chat/completions) with realistic timing.
+ *
+ * - Time to first token is drawn from a {@link LatencyDistribution}, then every completion token takes token-ms,
+ *   so a call blocks the caller's thread for about as long as a real provider would.
+ * - "stream": true answers with server-sent chat.completion.chunk events, one per token, ending with [DONE].
+ * - A share of the calls answers 429 with Retry-After (rate-limit-rate) or 500 (error-rate), right away.
+ * - Each call draws from its own generator seeded with (seed, call number), so a run with the same
+ *   seed and the same call order gets the same latencies and failures.
+ */
+class StubLlmServer implements AutoCloseable {
+
+    record Config(LatencyDistribution firstToken, long tokenMillis, int completionTokens,
+                  double errorRate, double rateLimitRate, int retryAfterSeconds, long seed) {
+    }
+
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final String[] WORDS = ("the answer depends on your plan and the refund policy shipping usually takes "
+            + "three to five business days please contact support with the order number for details").split(" ");
+
+    private final Config config;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong streamed = new AtomicLong();
+
+    StubLlmServer(Config config, int port) throws IOException {
+        this.config = config;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        // every call sleeps for its whole latency, one thread per in-flight call like a real provider connection
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "stub-llm");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(executor);
+        server.createContext("/v1/chat/completions", this::handle);
+        server.start();
+    }
+
+    String endpoint() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/chat/completions";
+    }
+
+    String stats() {
+        return String.format("stub LLM: %d calls, %d streamed, %d answered 429, %d answered 500",
+                calls.get(), streamed.get(), rateLimited.get(), errors.get());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            JsonNode request = readBody(exchange.getRequestBody());
+            long call = calls.incrementAndGet();
+            SplittableRandom random = new SplittableRandom(config.seed() * 31 + call);
+
+            double roll = random.nextDouble();
+            if (roll < config.rateLimitRate()) {
+                rateLimited.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", Integer.toString(config.retryAfterSeconds()));
+                sendError(exchange, 429, "rate_limit_exceeded", "Rate limit reached (stub)");
+                return;
+            }
+            if (roll < config.rateLimitRate() + config.errorRate()) {
+                errors.incrementAndGet();
+                sendError(exchange, 500, "server_error", "The server had an error (stub)");
+                return;
+            }
+
+            String model = request.path("model").asText("stub-model");
+            int promptTokens = promptTokens(request);
+            sleep(config.firstToken().sampleMillis(random));
+            if (request.path("stream").asBoolean(false)) {
+                streamed.incrementAndGet();
+                stream(exchange, model, random);
+            } else {
+                sleep(config.tokenMillis() * config.completionTokens());
+                complete(exchange, model, promptTokens, text(random, config.completionTokens()));
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void complete(HttpExchange exchange, String model, int promptTokens, String content) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(1024);
+        try (JsonGenerator g = JSON.createGenerator(body, JsonEncoding.UTF8)) {
+            g.writeStartObject();
+            g.writeStringField("id", "chatcmpl-stub");
+            g.writeStringField("object", "chat.completion");
+            g.writeNumberField("created", System.currentTimeMillis() / 1000);
+            g.writeStringField("model", model);
+            g.writeArrayFieldStart("choices");
+            g.writeStartObject();
+            g.writeNumberField("index", 0);
+            g.writeObjectFieldStart("message");
+            g.writeStringField("role", "assistant");
+            g.writeStringField("content", content);
+            g.writeEndObject();
+            g.writeStringField("finish_reason", "stop");
+            g.writeEndObject();
+            g.writeEndArray();
+            g.writeObjectFieldStart("usage");
+            g.writeNumberField("prompt_tokens", promptTokens);
+            g.writeNumberField("completion_tokens", config.completionTokens());
+            g.writeNumberField("total_tokens", promptTokens + config.completionTokens());
+            g.writeEndObject();
+            g.writeEndObject();
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.size());
+        try (OutputStream out = exchange.getResponseBody()) {
+            body.writeTo(out);
+        }
+    }
+
+    private void stream(HttpExchange exchange, String model, SplittableRandom random) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (int i = 0; i < config.completionTokens(); i++) {
+                if (i > 0) sleep(config.tokenMillis());
+                String token = (i == 0 ? "" : " ") + word(random);
+                out.write(chunk(model, token, null));
+                out.flush();
+            }
+            out.write(chunk(model, null, "stop"));
+            out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static byte[] chunk(String model, String content, String finishReason) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(256);
+        buf.write("data: ".getBytes(StandardCharsets.UTF_8));
+        try (JsonGenerator g = JSON.createGenerator(buf, JsonEncoding.UTF8)) {
+            g.writeStartObject();
+            g.writeStringField("id", "chatcmpl-stub");
+            g.writeStringField("object", "chat.completion.chunk");
+            g.writeStringField("model", model);
+            g.writeArrayFieldStart("choices");
+            g.writeStartObject();
+            g.writeNumberField("index", 0);
+            g.writeObjectFieldStart("delta");
+            if (content != null) g.writeStringField("content", content);
+            g.writeEndObject();
+            if (finishReason != null) g.writeStringField("finish_reason", finishReason);
+            else g.writeNullField("finish_reason");
+            g.writeEndObject();
+            g.writeEndArray();
+            g.writeEndObject();
+        }
+        buf.write("\n\n".getBytes(StandardCharsets.UTF_8));
+        return buf.toByteArray();
+    }
+
+    private void sendError(HttpExchange exchange, int status, String type, String message) throws IOException {
+        byte[] body = ("{\"error\":{\"message\":\"" + message + "\",\"type\":\"" + type + "\"}}").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private JsonNode readBody(InputStream in) throws IOException {
+        try (in) {
+            return mapper.readTree(in);
+        }
+    }
+
+    // roughly 4 characters per token, close enough for a stub
+    private static int promptTokens(JsonNode request) {
+        int chars = 0;
+        for (JsonNode message : request.path("messages")) {
+            chars += message.path("content").asText("").length();
+        }
+        return Math.max(1, chars / 4);
+    }
+
+    private static String text(SplittableRandom random, int tokens) {
+        StringBuilder sb = new StringBuilder(tokens * 6);
+        for (int i = 0; i < tokens; i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(word(random));
+        }
+        return sb.toString();
+    }
+
+    private static String word(SplittableRandom random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) return;
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.firefist.rag_chat_service.retrievalbench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.firefist.rag_chat_service.service.retrieval.index.IndexDocument;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A BEIR-style text dataset (scifact, nfcorpus, fiqa, ... as unpacked from the BEIR downloads):
+ *
+ * - corpus.jsonl: {"_id", "title", "text"} per line; title and text are indexed together, as BEIR does.
+ * - queries.jsonl: {"_id", "text"} per line.
+ * - qrels/SPLIT.tsv: query-id, corpus-id, score (graded relevance) after a header line.
+ *
+ * Only queries with judgments in the split are kept, in file order.
+ */
+record BeirDataset(String name, List<IndexDocument> corpus, List<Query> queries,
+                   Map<String, Map<String, Integer>> qrels) {
+
+    record Query(String id, String text) {
+    }
+
+    static BeirDataset load(Path dir, String split, int maxDocs, int maxQueries) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        List<IndexDocument> corpus = new ArrayList<>();
+        try (BufferedReader in = Files.newBufferedReader(dir.resolve("corpus.jsonl"), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null && (maxDocs <= 0 || corpus.size() < maxDocs)) {
+                if (line.isBlank()) continue;
+                JsonNode doc = mapper.readTree(line);
+                String title = doc.path("title").asText("");
+                String text = doc.path("text").asText("");
+                corpus.add(new IndexDocument(doc.path("_id").asText(), title.isEmpty() ? text : title + "\n" + text, null));
+            }
+        }
+
+        Map<String, Map<String, Integer>> qrels = new HashMap<>();
+        try (BufferedReader in = Files.newBufferedReader(dir.resolve("qrels").resolve(split + ".tsv"), StandardCharsets.UTF_8)) {
+            String line = in.readLine(); // header
+            while ((line = in.readLine()) != null) {
+                String[] cols = line.split("\t");
+                if (cols.length < 3) continue;
+                qrels.computeIfAbsent(cols[0], k -> new HashMap<>()).put(cols[1], Integer.parseInt(cols[2].trim()));
+            }
+        }
+
+        List<Query> queries = new ArrayList<>();
+        Map<String, Map<String, Integer>> kept = new LinkedHashMap<>();
+        try (BufferedReader in = Files.newBufferedReader(dir.resolve("queries.jsonl"), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null && (maxQueries <= 0 || queries.size() < maxQueries)) {
+                if (line.isBlank()) continue;
+                JsonNode query = mapper.readTree(line);
+                String id = query.path("_id").asText();
+                Map<String, Integer> judged = qrels.get(id);
+                if (judged == null) continue;
+                queries.add(new Query(id, query.path("text").asText("")));
+                kept.put(id, judged);
+            }
+        }
+        return new BeirDataset(dir.getFileName().toString(), corpus, queries, kept);
+    }
+}
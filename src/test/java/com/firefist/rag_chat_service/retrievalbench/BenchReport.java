@@ -0,0 +1,105 @@
+package com.firefist.rag_chat_service.retrievalbench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Results of one run as JSON (one file per run, keys in a fixed order so two runs diff line by line) and
+ * as a table on stdout. Against a baseline file from an earlier run the changes per target are printed,
+ * and accuracy drops beyond the tolerance reported as regressions.
+ */
+final class BenchReport {
+
+    static final int SCHEMA = 1;
+
+    record Run(int schema, String label, String startedAt, String java, int cpus, long maxHeapBytes,
+               Dataset dataset, int k, double groundTruthMs, List<Target> targets) {
+    }
+
+    record Dataset(String name, String kind, int documents, int queries, Integer dimension, String metric) {
+    }
+
+    /** recall and nDCG are means over the queries that have them, null if none has. */
+    record Target(String name, double buildMs, long heapBytes, Double recall, Double ndcg,
+                  List<ThroughputRun.Result> throughput) {
+    }
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private BenchReport() {
+    }
+
+    static void write(Run run, Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        MAPPER.writeValue(file.toFile(), run);
+    }
+
+    static void print(Run run, PrintStream out) {
+        out.printf("%s (%s): %d documents, %d queries, k=%d, ground truth in %.0f ms%n",
+                run.dataset().name(), run.dataset().kind(), run.dataset().documents(), run.dataset().queries(),
+                run.k(), run.groundTruthMs());
+        for (Target t : run.targets()) {
+            out.printf("%s%n  build %.0f ms, heap %.1f MB, recall@%d %s, nDCG@%d %s%n", t.name(), t.buildMs(),
+                    t.heapBytes() / 1e6, run.k(), fmt(t.recall()), run.k(), fmt(t.ndcg()));
+            out.printf("  %8s %10s %9s %9s %9s %9s%n", "threads", "qps", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+            for (ThroughputRun.Result r : t.throughput()) {
+                out.printf("  %8d %10.1f %9.3f %9.3f %9.3f %9.3f%n",
+                        r.threads(), r.qps(), r.p50Ms(), r.p99Ms(), r.p999Ms(), r.maxMs());
+            }
+        }
+    }
+
+    /** Prints the changes against the baseline and returns the accuracy regressions beyond tolerance. */
+    static List<String> compare(Run run, Path baselineFile, double tolerance, PrintStream out) throws IOException {
+        JsonNode baseline = MAPPER.readTree(baselineFile.toFile());
+        List<String> regressions = new ArrayList<>();
+        out.println("Against " + baselineFile + " (" + baseline.path("label").asText() + "):");
+        for (Target t : run.targets()) {
+            JsonNode before = null;
+            for (JsonNode candidate : baseline.path("targets")) {
+                if (candidate.path("name").asText().equals(t.name())) before = candidate;
+            }
+            if (before == null) {
+                out.println("  " + t.name() + ": not in baseline");
+                continue;
+            }
+            accuracy(t.name(), "recall", t.recall(), before.path("recall"), tolerance, out, regressions);
+            accuracy(t.name(), "ndcg", t.ndcg(), before.path("ndcg"), tolerance, out, regressions);
+            out.printf("  %s: build %+.1f%%%n", t.name(), change(t.buildMs(), before.path("buildMs").asDouble()));
+            for (ThroughputRun.Result r : t.throughput()) {
+                for (JsonNode b : before.path("throughput")) {
+                    if (b.path("threads").asInt() != r.threads()) continue;
+                    out.printf("  %s: %d threads qps %+.1f%%, p99 %+.1f%%%n", t.name(), r.threads(),
+                            change(r.qps(), b.path("qps").asDouble()), change(r.p99Ms(), b.path("p99Ms").asDouble()));
+                }
+            }
+        }
+        return regressions;
+    }
+
+    private static void accuracy(String target, String metric, Double now, JsonNode before, double tolerance,
+                                 PrintStream out, List<String> regressions) {
+        if (now == null || !before.isNumber()) return;
+        double delta = now - before.asDouble();
+        out.printf("  %s: %s %.4f (%+.4f)%n", target, metric, now, delta);
+        if (delta < -tolerance) {
+            regressions.add(String.format("%s %s dropped from %.4f to %.4f", target, metric, before.asDouble(), now));
+        }
+    }
+
+    private static double change(double now, double before) {
+        return before == 0 ? 0 : (now - before) / before * 100;
+    }
+
+    private static String fmt(Double value) {
+        return value == null ? "-" : String.format("%.4f", value);
+    }
+}
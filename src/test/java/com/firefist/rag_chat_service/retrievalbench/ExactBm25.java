@@ -0,0 +1,105 @@
+package com.firefist.rag_chat_service.retrievalbench;
+
+import com.firefist.rag_chat_service.service.retrieval.index.IndexDocument;
+import com.firefist.rag_chat_service.service.search.SearchTokenizer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * BM25 by scoring every document against the query, with the tokenizer, parameters and collection
+ * statistics LiveIndex uses. Gives the exact top-k an index is measured against; a result missing from
+ * it means the index skipped or misscored a document.
+ */
+final class ExactBm25 {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final List<String> ids = new ArrayList<>();
+    private final List<Map<String, Integer>> termFreqs = new ArrayList<>();
+    private final List<Integer> lengths = new ArrayList<>();
+    private final Map<String, Integer> docFreqs = new HashMap<>();
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final double avgLength;
+
+    record Hit(String id, double score) {
+    }
+
+    ExactBm25(List<IndexDocument> corpus) {
+        long totalLength = 0;
+        for (IndexDocument doc : corpus) {
+            Map<String, Integer> tf = new HashMap<>();
+            int[] length = new int[1];
+            SearchTokenizer.tokenize(doc.text(), (term, position, start, end) -> {
+                tf.merge(term, 1, Integer::sum);
+                length[0]++;
+            });
+            for (String term : tf.keySet()) docFreqs.merge(term, 1, Integer::sum);
+            ordinals.put(doc.id(), ids.size());
+            ids.add(doc.id());
+            termFreqs.add(tf);
+            lengths.add(length[0]);
+            totalLength += length[0];
+        }
+        this.avgLength = (double) totalLength / Math.max(1, corpus.size());
+    }
+
+    static List<String> terms(String query) {
+        Set<String> unique = new LinkedHashSet<>();
+        SearchTokenizer.tokenize(query, (term, position, start, end) -> unique.add(term));
+        return List.copyOf(unique);
+    }
+
+    /** The k best documents with a positive score, best first. */
+    List<Hit> top(String query, int k) {
+        List<String> terms = terms(query);
+        double[] idf = idf(terms);
+        PriorityQueue<Hit> top = new PriorityQueue<>((x, y) -> Double.compare(x.score(), y.score()));
+        for (int d = 0; d < ids.size(); d++) {
+            double score = score(terms, idf, d);
+            if (score <= 0) continue;
+            if (top.size() < k) top.add(new Hit(ids.get(d), score));
+            else if (score > top.peek().score()) {
+                top.poll();
+                top.add(new Hit(ids.get(d), score));
+            }
+        }
+        List<Hit> out = new ArrayList<>(top);
+        out.sort((x, y) -> Double.compare(y.score(), x.score()));
+        return out;
+    }
+
+    /** Exact score of one document, 0 for unknown ids. */
+    double score(String query, String id) {
+        Integer d = ordinals.get(id);
+        if (d == null) return 0;
+        List<String> terms = terms(query);
+        return score(terms, idf(terms), d);
+    }
+
+    private double[] idf(List<String> terms) {
+        double[] idf = new double[terms.size()];
+        for (int t = 0; t < terms.size(); t++) {
+            int df = docFreqs.getOrDefault(terms.get(t), 0);
+            idf[t] = df == 0 ? 0 : Math.log(1 + (ids.size() - df + 0.5) / (df + 0.5));
+        }
+        return idf;
+    }
+
+    private double score(List<String> terms, double[] idf, int d) {
+        Map<String, Integer> tf = termFreqs.get(d);
+        double norm = K1 * (1 - B + B * lengths.get(d) / avgLength);
+        double score = 0;
+        for (int t = 0; t < terms.size(); t++) {
+            Integer f = tf.get(terms.get(t));
+            if (f != null && idf[t] > 0) score += idf[t] * f * (K1 + 1) / (f + norm);
+        }
+        return score;
+    }
+}
@@ -0,0 +1,40 @@
+package com.firefist.rag_chat_service.retrievalbench;
+
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+
+/**
+ * Brute-force nearest neighbours: scores every base vector. Both the ground truth for vector datasets
+ * and the "flat" target, the baseline an approximate index has to beat on QPS.
+ */
+final class ExactVectorSearch {
+
+    private ExactVectorSearch() {
+    }
+
+    private record Scored(int id, double score) {
+    }
+
+    /** Ids of the k closest base vectors, closest first. */
+    static int[] search(float[][] base, float[] query, int k, VectorMetric metric) {
+        PriorityQueue<Scored> top = new PriorityQueue<>((x, y) -> Double.compare(x.score(), y.score()));
+        for (int i = 0; i < base.length; i++) {
+            double score = metric.score(base[i], query);
+            if (top.size() < k) top.add(new Scored(i, score));
+            else if (score > top.peek().score()) {
+                top.poll();
+                top.add(new Scored(i, score));
+            }
+        }
+        int[] ids = new int[top.size()];
+        for (int i = ids.length - 1; i >= 0; i--) ids[i] = top.poll().id();
+        return ids;
+    }
+
+    /** Ground truth for every query, computed on all cores. */
+    static int[][] groundTruth(float[][] base, float[][] queries, int k, VectorMetric metric) {
+        int[][] truth = new int[queries.length][];
+        IntStream.range(0, queries.length).parallel().forEach(q -> truth[q] = search(base, queries[q], k, metric));
+        return truth;
+    }
+}
@@ -0,0 +1,26 @@
+package com.firefist.rag_chat_service.retrievalbench;
+
+/**
+ * Exact scan over all base vectors: recall 1.0 by construction, and the QPS an approximate index has to beat.
+ */
+class FlatVectorTarget implements VectorTarget {
+
+    private float[][] base;
+    private VectorMetric metric;
+
+    @Override
+    public String name() {
+        return "flat";
+    }
+
+    @Override
+    public void build(float[][] base, VectorMetric metric) {
+        this.base = base;
+        this.metric = metric;
+    }
+
+    @Override
+    public int[] search(float[] query, int k) {
+        return ExactVectorSearch.search(base, query, k, metric);
+    }
+}
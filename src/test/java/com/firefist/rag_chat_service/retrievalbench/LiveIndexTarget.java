@@ -0,0 +1,58 @@
+package com.firefist.rag_chat_service.retrievalbench;
+
+import com.firefist.rag_chat_service.service.retrieval.index.IndexDocument;
+import com.firefist.rag_chat_service.service.retrieval.index.LiveIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The in-memory BM25 index as IndexRetrievalService runs it: documents arrive in batches of batchSize (like
+ * POST /api/v1/retrieval/documents), background merges keep the segment count at maxSegments.
+ */
+class LiveIndexTarget implements TextTarget {
+
+    private final int batchSize;
+    private final int maxSegments;
+    private final ThreadPoolExecutor merger =
+            new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+    private LiveIndex index;
+
+    LiveIndexTarget(int batchSize, int maxSegments) {
+        this.batchSize = batchSize;
+        this.maxSegments = maxSegments;
+    }
+
+    @Override
+    public String name() {
+        return "live-index(batch=" + batchSize + ",max-segments=" + maxSegments + ")";
+    }
+
+    @Override
+    public void build(List<IndexDocument> corpus) throws InterruptedException {
+        index = new LiveIndex(maxSegments, merger, () -> { });
+        for (int from = 0; from < corpus.size(); from += batchSize) {
+            index.add(new ArrayList<>(corpus.subList(from, Math.min(corpus.size(), from + batchSize))));
+        }
+        // merges triggered by the last batches are part of the build; a merge queues any follow-up before it ends
+        while (merger.getCompletedTaskCount() < merger.getTaskCount()) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Override
+    public List<String> search(String query, int k) {
+        List<LiveIndex.Hit> hits = index.search(query, k);
+        List<String> ids = new ArrayList<>(hits.size());
+        for (LiveIndex.Hit hit : hits) ids.add(hit.id());
+        return ids;
+    }
+
+    @Override
+    public void close() {
+        merger.shutdownNow();
+    }
+}
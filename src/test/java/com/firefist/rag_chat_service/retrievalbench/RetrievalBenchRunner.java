@@ -0,0 +1,214 @@
+package com.firefist.rag_chat_service.retrievalbench;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Retrieval benchmark: builds every target on a dataset, then measures accuracy against brute-force ground
+ * truth and throughput/latency at several thread counts.
+ *
+ * Not part of the default test run, use: mvn -Pretrievalbench test [-Dbench.dataset=... ...]
+ *
+ * - bench.dataset: a BEIR directory (corpus.jsonl, queries.jsonl, qrels/), a TEXMEX directory
+ *   (*_base.fvecs, *_query.fvecs, *_groundtruth.ivecs), or synthetic-text (default) / synthetic-vectors.
+ *   Datasets are not downloaded; unpack them anywhere and point here. bench.split, bench.max-docs and
+ *   bench.max-queries narrow them down, bench.metric (l2, ip, cosine) applies to vectors.
+ * - Text targets get recall@k against exact BM25 and nDCG@k against the judgments; vector targets recall@k
+ *   against exact nearest neighbours (the dataset's ground truth file when it covers the whole base).
+ * - Throughput: bench.threads (1,2,4,8), bench.warmup-ms, bench.duration-ms per thread count.
+ * - Build time covers everything until queries see the whole corpus; heap is the retained size after a GC,
+ *   approximate.
+ * - Results go to bench.out/DATASET-TIMESTAMP.json (bench.label, e.g. a commit id, is recorded in it).
+ *   With bench.baseline=an earlier file the changes are printed and recall/nDCG drops beyond
+ *   bench.tolerance (0.005) fail the run.
+ */
+class RetrievalBenchRunner {
+
+    @Test
+    void run() throws Exception {
+        String dataset = prop("bench.dataset", "synthetic-text");
+        int k = Integer.parseInt(prop("bench.k", "10"));
+        int maxDocs = Integer.parseInt(prop("bench.max-docs", "0"));
+        int maxQueries = Integer.parseInt(prop("bench.max-queries", "1000"));
+        long seed = Long.parseLong(prop("bench.seed", "42"));
+        String startedAt = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+
+        BenchReport.Run run;
+        Path dir = Path.of(dataset);
+        if (dataset.equals("synthetic-vectors")) {
+            run = vectors(SyntheticData.vectors(maxDocs > 0 ? maxDocs : 50_000, maxQueries, 64, seed), k, startedAt);
+        } else if (dataset.equals("synthetic-text")) {
+            run = text(SyntheticData.text(maxDocs > 0 ? maxDocs : 20_000, maxQueries, seed), k, startedAt);
+        } else if (Files.exists(dir.resolve("corpus.jsonl"))) {
+            run = text(BeirDataset.load(dir, prop("bench.split", "test"), maxDocs, maxQueries), k, startedAt);
+        } else {
+            run = vectors(VectorDataset.load(dir, maxDocs, maxQueries), k, startedAt);
+        }
+
+        BenchReport.print(run, System.out);
+        Path file = Path.of(prop("bench.out", "target/retrievalbench"), run.dataset().name() + "-" + startedAt + ".json");
+        BenchReport.write(run, file);
+        System.out.println("Results written to " + file.toAbsolutePath());
+
+        String baseline = prop("bench.baseline", "");
+        if (!baseline.isEmpty()) {
+            List<String> regressions = BenchReport.compare(run, Path.of(baseline),
+                    Double.parseDouble(prop("bench.tolerance", "0.005")), System.out);
+            assertTrue(regressions.isEmpty(), "Accuracy regressions: " + regressions);
+        }
+    }
+
+    /** The text implementations measured; add new RetrievalService backends here. */
+    private static List<TextTarget> textTargets() {
+        return List.of(new LiveIndexTarget(
+                Integer.parseInt(prop("bench.batch-size", "1000")),
+                Integer.parseInt(prop("bench.max-segments", "16"))));
+    }
+
+    /** The vector indexes measured; the tree has none yet, the flat scan is the baseline. */
+    private static List<VectorTarget> vectorTargets() {
+        return List.of(new FlatVectorTarget());
+    }
+
+    private static BenchReport.Run text(BeirDataset data, int k, String startedAt) throws Exception {
+        long t0 = System.nanoTime();
+        ExactBm25 exact = new ExactBm25(data.corpus());
+        List<ExactBm25.Hit>[] truth = groundTruth(data, exact, k);
+        double groundTruthMs = ms(System.nanoTime() - t0);
+
+        List<BenchReport.Target> results = new ArrayList<>();
+        for (TextTarget target : textTargets()) {
+            try (target) {
+                long before = heapUsed();
+                long start = System.nanoTime();
+                target.build(data.corpus());
+                double buildMs = ms(System.nanoTime() - start);
+                long heap = Math.max(0, heapUsed() - before);
+
+                Mean recall = new Mean();
+                Mean ndcg = new Mean();
+                for (int q = 0; q < data.queries().size(); q++) {
+                    BeirDataset.Query query = data.queries().get(q);
+                    List<String> ids = target.search(query.text(), k);
+                    double[] resultScores = new double[ids.size()];
+                    for (int i = 0; i < ids.size(); i++) resultScores[i] = exact.score(query.text(), ids.get(i));
+                    recall.add(RetrievalMetrics.recall(truth[q].stream().mapToDouble(ExactBm25.Hit::score).toArray(), resultScores));
+                    ndcg.add(RetrievalMetrics.ndcg(ids, data.qrels().getOrDefault(query.id(), Map.of()), k));
+                }
+
+                List<String> texts = data.queries().stream().map(BeirDataset.Query::text).toList();
+                results.add(new BenchReport.Target(target.name(), buildMs, heap, recall.value(), ndcg.value(),
+                        throughput(texts.size(), i -> target.search(texts.get(i), k))));
+            }
+        }
+        return new BenchReport.Run(BenchReport.SCHEMA, prop("bench.label", ""), startedAt,
+                System.getProperty("java.version"), Runtime.getRuntime().availableProcessors(),
+                Runtime.getRuntime().maxMemory(),
+                new BenchReport.Dataset(data.name(), "text", data.corpus().size(), data.queries().size(), null, "bm25"),
+                k, groundTruthMs, results);
+    }
+
+    private static BenchReport.Run vectors(VectorDataset data, int k, String startedAt) throws Exception {
+        VectorMetric metric = VectorMetric.valueOf(prop("bench.metric", "l2").toUpperCase());
+        long t0 = System.nanoTime();
+        int[][] truth = data.groundTruth() != null
+                ? data.groundTruth() : ExactVectorSearch.groundTruth(data.base(), data.queries(), k, metric);
+        double groundTruthMs = ms(System.nanoTime() - t0);
+
+        List<BenchReport.Target> results = new ArrayList<>();
+        for (VectorTarget target : vectorTargets()) {
+            try (target) {
+                long before = heapUsed();
+                long start = System.nanoTime();
+                target.build(data.base(), metric);
+                double buildMs = ms(System.nanoTime() - start);
+                long heap = Math.max(0, heapUsed() - before);
+
+                Mean recall = new Mean();
+                for (int q = 0; q < data.queries().length; q++) {
+                    float[] query = data.queries()[q];
+                    int[] ids = target.search(query, k);
+                    int n = Math.min(k, truth[q].length);
+                    double[] truthScores = new double[n];
+                    for (int i = 0; i < n; i++) truthScores[i] = metric.score(data.base()[truth[q][i]], query);
+                    double[] resultScores = new double[ids.length];
+                    for (int i = 0; i < ids.length; i++) resultScores[i] = metric.score(data.base()[ids[i]], query);
+                    recall.add(RetrievalMetrics.recall(truthScores, resultScores));
+                }
+
+                results.add(new BenchReport.Target(target.name(), buildMs, heap, recall.value(), null,
+                        throughput(data.queries().length, i -> target.search(data.queries()[i], k))));
+            }
+        }
+        return new BenchReport.Run(BenchReport.SCHEMA, prop("bench.label", ""), startedAt,
+                System.getProperty("java.version"), Runtime.getRuntime().availableProcessors(),
+                Runtime.getRuntime().maxMemory(),
+                new BenchReport.Dataset(data.name(), "vectors", data.base().length, data.queries().length,
+                        data.base().length > 0 ? data.base()[0].length : 0, metric.name().toLowerCase()),
+                k, groundTruthMs, results);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<ExactBm25.Hit>[] groundTruth(BeirDataset data, ExactBm25 exact, int k) {
+        List<ExactBm25.Hit>[] truth = new List[data.queries().size()];
+        IntStream.range(0, truth.length).parallel()
+                .forEach(q -> truth[q] = exact.top(data.queries().get(q).text(), k));
+        return truth;
+    }
+
+    private static List<ThroughputRun.Result> throughput(int queryCount, IntConsumer query) throws InterruptedException {
+        long warmupMs = Long.parseLong(prop("bench.warmup-ms", "2000"));
+        long durationMs = Long.parseLong(prop("bench.duration-ms", "10000"));
+        List<ThroughputRun.Result> out = new ArrayList<>();
+        for (String threads : prop("bench.threads", "1,2,4,8").split(",")) {
+            out.add(ThroughputRun.run(Integer.parseInt(threads.trim()), queryCount, warmupMs, durationMs, query));
+        }
+        return out;
+    }
+
+    private static long heapUsed() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        // a few rounds, a single System.gc() often leaves garbage behind
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static double ms(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static String prop(String name, String def) {
+        String v = System.getProperty(name);
+        return v == null || v.isBlank() ? def : v;
+    }
+
+    /** Mean of the non-null values, null if there were none. */
+    private static final class Mean {
+        private double sum;
+        private int count;
+
+        void add(Double value) {
+            if (value == null) return;
+            sum += value;
+            count++;
+        }
+
+        Double value() {
+            return count == 0 ? null : sum / count;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.firefist.rag_chat_service.retrievalbench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Accuracy measures, averaged over queries by the caller.
+ *
+ * - recall@k against exact search: the share of the true top k that came back. A result that isn't in the
+ *   true top k but scores as high as its last entry counts too, so ties at the cut-off don't read as misses.
+ * - nDCG@k against graded judgments, linear gain and log2 discount (what BEIR reports via trec_eval ndcg_cut).
+ */
+final class RetrievalMetrics {
+
+    private static final double TIE_EPSILON = 1e-9;
+
+    private RetrievalMetrics() {
+    }
+
+    /**
+     * @param truthScores exact scores of the true top k, best first
+     * @param resultScores exact scores of what the target returned
+     * @return null when nothing matches the query at all
+     */
+    static Double recall(double[] truthScores, double[] resultScores) {
+        if (truthScores.length == 0) return null;
+        double cutoff = truthScores[truthScores.length - 1];
+        int found = 0;
+        for (double score : resultScores) {
+            if (score >= cutoff - TIE_EPSILON * Math.max(1, Math.abs(cutoff))) found++;
+        }
+        return Math.min(1.0, (double) found / truthScores.length);
+    }
+
+    /** null when the query has no positive judgment. */
+    static Double ndcg(List<String> results, Map<String, Integer> judgments, int k) {
+        List<Integer> ideal = new ArrayList<>();
+        for (int rel : judgments.values()) if (rel > 0) ideal.add(rel);
+        if (ideal.isEmpty()) return null;
+        ideal.sort((a, b) -> b - a);
+        double dcg = 0;
+        for (int i = 0; i < Math.min(k, results.size()); i++) {
+            int rel = judgments.getOrDefault(results.get(i), 0);
+            if (rel > 0) dcg += rel / log2(i + 2);
+        }
+        double idcg = 0;
+        for (int i = 0; i < Math.min(k, ideal.size()); i++) idcg += ideal.get(i) / log2(i + 2);
+        return dcg / idcg;
+    }
+
+    private static double log2(int x) {
+        return Math.log(x) / Math.log(2);
+    }
+}
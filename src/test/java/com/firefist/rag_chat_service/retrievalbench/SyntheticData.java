@@ -0,0 +1,87 @@
+package com.firefist.rag_chat_service.retrievalbench;
+
+import com.firefist.rag_chat_service.service.retrieval.index.IndexDocument;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generated datasets, so the suite runs without downloads (smoke runs, CI). Numbers from these say
+ * little about real corpora; use them to compare commits, not implementations.
+ *
+ * - text: words drawn from a Zipf-distributed vocabulary; each query is a few words of one document,
+ *   which is judged relevant to it.
+ * - vectors: Gaussian clusters, queries drawn near the cluster centres like the base vectors.
+ */
+final class SyntheticData {
+
+    private SyntheticData() {
+    }
+
+    static BeirDataset text(int documents, int queries, long seed) {
+        Random random = new Random(seed);
+        int vocabulary = 20_000;
+        double[] cumulative = new double[vocabulary];
+        double sum = 0;
+        for (int i = 0; i < vocabulary; i++) {
+            sum += 1.0 / (i + 1);
+            cumulative[i] = sum;
+        }
+
+        List<IndexDocument> corpus = new ArrayList<>(documents);
+        List<String[]> words = new ArrayList<>(documents);
+        for (int d = 0; d < documents; d++) {
+            String[] doc = new String[20 + random.nextInt(180)];
+            for (int w = 0; w < doc.length; w++) doc[w] = word(cumulative, random.nextDouble() * sum);
+            words.add(doc);
+            corpus.add(new IndexDocument("d" + d, String.join(" ", doc), null));
+        }
+
+        List<BeirDataset.Query> queryList = new ArrayList<>(queries);
+        Map<String, Map<String, Integer>> qrels = new HashMap<>();
+        for (int q = 0; q < queries; q++) {
+            int d = random.nextInt(documents);
+            String[] doc = words.get(d);
+            StringBuilder text = new StringBuilder();
+            for (int w = 0, n = 2 + random.nextInt(4); w < n; w++) {
+                if (w > 0) text.append(' ');
+                text.append(doc[random.nextInt(doc.length)]);
+            }
+            queryList.add(new BeirDataset.Query("q" + q, text.toString()));
+            qrels.put("q" + q, Map.of("d" + d, 1));
+        }
+        return new BeirDataset("synthetic-text", corpus, queryList, qrels);
+    }
+
+    static VectorDataset vectors(int base, int queries, int dimension, long seed) {
+        Random random = new Random(seed);
+        float[][] centres = new float[100][dimension];
+        for (float[] c : centres) for (int i = 0; i < dimension; i++) c[i] = (float) (random.nextGaussian() * 10);
+        return new VectorDataset("synthetic-vectors",
+                around(centres, base, random), around(centres, queries, random), null);
+    }
+
+    private static float[][] around(float[][] centres, int n, Random random) {
+        float[][] out = new float[n][];
+        for (int v = 0; v < n; v++) {
+            float[] c = centres[random.nextInt(centres.length)];
+            out[v] = new float[c.length];
+            for (int i = 0; i < c.length; i++) out[v][i] = c[i] + (float) random.nextGaussian();
+        }
+        return out;
+    }
+
+    private static String word(double[] cumulative, double target) {
+        int lo = 0;
+        int hi = cumulative.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cumulative[mid] < target) lo = mid + 1;
+            else hi = mid;
+        }
+        return "w" + lo;
+    }
+}
@@ -0,0 +1,24 @@
+package com.firefist.rag_chat_service.retrievalbench;
+
+import com.firefist.rag_chat_service.service.retrieval.index.IndexDocument;
+
+import java.util.List;
+
+/**
+ * A text retrieval implementation under benchmark. New implementations get a TextTarget and an entry in
+ * RetrievalBenchRunner.textTargets. search must be safe to call from many threads once build returned.
+ */
+interface TextTarget extends AutoCloseable {
+
+    String name();
+
+    /** Indexes the corpus; returns once queries see all of it (background work included). */
+    void build(List<IndexDocument> corpus) throws Exception;
+
+    /** Ids of the best k documents, best first. */
+    List<String> search(String query, int k);
+
+    @Override
+    default void close() {
+    }
+}
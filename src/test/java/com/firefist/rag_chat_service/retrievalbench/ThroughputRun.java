@@ -0,0 +1,66 @@
+package com.firefist.rag_chat_service.retrievalbench;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+/**
+ * Closed-loop throughput at a fixed thread count: every thread runs queries back to back (thread t starts at
+ * query t, so threads don't move in lockstep) for warm-up then measured time; latencies in microseconds.
+ */
+final class ThroughputRun {
+
+    private static final long MAX_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    record Result(int threads, long queries, double qps, double p50Ms, double p90Ms, double p99Ms,
+                  double p999Ms, double maxMs) {
+    }
+
+    private ThroughputRun() {
+    }
+
+    /** query runs query number i (modulo the query count is up to it). */
+    static Result run(int threads, int queryCount, long warmupMs, long durationMs, IntConsumer query)
+            throws InterruptedException {
+        Histogram latency = new ConcurrentHistogram(MAX_MICROS, 3);
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.MILLISECONDS.toNanos(warmupMs);
+        long end = measureFrom + TimeUnit.MILLISECONDS.toNanos(durationMs);
+        List<Thread> workers = new ArrayList<>();
+        Throwable[] failure = new Throwable[1];
+        for (int t = 0; t < threads; t++) {
+            int first = t;
+            Thread worker = new Thread(() -> {
+                int i = first;
+                for (;;) {
+                    long before = System.nanoTime();
+                    if (before - end >= 0) return;
+                    query.accept(i++ % queryCount);
+                    if (before - measureFrom >= 0) {
+                        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - before);
+                        latency.recordValue(Math.min(micros, MAX_MICROS));
+                    }
+                }
+            }, "bench-" + t);
+            worker.setUncaughtExceptionHandler((th, ex) -> failure[0] = ex);
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) worker.join();
+        if (failure[0] != null) throw new IllegalStateException("Query failed", failure[0]);
+
+        double seconds = durationMs / 1000.0;
+        return new Result(threads, latency.getTotalCount(), latency.getTotalCount() / seconds,
+                ms(latency.getValueAtPercentile(50)), ms(latency.getValueAtPercentile(90)),
+                ms(latency.getValueAtPercentile(99)), ms(latency.getValueAtPercentile(99.9)),
+                ms(latency.getMaxValue()));
+    }
+
+    private static double ms(long micros) {
+        return micros / 1000.0;
+    }
+}
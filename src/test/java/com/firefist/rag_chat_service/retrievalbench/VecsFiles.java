@@ -0,0 +1,81 @@
+package com.firefist.rag_chat_service.retrievalbench;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Readers for the TEXMEX vector formats used by SIFT/GIST/Deep1B and ann-benchmarks exports:
+ * every record is a little-endian int32 dimension followed by that many float32 (.fvecs) or int32 (.ivecs) values.
+ */
+final class VecsFiles {
+
+    private VecsFiles() {
+    }
+
+    /** Up to limit vectors (all with limit <= 0). */
+    static float[][] readFvecs(Path file, int limit) throws IOException {
+        List<float[]> out = new ArrayList<>();
+        try (DataInputStream in = open(file)) {
+            ByteBuffer record = null;
+            while (limit <= 0 || out.size() < limit) {
+                int dim = readDimension(in);
+                if (dim < 0) break;
+                record = fill(in, record, dim);
+                float[] v = new float[dim];
+                record.asFloatBuffer().get(v);
+                out.add(v);
+            }
+        }
+        return out.toArray(new float[0][]);
+    }
+
+    static int[][] readIvecs(Path file, int limit) throws IOException {
+        List<int[]> out = new ArrayList<>();
+        try (DataInputStream in = open(file)) {
+            ByteBuffer record = null;
+            while (limit <= 0 || out.size() < limit) {
+                int dim = readDimension(in);
+                if (dim < 0) break;
+                record = fill(in, record, dim);
+                int[] v = new int[dim];
+                record.asIntBuffer().get(v);
+                out.add(v);
+            }
+        }
+        return out.toArray(new int[0][]);
+    }
+
+    private static DataInputStream open(Path file) throws IOException {
+        InputStream raw = Files.newInputStream(file);
+        return new DataInputStream(new BufferedInputStream(raw, 1 << 20));
+    }
+
+    /** -1 at the end of the file. */
+    private static int readDimension(DataInputStream in) throws IOException {
+        int b0 = in.read();
+        if (b0 < 0) return -1;
+        int dim = b0 | in.readUnsignedByte() << 8 | in.readUnsignedByte() << 16 | in.readUnsignedByte() << 24;
+        if (dim <= 0 || dim > 1 << 20) throw new IOException("Implausible vector dimension " + dim + ", not a vecs file?");
+        return dim;
+    }
+
+    private static ByteBuffer fill(DataInputStream in, ByteBuffer reuse, int dim) throws IOException {
+        ByteBuffer record = reuse != null && reuse.capacity() == dim * 4
+                ? reuse.clear() : ByteBuffer.allocate(dim * 4).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            in.readFully(record.array(), 0, dim * 4);
+        } catch (EOFException ex) {
+            throw new IOException("Truncated vecs file", ex);
+        }
+        return record;
+    }
+}
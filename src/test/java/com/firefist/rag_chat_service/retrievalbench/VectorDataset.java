@@ -0,0 +1,30 @@
+package com.firefist.rag_chat_service.retrievalbench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * An ANN dataset in TEXMEX layout (SIFT1M, GIST1M, ...): *_base.fvecs, *_query.fvecs and optionally
+ * *_groundtruth.ivecs in one directory. The ground truth file is only used when it covers the whole base;
+ * with maxBase set (a subset) it is recomputed by brute force.
+ */
+record VectorDataset(String name, float[][] base, float[][] queries, int[][] groundTruth) {
+
+    static VectorDataset load(Path dir, int maxBase, int maxQueries) throws IOException {
+        float[][] base = VecsFiles.readFvecs(find(dir, "_base.fvecs", true), maxBase);
+        float[][] queries = VecsFiles.readFvecs(find(dir, "_query.fvecs", true), maxQueries);
+        Path truth = find(dir, "_groundtruth.ivecs", false);
+        int[][] groundTruth = truth != null && maxBase <= 0 ? VecsFiles.readIvecs(truth, maxQueries) : null;
+        return new VectorDataset(dir.getFileName().toString(), base, queries, groundTruth);
+    }
+
+    private static Path find(Path dir, String suffix, boolean required) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            Path found = files.filter(p -> p.getFileName().toString().endsWith(suffix)).sorted().findFirst().orElse(null);
+            if (found == null && required) throw new IOException("No *" + suffix + " in " + dir);
+            return found;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.firefist.rag_chat_service.retrievalbench;
+
+/**
+ * Similarity of two vectors, higher is closer: L2 is negated squared distance, IP the dot product,
+ * COSINE the dot product of the normalized vectors.
+ */
+enum VectorMetric {
+    L2, IP, COSINE;
+
+    double score(float[] a, float[] b) {
+        switch (this) {
+            case L2: {
+                double sum = 0;
+                for (int i = 0; i < a.length; i++) {
+                    double d = a[i] - b[i];
+                    sum += d * d;
+                }
+                return -sum;
+            }
+            case IP:
+                return dot(a, b);
+            default: {
+                double na = Math.sqrt(dot(a, a));
+                double nb = Math.sqrt(dot(b, b));
+                return na == 0 || nb == 0 ? 0 : dot(a, b) / (na * nb);
+            }
+        }
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) sum += (double) a[i] * b[i];
+        return sum;
+    }
+}
@@ -0,0 +1,19 @@
+package com.firefist.rag_chat_service.retrievalbench;
+
+/**
+ * A vector index under benchmark; ids are positions in the base set. search must be safe to call
+ * from many threads once build returned.
+ */
+interface VectorTarget extends AutoCloseable {
+
+    String name();
+
+    void build(float[][] base, VectorMetric metric) throws Exception;
+
+    /** Ids of the k nearest base vectors, nearest first. */
+    int[] search(float[] query, int k);
+
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,88 @@
+package com.firefist.rag_chat_service.service.archive;
+
+import com.firefist.rag_chat_service.model.ArchivedChatMessage;
+import com.firefist.rag_chat_service.model.ChatMessage;
+import com.firefist.rag_chat_service.model.ChatSession;
+import com.firefist.rag_chat_service.model.ContextRef;
+import com.firefist.rag_chat_service.repository.ArchivedChatMessageRepository;
+import org.junit.jupiter.api.Test;
+
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MessageArchiveTest {
+
+    private final ArchivedChatMessageRepository repository = mock(ArchivedChatMessageRepository.class);
+    private final MessageArchive archive = new MessageArchive(repository);
+    private final ChatSession session = new ChatSession();
+
+    @Test
+    void archivedMessageReadsBackAsTheOriginalAndIsCompressed() {
+        ChatMessage original = message("Refunds take 5-10 days, café 中文 😀. ".repeat(50));
+        original.setRetrievedContext("context\nwith lines");
+        original.setContextRefs(List.of(new ContextRef("h1", "policy.md", 0.75, "Refunds take"),
+                new ContextRef("h2", "faq.md", 0.5, null)));
+
+        ArchivedChatMessage archived = MessageArchive.toArchived(original, session.getId(), Instant.now());
+        assertEquals(1, archived.getPayload()[0]);
+        assertTrue(archived.getPayload().length < original.getContent().length() / 5);
+
+        ChatMessage read = readBack(archived);
+        assertEquals(original.getId(), read.getId());
+        assertSame(session, read.getSession());
+        assertEquals(original.getSender(), read.getSender());
+        assertEquals(original.getCreatedAt(), read.getCreatedAt());
+        assertEquals(original.getSequenceNumber(), read.getSequenceNumber());
+        assertEquals(original.getContent(), read.getContent());
+        assertEquals(original.getRetrievedContext(), read.getRetrievedContext());
+        assertEquals(original.getContextRefs(), read.getContextRefs());
+    }
+
+    @Test
+    void payloadWithoutTheVersionByteIsReadAsVersionOne() {
+        ChatMessage original = message("written before payloads were versioned");
+        ArchivedChatMessage archived = MessageArchive.toArchived(original, session.getId(), Instant.now());
+        // the zlib stream alone, as the first archiver wrote it
+        archived.setPayload(Arrays.copyOfRange(archived.getPayload(), 1, archived.getPayload().length));
+
+        ChatMessage read = readBack(archived);
+        assertEquals("written before payloads were versioned", read.getContent());
+        assertNull(read.getRetrievedContext());
+    }
+
+    @Test
+    void unknownFormatVersionIsAnErrorNotAGuess() {
+        ArchivedChatMessage archived = MessageArchive.toArchived(message("from the future"), session.getId(), Instant.now());
+        archived.getPayload()[0] = 2;
+
+        assertThrows(UncheckedIOException.class, () -> readBack(archived));
+    }
+
+    private ChatMessage readBack(ArchivedChatMessage archived) {
+        when(repository.findSlice(session.getId(), 0, 10)).thenReturn(List.of(archived));
+        return archive.read(session, 0, 10).get(0);
+    }
+
+    private ChatMessage message(String content) {
+        session.setId(UUID.randomUUID());
+        ChatMessage m = new ChatMessage();
+        m.setId(UUID.randomUUID());
+        m.setSession(session);
+        m.setSender("ASSISTANT");
+        m.setContent(content);
+        m.setCreatedAt(Instant.parse("2026-01-02T03:04:05Z"));
+        m.setSequenceNumber(7L);
+        return m;
+    }
+}
@@ -0,0 +1,89 @@
+package com.firefist.rag_chat_service.service.archive;
+
+import com.firefist.rag_chat_service.model.ArchivedChatMessage;
+import com.firefist.rag_chat_service.model.ChatMessage;
+import com.firefist.rag_chat_service.repository.ChatMessageJdbcRepository;
+import com.firefist.rag_chat_service.repository.ChatMessageRepository;
+import com.firefist.rag_chat_service.repository.ChatSessionJdbcRepository;
+import com.firefist.rag_chat_service.repository.ChatSessionRepository;
+import com.firefist.rag_chat_service.service.cache.SessionCache;
+import com.firefist.rag_chat_service.service.summary.ConversationSummaryService;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MessageArchiverTest {
+
+    private final ChatMessageRepository messageRepository = mock(ChatMessageRepository.class);
+    private final ChatSessionRepository sessionRepository = mock(ChatSessionRepository.class);
+    private final ChatMessageJdbcRepository jdbcRepository = mock(ChatMessageJdbcRepository.class);
+    private final ChatSessionJdbcRepository sessionJdbcRepository = mock(ChatSessionJdbcRepository.class);
+    private final SessionCache sessionCache = mock(SessionCache.class);
+    private final ConversationSummaryService summaryService = mock(ConversationSummaryService.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    // batches of 2, no pause
+    private final MessageArchiver archiver = new MessageArchiver(messageRepository, sessionRepository, jdbcRepository,
+            sessionJdbcRepository, sessionCache, summaryService, new TransactionTemplate(transactionManager),
+            30, 2, 0, 100, 600_000, 60_000);
+
+    private final UUID sessionId = UUID.randomUUID();
+
+    @Test
+    void sessionIsMovedOldestFirstOneTransactionPerBatchAndCounted() {
+        when(messageRepository.findDeletedSessionIdsWithMessages(any())).thenReturn(List.of(sessionId));
+        List<ChatMessage> first = messages(1, 2);
+        List<ChatMessage> rest = messages(3, 3);
+        when(jdbcRepository.findOldestBySession(sessionId, 2)).thenReturn(first, rest);
+
+        archiver.run();
+
+        InOrder batch = inOrder(sessionJdbcRepository, jdbcRepository, sessionRepository);
+        // the session row is locked first, as bulk imports do
+        batch.verify(sessionJdbcRepository).lockArchived(List.of(sessionId));
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ArchivedChatMessage>> archived = ArgumentCaptor.forClass(List.class);
+        batch.verify(jdbcRepository).insertArchived(archived.capture());
+        batch.verify(jdbcRepository).deleteByIds(first.stream().map(ChatMessage::getId).toList());
+        batch.verify(sessionRepository).addArchivedMessages(sessionId.toString(), 2);
+        batch.verify(sessionJdbcRepository).lockArchived(List.of(sessionId));
+        batch.verify(jdbcRepository).insertArchived(any());
+        batch.verify(jdbcRepository).deleteByIds(rest.stream().map(ChatMessage::getId).toList());
+        batch.verify(sessionRepository).addArchivedMessages(sessionId.toString(), 1);
+
+        assertEquals(List.of(1L, 2L), archived.getValue().stream().map(ArchivedChatMessage::getSequenceNumber).toList());
+        assertEquals(sessionId, archived.getValue().get(0).getSessionId());
+        // a short batch is the last one: no third read
+        verify(jdbcRepository, times(2)).findOldestBySession(any(), anyInt());
+        verify(transactionManager, times(2)).commit(any());
+        verify(sessionCache, times(2)).invalidate(sessionId);
+        verify(summaryService).forget(sessionId);
+    }
+
+    private List<ChatMessage> messages(long from, long through) {
+        return LongStream.rangeClosed(from, through).mapToObj(seq -> {
+            ChatMessage m = new ChatMessage();
+            m.setId(UUID.randomUUID());
+            m.setSender("USER");
+            m.setContent("message " + seq);
+            m.setCreatedAt(Instant.parse("2026-01-02T03:04:05Z").plusSeconds(seq));
+            m.setSequenceNumber(seq);
+            return m;
+        }).toList();
+    }
+}
@@ -0,0 +1,78 @@
+package com.firefist.rag_chat_service.service.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Two buses over one in-memory H2 database stand in for two replicas sharing the session_invalidation table.
+ */
+class JdbcSessionInvalidationBusTest {
+
+    private JdbcTemplate jdbc;
+    private DataSourceTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource =
+                new DriverManagerDataSource("jdbc:h2:mem:invalidation;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbc = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        jdbc.execute("DROP TABLE IF EXISTS session_invalidation");
+        jdbc.execute("CREATE TABLE session_invalidation (id BIGINT AUTO_INCREMENT PRIMARY KEY,"
+                + " session_id VARCHAR(36) NOT NULL, kind VARCHAR(16) NOT NULL, origin VARCHAR(36) NOT NULL,"
+                + " created_at TIMESTAMP(6) NOT NULL)");
+    }
+
+    @Test
+    void invalidationReachesTheOtherNodeOnItsNextPollAndTheOwnNodeAtOnce() {
+        JdbcSessionInvalidationBus nodeA = bus();
+        JdbcSessionInvalidationBus nodeB = bus();
+        List<UUID> seenByA = new ArrayList<>();
+        List<UUID> seenByB = new ArrayList<>();
+        List<UUID> historyOfB = new ArrayList<>();
+        nodeA.subscribe(seenByA::add);
+        nodeB.subscribe(seenByB::add);
+        nodeB.subscribeHistory(historyOfB::add);
+
+        UUID renamed = UUID.randomUUID();
+        UUID answered = UUID.randomUUID();
+        nodeA.publish(renamed);
+        nodeA.publishHistory(answered);
+        assertEquals(List.of(renamed), seenByA);
+        assertEquals(List.of(), seenByB);
+
+        nodeB.poll();
+        assertEquals(List.of(renamed), seenByB);
+        assertEquals(List.of(answered), historyOfB);
+
+        // nothing is delivered twice, and a node doesn't hear its own events back
+        nodeA.poll();
+        nodeB.poll();
+        assertEquals(List.of(renamed), seenByA);
+        assertEquals(List.of(renamed), seenByB);
+    }
+
+    @Test
+    void nodeStartsAfterWhatWasPublishedBeforeIt() {
+        bus().publish(UUID.randomUUID());
+        JdbcSessionInvalidationBus late = bus();
+        List<UUID> seen = new ArrayList<>();
+        late.subscribe(seen::add);
+
+        late.poll();
+        assertEquals(List.of(), seen);
+    }
+
+    private JdbcSessionInvalidationBus bus() {
+        return new JdbcSessionInvalidationBus(jdbc, transactionManager, 3_600_000, 1000);
+    }
+}
@@ -0,0 +1,138 @@
+package com.firefist.rag_chat_service.service.cache;
+
+import com.firefist.rag_chat_service.model.ChatSession;
+import com.firefist.rag_chat_service.repository.ChatSessionRepository;
+import com.firefist.rag_chat_service.service.ChatSessionService;
+import com.firefist.rag_chat_service.service.search.MessageSearchService;
+import com.firefist.rag_chat_service.service.summary.ConversationSummaryService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The repository is a map handing out fresh copies, as JPA loads them.
+ */
+class SessionCacheTest {
+
+    private final Map<UUID, ChatSession> rows = new HashMap<>();
+    private final ChatSessionRepository repository = mock(ChatSessionRepository.class);
+    private final LocalSessionInvalidationBus bus = new LocalSessionInvalidationBus();
+    private final List<UUID> published = new ArrayList<>();
+    private final UUID sessionId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        when(repository.findById(any())).thenAnswer(inv ->
+                Optional.ofNullable(rows.get(inv.getArgument(0))).map(SessionCacheTest::copy));
+        when(repository.save(any())).thenAnswer(inv -> {
+            ChatSession s = inv.getArgument(0);
+            rows.put(s.getId(), copy(s));
+            return s;
+        });
+        bus.subscribe(published::add);
+        rows.put(sessionId, new ChatSession(sessionId, "u1", "title", false, Instant.now(), Instant.now(), null, 0, 0));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void repeatedLookupIsServedFromTheCacheAsADetachedCopy() {
+        SessionCache cache = cache(300_000);
+        ChatSession first = cache.findActive(sessionId).orElseThrow();
+        ChatSession second = cache.findActive(sessionId).orElseThrow();
+
+        assertEquals("title", second.getTitle());
+        assertNotSame(first, second);
+        verify(repository, times(1)).findById(sessionId);
+
+        UUID missing = UUID.randomUUID();
+        assertTrue(cache.findActive(missing).isEmpty());
+    }
+
+    @Test
+    void entryIsReloadedAfterItsTtl() throws InterruptedException {
+        SessionCache cache = cache(50);
+        cache.findActive(sessionId);
+        rows.get(sessionId).setTitle("changed elsewhere");
+
+        Thread.sleep(150);
+        assertEquals("changed elsewhere", cache.findActive(sessionId).orElseThrow().getTitle());
+        verify(repository, times(2)).findById(sessionId);
+    }
+
+    @Test
+    void renameFavoriteAndDeleteEvictTheSession() {
+        SessionCache cache = cache(300_000);
+        ChatSessionService sessions = new ChatSessionService(repository, cache,
+                mock(MessageSearchService.class), mock(ConversationSummaryService.class));
+        cache.findActive(sessionId);
+
+        sessions.renameSession(sessionId, "renamed");
+        assertEquals("renamed", cache.findActive(sessionId).orElseThrow().getTitle());
+
+        sessions.toggleFavorite(sessionId);
+        assertTrue(cache.findActive(sessionId).orElseThrow().isFavorite());
+
+        sessions.softDeleteSession(sessionId);
+        assertFalse(cache.findActive(sessionId).isPresent());
+        assertEquals(List.of(sessionId, sessionId, sessionId), published);
+    }
+
+    @Test
+    void evictionWaitsForTheCommitAndNeverHappensOnRollback() {
+        SessionCache cache = cache(300_000);
+        cache.findActive(sessionId);
+
+        TransactionSynchronizationManager.initSynchronization();
+        rows.get(sessionId).setTitle("rolled back");
+        cache.invalidate(sessionId);
+        TransactionSynchronizationManager.clearSynchronization();
+        assertEquals("title", cache.findActive(sessionId).orElseThrow().getTitle());
+
+        TransactionSynchronizationManager.initSynchronization();
+        rows.get(sessionId).setTitle("committed");
+        cache.invalidate(sessionId);
+        // until the commit, readers keep getting the cached row and other nodes hear nothing
+        assertEquals("title", cache.findActive(sessionId).orElseThrow().getTitle());
+        assertEquals(List.of(), published);
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+        assertEquals("committed", cache.findActive(sessionId).orElseThrow().getTitle());
+        assertEquals(List.of(sessionId), published);
+    }
+
+    private SessionCache cache(long ttlMs) {
+        return new SessionCache(repository, bus, new SimpleMeterRegistry(), 100, ttlMs);
+    }
+
+    private static ChatSession copy(ChatSession s) {
+        return new ChatSession(s.getId(), s.getUserId(), s.getTitle(), s.isFavorite(), s.getCreatedAt(),
+                s.getUpdatedAt(), s.getDeletedAt(), s.getArchivedMessageCount(), s.getLastSequenceNumber());
+    }
+}
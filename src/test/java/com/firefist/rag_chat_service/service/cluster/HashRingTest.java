@@ -0,0 +1,92 @@
+package com.firefist.rag_chat_service.service.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ownership spread and movement on scale-out/scale-in, over a fixed set of session ids.
+ */
+class HashRingTest {
+
+    private static final int KEYS = 50_000;
+
+    @Test
+    void sharesAreEven() {
+        HashRing ring = new HashRing(nodes(5), 128);
+        Map<String, Integer> counts = new HashMap<>();
+        for (String key : keys()) counts.merge(ring.owner(key).id(), 1, Integer::sum);
+        assertEquals(5, counts.size());
+        for (int count : counts.values()) {
+            // 128 points per node keep every share within about 20% of the mean
+            assertTrue(Math.abs(count - KEYS / 5) < KEYS / 5 * 0.2, "uneven share: " + counts);
+        }
+    }
+
+    @Test
+    void addingANodeOnlyMovesKeysToIt() {
+        HashRing before = new HashRing(nodes(4), 128);
+        HashRing after = new HashRing(nodes(5), 128);
+        int moved = 0;
+        for (String key : keys()) {
+            ClusterNode was = before.owner(key);
+            ClusterNode now = after.owner(key);
+            if (!was.equals(now)) {
+                assertEquals("node-4", now.id());
+                moved++;
+            }
+        }
+        // ideally 1/5 of the keys
+        assertTrue(moved > KEYS * 0.15 && moved < KEYS * 0.25, "moved " + moved);
+    }
+
+    @Test
+    void removingANodeOnlyMovesItsKeys() {
+        HashRing before = new HashRing(nodes(5), 128);
+        List<ClusterNode> remaining = new ArrayList<>(nodes(5));
+        remaining.remove(2);
+        HashRing after = new HashRing(remaining, 128);
+        for (String key : keys()) {
+            ClusterNode was = before.owner(key);
+            if (!was.id().equals("node-2")) assertEquals(was, after.owner(key));
+            else assertNotEquals("node-2", after.owner(key).id());
+        }
+    }
+
+    @Test
+    void ownersDoNotDependOnMemberOrder() {
+        List<ClusterNode> reversed = new ArrayList<>(nodes(5));
+        Collections.reverse(reversed);
+        HashRing a = new HashRing(nodes(5), 64);
+        HashRing b = new HashRing(reversed, 64);
+        for (String key : keys()) assertEquals(a.owner(key), b.owner(key));
+    }
+
+    @Test
+    void emptyRingHasNoOwner() {
+        assertNull(new HashRing(List.of(), 128).owner("x"));
+    }
+
+    private static List<ClusterNode> nodes(int n) {
+        List<ClusterNode> nodes = new ArrayList<>();
+        for (int i = 0; i < n; i++) nodes.add(new ClusterNode("node-" + i, "http://10.0.0." + i + ":8080"));
+        return nodes;
+    }
+
+    private static List<String> keys() {
+        // deterministic ids, so a failure reproduces
+        List<String> keys = new ArrayList<>(KEYS);
+        for (long i = 0; i < KEYS; i++) keys.add(new UUID(0x5eed_0000_0000_0000L + i * 0x9e3779b97f4a7c15L, i).toString());
+        return keys;
+    }
+}
@@ -0,0 +1,112 @@
+package com.firefist.rag_chat_service.service.deadline;
+
+import com.firefist.rag_chat_service.exception.RequestCancelledException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestDeadlineTest {
+
+    private final RequestDeadlines deadlines = new RequestDeadlines(new SimpleMeterRegistry(), 30_000, 120_000, "discard");
+    private final ExecutorService threads = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        deadlines.shutdown();
+        threads.shutdownNow();
+    }
+
+    @Test
+    void cancelInterruptsOnlyInsideInterruptibleAndTheFlagIsClearedAfterwards() throws Exception {
+        RequestDeadline deadline = deadlines.start(null);
+        CountDownLatch outsideDone = new CountDownLatch(1);
+        CountDownLatch blocked = new CountDownLatch(1);
+
+        Future<Boolean[]> turn = threads.submit(() -> {
+            try (RequestDeadline.Scope ignored = deadline.bind()) {
+                // cancelled while outside interruptible(): nothing is interrupted, the next check() notices
+                outsideDone.await();
+                boolean interruptedOutside = Thread.currentThread().isInterrupted();
+                RequestCancelledException ex = assertThrows(RequestCancelledException.class, RequestDeadline::checkCurrent);
+                return new Boolean[]{interruptedOutside, ex.getReason() == RequestDeadline.Reason.DISCONNECT};
+            }
+        });
+        deadline.cancel(RequestDeadline.Reason.DISCONNECT);
+        outsideDone.countDown();
+        Boolean[] outside = turn.get(5, TimeUnit.SECONDS);
+        assertFalse(outside[0]);
+        assertTrue(outside[1]);
+
+        RequestDeadline second = deadlines.start(null);
+        Future<Boolean> inside = threads.submit(() -> {
+            try (RequestDeadline.Scope ignored = second.bind()) {
+                RequestCancelledException ex = assertThrows(RequestCancelledException.class,
+                        () -> RequestDeadline.interruptible(() -> {
+                            blocked.countDown();
+                            try {
+                                Thread.sleep(10_000);
+                                return "not interrupted";
+                            } catch (InterruptedException e) {
+                                throw new IllegalStateException("provider call interrupted", e);
+                            }
+                        }));
+                assertEquals(RequestDeadline.Reason.DEADLINE, ex.getReason());
+                // the interrupt doesn't leak into whatever the thread does next
+                return Thread.currentThread().isInterrupted();
+            }
+        });
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        second.cancel(RequestDeadline.Reason.DEADLINE);
+        assertFalse(inside.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void closedDeadlineIgnoresLaterCancels() {
+        RequestDeadline deadline = deadlines.start(null);
+        deadline.close();
+        deadline.cancel(RequestDeadline.Reason.DISCONNECT);
+        assertNull(deadline.cancelled());
+        deadline.check();
+    }
+
+    @Test
+    void checkPastTheDeadlineThrowsWithReasonDeadline() throws InterruptedException {
+        RequestDeadline deadline = deadlines.start(20L);
+        Thread.sleep(50);
+        RequestCancelledException ex = assertThrows(RequestCancelledException.class, deadline::check);
+        assertEquals(RequestDeadline.Reason.DEADLINE, ex.getReason());
+        assertEquals(RequestDeadline.Reason.DEADLINE, deadline.cancelled());
+        // a later disconnect doesn't change why the turn ended
+        deadline.cancel(RequestDeadline.Reason.DISCONNECT);
+        assertEquals(RequestDeadline.Reason.DEADLINE, deadline.cancelled());
+    }
+
+    @Test
+    void deadlineIsCappedAndBindingIsRestored() {
+        assertTrue(deadlines.start(10_000_000L).remaining().toMillis() <= 120_000);
+        assertTrue(deadlines.start(-1L).remaining().toMillis() > 20_000);
+
+        RequestDeadline outer = deadlines.start(null);
+        RequestDeadline inner = deadlines.start(null);
+        try (RequestDeadline.Scope o = outer.bind()) {
+            try (RequestDeadline.Scope i = inner.bind()) {
+                assertSame(inner, RequestDeadline.current());
+            }
+            assertSame(outer, RequestDeadline.current());
+        }
+        assertNull(RequestDeadline.current());
+    }
+}
@@ -0,0 +1,148 @@
+package com.firefist.rag_chat_service.service.export;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.firefist.rag_chat_service.dto.MessageResponse;
+import com.firefist.rag_chat_service.model.ChatMessage;
+import com.firefist.rag_chat_service.model.ChatSession;
+import com.firefist.rag_chat_service.model.ContextRef;
+import com.firefist.rag_chat_service.repository.ChatMessageJdbcRepository;
+import com.firefist.rag_chat_service.repository.ChatSessionRepository;
+import com.firefist.rag_chat_service.service.archive.MessageArchive;
+import com.firefist.rag_chat_service.service.cache.SessionCache;
+import com.firefist.rag_chat_service.service.context.RetrievedContextStore;
+import com.firefist.rag_chat_service.service.store.MessageWriter;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Both tiers and the journal are mocked as lists filtered by sequence number, the way the keyset queries read them.
+ * Fetch size 2, so every transcript spans several chunks.
+ */
+class TranscriptExporterTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final ChatSessionRepository sessionRepository = mock(ChatSessionRepository.class);
+    private final ChatMessageJdbcRepository jdbcRepository = mock(ChatMessageJdbcRepository.class);
+    private final MessageArchive messageArchive = mock(MessageArchive.class);
+    private final MessageWriter messageWriter = mock(MessageWriter.class);
+    private final RetrievedContextStore contextStore = mock(RetrievedContextStore.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final TranscriptExporter exporter = new TranscriptExporter(sessionRepository, mock(SessionCache.class),
+            jdbcRepository, messageArchive, messageWriter, contextStore, mock(EntityManager.class), objectMapper,
+            transactionManager, 2);
+
+    private final ChatSession session = new ChatSession();
+    private final List<ChatMessage> archived = new ArrayList<>();
+    private final List<ChatMessage> hot = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        session.setId(UUID.randomUUID());
+        when(sessionRepository.findById(session.getId())).thenReturn(Optional.of(session));
+        when(messageArchive.readAfter(eq(session), anyLong(), anyInt()))
+                .thenAnswer(inv -> after(archived, inv.getArgument(1), inv.getArgument(2)));
+        when(jdbcRepository.findBySequenceRange(eq(session.getId()), anyLong(), anyLong(), anyInt()))
+                .thenAnswer(inv -> after(hot, inv.getArgument(1), inv.getArgument(3)));
+        when(messageWriter.pending(session.getId())).thenReturn(List.of());
+    }
+
+    @Test
+    void archivedMessagesComeBeforeHotOnesInSequenceOrder() throws IOException {
+        archived.addAll(List.of(message(1, "a1"), message(2, "a2"), message(3, "a3")));
+        hot.addAll(List.of(message(4, "h4"), message(5, "h5")));
+        session.setArchivedMessageCount(3);
+
+        List<MessageResponse> lines = export(false);
+        assertEquals(List.of("a1", "a2", "a3", "h4", "h5"), lines.stream().map(MessageResponse::getContent).toList());
+        // one short transaction per chunk of two, and one that finds nothing more
+        verify(transactionManager, times(4)).getTransaction(any());
+    }
+
+    @Test
+    void pendingMessagesAreMergedAndFlushedOnesAreNotRepeated() throws IOException {
+        ChatMessage flushed = message(2, "row");
+        hot.addAll(List.of(message(1, "h1"), flushed));
+        ChatMessage stillInJournal = message(2, "journal copy");
+        stillInJournal.setId(flushed.getId());
+        when(messageWriter.pending(session.getId())).thenReturn(List.of(stillInJournal, message(3, "unflushed")));
+
+        List<MessageResponse> lines = export(false);
+        assertEquals(List.of("h1", "row", "unflushed"), lines.stream().map(MessageResponse::getContent).toList());
+        assertEquals(List.of(1L, 2L, 3L), lines.stream().map(MessageResponse::getSequenceNumber).toList());
+    }
+
+    @Test
+    void includeContextExpandsReferencesPerChunk() throws IOException {
+        ChatMessage answer = message(2, "answer");
+        answer.setContextRefs(List.of(new ContextRef("h1", "doc.md", 0.9, "excerpt")));
+        hot.addAll(List.of(message(1, "question"), answer));
+        when(contextStore.loadTexts(any())).thenReturn(Map.of("h1", "the full chunk"));
+
+        List<MessageResponse> lines = export(true);
+        assertNull(lines.get(0).getRetrievedContext());
+        assertEquals("the full chunk", lines.get(1).getRetrievedContext());
+        verify(contextStore, times(1)).loadTexts(any());
+
+        assertNull(export(false).get(1).getRetrievedContext());
+        verify(contextStore, times(1)).loadTexts(any());
+    }
+
+    @Test
+    void deletedSessionExportsNothing() throws IOException {
+        hot.add(message(1, "h1"));
+        session.setDeletedAt(Instant.now());
+
+        assertEquals(List.of(), export(false));
+        verify(jdbcRepository, never()).findBySequenceRange(any(), anyLong(), anyLong(), anyInt());
+    }
+
+    private List<MessageResponse> export(boolean includeContext) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exporter.exportSession(session.getId(), includeContext, out);
+        List<MessageResponse> lines = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            if (!line.isEmpty()) lines.add(objectMapper.readValue(line, MessageResponse.class));
+        }
+        return lines;
+    }
+
+    private ChatMessage message(long seq, String content) {
+        ChatMessage m = new ChatMessage();
+        m.setId(UUID.randomUUID());
+        m.setSession(session);
+        m.setSender(seq % 2 == 1 ? "USER" : "ASSISTANT");
+        m.setContent(content);
+        m.setCreatedAt(Instant.parse("2026-01-02T03:04:05Z").plusSeconds(seq));
+        m.setSequenceNumber(seq);
+        return m;
+    }
+
+    private static List<ChatMessage> after(List<ChatMessage> tier, long afterSeq, int limit) {
+        return tier.stream().filter(m -> m.getSequenceNumber() > afterSeq).limit(limit).toList();
+    }
+}
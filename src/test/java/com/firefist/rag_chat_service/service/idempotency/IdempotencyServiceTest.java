@@ -0,0 +1,158 @@
+package com.firefist.rag_chat_service.service.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.firefist.rag_chat_service.exception.IdempotencyKeyReusedException;
+import com.firefist.rag_chat_service.exception.InvalidIdempotencyKeyException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Runs against the in-memory store. A retry is known to be waiting once its claim came back IN_FLIGHT.
+ */
+class IdempotencyServiceTest {
+
+    private static final String KEY = "key";
+
+    private final CountDownLatch waiting = new CountDownLatch(1);
+    private final InMemoryIdempotencyStore store = new InMemoryIdempotencyStore(1000, 60_000) {
+        @Override
+        public IdempotencyClaim claim(String key, String fingerprint) {
+            IdempotencyClaim claim = super.claim(key, fingerprint);
+            if (claim.getState() == IdempotencyClaim.State.IN_FLIGHT) waiting.countDown();
+            return claim;
+        }
+    };
+    private final IdempotencyService service = new IdempotencyService(store, new ObjectMapper(), 5000, 50, true);
+    private final ExecutorService threads = Executors.newCachedThreadPool();
+    private final AtomicInteger runs = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        threads.shutdownNow();
+    }
+
+    @Test
+    void ownerRunsOnceAndRetriesGetTheReplayedResponse() {
+        ResponseEntity<?> first = service.execute(KEY, "fp", () -> created("hello"));
+        assertEquals(201, first.getStatusCode().value());
+        assertNull(first.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+
+        ResponseEntity<?> retry = service.execute(KEY, "fp", () -> fail("retry must not run"));
+        assertEquals(201, retry.getStatusCode().value());
+        assertEquals("true", retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertEquals("{\"content\":\"hello\"}", retry.getBody());
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void retryWhileTheFirstRunsWaitsForItsResponse() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<ResponseEntity<?>> first = threads.submit(() -> service.execute(KEY, "fp", () -> {
+            running.countDown();
+            await(release);
+            return created("slow");
+        }));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        Future<ResponseEntity<?>> retry = threads.submit(() -> service.execute(KEY, "fp", () -> created("second")));
+        assertTrue(waiting.await(5, TimeUnit.SECONDS));
+
+        release.countDown();
+        assertEquals(201, first.get(5, TimeUnit.SECONDS).getStatusCode().value());
+        ResponseEntity<?> replayed = retry.get(5, TimeUnit.SECONDS);
+        assertEquals("true", replayed.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertEquals("{\"content\":\"slow\"}", replayed.getBody());
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void keyReusedForADifferentRequestIsRejected() {
+        service.execute(KEY, "fp", () -> created("hello"));
+        assertThrows(IdempotencyKeyReusedException.class,
+                () -> service.execute(KEY, "other", () -> created("other")));
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void failedOwnerReleasesTheKeyAndTheWaiterRunsInstead() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<ResponseEntity<?>> first = threads.submit(() -> service.execute(KEY, "fp", () -> {
+            runs.incrementAndGet();
+            running.countDown();
+            await(release);
+            throw new IllegalStateException("provider failed");
+        }));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        Future<ResponseEntity<?>> retry = threads.submit(() -> service.execute(KEY, "fp", () -> created("retried")));
+        assertTrue(waiting.await(5, TimeUnit.SECONDS));
+
+        release.countDown();
+        try {
+            first.get(5, TimeUnit.SECONDS);
+            fail("owner's failure was expected to propagate");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof IllegalStateException);
+        }
+        ResponseEntity<?> ran = retry.get(5, TimeUnit.SECONDS);
+        // the waiter became the owner: it ran the request itself, nothing was replayed
+        assertNull(ran.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertEquals(Map.of("content", "retried"), ran.getBody());
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    void serverErrorIsNotStored() {
+        ResponseEntity<?> failed = service.execute(KEY, "fp", () -> {
+            runs.incrementAndGet();
+            return ResponseEntity.status(503).build();
+        });
+        assertEquals(503, failed.getStatusCode().value());
+
+        ResponseEntity<?> retry = service.execute(KEY, "fp", () -> created("ok"));
+        assertEquals(201, retry.getStatusCode().value());
+        assertNull(retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    void keysAreScopedToTheSessionWhenApiKeysAreDisabled() {
+        IdempotencyService open = new IdempotencyService(store, new ObjectMapper(), 5000, 50, false);
+        assertEquals(open.scopedKey(null, "s1", "k"), open.scopedKey("any", "s1", "k"));
+        assertNotEquals(open.scopedKey(null, "s1", "k"), open.scopedKey(null, "s2", "k"));
+
+        assertNotEquals(service.scopedKey("a", "s1", "k"), service.scopedKey("b", "s1", "k"));
+        assertThrows(InvalidIdempotencyKeyException.class, () -> service.scopedKey(null, "s1", "k"));
+        assertThrows(InvalidIdempotencyKeyException.class, () -> service.scopedKey("a", "s1", " "));
+    }
+
+    private ResponseEntity<?> created(String content) {
+        runs.incrementAndGet();
+        return ResponseEntity.status(201).body(Map.of("content", content));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.firefist.rag_chat_service.service.idempotency;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Two stores over one in-memory H2 database stand in for two replicas sharing the idempotency_key table.
+ * A node that died is simulated by moving its lease (or the key's expiry) into the past.
+ */
+class JdbcIdempotencyStoreTest {
+
+    private static final String KEY = "key";
+    private static final long MAX_DEADLINE_MS = 120_000;
+
+    private JdbcTemplate jdbc;
+    private JdbcIdempotencyStore nodeA;
+    private JdbcIdempotencyStore nodeB;
+
+    @BeforeEach
+    void setUp() {
+        jdbc = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:idempotency;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbc.execute("DROP TABLE IF EXISTS idempotency_key");
+        jdbc.execute("CREATE TABLE idempotency_key (id_key VARCHAR(64) PRIMARY KEY, fingerprint VARCHAR(64) NOT NULL,"
+                + " state VARCHAR(16) NOT NULL, owner_token VARCHAR(36), response_status INT, response_body CLOB,"
+                + " locked_until TIMESTAMP NOT NULL, expires_at TIMESTAMP NOT NULL)");
+        // a configured lease shorter than the longest turn is raised to cover it
+        nodeA = new JdbcIdempotencyStore(jdbc, 60_000, 1_000, MAX_DEADLINE_MS);
+        nodeB = new JdbcIdempotencyStore(jdbc, 60_000, 1_000, MAX_DEADLINE_MS);
+    }
+
+    @Test
+    void leaseOutlastsTheLongestTurn() {
+        Instant before = Instant.now();
+        assertEquals(IdempotencyClaim.State.OWNER, nodeA.claim(KEY, "fp").getState());
+        Instant lockedUntil = column("locked_until");
+        assertFalse(lockedUntil.isBefore(before.plusMillis(MAX_DEADLINE_MS + JdbcIdempotencyStore.LEASE_GRACE_MS)));
+
+        // a live owner is waited for, locally through its future, from another node by polling
+        IdempotencyClaim local = nodeA.claim(KEY, "fp");
+        assertEquals(IdempotencyClaim.State.IN_FLIGHT, local.getState());
+        assertNotNull(local.getCompletion());
+        IdempotencyClaim remote = nodeB.claim(KEY, "fp");
+        assertEquals(IdempotencyClaim.State.IN_FLIGHT, remote.getState());
+        assertNull(remote.getCompletion());
+    }
+
+    @Test
+    void expiredLeaseIsTakenOverAndTheStaleOwnerCanNoLongerTouchTheKey() {
+        IdempotencyClaim stale = nodeA.claim(KEY, "fp");
+        setPast("locked_until");
+
+        IdempotencyClaim takenOver = nodeB.claim(KEY, "fp");
+        assertEquals(IdempotencyClaim.State.OWNER, takenOver.getState());
+        assertNotEquals(stale.getToken(), takenOver.getToken());
+        // a second retry finds the new lease
+        assertEquals(IdempotencyClaim.State.IN_FLIGHT, nodeA.claim(KEY, "fp").getState());
+
+        nodeA.complete(KEY, stale.getToken(), new IdempotentResponse(201, "\"stale\"", "fp"));
+        nodeA.release(KEY, stale.getToken());
+        assertEquals("IN_FLIGHT", jdbc.queryForObject("SELECT state FROM idempotency_key WHERE id_key = ?", String.class, KEY));
+
+        nodeB.complete(KEY, takenOver.getToken(), new IdempotentResponse(201, "\"fresh\"", "fp"));
+        IdempotencyClaim replay = nodeA.claim(KEY, "fp");
+        assertEquals(IdempotencyClaim.State.COMPLETED, replay.getState());
+        assertEquals("\"fresh\"", replay.getResponse().getBody());
+    }
+
+    @Test
+    void releasedKeyIsClaimedAgain() {
+        IdempotencyClaim first = nodeA.claim(KEY, "fp");
+        nodeA.release(KEY, first.getToken());
+        assertEquals(IdempotencyClaim.State.OWNER, nodeB.claim(KEY, "fp").getState());
+    }
+
+    @Test
+    void keyReusedForADifferentRequestIsAMismatchUntilItExpires() {
+        IdempotencyClaim first = nodeA.claim(KEY, "fp");
+        nodeA.complete(KEY, first.getToken(), new IdempotentResponse(201, null, "fp"));
+        assertEquals(IdempotencyClaim.State.MISMATCH, nodeB.claim(KEY, "other").getState());
+
+        setPast("expires_at");
+        assertEquals(IdempotencyClaim.State.OWNER, nodeB.claim(KEY, "other").getState());
+    }
+
+    private void setPast(String column) {
+        jdbc.update("UPDATE idempotency_key SET " + column + " = ? WHERE id_key = ?", ps -> {
+            ps.setTimestamp(1, Timestamp.from(Instant.now().minus(Duration.ofSeconds(1))), utc());
+            ps.setString(2, KEY);
+        });
+    }
+
+    private Instant column(String column) {
+        return jdbc.query("SELECT " + column + " FROM idempotency_key WHERE id_key = ?",
+                rs -> rs.next() ? rs.getTimestamp(1, utc()).toInstant() : null, KEY);
+    }
+
+    private static Calendar utc() {
+        return Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+    }
+}
@@ -0,0 +1,140 @@
+package com.firefist.rag_chat_service.service.ingest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.firefist.rag_chat_service.dto.ImportResult;
+import com.firefist.rag_chat_service.model.ChatMessage;
+import com.firefist.rag_chat_service.repository.ChatMessageJdbcRepository;
+import com.firefist.rag_chat_service.repository.ChatSessionJdbcRepository;
+import com.firefist.rag_chat_service.service.cache.HistoryVersions;
+import com.firefist.rag_chat_service.service.search.MessageSearchService;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BulkImportServiceTest {
+
+    private final ChatSessionJdbcRepository sessionRepository = mock(ChatSessionJdbcRepository.class);
+    private final ChatMessageJdbcRepository messageRepository = mock(ChatMessageJdbcRepository.class);
+    private final MessageSearchService searchService = mock(MessageSearchService.class);
+    private final HistoryVersions historyVersions = mock(HistoryVersions.class);
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final BulkImportService service = new BulkImportService(objectMapper, sessionRepository, messageRepository,
+            new TransactionTemplate(mock(PlatformTransactionManager.class)), searchService, historyVersions, 1000, 1000);
+
+    private final UUID sessionId = UUID.randomUUID();
+
+    @Test
+    void invalidRecordsAreReportedAndTheOthersImported() throws IOException {
+        ownedBy("u1", sessionId);
+        ImportResult result = importLines(
+                session(sessionId, "u1"),
+                "{\"type\":\"session\",\"id\":\"" + UUID.randomUUID() + "\"}",
+                "{\"type\":\"message\",\"sessionId\":\"" + sessionId + "\",\"sender\":\"USER\",\"content\":\"hi\",\"sequenceNumber\":1}",
+                "{\"type\":\"note\"}",
+                message(sessionId, 1, "hello"));
+
+        assertEquals(1, result.getSessions());
+        assertEquals(1, result.getMessages());
+        assertEquals(3, result.getRejected());
+        assertTrue(result.isCompleted());
+        assertEquals(List.of(1L, 2L, 3L), result.getErrors().stream().map(ImportResult.RowError::getIndex).toList());
+        assertEquals(List.of("userId is required", "createdAt is required", "type must be session or message"),
+                result.getErrors().stream().map(ImportResult.RowError::getError).toList());
+        verify(historyVersions).invalidate(List.of(sessionId));
+        verify(searchService).invalidate(Set.of("u1"));
+    }
+
+    @Test
+    void messagesOfRefusedOrUnknownSessionsAreRejected() throws IOException {
+        UUID unknown = UUID.randomUUID();
+        // the id is taken by another user's session
+        ownedBy("someone else", sessionId);
+        ImportResult result = importLines(
+                session(sessionId, "u1"),
+                message(sessionId, 1, "refused"),
+                message(unknown, 1, "nowhere"));
+
+        assertEquals(0, result.getSessions());
+        assertEquals(0, result.getMessages());
+        assertEquals(List.of("session id already exists for another user or was deleted",
+                        "session " + sessionId + " was not imported", "session " + unknown + " does not exist"),
+                result.getErrors().stream().map(ImportResult.RowError::getError).toList());
+        verify(messageRepository, never()).insertIgnoringDuplicates(anyList());
+        verify(searchService).invalidate(Set.of());
+    }
+
+    @Test
+    void takenSequenceNumberFallsBackToOneByOneAndOnlyThatRowIsRejected() throws IOException {
+        ownedBy("u1", sessionId);
+        when(messageRepository.insertIgnoringDuplicates(anyList())).thenThrow(new DuplicateKeyException("dup"));
+        when(messageRepository.insertEachIgnoringDuplicates(anyList()))
+                .thenAnswer(inv -> List.of(inv.getArgument(0, List.class).get(1)));
+
+        ImportResult result = importLines(message(sessionId, 1, "new"), message(sessionId, 2, "clash"));
+
+        assertEquals(1, result.getMessages());
+        assertEquals(1, result.getRejected());
+        assertEquals("sequenceNumber 2 is already used in session " + sessionId, result.getErrors().get(0).getError());
+        assertEquals(1, result.getErrors().get(0).getIndex());
+        verify(historyVersions).invalidate(List.of(sessionId));
+        verify(searchService).invalidate(Set.of("u1"));
+    }
+
+    @Test
+    void messagesForASessionWithArchivedHistoryAreRejected() throws IOException {
+        UUID archived = UUID.randomUUID();
+        ownedBy("u1", sessionId, archived);
+        when(sessionRepository.lockArchived(anyCollection())).thenReturn(Set.of(archived));
+
+        ImportResult result = importLines(message(archived, 1, "too late"), message(sessionId, 1, "fine"));
+
+        assertEquals(1, result.getMessages());
+        assertEquals("session " + archived + " has archived messages", result.getErrors().get(0).getError());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ChatMessage>> inserted = ArgumentCaptor.forClass(List.class);
+        verify(messageRepository).insertIgnoringDuplicates(inserted.capture());
+        assertEquals(List.of("fine"), inserted.getValue().stream().map(ChatMessage::getContent).toList());
+        verify(historyVersions).invalidate(List.of(sessionId));
+    }
+
+    private void ownedBy(String userId, UUID... ids) {
+        when(sessionRepository.findActiveOwners(anyCollection())).thenAnswer(inv -> {
+            Collection<UUID> asked = inv.getArgument(0);
+            return asked.stream().filter(List.of(ids)::contains).collect(Collectors.toMap(id -> id, id -> userId));
+        });
+    }
+
+    private ImportResult importLines(String... lines) throws IOException {
+        return service.importRecords(new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String session(UUID id, String userId) {
+        return "{\"type\":\"session\",\"id\":\"" + id + "\",\"userId\":\"" + userId + "\",\"title\":\"t\"}";
+    }
+
+    private static String message(UUID sessionId, long seq, String content) {
+        return "{\"type\":\"message\",\"sessionId\":\"" + sessionId + "\",\"sender\":\"USER\",\"content\":\"" + content
+                + "\",\"sequenceNumber\":" + seq + ",\"createdAt\":\"2026-01-02T03:04:05Z\"}";
+    }
+}
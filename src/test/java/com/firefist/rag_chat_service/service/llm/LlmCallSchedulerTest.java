@@ -0,0 +1,222 @@
+package com.firefist.rag_chat_service.service.llm;
+
+import com.firefist.rag_chat_service.exception.LlmOverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Slots are held by calls blocked on a latch; queue and limit are observed through the scheduler's gauges.
+ */
+class LlmCallSchedulerTest {
+
+    private static final Duration LONG = Duration.ofSeconds(30);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ExecutorService threads = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        threads.shutdownNow();
+    }
+
+    @Test
+    void grantsFreedSlotsByPriorityThenDeadline() throws Exception {
+        LlmCallScheduler scheduler = scheduler(1, 1, 100, 60_000);
+        CountDownLatch holder = hold(scheduler);
+        List<String> order = new CopyOnWriteArrayList<>();
+
+        Future<?> batch = submit(scheduler, LlmPriority.BATCH, LONG, () -> order.add("batch"));
+        awaitQueued(1);
+        Future<?> late = submit(scheduler, LlmPriority.INTERACTIVE, LONG, () -> order.add("interactive-late"));
+        awaitQueued(2);
+        Future<?> soon = submit(scheduler, LlmPriority.INTERACTIVE, Duration.ofSeconds(20), () -> order.add("interactive-soon"));
+        awaitQueued(3);
+
+        holder.countDown();
+        batch.get(5, TimeUnit.SECONDS);
+        late.get(5, TimeUnit.SECONDS);
+        soon.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("interactive-soon", "interactive-late", "batch"), order);
+        assertEquals(0.0, gauge("chat.llm.concurrency.inflight"));
+    }
+
+    @Test
+    void shedsWaitersThatCanNoLongerMeetTheirDeadline() throws Exception {
+        LlmCallScheduler scheduler = scheduler(1, 1, 100, 60_000);
+        // one call of ~100 ms teaches the scheduler what a call takes
+        scheduler.call(LlmPriority.INTERACTIVE, LONG, () -> {
+            sleep(100);
+            return ok();
+        });
+        CountDownLatch holder = hold(scheduler);
+
+        // can't start and finish within 50 ms: rejected without queueing
+        assertThrows(LlmOverloadedException.class,
+                () -> scheduler.call(LlmPriority.INTERACTIVE, Duration.ofMillis(50), LlmCallSchedulerTest::ok));
+        assertEquals(0.0, gauge("chat.llm.queue.size"));
+
+        // feasible when queued, dropped once the slot doesn't free up in time
+        long start = System.nanoTime();
+        assertThrows(LlmOverloadedException.class,
+                () -> scheduler.call(LlmPriority.INTERACTIVE, Duration.ofMillis(400), LlmCallSchedulerTest::ok));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+        assertEquals(0.0, gauge("chat.llm.queue.size"));
+        holder.countDown();
+    }
+
+    @Test
+    void fullQueueEvictsTheLeastImportantWaiter() throws Exception {
+        LlmCallScheduler scheduler = scheduler(1, 1, 1, 60_000);
+        CountDownLatch holder = hold(scheduler);
+
+        Future<?> batch = submit(scheduler, LlmPriority.BATCH, LONG, () -> { });
+        awaitQueued(1);
+        Future<?> interactive = submit(scheduler, LlmPriority.INTERACTIVE, LONG, () -> { });
+        assertShed(batch);
+
+        // the queue now holds something more important than another batch call
+        assertThrows(LlmOverloadedException.class,
+                () -> scheduler.call(LlmPriority.BATCH, LONG, LlmCallSchedulerTest::ok));
+
+        holder.countDown();
+        interactive.get(5, TimeUnit.SECONDS);
+        assertEquals(0.0, gauge("chat.llm.concurrency.inflight"));
+    }
+
+    @Test
+    void interruptedWaiterLeavesTheQueueAndTheSlotGoesOn() throws Exception {
+        LlmCallScheduler scheduler = scheduler(1, 1, 100, 60_000);
+        CountDownLatch holder = hold(scheduler);
+
+        AtomicReference<Thread> waiterThread = new AtomicReference<>();
+        AtomicReference<Boolean> interruptKept = new AtomicReference<>();
+        Future<?> interrupted = threads.submit(() -> {
+            waiterThread.set(Thread.currentThread());
+            try {
+                scheduler.call(LlmPriority.INTERACTIVE, LONG, LlmCallSchedulerTest::ok);
+            } finally {
+                interruptKept.set(Thread.currentThread().isInterrupted());
+            }
+            return null;
+        });
+        awaitQueued(1);
+        Future<?> next = submit(scheduler, LlmPriority.BATCH, LONG, () -> { });
+        awaitQueued(2);
+
+        waiterThread.get().interrupt();
+        assertShed(interrupted);
+        assertTrue(interruptKept.get());
+        awaitQueued(1);
+
+        holder.countDown();
+        next.get(5, TimeUnit.SECONDS);
+        assertEquals(0.0, gauge("chat.llm.concurrency.inflight"));
+        // nothing leaked: the single slot is free again
+        scheduler.call(LlmPriority.INTERACTIVE, Duration.ofMillis(100), LlmCallSchedulerTest::ok);
+    }
+
+    @Test
+    void limitDecreasesOncePerCooldownAndGrowsWithFastCalls() {
+        LlmCallScheduler scheduler = new LlmCallScheduler(registry, 2, 1, 8, 10_000, 0.5, 100,
+                20_000, 300_000, 60_000);
+
+        // a burst of provider errors before any success halves the limit once, not per error
+        for (int i = 0; i < 5; i++) scheduler.call(LlmPriority.INTERACTIVE, LONG, LlmCallSchedulerTest::error);
+        assertEquals(1.0, gauge("chat.llm.concurrency.limit"));
+
+        // a fast call that used the whole limit adds 1/limit: 1 -> 2
+        scheduler.call(LlmPriority.INTERACTIVE, LONG, LlmCallSchedulerTest::ok);
+        assertEquals(2.0, gauge("chat.llm.concurrency.limit"));
+        // 2 -> 2.5, after that one call at a time is less than half the limit and it stops growing
+        for (int i = 0; i < 5; i++) scheduler.call(LlmPriority.INTERACTIVE, LONG, LlmCallSchedulerTest::ok);
+        assertEquals(2.0, gauge("chat.llm.concurrency.limit"));
+    }
+
+    private LlmCallScheduler scheduler(int initialLimit, int minLimit, int maxQueue, long cooldownMs) {
+        return new LlmCallScheduler(registry, initialLimit, minLimit, initialLimit, 10_000, 0.9, maxQueue,
+                20_000, 300_000, cooldownMs);
+    }
+
+    // takes the only slot until the returned latch is released
+    private CountDownLatch hold(LlmCallScheduler scheduler) throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch running = new CountDownLatch(1);
+        threads.submit(() -> scheduler.call(LlmPriority.INTERACTIVE, LONG, () -> {
+            running.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return ok();
+        }));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        return release;
+    }
+
+    private Future<?> submit(LlmCallScheduler scheduler, LlmPriority priority, Duration deadline, Runnable body) {
+        return threads.submit(() -> scheduler.call(priority, deadline, () -> {
+            body.run();
+            return ok();
+        }));
+    }
+
+    private void awaitQueued(int size) {
+        await(() -> gauge("chat.llm.queue.size") == size);
+    }
+
+    private static void assertShed(Future<?> call) throws Exception {
+        try {
+            call.get(5, TimeUnit.SECONDS);
+            fail("call was expected to be shed");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof LlmOverloadedException, String.valueOf(ex.getCause()));
+        }
+    }
+
+    private double gauge(String name) {
+        return registry.get(name).gauge().value();
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long until = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > until) fail("condition not reached in time");
+            sleep(5);
+        }
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static LlmResponse ok() {
+        return new LlmResponse("reply", "test", null, null, "stop");
+    }
+
+    private static LlmResponse error() {
+        return new LlmResponse(null, "test", null, null, "error");
+    }
+}
@@ -0,0 +1,119 @@
+package com.firefist.rag_chat_service.service.llm;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Allocation per LLM round trip: the streaming {@link OpenAiCodec} against the previous
+ * Map payload + Map response + parseGeneratedText path.
+ *
+ * Not part of the default test run, use: mvn -Pbench test (or -Dtest=OpenAiCodecBenchmark).
+ */
+class OpenAiCodecBenchmark {
+
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 50_000;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final List<String> snippets = List.of(
+            "Snippet one about the refund policy. ".repeat(20),
+            "Snippet two about shipping times. ".repeat(20),
+            "Snippet three about warranty claims. ".repeat(20));
+    private final String userMessage = "How long does a refund take if the parcel was lost in transit?";
+    private final byte[] responseBody = sampleResponse();
+
+    @Test
+    void allocationPerCall() throws IOException {
+        // both paths must agree before their cost is compared
+        assertEquals(mapPath(), codecPath());
+
+        measure("map", this::mapPath, WARMUP);
+        measure("codec", this::codecPath, WARMUP);
+        double mapBytes = measure("map", this::mapPath, ITERATIONS);
+        double codecBytes = measure("codec", this::codecPath, ITERATIONS);
+
+        System.out.printf("OpenAiCodecBenchmark: map path %.0f B/op, codec %.0f B/op (%.1fx less)%n",
+                mapBytes, codecBytes, mapBytes / codecBytes);
+        assertTrue(codecBytes < mapBytes, "codec should allocate less than the Map path");
+    }
+
+    private String codecPath() throws IOException {
+        List<OpenAiCodec.Message> messages = new ArrayList<>(3);
+        messages.add(new OpenAiCodec.Message("system", "You are an assistant."));
+        messages.add(new OpenAiCodec.Message("system", "Retrieved context:\n" + String.join("\n\n---\n\n", snippets)));
+        messages.add(new OpenAiCodec.Message("user", userMessage));
+        OpenAiCodec.writeRequest(new OpenAiCodec.ChatRequest("gpt-4o-mini", messages, 800, 0.2), OutputStream.nullOutputStream());
+
+        OpenAiCodec.ChatCompletion completion = OpenAiCodec.readResponse(new ByteArrayInputStream(responseBody));
+        return completion.content() + "|" + completion.promptTokens() + "|" + completion.completionTokens();
+    }
+
+    // what OpenAiLlmClient did before the codec: Map payload out, Map tree in, casts to find the text
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private String mapPath() throws IOException {
+        List<Map<String, String>> messages = new ArrayList<>();
+        messages.add(Map.of("role", "system", "content", "You are an assistant."));
+        messages.add(Map.of("role", "system", "content", "Retrieved context:\n" + String.join("\n\n---\n\n", snippets)));
+        messages.add(Map.of("role", "user", "content", userMessage));
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("model", "gpt-4o-mini");
+        payload.put("messages", messages);
+        payload.put("max_tokens", 800);
+        payload.put("temperature", 0.2);
+        mapper.writeValue(OutputStream.nullOutputStream(), payload);
+
+        Map body = mapper.readValue(responseBody, Map.class);
+        String text = null;
+        List choices = (List) body.get("choices");
+        Object first = choices.get(0);
+        if (first instanceof Map) {
+            Object message = ((Map) first).get("message");
+            if (message instanceof Map) text = String.valueOf(((Map) message).get("content"));
+        }
+        Map usage = (Map) body.get("usage");
+        return text + "|" + usage.get("prompt_tokens") + "|" + usage.get("completion_tokens");
+    }
+
+    private interface Call {
+        String run() throws IOException;
+    }
+
+    private static double measure(String name, Call call, int iterations) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long sink = 0;
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < iterations; i++) {
+            sink += call.run().length();
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        assertTrue(sink > 0, name);
+        return (double) allocated / iterations;
+    }
+
+    private static byte[] sampleResponse() {
+        String json = """
+                {"id":"chatcmpl-abc123","object":"chat.completion","created":1730000000,"model":"gpt-4o-mini-2024-07-18",
+                 "choices":[{"index":0,"message":{"role":"assistant","content":"%s","refusal":null},
+                             "logprobs":null,"finish_reason":"stop"}],
+                 "usage":{"prompt_tokens":412,"completion_tokens":96,"total_tokens":508,
+                          "prompt_tokens_details":{"cached_tokens":0,"audio_tokens":0},
+                          "completion_tokens_details":{"reasoning_tokens":0,"audio_tokens":0}},
+                 "system_fingerprint":"fp_0123456789"}
+                """.formatted("Refunds for parcels lost in transit are issued within 5 business days. ".repeat(8));
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,136 @@
+package com.firefist.rag_chat_service.service.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OpenAiCodecTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void requestEscapesStringsAndAsksForUsageWhenStreaming() throws IOException {
+        String tricky = "line \"one\"\n\ttab \\ back, café 中文 😀 \u0001";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OpenAiCodec.writeRequest(new OpenAiCodec.ChatRequest("m",
+                List.of(new OpenAiCodec.Message("user", tricky)), 800, 0.2, true), out);
+
+        JsonNode json = mapper.readTree(out.toByteArray());
+        assertEquals(tricky, json.at("/messages/0/content").asText());
+        assertEquals(800, json.get("max_tokens").asInt());
+        assertEquals(true, json.at("/stream_options/include_usage").asBoolean());
+
+        out.reset();
+        OpenAiCodec.writeRequest(new OpenAiCodec.ChatRequest("m", List.of(), 10, 0.0), out);
+        assertFalse(mapper.readTree(out.toByteArray()).has("stream"));
+    }
+
+    @Test
+    void responseUnescapesContentAndSkipsUnknownAndNestedFields() throws IOException {
+        OpenAiCodec.ChatCompletion c = read("""
+                {"id":"x","object":"chat.completion","extra":{"content":"not this","list":[1,{"a":[2]}]},
+                 "choices":[{"index":0,"logprobs":{"content":[{"token":"a"}]},
+                   "message":{"role":"assistant","tool_calls":[{"function":{"content":"nor this"}}],
+                     "content":"caf\\u00e9 \\"quoted\\"\\n\\ud83d\\ude00"},
+                   "finish_reason":"stop"}],
+                 "usage":{"prompt_tokens":12,"completion_tokens":3,"details":{"cached_tokens":4}},
+                 "system_fingerprint":null}
+                """);
+        assertEquals("café \"quoted\"\n😀", c.content());
+        assertEquals("stop", c.finishReason());
+        assertEquals(12, c.promptTokens());
+        assertEquals(3, c.completionTokens());
+    }
+
+    @Test
+    void onlyTheFirstOfSeveralChoicesIsUsed() throws IOException {
+        OpenAiCodec.ChatCompletion c = read("""
+                {"choices":[{"message":{"content":"first"},"finish_reason":"length"},
+                            {"message":{"content":"second"},"finish_reason":"stop"}]}
+                """);
+        assertEquals("first", c.content());
+        assertEquals("length", c.finishReason());
+
+        assertEquals("legacy", read("{\"choices\":[{\"text\":\"legacy\"},{\"text\":\"other\"}]}").content());
+        assertEquals("bare", read("{\"choices\":[\"bare\",\"other\"]}").content());
+        assertEquals("top", read("{\"choices\":[],\"text\":\"top\"}").content());
+    }
+
+    @Test
+    void providerErrorPayloadHasNoContent() throws IOException {
+        OpenAiCodec.ChatCompletion c = read("""
+                {"error":{"message":"Rate limit reached","type":"requests","content":"not an answer","code":"429"}}
+                """);
+        assertNull(c.content());
+        assertNull(c.finishReason());
+        assertNull(c.promptTokens());
+
+        assertThrows(IOException.class, () -> read("[\"not an object\"]"));
+    }
+
+    @Test
+    void streamHandsOverDeltasAndStopsAtDone() throws IOException {
+        List<String> deltas = new ArrayList<>();
+        OpenAiCodec.ChatCompletion c = readStream("""
+                : keep-alive
+
+                event: message
+                data: {"choices":[{"delta":{"role":"assistant","content":""}}],"usage":null}
+
+                data: {"choices":[{"delta":{"content":"Hel"}},{"delta":{"content":"ignored"}}]}
+
+                : ping
+                data: {"choices":[{"delta":{"content":"lo \\u00e9"},"finish_reason":null}]}
+
+                data: {"choices":[{"delta":{},"finish_reason":"stop"}]}
+
+                data: {"choices":[],"usage":{"prompt_tokens":5,"completion_tokens":2}}
+
+                data: [DONE]
+
+                data: {"choices":[{"delta":{"content":"after done"}}]}
+
+                """, deltas);
+        assertEquals(List.of("Hel", "lo é"), deltas);
+        assertEquals("Hello é", c.content());
+        assertEquals("stop", c.finishReason());
+        assertEquals(5, c.promptTokens());
+        assertEquals(2, c.completionTokens());
+    }
+
+    @Test
+    void streamWithoutDoneOrContentEndsWithTheBody() throws IOException {
+        List<String> deltas = new ArrayList<>();
+        OpenAiCodec.ChatCompletion c = readStream("data: {\"choices\":[{\"text\":\"legacy\"}]}", deltas);
+        assertEquals(List.of("legacy"), deltas);
+        assertEquals("legacy", c.content());
+
+        // an error event mid-stream carries no delta: the result has no content at all
+        OpenAiCodec.ChatCompletion failed = readStream("""
+                data: {"error":{"message":"overloaded","type":"server_error"}}
+
+                """, deltas);
+        assertNull(failed.content());
+        assertEquals(List.of("legacy"), deltas);
+    }
+
+    private static OpenAiCodec.ChatCompletion read(String json) throws IOException {
+        return OpenAiCodec.readResponse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static OpenAiCodec.ChatCompletion readStream(String body, List<String> deltas) throws IOException {
+        return OpenAiCodec.readStream(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), deltas::add);
+    }
+}
@@ -0,0 +1,130 @@
+package com.firefist.rag_chat_service.service.retrieval;
+
+import com.firefist.rag_chat_service.exception.RequestCancelledException;
+import com.firefist.rag_chat_service.service.deadline.RequestDeadline;
+import com.firefist.rag_chat_service.service.deadline.RequestDeadlines;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The backend counts its calls and, while {@code gate} is set, blocks until it is opened.
+ */
+class CachingRetrievalServiceTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final RetrievalIndexGeneration generation = new RetrievalIndexGeneration(registry);
+    private final AtomicInteger calls = new AtomicInteger();
+    private final CountDownLatch entered = new CountDownLatch(1);
+    private volatile CountDownLatch gate;
+    private final RetrievalService backend = (query, topK) -> {
+        calls.incrementAndGet();
+        entered.countDown();
+        if (gate != null) await(gate);
+        return List.of(new RetrievalResult(query, "doc.md", 0.5));
+    };
+    private final CachingRetrievalService service =
+            new CachingRetrievalService(backend, generation, registry, true, 100, 3_600_000);
+    private final RequestDeadlines deadlines = new RequestDeadlines(registry, 30_000, 120_000, "discard");
+    private final ExecutorService threads = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        deadlines.shutdown();
+        threads.shutdownNow();
+    }
+
+    @Test
+    void queriesDifferingOnlyInWidthCaseAndSpacingShareAnEntry() {
+        assertEquals("hello world", CachingRetrievalService.normalize("  Ｈello\t　WORLD \n"));
+
+        List<RetrievalResult> first = service.retrieve("Hello   world", 3);
+        assertSame(first, service.retrieve(" hello WORLD", 3));
+        assertEquals(1, calls.get());
+        // k is part of the key
+        service.retrieve("hello world", 5);
+        assertEquals(2, calls.get());
+        assertEquals(2, count("miss"));
+        assertEquals(1, count("hit"));
+    }
+
+    @Test
+    void entryOfAnOlderIndexGenerationIsRecomputedOnItsNextUse() {
+        service.retrieve("q", 3);
+        generation.advance();
+        service.retrieve("q", 3);
+        service.retrieve("q", 3);
+
+        assertEquals(2, calls.get());
+        assertEquals(1, count("miss"));
+        assertEquals(1, count("stale"));
+        assertEquals(1, count("hit"));
+    }
+
+    @Test
+    void concurrentMissesShareOneBackendCall() throws Exception {
+        gate = new CountDownLatch(1);
+        Future<List<RetrievalResult>> first = threads.submit(() -> service.retrieve("q", 3));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        Future<List<RetrievalResult>> second = threads.submit(() -> service.retrieve("q", 3));
+        // the second caller can only be waiting on the first one's call
+        Thread.sleep(100);
+
+        gate.countDown();
+        assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+        assertEquals(1, count("miss"));
+        assertEquals(1, count("shared"));
+    }
+
+    @Test
+    void cancellingTheTurnEndsTheWaitForAnotherCallersMiss() throws Exception {
+        gate = new CountDownLatch(1);
+        Future<List<RetrievalResult>> owner = threads.submit(() -> service.retrieve("q", 3));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        RequestDeadline turn = deadlines.start(null);
+        CountDownLatch started = new CountDownLatch(1);
+        Future<RequestCancelledException> waiter = threads.submit(() -> {
+            try (RequestDeadline.Scope ignored = turn.bind()) {
+                started.countDown();
+                return assertThrows(RequestCancelledException.class,
+                        () -> RequestDeadline.interruptible(() -> service.retrieve("q", 3)));
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        turn.cancel(RequestDeadline.Reason.DISCONNECT);
+        assertEquals(RequestDeadline.Reason.DISCONNECT, waiter.get(5, TimeUnit.SECONDS).getReason());
+
+        // the shared call itself carries on for everyone else
+        gate.countDown();
+        assertEquals(1, owner.get(5, TimeUnit.SECONDS).size());
+        assertEquals(1, calls.get());
+    }
+
+    private long count(String result) {
+        return (long) registry.get("chat.retrieval.cache.requests").tag("result", result).counter().count();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
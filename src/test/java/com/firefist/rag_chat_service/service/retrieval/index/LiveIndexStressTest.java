@@ -0,0 +1,185 @@
+package com.firefist.rag_chat_service.service.retrieval.index;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Readers hammer the index while one writer adds, replaces and deletes batches, runs a full reindex,
+ * and merges run in the background.
+ *
+ * Every batch is written and deleted in one call and all its documents share a term, so a query for that
+ * term must see all of the batch or none of it; anything in between is a torn snapshot.
+ */
+class LiveIndexStressTest {
+
+    private static final int BATCH = 20;
+    private static final int BATCHES = 600;
+    private static final int READERS = 4;
+
+    private ThreadPoolExecutor merger;
+    private AtomicLong published;
+    private LiveIndex index;
+
+    @BeforeEach
+    void setUp() {
+        merger = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+        published = new AtomicLong();
+        index = new LiveIndex(8, merger, published::incrementAndGet);
+    }
+
+    @AfterEach
+    void tearDown() {
+        merger.shutdownNow();
+    }
+
+    @Test
+    void readersSeeWholeBatchesWhileWritesMergesAndReindexRun() throws Exception {
+        AtomicBoolean done = new AtomicBoolean();
+        Queue<String> failures = new ConcurrentLinkedQueue<>();
+        AtomicLong queries = new AtomicLong();
+        CountDownLatch started = new CountDownLatch(READERS);
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < READERS; r++) {
+            long seed = r;
+            Thread t = new Thread(() -> {
+                Random random = new Random(seed);
+                started.countDown();
+                while (!done.get()) {
+                    int batch = random.nextInt(BATCHES);
+                    try {
+                        long seen = index.search("batch" + batch + " common", BATCH * 4).stream()
+                                .filter(h -> h.id().startsWith("b" + batch + "-"))
+                                .count();
+                        if (seen != 0 && seen != BATCH) failures.add("batch " + batch + " seen with " + seen + " documents");
+                        queries.incrementAndGet();
+                    } catch (RuntimeException ex) {
+                        failures.add(ex.toString());
+                    }
+                }
+            }, "reader-" + r);
+            t.start();
+            readers.add(t);
+        }
+        started.await();
+
+        // the writer is the only one changing content, so it knows exactly what should be live
+        TreeSet<Integer> live = new TreeSet<>();
+        Random random = new Random(42);
+        for (int b = 0; b < BATCHES; b++) {
+            index.add(batch(b, "first"));
+            live.add(b);
+            if (b % 3 == 2) {
+                int victim = pick(live, random);
+                index.delete(ids(victim));
+                live.remove(victim);
+            }
+            if (b % 5 == 4) index.add(batch(pick(live, random), "replaced"));
+            if (b == BATCHES / 2) {
+                List<IndexDocument> all = new ArrayList<>();
+                for (int l : live) all.addAll(batch(l, "rebuilt"));
+                assertTrue(index.reindex(all));
+            }
+        }
+
+        awaitMergesIdle();
+        done.set(true);
+        for (Thread t : readers) t.join();
+
+        assertEquals(List.of(), List.copyOf(failures));
+        assertTrue(queries.get() > 0);
+        for (int b = 0; b < BATCHES; b++) {
+            int expected = live.contains(b) ? BATCH : 0;
+            int batch = b;
+            long seen = index.search("batch" + b, BATCH * 4).stream().filter(h -> h.id().startsWith("b" + batch + "-")).count();
+            assertEquals(expected, seen, "batch " + b);
+        }
+        LiveIndex.Stats stats = index.stats();
+        assertEquals(live.size() * BATCH, stats.liveDocs());
+        assertTrue(stats.segments() <= 8, "merges keep the segment count bounded: " + stats);
+        // nothing pins older snapshots any more, so every retired segment must have been reclaimed
+        assertEquals(stats.segments(), stats.segmentsAlive(), "segments leaked: " + stats);
+        assertTrue(published.get() > BATCHES);
+    }
+
+    @Test
+    void writesDuringReindexAreAppliedOnTopOfTheNewContent() {
+        index.add(batch(1, "old"));
+        index.add(batch(2, "old"));
+        List<IndexDocument> rebuilt = new ArrayList<>(batch(1, "rebuilt"));
+        rebuilt.addAll(batch(3, "rebuilt"));
+
+        // runs while the reindex reads its input, i.e. after it started logging and before it publishes
+        Collection<IndexDocument> input = new AbstractCollection<>() {
+            @Override
+            public Iterator<IndexDocument> iterator() {
+                index.add(batch(4, "during"));
+                index.delete(ids(3));
+                index.add(List.of(new IndexDocument("b1-0", "batch1 during", null)));
+                return rebuilt.iterator();
+            }
+
+            @Override
+            public int size() {
+                return rebuilt.size();
+            }
+        };
+        assertTrue(index.reindex(input));
+
+        assertEquals(BATCH, index.search("batch1", 100).size());
+        assertEquals(List.of("batch1 during"), index.search("batch1", 100).stream()
+                .filter(h -> h.id().equals("b1-0")).map(LiveIndex.Hit::text).toList());
+        assertEquals(0, index.search("batch2", 100).size());
+        assertEquals(0, index.search("batch3", 100).size());
+        assertEquals(BATCH, index.search("batch4", 100).size());
+        assertEquals(2 * BATCH, index.stats().liveDocs());
+    }
+
+    private void awaitMergesIdle() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        int quiet = 0;
+        while (quiet < 5 && System.nanoTime() < deadline) {
+            quiet = merger.getActiveCount() == 0 && merger.getQueue().isEmpty() ? quiet + 1 : 0;
+            Thread.sleep(20);
+        }
+    }
+
+    private static int pick(TreeSet<Integer> live, Random random) {
+        Integer[] all = live.toArray(new Integer[0]);
+        return all[random.nextInt(all.length)];
+    }
+
+    private static List<IndexDocument> batch(int b, String variant) {
+        List<IndexDocument> docs = new ArrayList<>();
+        for (int i = 0; i < BATCH; i++) {
+            docs.add(new IndexDocument("b" + b + "-" + i, "batch" + b + " common " + variant + " word" + i, "src-" + b));
+        }
+        return docs;
+    }
+
+    private static List<String> ids(int b) {
+        String[] ids = new String[BATCH];
+        for (int i = 0; i < BATCH; i++) ids[i] = "b" + b + "-" + i;
+        return Arrays.asList(ids);
+    }
+}
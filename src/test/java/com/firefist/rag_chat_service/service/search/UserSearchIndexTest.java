@@ -0,0 +1,113 @@
+package com.firefist.rag_chat_service.service.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserSearchIndexTest {
+
+    private final UUID session = UUID.randomUUID();
+    private final UUID other = UUID.randomUUID();
+    private final UserSearchIndex index = new UserSearchIndex();
+
+    @Test
+    void phraseNeedsTheTermsInOrderAndAdjacent() {
+        UUID inOrder = add(session, "retrieval augmented generation");
+        add(session, "augmented retrieval and generation");
+        add(session, "retrieval and then augmented");
+        UUID later = add(session, "generation by retrieval augmented models");
+
+        assertEquals(List.of(new SearchQuery.Phrase(List.of("retrieval", "augmented"))),
+                SearchQuery.parse("\"Retrieval augmented\"").clauses());
+        assertEquals(List.of(inOrder, later), ids(search("\"retrieval augmented\"")));
+        // unquoted, the words only have to occur
+        assertEquals(4, search("retrieval augmented").totalHits());
+    }
+
+    @Test
+    void prefixExpandsToTheMostFrequentTerms() {
+        UUID generation1 = add(session, "generation one");
+        UUID generation2 = add(session, "another generation");
+        UUID generic = add(session, "generic answer");
+        add(session, "gene pool");
+
+        assertEquals(List.of(new SearchQuery.Prefix("gen")), SearchQuery.parse("Gen*").clauses());
+        // too short for a prefix, searched as the term itself
+        assertEquals(List.of(new SearchQuery.Term("g")), SearchQuery.parse("g*").clauses());
+
+        assertEquals(4, search("gen*").totalHits());
+        assertEquals(3, search("gener*").totalHits());
+        // with one expansion only "generation" (two documents) is kept
+        List<UserSearchIndex.Hit> hits = index.search(SearchQuery.parse("gener*"), 10, 1, 10).hits();
+        assertEquals(2, hits.size());
+        assertTrue(ids(hits).containsAll(List.of(generation1, generation2)));
+        assertFalse(ids(hits).contains(generic));
+    }
+
+    @Test
+    void messagesOfDeletedSessionsAreFilteredOut() {
+        UUID kept = add(session, "vector database sizing");
+        add(other, "vector database migration");
+        add(other, "vector search");
+
+        index.deleteSession(other);
+        UserSearchIndex.Result result = search("vector");
+        assertEquals(1, result.totalHits());
+        assertEquals(List.of(kept), ids(result));
+        assertEquals(List.of(session), result.sessions().stream().map(UserSearchIndex.SessionHit::sessionId).toList());
+    }
+
+    @Test
+    void messagesAddedDuringTheLoadAreIndexedOnce() {
+        UserSearchIndex loading = new UserSearchIndex();
+        UUID id = UUID.randomUUID();
+        loading.add(id, session, 2, "late message");
+        loading.load(id, session, 2, "late message");
+        loading.load(UUID.randomUUID(), session, 1, "early message");
+        assertEquals(1, loading.search(SearchQuery.parse("late"), 10, 50, 10).totalHits());
+
+        loading.markReady();
+        assertTrue(loading.isReady());
+        assertEquals(1, loading.search(SearchQuery.parse("late"), 10, 50, 10).totalHits());
+        assertEquals(2, loading.search(SearchQuery.parse("message"), 10, 50, 10).totalHits());
+    }
+
+    @Test
+    void highlightsMatchesAtTheirOffsetsAndEscapesTheRest() {
+        SearchQuery query = SearchQuery.parse("retriev* generation");
+        assertEquals("Use &lt;b&gt;RAG&lt;/b&gt; &amp; <em>retrieval</em>-augmented <em>Generation</em>",
+                SearchHighlighter.highlight("Use <b>RAG</b> & retrieval-augmented Generation", query, 200));
+
+        // the excerpt starts a quarter of maxChars before the first match
+        String content = "aaaa ".repeat(20) + "needle tail text here";
+        assertEquals("…aaaa <em>needle</em> tail tex…",
+                SearchHighlighter.highlight(content, SearchQuery.parse("needle"), 20));
+        // a match cut by the end of the excerpt is still closed
+        assertEquals("… <em>nee</em>…",
+                SearchHighlighter.highlight("aaaa ".repeat(4) + "needle tail", SearchQuery.parse("needle"), 4));
+    }
+
+    private UUID add(UUID sessionId, String content) {
+        if (!index.isReady()) index.markReady();
+        UUID id = UUID.randomUUID();
+        index.add(id, sessionId, 1, content);
+        return id;
+    }
+
+    private UserSearchIndex.Result search(String q) {
+        return index.search(SearchQuery.parse(q), 10, 50, 10);
+    }
+
+    private static List<UUID> ids(UserSearchIndex.Result result) {
+        return ids(result.hits());
+    }
+
+    private static List<UUID> ids(List<UserSearchIndex.Hit> hits) {
+        return hits.stream().map(UserSearchIndex.Hit::messageId).toList();
+    }
+}
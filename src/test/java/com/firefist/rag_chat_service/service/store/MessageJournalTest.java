@@ -0,0 +1,161 @@
+package com.firefist.rag_chat_service.service.store;
+
+import com.firefist.rag_chat_service.model.ChatMessage;
+import com.firefist.rag_chat_service.model.ChatSession;
+import com.firefist.rag_chat_service.model.ContextRef;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * A crash is a journal that is dropped without flushing; a new journal over the same directory replays it.
+ */
+class MessageJournalTest {
+
+    private static final int HEADER_BYTES = 8;
+    private final UUID sessionId = UUID.randomUUID();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recordsRoundTrip() throws IOException {
+        ChatMessage full = message("what is RAG? ü");
+        full.setSequenceNumber(7L);
+        full.setRetrievedContext("ctx");
+        full.setContextRefs(List.of(new ContextRef("h1", "doc.md", 0.75, "Retrieval"), new ContextRef("h2", null, 1.0, null)));
+        ChatMessage bare = message("");
+
+        ChatMessage decoded = MessageJournal.decode(MessageJournal.encode(full));
+        assertEquals(full.getId(), decoded.getId());
+        assertEquals(sessionId, decoded.getSession().getId());
+        assertEquals(full.getCreatedAt(), decoded.getCreatedAt());
+        assertEquals(7L, (long) decoded.getSequenceNumber());
+        assertEquals(full.getSender(), decoded.getSender());
+        assertEquals(full.getContent(), decoded.getContent());
+        assertEquals("ctx", decoded.getRetrievedContext());
+        assertEquals(full.getContextRefs(), decoded.getContextRefs());
+
+        decoded = MessageJournal.decode(MessageJournal.encode(bare));
+        assertNull(decoded.getSequenceNumber());
+        assertNull(decoded.getRetrievedContext());
+        assertEquals("", decoded.getContent());
+    }
+
+    @Test
+    void replayStopsAtATornRecord() throws IOException {
+        List<ChatMessage> written = appendAndCrash(3);
+        Path segment = onlySegment();
+        // first payload byte of the third record, as if the crash hit while it was being copied
+        int offset = 2 * recordBytes(written.get(0));
+        try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            ch.read(b, offset + HEADER_BYTES);
+            b.put(0, (byte) ~b.get(0)).rewind();
+            ch.write(b, offset + HEADER_BYTES);
+        }
+
+        assertEquals(ids(written.subList(0, 2)), replayedIds(replay()));
+    }
+
+    @Test
+    void replayStopsAtATruncatedTail() throws IOException {
+        List<ChatMessage> written = appendAndCrash(2);
+        try (FileChannel ch = FileChannel.open(onlySegment(), StandardOpenOption.WRITE)) {
+            ch.truncate(recordBytes(written.get(0)) + HEADER_BYTES + 5);
+        }
+
+        MessageJournal journal = new MessageJournal(dir, 1 << 16);
+        assertEquals(ids(written.subList(0, 1)), replayedIds(journal.replay()));
+        // appends go to a fresh segment after the damaged one
+        long segmentId = journal.append(message("after restart"));
+        assertEquals(2, segmentId);
+    }
+
+    @Test
+    void sealedSegmentIsDeletedOnceEveryRecordIsFlushed() throws IOException {
+        ChatMessage first = message("same size");
+        // room for two records per segment
+        MessageJournal journal = new MessageJournal(dir, 2 * recordBytes(first) + 1);
+        journal.replay();
+        long s1 = journal.append(first);
+        assertEquals(s1, journal.append(message("same size")));
+        long s2 = journal.append(message("same size"));
+        assertEquals(s1 + 1, s2);
+        assertEquals(2, segmentFiles().size());
+
+        journal.markFlushed(s1);
+        assertEquals(2, segmentFiles().size());
+        journal.markFlushed(s1);
+        assertEquals(1, segmentFiles().size());
+        assertFalse(Files.exists(dir.resolve(String.format("journal-%016d.log", s1))));
+
+        // the active segment stays even when everything in it is flushed, appends still go there
+        journal.markFlushed(s2);
+        assertEquals(1, segmentFiles().size());
+        journal.close();
+    }
+
+    private List<ChatMessage> appendAndCrash(int count) throws IOException {
+        MessageJournal journal = new MessageJournal(dir, 1 << 16);
+        journal.replay();
+        List<ChatMessage> written = Stream.generate(() -> message("same size")).limit(count).toList();
+        for (ChatMessage m : written) journal.append(m);
+        journal.force();
+        return written;
+    }
+
+    private List<MessageJournal.Entry> replay() throws IOException {
+        return new MessageJournal(dir, 1 << 16).replay();
+    }
+
+    private Path onlySegment() throws IOException {
+        List<Path> files = segmentFiles();
+        assertEquals(1, files.size());
+        return files.get(0);
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.sorted().toList();
+        }
+    }
+
+    private ChatMessage message(String content) {
+        ChatSession session = new ChatSession();
+        session.setId(sessionId);
+        ChatMessage m = new ChatMessage();
+        m.setId(UUID.randomUUID());
+        m.setSession(session);
+        m.setSender("USER");
+        m.setContent(content);
+        m.setCreatedAt(Instant.parse("2026-01-02T03:04:05.123456789Z"));
+        return m;
+    }
+
+    private static int recordBytes(ChatMessage m) {
+        return HEADER_BYTES + MessageJournal.encode(m).length;
+    }
+
+    private static List<UUID> ids(List<ChatMessage> messages) {
+        return messages.stream().map(ChatMessage::getId).toList();
+    }
+
+    private static List<UUID> replayedIds(List<MessageJournal.Entry> entries) {
+        return entries.stream().map(e -> e.getMessage().getId()).toList();
+    }
+}
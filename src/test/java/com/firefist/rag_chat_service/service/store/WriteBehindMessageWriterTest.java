@@ -0,0 +1,99 @@
+package com.firefist.rag_chat_service.service.store;
+
+import com.firefist.rag_chat_service.model.ChatMessage;
+import com.firefist.rag_chat_service.model.ChatSession;
+import com.firefist.rag_chat_service.repository.ChatMessageJdbcRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * The repository stands in for chat_message: like the real insert it skips ids that are already stored.
+ * A crash is a writer that is dropped without shutdown; a new writer over the same journal replays it.
+ */
+class WriteBehindMessageWriterTest {
+
+    private final UUID sessionId = UUID.randomUUID();
+    private final Map<UUID, ChatMessage> rows = new ConcurrentHashMap<>();
+    private final List<UUID> inserted = new ArrayList<>();
+    private final ChatMessageJdbcRepository repository = mock(ChatMessageJdbcRepository.class);
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(inv -> {
+            List<ChatMessage> batch = inv.getArgument(0);
+            batch.forEach(m -> {
+                inserted.add(m.getId());
+                rows.putIfAbsent(m.getId(), m);
+            });
+            return new int[batch.size()];
+        }).when(repository).insertIgnoringDuplicates(anyList());
+    }
+
+    @Test
+    void replayingFlushedMessagesAfterACrashAddsNoRows() throws IOException {
+        WriteBehindMessageWriter before = writer();
+        List<UUID> flushed = List.of(before.write(message("one")).getId(), before.write(message("two")).getId());
+        before.flush();
+        assertEquals(2, rows.size());
+        assertTrue(before.pending(sessionId).isEmpty());
+        UUID unflushed = before.write(message("three")).getId();
+        before.sync();
+
+        // the active segment still holds the flushed records, so they come back with the unflushed one
+        WriteBehindMessageWriter after = writer();
+        assertEquals(List.of(flushed.get(0), flushed.get(1), unflushed),
+                after.pending(sessionId).stream().map(ChatMessage::getId).toList());
+        after.flush();
+
+        assertEquals(3, rows.size());
+        assertEquals(List.of(flushed.get(0), flushed.get(1), flushed.get(0), flushed.get(1), unflushed), inserted);
+        assertTrue(after.pending(sessionId).isEmpty());
+        after.shutdown();
+    }
+
+    private WriteBehindMessageWriter writer() throws IOException {
+        WriteBehindMessageWriter writer = new WriteBehindMessageWriter(repository, new DirectTransactionTemplate(),
+                new SimpleMeterRegistry(), dir.toString(), 1 << 16, 500, 1000, 1000);
+        writer.recover();
+        return writer;
+    }
+
+    private ChatMessage message(String content) {
+        ChatSession session = new ChatSession();
+        session.setId(sessionId);
+        ChatMessage m = new ChatMessage();
+        m.setSession(session);
+        m.setSender("USER");
+        m.setContent(content);
+        return m;
+    }
+
+    // runs the callback on the calling thread, there is no database to begin a transaction on
+    private static final class DirectTransactionTemplate extends TransactionTemplate {
+        @Override
+        public <T> T execute(TransactionCallback<T> action) {
+            return action.doInTransaction(null);
+        }
+    }
+}
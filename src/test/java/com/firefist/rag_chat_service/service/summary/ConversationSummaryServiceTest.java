@@ -0,0 +1,127 @@
+package com.firefist.rag_chat_service.service.summary;
+
+import com.firefist.rag_chat_service.model.ChatMessage;
+import com.firefist.rag_chat_service.model.ConversationSummary;
+import com.firefist.rag_chat_service.repository.ChatMessageJdbcRepository;
+import com.firefist.rag_chat_service.repository.ConversationSummaryRepository;
+import com.firefist.rag_chat_service.service.store.MessageWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Repositories are mocked; the job runs on the service's own executor, so verifications wait for it.
+ * Trigger 4 messages, keep the newest 2 verbatim.
+ */
+class ConversationSummaryServiceTest {
+
+    private final UUID sessionId = UUID.randomUUID();
+    private final ConversationSummaryRepository summaryRepository = mock(ConversationSummaryRepository.class);
+    private final ChatMessageJdbcRepository jdbcRepository = mock(ChatMessageJdbcRepository.class);
+    private final ConversationSummarizer summarizer = mock(ConversationSummarizer.class);
+    private final ConversationSummaryService service = new ConversationSummaryService(summaryRepository, jdbcRepository,
+            mock(MessageWriter.class), summarizer, new DirectTransactionTemplate(),
+            true, 20, 4, 4000, 2, 100, 1, 10);
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void summarizesOnlyAfterTheTurnCommits() {
+        when(summaryRepository.findById(sessionId)).thenReturn(Optional.empty());
+        when(jdbcRepository.tailStats(sessionId, 0)).thenReturn(new long[]{6, 600});
+        when(jdbcRepository.nthNewestSequence(sessionId, 0, 2)).thenReturn(4L);
+        when(jdbcRepository.findBySequenceRange(sessionId, 0, 4, 100)).thenReturn(messages(1, 4));
+        when(summarizer.summarize(isNull(), anyList())).thenReturn("summary");
+
+        TransactionSynchronizationManager.initSynchronization();
+        service.onTurn(sessionId);
+        verify(summaryRepository, after(200).never()).findById(any());
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+
+        ArgumentCaptor<ConversationSummary> saved = ArgumentCaptor.forClass(ConversationSummary.class);
+        verify(summaryRepository, timeout(2000)).save(saved.capture());
+        assertEquals(sessionId, saved.getValue().getSessionId());
+        assertEquals("summary", saved.getValue().getSummary());
+        assertEquals(4, saved.getValue().getSummarizedThroughSeq());
+        assertEquals(4, saved.getValue().getSummarizedMessages());
+        assertNull(saved.getValue().getVersion());
+    }
+
+    @Test
+    void passLosingTheVersionCheckIsDroppedAndTheWorkerCarriesOn() {
+        // a fresh copy per read, as JPA would load it
+        when(summaryRepository.findById(sessionId)).thenAnswer(inv -> {
+            ConversationSummary current = new ConversationSummary();
+            current.setSessionId(sessionId);
+            current.setSummary("old");
+            current.setSummarizedThroughSeq(2);
+            current.setSummarizedMessages(2);
+            current.setVersion(3L);
+            return Optional.of(current);
+        });
+        when(jdbcRepository.tailStats(sessionId, 2)).thenReturn(new long[]{10, 1000});
+        when(jdbcRepository.nthNewestSequence(sessionId, 2, 2)).thenReturn(10L);
+        // one batch short of the cut-off: a successful pass would queue the next one right away
+        when(jdbcRepository.findBySequenceRange(sessionId, 2, 10, 100)).thenReturn(messages(3, 6));
+        when(summarizer.summarize(eq("old"), anyList())).thenReturn("newer");
+        // another node saved version 4 first
+        when(summaryRepository.save(any())).thenThrow(new ObjectOptimisticLockingFailureException(ConversationSummary.class, sessionId));
+
+        service.onTurn(sessionId);
+        verify(summaryRepository, timeout(2000)).save(any());
+        // not requeued after the conflict
+        verify(jdbcRepository, after(300).times(1)).tailStats(sessionId, 2);
+
+        service.onTurn(sessionId);
+        verify(summaryRepository, timeout(2000).times(2)).save(any());
+    }
+
+    private List<ChatMessage> messages(long from, long through) {
+        return LongStream.rangeClosed(from, through).mapToObj(seq -> {
+            ChatMessage m = new ChatMessage();
+            m.setId(UUID.randomUUID());
+            m.setSender(seq % 2 == 1 ? "USER" : "ASSISTANT");
+            m.setContent("message " + seq);
+            m.setSequenceNumber(seq);
+            return m;
+        }).toList();
+    }
+
+    // runs the callback on the calling thread, there is no database to begin a transaction on
+    private static final class DirectTransactionTemplate extends TransactionTemplate {
+        @Override
+        public <T> T execute(TransactionCallback<T> action) {
+            return action.doInTransaction(null);
+        }
+    }
+}
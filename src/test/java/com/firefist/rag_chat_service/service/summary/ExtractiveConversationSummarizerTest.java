@@ -0,0 +1,45 @@
+package com.firefist.rag_chat_service.service.summary;
+
+import com.firefist.rag_chat_service.model.ChatMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ExtractiveConversationSummarizerTest {
+
+    @Test
+    void keepsRecurringSentencesInTheirOriginalOrder() {
+        List<ChatMessage> turns = List.of(
+                message("USER", "How do I size the vector index? The weather is nice."),
+                message("ASSISTANT", "The vector index needs memory per vector dimension."),
+                message("USER", "Thanks!"));
+
+        String summary = new ExtractiveConversationSummarizer(110).summarize(null, turns);
+
+        assertEquals("User: How do I size the vector index?\nAssistant: The vector index needs memory per vector dimension.",
+                summary);
+    }
+
+    @Test
+    void previousSummaryWinsOverANewSentenceWithTheSameWords() {
+        String previous = "User: Deployment runs on Kubernetes.";
+        List<ChatMessage> turns = List.of(message("ASSISTANT", "Kubernetes runs the deployment."));
+
+        // room for one sentence only
+        assertEquals(previous, new ExtractiveConversationSummarizer(40).summarize(previous, turns));
+    }
+
+    @Test
+    void nothingToSummarizeIsEmpty() {
+        assertEquals("", new ExtractiveConversationSummarizer(100).summarize(null, List.of(message("USER", " \n "))));
+    }
+
+    private static ChatMessage message(String sender, String content) {
+        ChatMessage m = new ChatMessage();
+        m.setSender(sender);
+        m.setContent(content);
+        return m;
+    }
+}